@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool;
+
+import java.io.StringWriter;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
+import org.bouncycastle.util.io.pem.PemObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.floragunn.searchguard.tools.tlstool.tasks.BenchmarkSupport;
+
+/**
+ * Measures the encoding done by FileOutput: PKCS#8 encoding and encryption of
+ * private keys and PEM writing of keys and certificates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileOutputBenchmark {
+
+	@Param({ "none", "secret" })
+	public String password;
+
+	private FileOutput fileOutput;
+	private KeyPair keyPair;
+	private X509CertificateHolder certificate;
+
+	@Setup
+	public void setup() throws Exception {
+		Context ctx = BenchmarkSupport.createContext(2048);
+		fileOutput = ctx.getFileOutput();
+		certificate = ctx.getSigningCertificate();
+
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA", ctx.getSecurityProvider());
+		generator.initialize(2048);
+		keyPair = generator.generateKeyPair();
+	}
+
+	@Benchmark
+	public PemObject createPkcs8PrivateKeyPem() throws Exception {
+		return fileOutput.createPkcs8PrivateKeyPem(keyPair.getPrivate(), "none".equals(password) ? null : password);
+	}
+
+	@Benchmark
+	public String writePem() throws Exception {
+		StringWriter stringWriter = new StringWriter();
+
+		try (JcaPEMWriter writer = new JcaPEMWriter(stringWriter)) {
+			writer.writeObject(
+					fileOutput.createPkcs8PrivateKeyPem(keyPair.getPrivate(), "none".equals(password) ? null : password));
+			writer.writeObject(certificate);
+		}
+
+		return stringWriter.toString();
+	}
+}
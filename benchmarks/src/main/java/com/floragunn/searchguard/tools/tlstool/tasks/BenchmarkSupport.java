@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.tasks;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+import com.floragunn.searchguard.tools.tlstool.Config;
+import com.floragunn.searchguard.tools.tlstool.Context;
+
+/**
+ * Creates contexts with an in-memory CA for the benchmarks. Nothing is read
+ * from or written to disk.
+ */
+public class BenchmarkSupport {
+
+	public static Context createContext(int keySize) throws Exception {
+		if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+			Security.addProvider(new BouncyCastleProvider());
+		}
+
+		Context ctx = new Context();
+		Config config = new Config();
+		Config.Ca caConfig = new Config.Ca();
+
+		caConfig.setRoot(new Config.Ca.Certificate());
+		config.setCa(caConfig);
+		config.setDefaults(new Config.Defaults());
+		config.setNodes(Collections.singletonList(createNodeConfig(keySize)));
+		config.applyDefaults();
+		ctx.setConfig(config);
+
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA", ctx.getSecurityProvider());
+		generator.initialize(keySize);
+		KeyPair caKeyPair = generator.generateKeyPair();
+		X500Name caDn = new X500Name("CN=root.ca.example.com,OU=CA,O=Example Com\\, Inc.,DC=example,DC=com");
+		Date now = new Date();
+
+		X509CertificateHolder caCertificate = new X509v3CertificateBuilder(caDn, BigInteger.ONE, now,
+				new Date(now.getTime() + 86400000L), caDn, SubjectPublicKeyInfo.getInstance(caKeyPair.getPublic().getEncoded()))
+						.addExtension(Extension.basicConstraints, true, new BasicConstraints(true))
+						.build(new JcaContentSignerBuilder("SHA256withRSA").setProvider(ctx.getSecurityProvider())
+								.build(caKeyPair.getPrivate()));
+
+		ctx.setSigningCertificate(caCertificate);
+		ctx.setSigningPrivateKey(caKeyPair.getPrivate());
+
+		return ctx;
+	}
+
+	public static Config.Node createNodeConfig(int keySize) {
+		Config.Node nodeConfig = new Config.Node();
+
+		nodeConfig.setName("node1");
+		nodeConfig.setDn("CN=node1.example.com,OU=Ops,O=Example Com\\, Inc.,DC=example,DC=com");
+		nodeConfig.setDns(Arrays.asList("node1.example.com", "node1"));
+		nodeConfig.setIp(Arrays.asList("10.0.2.1"));
+		nodeConfig.setKeysize(keySize);
+
+		return nodeConfig;
+	}
+
+	/**
+	 * Gives the benchmarks access to the protected helper methods of Task.
+	 */
+	public static class BenchmarkTask extends Task {
+
+		public BenchmarkTask(Context ctx) {
+			super(ctx);
+		}
+
+		@Override
+		public void run() {
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.tasks;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.floragunn.searchguard.tools.tlstool.Config;
+import com.floragunn.searchguard.tools.tlstool.Context;
+
+/**
+ * Measures building and signing a node certificate the same way as
+ * CreateNodeCertificate does, without key generation and file output.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CertificateSigningBenchmark {
+
+	@Param({ "2048", "4096" })
+	public int caKeySize;
+
+	private Context ctx;
+	private Config.Node nodeConfig;
+	private CreateNodeCertificate createNodeCertificate;
+	private SubjectPublicKeyInfo subjectPublicKeyInfo;
+
+	@Setup
+	public void setup() throws Exception {
+		ctx = BenchmarkSupport.createContext(caKeySize);
+		nodeConfig = ctx.getConfig().getNodes().get(0);
+		createNodeCertificate = new CreateNodeCertificate(ctx, nodeConfig);
+
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA", ctx.getSecurityProvider());
+		generator.initialize(2048);
+		KeyPair nodeKeyPair = generator.generateKeyPair();
+		subjectPublicKeyInfo = SubjectPublicKeyInfo.getInstance(nodeKeyPair.getPublic().getEncoded());
+	}
+
+	@Benchmark
+	public X509CertificateHolder buildAndSign() throws Exception {
+		X500Name subjectName = createNodeCertificate.createDn(nodeConfig.getDn(), "node");
+		Date validityStartDate = new Date(System.currentTimeMillis());
+		Date validityEndDate = createNodeCertificate.getEndDate(validityStartDate,
+				nodeConfig.getValidityDays());
+
+		X509v3CertificateBuilder builder = new X509v3CertificateBuilder(ctx.getSigningCertificate().getSubject(),
+				ctx.nextId(), validityStartDate, validityEndDate, subjectName, subjectPublicKeyInfo);
+
+		createNodeCertificate.addNodeCertificateExtensions(builder, subjectPublicKeyInfo,
+				createNodeCertificate.createSubjectAlternativeNameList(true));
+
+		return builder.build(new JcaContentSignerBuilder(ctx.getConfig().getDefaults().getSignatureAlgorithm())
+				.setProvider(ctx.getSecurityProvider()).build(ctx.getSigningPrivateKey()));
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.tasks;
+
+import java.security.KeyPair;
+import java.security.Security;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.floragunn.searchguard.tools.tlstool.Context;
+
+/**
+ * Measures Task.generateKeyPair, which dominates the run time of the tool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class KeyGenerationBenchmark {
+
+	@Param({ "2048", "3072", "4096" })
+	public int keySize;
+
+	@Param({ "BC", "SunRsaSign" })
+	public String provider;
+
+	private BenchmarkSupport.BenchmarkTask task;
+
+	@Setup
+	public void setup() throws Exception {
+		Context ctx = BenchmarkSupport.createContext(2048);
+		ctx.setSecurityProvider(Security.getProvider(provider));
+		task = new BenchmarkSupport.BenchmarkTask(ctx);
+	}
+
+	@Benchmark
+	public KeyPair generateKeyPair() throws Exception {
+		return task.generateKeyPair(keySize);
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.tasks;
+
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.openssl.PKCS8Generator;
+import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
+import org.bouncycastle.openssl.jcajce.JcaPKCS8Generator;
+import org.bouncycastle.openssl.jcajce.JceOpenSSLPKCS8EncryptorBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.floragunn.searchguard.tools.tlstool.Context;
+
+/**
+ * Measures Task.readObjectFromPem for encrypted and unencrypted private keys
+ * and for certificates, as done when loading the CA.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PemReadingBenchmark {
+
+	private static final File FILE = new File("benchmark.pem");
+
+	@Param({ "none", "secret" })
+	public String password;
+
+	private BenchmarkSupport.BenchmarkTask task;
+	private String privateKeyPem;
+	private String certificatePem;
+
+	@Setup
+	public void setup() throws Exception {
+		Context ctx = BenchmarkSupport.createContext(2048);
+		task = new BenchmarkSupport.BenchmarkTask(ctx);
+
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA", ctx.getSecurityProvider());
+		generator.initialize(2048);
+		KeyPair keyPair = generator.generateKeyPair();
+
+		StringWriter stringWriter = new StringWriter();
+
+		try (JcaPEMWriter writer = new JcaPEMWriter(stringWriter)) {
+			if ("none".equals(password)) {
+				writer.writeObject(new JcaPKCS8Generator(keyPair.getPrivate(), null));
+			} else {
+				JceOpenSSLPKCS8EncryptorBuilder encryptorBuilder = new JceOpenSSLPKCS8EncryptorBuilder(
+						PKCS8Generator.PBE_SHA1_3DES);
+				encryptorBuilder.setPasssword(password.toCharArray());
+				writer.writeObject(new JcaPKCS8Generator(keyPair.getPrivate(), encryptorBuilder.build()));
+			}
+		}
+
+		privateKeyPem = stringWriter.toString();
+
+		stringWriter = new StringWriter();
+
+		try (JcaPEMWriter writer = new JcaPEMWriter(stringWriter)) {
+			writer.writeObject(ctx.getSigningCertificate());
+		}
+
+		certificatePem = stringWriter.toString();
+	}
+
+	@Benchmark
+	public PrivateKey readPrivateKey() throws Exception {
+		return task.readObjectFromPem(FILE, new StringReader(privateKeyPem), PrivateKey.class, password);
+	}
+
+	@Benchmark
+	public X509CertificateHolder readCertificate() throws Exception {
+		return task.readObjectFromPem(FILE, new StringReader(certificatePem), X509CertificateHolder.class);
+	}
+}
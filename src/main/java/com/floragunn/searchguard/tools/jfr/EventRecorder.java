@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.jfr;
+
+import java.io.File;
+
+/**
+ * Implemented by FlightRecorderEventsImpl. As the implementation refers to JFR
+ * classes, it is only compiled on JDK 11 and later; see the jfr profile in
+ * pom.xml. FlightRecorderEvents loads it by name.
+ */
+interface EventRecorder {
+
+	Object beginKeyGeneration();
+
+	void commitKeyGeneration(Object event, String algorithm, int keySize, boolean pregenerated);
+
+	Object beginCertificateSigning();
+
+	void commitCertificateSigning(Object event, String subject, String signatureAlgorithm);
+
+	Object beginPkcs8Encryption();
+
+	void commitPkcs8Encryption(Object event, boolean encrypted);
+
+	Object beginFileWrite();
+
+	void commitFileWrite(Object event, File file, long size);
+
+	Object beginPathBuilding();
+
+	void commitPathBuilding(Object event, File file, String subject, boolean valid, int pathLength);
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.jfr;
+
+import java.io.File;
+
+/**
+ * Emits Java Flight Recorder events. The methods can be called on any JVM: If
+ * JFR is not available, all methods do nothing. Thus, only
+ * FlightRecorderEventsImpl refers to JFR classes.
+ * 
+ * The begin methods return null if JFR or the respective event is disabled;
+ * the commit methods accept null.
+ */
+public final class FlightRecorderEvents {
+
+	private static final EventRecorder RECORDER = loadRecorder();
+
+	private FlightRecorderEvents() {
+	}
+
+	public static Object beginKeyGeneration() {
+		return RECORDER != null ? RECORDER.beginKeyGeneration() : null;
+	}
+
+	public static void commitKeyGeneration(Object event, String algorithm, int keySize, boolean pregenerated) {
+		if (event != null) {
+			RECORDER.commitKeyGeneration(event, algorithm, keySize, pregenerated);
+		}
+	}
+
+	public static Object beginCertificateSigning() {
+		return RECORDER != null ? RECORDER.beginCertificateSigning() : null;
+	}
+
+	public static void commitCertificateSigning(Object event, String subject, String signatureAlgorithm) {
+		if (event != null) {
+			RECORDER.commitCertificateSigning(event, subject, signatureAlgorithm);
+		}
+	}
+
+	public static Object beginPkcs8Encryption() {
+		return RECORDER != null ? RECORDER.beginPkcs8Encryption() : null;
+	}
+
+	public static void commitPkcs8Encryption(Object event, boolean encrypted) {
+		if (event != null) {
+			RECORDER.commitPkcs8Encryption(event, encrypted);
+		}
+	}
+
+	public static Object beginFileWrite() {
+		return RECORDER != null ? RECORDER.beginFileWrite() : null;
+	}
+
+	public static void commitFileWrite(Object event, File file, long size) {
+		if (event != null) {
+			RECORDER.commitFileWrite(event, file, size);
+		}
+	}
+
+	public static Object beginPathBuilding() {
+		return RECORDER != null ? RECORDER.beginPathBuilding() : null;
+	}
+
+	public static void commitPathBuilding(Object event, File file, String subject, boolean valid, int pathLength) {
+		if (event != null) {
+			RECORDER.commitPathBuilding(event, file, subject, valid, pathLength);
+		}
+	}
+
+	/**
+	 * Returns null if JFR is not available or if the implementation has not been
+	 * compiled because the tool was built with a JDK before 11.
+	 */
+	private static EventRecorder loadRecorder() {
+		try {
+			Class.forName("jdk.jfr.Event");
+
+			return (EventRecorder) Class.forName(FlightRecorderEvents.class.getName() + "Impl")
+					.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+}
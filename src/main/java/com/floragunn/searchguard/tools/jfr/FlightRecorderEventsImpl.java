@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.jfr;
+
+import java.io.File;
+
+import jdk.jfr.Event;
+
+/**
+ * Only loaded if JFR is available. See FlightRecorderEvents.
+ */
+class FlightRecorderEventsImpl implements EventRecorder {
+
+	@Override
+	public Object beginKeyGeneration() {
+		return begin(new KeyGenerationEvent());
+	}
+
+	@Override
+	public void commitKeyGeneration(Object event, String algorithm, int keySize, boolean pregenerated) {
+		KeyGenerationEvent keyGenerationEvent = (KeyGenerationEvent) event;
+
+		keyGenerationEvent.end();
+
+		if (keyGenerationEvent.shouldCommit()) {
+			keyGenerationEvent.algorithm = algorithm;
+			keyGenerationEvent.keySize = keySize;
+			keyGenerationEvent.pregenerated = pregenerated;
+			keyGenerationEvent.commit();
+		}
+	}
+
+	@Override
+	public Object beginCertificateSigning() {
+		return begin(new CertificateSigningEvent());
+	}
+
+	@Override
+	public void commitCertificateSigning(Object event, String subject, String signatureAlgorithm) {
+		CertificateSigningEvent certificateSigningEvent = (CertificateSigningEvent) event;
+
+		certificateSigningEvent.end();
+
+		if (certificateSigningEvent.shouldCommit()) {
+			certificateSigningEvent.subject = subject;
+			certificateSigningEvent.signatureAlgorithm = signatureAlgorithm;
+			certificateSigningEvent.commit();
+		}
+	}
+
+	@Override
+	public Object beginPkcs8Encryption() {
+		return begin(new Pkcs8EncryptionEvent());
+	}
+
+	@Override
+	public void commitPkcs8Encryption(Object event, boolean encrypted) {
+		Pkcs8EncryptionEvent pkcs8EncryptionEvent = (Pkcs8EncryptionEvent) event;
+
+		pkcs8EncryptionEvent.end();
+
+		if (pkcs8EncryptionEvent.shouldCommit()) {
+			pkcs8EncryptionEvent.encrypted = encrypted;
+			pkcs8EncryptionEvent.commit();
+		}
+	}
+
+	@Override
+	public Object beginFileWrite() {
+		return begin(new FileWriteEvent());
+	}
+
+	@Override
+	public void commitFileWrite(Object event, File file, long size) {
+		FileWriteEvent fileWriteEvent = (FileWriteEvent) event;
+
+		fileWriteEvent.end();
+
+		if (fileWriteEvent.shouldCommit()) {
+			fileWriteEvent.path = file.getPath();
+			fileWriteEvent.size = size;
+			fileWriteEvent.commit();
+		}
+	}
+
+	@Override
+	public Object beginPathBuilding() {
+		return begin(new PathBuildingEvent());
+	}
+
+	@Override
+	public void commitPathBuilding(Object event, File file, String subject, boolean valid, int pathLength) {
+		PathBuildingEvent pathBuildingEvent = (PathBuildingEvent) event;
+
+		pathBuildingEvent.end();
+
+		if (pathBuildingEvent.shouldCommit()) {
+			pathBuildingEvent.file = file.getPath();
+			pathBuildingEvent.subject = subject;
+			pathBuildingEvent.valid = valid;
+			pathBuildingEvent.pathLength = pathLength;
+			pathBuildingEvent.commit();
+		}
+	}
+
+	private static Object begin(Event event) {
+		if (!event.isEnabled()) {
+			return null;
+		}
+
+		event.begin();
+
+		return event;
+	}
+}
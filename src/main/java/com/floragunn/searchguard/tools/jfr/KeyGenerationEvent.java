@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.floragunn.searchguard.tools.KeyGeneration")
+@Label("Key Generation")
+@Category("Search Guard TLS Tool")
+@Description("Generation of a key pair. Pre-generated key pairs are generated by the background threads of the key generation stage.")
+class KeyGenerationEvent extends Event {
+	@Label("Algorithm")
+	String algorithm;
+
+	@Label("Key Size")
+	int keySize;
+
+	@Label("Pre-generated")
+	boolean pregenerated;
+}
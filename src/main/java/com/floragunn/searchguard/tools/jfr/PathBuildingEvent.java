@@ -0,0 +1,40 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.floragunn.searchguard.tools.PathBuilding")
+@Label("Certificate Path Building")
+@Category("Search Guard TLS Diagnosis")
+class PathBuildingEvent extends Event {
+	@Label("File")
+	String file;
+
+	@Label("Subject")
+	String subject;
+
+	@Label("Valid")
+	boolean valid;
+
+	@Label("Path Length")
+	int pathLength;
+}
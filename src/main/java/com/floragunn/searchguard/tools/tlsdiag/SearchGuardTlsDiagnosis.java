@@ -42,6 +42,7 @@ import org.apache.commons.cli.ParseException;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.LoggerContext;
 import org.apache.logging.log4j.core.config.Configurator;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
@@ -50,7 +51,12 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.floragunn.searchguard.tools.tlsdiag.report.ReportFormat;
+import com.floragunn.searchguard.tools.tlsdiag.report.ReportWriter;
+import com.floragunn.searchguard.tools.tlsdiag.revocation.RevocationChecker;
 import com.floragunn.searchguard.tools.tlsdiag.tasks.DumpCert;
+import com.floragunn.searchguard.tools.tlsdiag.tasks.ExportExpiryMetrics;
+import com.floragunn.searchguard.tools.tlsdiag.tasks.QueryInventory;
 import com.floragunn.searchguard.tools.tlsdiag.tasks.Task;
 import com.floragunn.searchguard.tools.tlsdiag.tasks.ValidateCert;
 import com.floragunn.searchguard.tools.tlstool.ToolException;
@@ -85,6 +91,22 @@ public class SearchGuardTlsDiagnosis {
         options.addOption(Option.builder("crt").longOpt("certificates").hasArgs()
                 .desc("Path to PEM files containing certificates to be checked").build());
 
+        options.addOption(Option.builder("crl").longOpt("crl").hasArgs()
+                .desc("Path to PEM or DER files containing CRLs; enables revocation checking of the certificates").build());
+        options.addOption(Option.builder("crldp").longOpt("crl-distribution-points")
+                .desc("Enables revocation checking using CRLs referenced by file: URIs in the CRL distribution points of the certificates").build());
+        options.addOption(Option.builder("x").longOpt("export-expiry").hasArg()
+                .desc("Write the expiry of all certificates found in --scan to this file in the Prometheus text format").build());
+        options.addOption(Option.builder("s").longOpt("scan").hasArgs()
+                .desc("Files or directories to be scanned for certificates by --export-expiry").build());
+        options.addOption(Option.builder("inv").longOpt("inventory").hasArg()
+                .desc("Directory containing the certificate inventory written by sgtlstool").build());
+        options.addOption(Option.builder("iq").longOpt("inventory-query").hasArg().desc(
+                "Query the certificate inventory: serial:SERIAL, fingerprint:SHA256, dn:DN, expires-within:DAYS, expired or all")
+                .build());
+        options.addOption(Option.builder("f").longOpt("format").hasArg()
+                .desc("Output format: text (default), json or ndjson. json and ndjson write machine-readable records to stdout").build());
+
         options.addOption(Option.builder("v").longOpt("verbose").desc("Enable detailed output").build());
 
         try {
@@ -102,12 +124,22 @@ public class SearchGuardTlsDiagnosis {
 
     private CommandLine commandLine;
     private List<Task> tasks = new ArrayList<>();
+    private ReportWriter reportWriter;
+    private RevocationChecker revocationChecker;
 
     SearchGuardTlsDiagnosis(CommandLine commandLine) {
         this.commandLine = commandLine;
     }
 
     private void run() throws ToolException {
+        ReportFormat format = getReportFormat();
+
+        if (format != ReportFormat.TEXT) {
+            // stdout is reserved for the report records; the log goes to stderr
+            System.setProperty("sgtlstool.log.target", "SYSTEM_ERR");
+            ((LoggerContext) LogManager.getContext(false)).reconfigure();
+            reportWriter = new ReportWriter(format, System.out);
+        }
 
         if (commandLine.hasOption("v")) {
             Configurator.setRootLevel(Level.DEBUG);
@@ -116,6 +148,14 @@ public class SearchGuardTlsDiagnosis {
             System.setProperty("java.security.debug", "certpath");
         }
 
+        if (commandLine.hasOption("crl") || commandLine.hasOption("crldp")) {
+            List<File> crlFiles = commandLine.hasOption("crl")
+                    ? Stream.of(commandLine.getOptionValues("crl")).map(File::new).collect(Collectors.toList())
+                    : Collections.<File>emptyList();
+
+            revocationChecker = new RevocationChecker(crlFiles, commandLine.hasOption("crldp"));
+        }
+
         if (commandLine.hasOption("ca") && !commandLine.hasOption("crt")) {
             throw new ToolException(
                     "You must specifiy at least one certificate to check using the --certificates option");
@@ -131,7 +171,7 @@ public class SearchGuardTlsDiagnosis {
                     .map(fileName -> new File(fileName)).collect(Collectors.toSet()));
 
             for (String certFileName : commandLine.getOptionValues("crt")) {
-                tasks.add(new ValidateCert(trustAnchors, new File(certFileName)));
+                tasks.add(new ValidateCert(trustAnchors, new File(certFileName), revocationChecker));
             }
 
             if (commandLine.hasOption("v")) {
@@ -145,15 +185,57 @@ public class SearchGuardTlsDiagnosis {
             processEsConfigFile(new File(commandLine.getOptionValue("es")));
         }
 
-        if (!commandLine.hasOption("crt") && !commandLine.hasOption("es")) {
+        if (commandLine.hasOption("x")) {
+            if (!commandLine.hasOption("s")) {
+                throw new ToolException("You must specify the files or directories to be scanned using the --scan option");
+            }
+
+            tasks.add(new ExportExpiryMetrics(
+                    Stream.of(commandLine.getOptionValues("s")).map(File::new).collect(Collectors.toList()),
+                    new File(commandLine.getOptionValue("x"))));
+        }
+
+        if (commandLine.hasOption("iq")) {
+            if (!commandLine.hasOption("inv")) {
+                throw new ToolException("You must specify the inventory directory using the --inventory option");
+            }
+
+            tasks.add(new QueryInventory(new File(commandLine.getOptionValue("inv")), commandLine.getOptionValue("iq")));
+        }
+
+        if (!commandLine.hasOption("crt") && !commandLine.hasOption("es") && !commandLine.hasOption("x")
+                && !commandLine.hasOption("iq")) {
             new HelpFormatter().printHelp("sgtlsdiag.sh", options, true);
             System.exit(1);
         }
 
-        for (Task task : tasks) {
-            task.run();
+        try {
+            for (Task task : tasks) {
+                task.setReportWriter(reportWriter);
+                task.run();
+            }
+        } finally {
+            if (reportWriter != null) {
+                try {
+                    reportWriter.close();
+                } catch (IOException e) {
+                    throw new ToolException("Error while writing report: " + e, e);
+                }
+            }
+        }
+
+    }
+
+    private ReportFormat getReportFormat() throws ToolException {
+        if (!commandLine.hasOption("f")) {
+            return ReportFormat.TEXT;
         }
 
+        try {
+            return ReportFormat.parse(commandLine.getOptionValue("f"));
+        } catch (IllegalArgumentException e) {
+            throw new ToolException(e.getMessage());
+        }
     }
 
     private Set<TrustAnchor> loadTrustAnchors(Set<File> files) throws ToolException {
@@ -189,7 +271,7 @@ public class SearchGuardTlsDiagnosis {
 
             if (esNodeConfig.isKeystoreOrTruststoreAttributeSet()) {
                 log.error("\nWARNING: The config file '" + file.getName()
-                        + "' is configured to use JKS files, which are deprecated since Search Guard 6. This tool only supports checking PEM files.\n");
+                        + "' is configured to use keystore files. This tool only supports checking PEM files.\n");
             }
 
             if (esNodeConfig.getTransportPemTrustedCasFilePath() != null) {
@@ -206,12 +288,12 @@ public class SearchGuardTlsDiagnosis {
 
             if (esNodeConfig.getTransportPemCertFilePath() != null) {
                 tasks.add(new ValidateCert(transportTrustAnchors,
-                        new File(file.getParentFile(), esNodeConfig.getTransportPemCertFilePath())));
+                        new File(file.getParentFile(), esNodeConfig.getTransportPemCertFilePath()), revocationChecker));
             }
 
             if (esNodeConfig.getHttpPemCertFilePath() != null) {
                 tasks.add(new ValidateCert(httpTrustAnchors,
-                        new File(file.getParentFile(), esNodeConfig.getHttpPemCertFilePath())));
+                        new File(file.getParentFile(), esNodeConfig.getHttpPemCertFilePath()), revocationChecker));
             }
 
             for (File caFile : allCaFiles) {
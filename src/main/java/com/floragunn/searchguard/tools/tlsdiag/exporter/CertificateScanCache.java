@@ -0,0 +1,198 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlsdiag.exporter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Remembers the certificates found in scanned files together with the
+ * modification time and size of each file. Files which did not change since
+ * the last scan do not need to be parsed again.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class CertificateScanCache {
+	private static final ObjectMapper objectMapper = new ObjectMapper();
+
+	/**
+	 * Caches written with another version are discarded. Version 2 stores the
+	 * serials in decimal.
+	 */
+	static final int VERSION = 2;
+
+	private int version;
+	private Map<String, FileEntry> files = new TreeMap<>();
+
+	public static CertificateScanCache load(File file) {
+		if (file == null || !file.exists()) {
+			return new CertificateScanCache();
+		}
+
+		try {
+			CertificateScanCache result = objectMapper.readValue(file, CertificateScanCache.class);
+			return result.version == VERSION ? result : new CertificateScanCache();
+		} catch (IOException e) {
+			// A broken cache just means that everything is scanned again
+			return new CertificateScanCache();
+		}
+	}
+
+	public void save(File file) throws IOException {
+		File tempFile = new File(file.getPath() + ".tmp");
+		version = VERSION;
+		objectMapper.writeValue(tempFile, this);
+		Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	public FileEntry getIfUnchanged(File file) {
+		FileEntry entry = files.get(file.getPath());
+
+		if (entry != null && entry.getLastModified() == file.lastModified() && entry.getSize() == file.length()) {
+			return entry;
+		} else {
+			return null;
+		}
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public void setVersion(int version) {
+		this.version = version;
+	}
+
+	public Map<String, FileEntry> getFiles() {
+		return files;
+	}
+
+	public void setFiles(Map<String, FileEntry> files) {
+		this.files = new TreeMap<>(files);
+	}
+
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	@JsonInclude(Include.NON_NULL)
+	public static class FileEntry {
+		private long lastModified;
+		private long size;
+		private String error;
+		private List<CertificateEntry> certificates = new ArrayList<>();
+
+		public FileEntry() {
+		}
+
+		public FileEntry(File file) {
+			this.lastModified = file.lastModified();
+			this.size = file.length();
+		}
+
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		public void setLastModified(long lastModified) {
+			this.lastModified = lastModified;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public void setSize(long size) {
+			this.size = size;
+		}
+
+		public String getError() {
+			return error;
+		}
+
+		public void setError(String error) {
+			this.error = error;
+		}
+
+		public List<CertificateEntry> getCertificates() {
+			return certificates;
+		}
+
+		public void setCertificates(List<CertificateEntry> certificates) {
+			this.certificates = certificates;
+		}
+	}
+
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	public static class CertificateEntry {
+		private String subject;
+		private String issuer;
+		private String serial;
+		private long notAfter;
+
+		public CertificateEntry() {
+		}
+
+		public CertificateEntry(String subject, String issuer, String serial, long notAfter) {
+			this.subject = subject;
+			this.issuer = issuer;
+			this.serial = serial;
+			this.notAfter = notAfter;
+		}
+
+		public String getSubject() {
+			return subject;
+		}
+
+		public void setSubject(String subject) {
+			this.subject = subject;
+		}
+
+		public String getIssuer() {
+			return issuer;
+		}
+
+		public void setIssuer(String issuer) {
+			this.issuer = issuer;
+		}
+
+		public String getSerial() {
+			return serial;
+		}
+
+		public void setSerial(String serial) {
+			this.serial = serial;
+		}
+
+		public long getNotAfter() {
+			return notAfter;
+		}
+
+		public void setNotAfter(long notAfter) {
+			this.notAfter = notAfter;
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlsdiag.exporter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Minimal writer for the Prometheus text exposition format as consumed by the
+ * textfile collector of the node exporter.
+ */
+public class PrometheusTextWriter {
+	private final Writer writer;
+
+	public PrometheusTextWriter(Writer writer) {
+		this.writer = writer;
+	}
+
+	public void header(String name, String type, String help) throws IOException {
+		writer.write("# HELP " + name + " " + help + "\n");
+		writer.write("# TYPE " + name + " " + type + "\n");
+	}
+
+	public void sample(String name, double value, String... labels) throws IOException {
+		writer.write(name);
+
+		if (labels.length > 0) {
+			writer.write('{');
+
+			for (int i = 0; i + 1 < labels.length; i += 2) {
+				if (i > 0) {
+					writer.write(',');
+				}
+
+				writer.write(labels[i]);
+				writer.write("=\"");
+				writer.write(escapeLabelValue(labels[i + 1]));
+				writer.write('"');
+			}
+
+			writer.write('}');
+		}
+
+		writer.write(' ');
+		writer.write(formatValue(value));
+		writer.write('\n');
+	}
+
+	static String escapeLabelValue(String value) {
+		if (value == null) {
+			return "";
+		}
+
+		StringBuilder result = new StringBuilder(value.length());
+
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+
+			switch (c) {
+			case '\\':
+				result.append("\\\\");
+				break;
+			case '"':
+				result.append("\\\"");
+				break;
+			case '\n':
+				result.append("\\n");
+				break;
+			default:
+				result.append(c);
+			}
+		}
+
+		return result.toString();
+	}
+
+	static String formatValue(double value) {
+		if (value == Double.POSITIVE_INFINITY) {
+			return "+Inf";
+		} else if (value == Double.NEGATIVE_INFINITY) {
+			return "-Inf";
+		} else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+			return String.valueOf((long) value);
+		} else {
+			return String.format(Locale.ROOT, "%s", value);
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlsdiag.report;
+
+import java.util.List;
+
+public class CertificateReport extends ReportRecord {
+	private int index;
+	private String sha1Fingerprint;
+	private String sha256Fingerprint;
+	private String md5Fingerprint;
+	private String subjectDn;
+	private String serialNumber;
+	private String issuerDn;
+	private String notBefore;
+	private String notAfter;
+	private List<String> keyUsage;
+	private List<String> extendedKeyUsage;
+	private String signatureAlgorithm;
+	private int version;
+	private int basicConstraints;
+	private List<SubjectAlternativeName> subjectAlternativeNames;
+
+	public CertificateReport(String file, int index) {
+		super(file);
+		this.index = index;
+	}
+
+	@Override
+	public String getType() {
+		return "certificate";
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public void setIndex(int index) {
+		this.index = index;
+	}
+
+	public String getSha1Fingerprint() {
+		return sha1Fingerprint;
+	}
+
+	public void setSha1Fingerprint(String sha1Fingerprint) {
+		this.sha1Fingerprint = sha1Fingerprint;
+	}
+
+	public String getSha256Fingerprint() {
+		return sha256Fingerprint;
+	}
+
+	public void setSha256Fingerprint(String sha256Fingerprint) {
+		this.sha256Fingerprint = sha256Fingerprint;
+	}
+
+	public String getMd5Fingerprint() {
+		return md5Fingerprint;
+	}
+
+	public void setMd5Fingerprint(String md5Fingerprint) {
+		this.md5Fingerprint = md5Fingerprint;
+	}
+
+	public String getSubjectDn() {
+		return subjectDn;
+	}
+
+	public void setSubjectDn(String subjectDn) {
+		this.subjectDn = subjectDn;
+	}
+
+	public String getSerialNumber() {
+		return serialNumber;
+	}
+
+	public void setSerialNumber(String serialNumber) {
+		this.serialNumber = serialNumber;
+	}
+
+	public String getIssuerDn() {
+		return issuerDn;
+	}
+
+	public void setIssuerDn(String issuerDn) {
+		this.issuerDn = issuerDn;
+	}
+
+	public String getNotBefore() {
+		return notBefore;
+	}
+
+	public void setNotBefore(String notBefore) {
+		this.notBefore = notBefore;
+	}
+
+	public String getNotAfter() {
+		return notAfter;
+	}
+
+	public void setNotAfter(String notAfter) {
+		this.notAfter = notAfter;
+	}
+
+	public List<String> getKeyUsage() {
+		return keyUsage;
+	}
+
+	public void setKeyUsage(List<String> keyUsage) {
+		this.keyUsage = keyUsage;
+	}
+
+	public List<String> getExtendedKeyUsage() {
+		return extendedKeyUsage;
+	}
+
+	public void setExtendedKeyUsage(List<String> extendedKeyUsage) {
+		this.extendedKeyUsage = extendedKeyUsage;
+	}
+
+	public String getSignatureAlgorithm() {
+		return signatureAlgorithm;
+	}
+
+	public void setSignatureAlgorithm(String signatureAlgorithm) {
+		this.signatureAlgorithm = signatureAlgorithm;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public void setVersion(int version) {
+		this.version = version;
+	}
+
+	public int getBasicConstraints() {
+		return basicConstraints;
+	}
+
+	public void setBasicConstraints(int basicConstraints) {
+		this.basicConstraints = basicConstraints;
+	}
+
+	public List<SubjectAlternativeName> getSubjectAlternativeNames() {
+		return subjectAlternativeNames;
+	}
+
+	public void setSubjectAlternativeNames(List<SubjectAlternativeName> subjectAlternativeNames) {
+		this.subjectAlternativeNames = subjectAlternativeNames;
+	}
+
+	public static class SubjectAlternativeName {
+		private String type;
+		private String value;
+
+		public SubjectAlternativeName(String type, String value) {
+			this.type = type;
+			this.value = value;
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		public void setType(String type) {
+			this.type = type;
+		}
+
+		public String getValue() {
+			return value;
+		}
+
+		public void setValue(String value) {
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlsdiag.report;
+
+import java.time.Instant;
+import java.util.List;
+
+import com.floragunn.searchguard.tools.tlstool.inventory.InventoryRecord;
+
+public class InventoryReport extends ReportRecord {
+	private String serialNumber;
+	private String subjectDn;
+	private String issuerDn;
+	private List<String> subjectAlternativeNames;
+	private String sha256Fingerprint;
+	private String notBefore;
+	private String notAfter;
+	private String keyFile;
+	private String configHash;
+
+	public InventoryReport(InventoryRecord record) {
+		super(record.getCertificateFile());
+		this.serialNumber = record.getSerial();
+		this.subjectDn = record.getSubjectDn();
+		this.issuerDn = record.getIssuerDn();
+		this.subjectAlternativeNames = record.getSubjectAlternativeNames();
+		this.sha256Fingerprint = record.getSha256Fingerprint();
+		this.notBefore = Instant.ofEpochMilli(record.getNotBefore()).toString();
+		this.notAfter = Instant.ofEpochMilli(record.getNotAfter()).toString();
+		this.keyFile = record.getKeyFile();
+		this.configHash = record.getConfigHash();
+	}
+
+	@Override
+	public String getType() {
+		return "inventory";
+	}
+
+	public String getSerialNumber() {
+		return serialNumber;
+	}
+
+	public String getSubjectDn() {
+		return subjectDn;
+	}
+
+	public String getIssuerDn() {
+		return issuerDn;
+	}
+
+	public List<String> getSubjectAlternativeNames() {
+		return subjectAlternativeNames;
+	}
+
+	public String getSha256Fingerprint() {
+		return sha256Fingerprint;
+	}
+
+	public String getNotBefore() {
+		return notBefore;
+	}
+
+	public String getNotAfter() {
+		return notAfter;
+	}
+
+	public String getKeyFile() {
+		return keyFile;
+	}
+
+	public String getConfigHash() {
+		return configHash;
+	}
+}
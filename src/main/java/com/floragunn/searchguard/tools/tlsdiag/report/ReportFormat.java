@@ -0,0 +1,32 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlsdiag.report;
+
+public enum ReportFormat {
+	TEXT, JSON, NDJSON;
+
+	public static ReportFormat parse(String value) {
+		for (ReportFormat format : values()) {
+			if (format.name().equalsIgnoreCase(value)) {
+				return format;
+			}
+		}
+
+		throw new IllegalArgumentException("Unknown report format: " + value + "; supported: text, json, ndjson");
+	}
+}
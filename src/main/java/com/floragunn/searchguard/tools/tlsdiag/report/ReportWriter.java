@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlsdiag.report;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.floragunn.searchguard.tools.tlstool.ToolException;
+
+/**
+ * Writes report records as they are produced. In NDJSON mode each record is
+ * emitted as a single line and flushed immediately; in JSON mode the records
+ * are streamed as elements of one top level array. Thus, memory usage does not
+ * depend on the number of inspected certificates.
+ */
+public class ReportWriter implements Closeable {
+	private static final ObjectMapper objectMapper = new ObjectMapper()
+			.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+	private final ReportFormat format;
+	private final OutputStream out;
+	private final ObjectWriter objectWriter = objectMapper.writer();
+	private SequenceWriter arrayWriter;
+
+	public ReportWriter(ReportFormat format, OutputStream out) {
+		if (format == ReportFormat.TEXT) {
+			throw new IllegalArgumentException("Text output is not written by ReportWriter");
+		}
+
+		this.format = format;
+		this.out = out;
+	}
+
+	public synchronized void write(ReportRecord record) throws ToolException {
+		try {
+			if (format == ReportFormat.NDJSON) {
+				out.write(objectWriter.writeValueAsBytes(record));
+				out.write('\n');
+				out.flush();
+			} else {
+				if (arrayWriter == null) {
+					arrayWriter = objectWriter.writeValuesAsArray(out);
+				}
+
+				arrayWriter.write(record);
+			}
+		} catch (IOException e) {
+			throw new ToolException("Error while writing report: " + e, e);
+		}
+	}
+
+	public ReportFormat getFormat() {
+		return format;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (format == ReportFormat.JSON) {
+			if (arrayWriter == null) {
+				arrayWriter = objectWriter.writeValuesAsArray(out);
+			}
+
+			arrayWriter.close();
+			out.write('\n');
+		}
+
+		out.flush();
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlsdiag.report;
+
+import java.util.List;
+
+public class ValidationReport extends ReportRecord {
+	private boolean valid;
+	private String subjectDn;
+	private String trustAnchor;
+	private List<String> certPath;
+	private String error;
+	private String reason;
+	private String revocationStatus;
+	private List<String> revocationDetails;
+
+	public ValidationReport(String file) {
+		super(file);
+	}
+
+	@Override
+	public String getType() {
+		return "validation";
+	}
+
+	public boolean isValid() {
+		return valid;
+	}
+
+	public void setValid(boolean valid) {
+		this.valid = valid;
+	}
+
+	public String getSubjectDn() {
+		return subjectDn;
+	}
+
+	public void setSubjectDn(String subjectDn) {
+		this.subjectDn = subjectDn;
+	}
+
+	public String getTrustAnchor() {
+		return trustAnchor;
+	}
+
+	public void setTrustAnchor(String trustAnchor) {
+		this.trustAnchor = trustAnchor;
+	}
+
+	public List<String> getCertPath() {
+		return certPath;
+	}
+
+	public void setCertPath(List<String> certPath) {
+		this.certPath = certPath;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	public void setError(String error) {
+		this.error = error;
+	}
+
+	public String getReason() {
+		return reason;
+	}
+
+	public void setReason(String reason) {
+		this.reason = reason;
+	}
+
+	public String getRevocationStatus() {
+		return revocationStatus;
+	}
+
+	public void setRevocationStatus(String revocationStatus) {
+		this.revocationStatus = revocationStatus;
+	}
+
+	public List<String> getRevocationDetails() {
+		return revocationDetails;
+	}
+
+	public void setRevocationDetails(List<String> revocationDetails) {
+		this.revocationDetails = revocationDetails;
+	}
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlsdiag.revocation;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.TBSCertList;
+import org.bouncycastle.asn1.x509.Time;
+import org.bouncycastle.cert.X509CRLEntryHolder;
+import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.openssl.PEMParser;
+import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
+
+/**
+ * The revoked serial numbers of one CRL, indexed for fast lookups. The CRL is
+ * parsed only once; afterwards, lookups are done by binary search over sorted
+ * primitive arrays. Serial numbers which fit into a long are kept in a long
+ * array, the rare bigger ones in a separate BigInteger array.
+ */
+public class CrlIndex {
+	private static final long[] EMPTY_LONGS = new long[0];
+	private static final BigInteger[] EMPTY_BIG_INTEGERS = new BigInteger[0];
+
+	private final String source;
+	private final X509CRLHolder crl;
+	private final X500Principal issuer;
+	private final long[] serials;
+	private final BigInteger[] bigSerials;
+	private final Set<PublicKey> verifiedKeys = new HashSet<>();
+
+	public CrlIndex(String source, X509CRLHolder crl) throws IOException {
+		this.source = source;
+		this.crl = crl;
+		this.issuer = new X500Principal(crl.getIssuer().getEncoded());
+
+		long[] serials = new long[16];
+		int serialCount = 0;
+		BigInteger[] bigSerials = EMPTY_BIG_INTEGERS;
+		int bigSerialCount = 0;
+
+		Enumeration<?> entries = crl.toASN1Structure().getRevokedCertificateEnumeration();
+
+		while (entries.hasMoreElements()) {
+			BigInteger serial = TBSCertList.CRLEntry.getInstance(entries.nextElement()).getUserCertificate()
+					.getValue();
+
+			if (serial.bitLength() < 64) {
+				if (serialCount == serials.length) {
+					serials = Arrays.copyOf(serials, serials.length * 2);
+				}
+
+				serials[serialCount++] = serial.longValue();
+			} else {
+				if (bigSerialCount == bigSerials.length) {
+					bigSerials = Arrays.copyOf(bigSerials, Math.max(16, bigSerials.length * 2));
+				}
+
+				bigSerials[bigSerialCount++] = serial;
+			}
+		}
+
+		this.serials = serialCount == 0 ? EMPTY_LONGS : Arrays.copyOf(serials, serialCount);
+		this.bigSerials = bigSerialCount == 0 ? EMPTY_BIG_INTEGERS : Arrays.copyOf(bigSerials, bigSerialCount);
+
+		Arrays.sort(this.serials);
+		Arrays.sort(this.bigSerials);
+	}
+
+	public static CrlIndex load(File file) throws IOException {
+		byte[] content = Files.readAllBytes(file.toPath());
+
+		if (content.length > 0 && content[0] == 0x30) {
+			// DER encoded
+			return new CrlIndex(file.getPath(), new X509CRLHolder(content));
+		}
+
+		try (PEMParser pemParser = new PEMParser(new FileReader(file))) {
+			Object object = pemParser.readObject();
+
+			if (!(object instanceof X509CRLHolder)) {
+				throw new IOException("The file " + file + " does not contain a CRL");
+			}
+
+			return new CrlIndex(file.getPath(), (X509CRLHolder) object);
+		}
+	}
+
+	public boolean isRevoked(BigInteger serial) {
+		if (serial.bitLength() < 64) {
+			return Arrays.binarySearch(serials, serial.longValue()) >= 0;
+		} else {
+			return Arrays.binarySearch(bigSerials, serial) >= 0;
+		}
+	}
+
+	/**
+	 * Returns details on a revoked certificate. This is only necessary for
+	 * actually revoked certificates; thus, the linear search done by BC is fine
+	 * here.
+	 */
+	public X509CRLEntryHolder getEntry(BigInteger serial) {
+		return crl.getRevokedCertificate(serial);
+	}
+
+	public String getReason(BigInteger serial) {
+		X509CRLEntryHolder entry = getEntry(serial);
+
+		if (entry == null || entry.getExtensions() == null) {
+			return null;
+		}
+
+		Extension reasonExtension = entry.getExtensions().getExtension(Extension.reasonCode);
+
+		if (reasonExtension == null) {
+			return null;
+		}
+
+		return CRLReason.getInstance(reasonExtension.getParsedValue()).toString();
+	}
+
+	public synchronized boolean verify(PublicKey issuerKey) {
+		if (verifiedKeys.contains(issuerKey)) {
+			return true;
+		}
+
+		try {
+			if (crl.isSignatureValid(new JcaContentVerifierProviderBuilder().setProvider("BC").build(issuerKey))) {
+				verifiedKeys.add(issuerKey);
+				return true;
+			}
+		} catch (Exception e) {
+			// fall through
+		}
+
+		return false;
+	}
+
+	public boolean isOutdated(Date now) {
+		Time nextUpdate = crl.toASN1Structure().getNextUpdate();
+		return nextUpdate != null && nextUpdate.getDate().before(now);
+	}
+
+	public boolean isDelta() {
+		return crl.getExtension(Extension.deltaCRLIndicator) != null;
+	}
+
+	/**
+	 * @return the cRLNumber extension; null if the CRL has none
+	 */
+	public BigInteger getCrlNumber() {
+		return getIntegerExtension(Extension.cRLNumber);
+	}
+
+	/**
+	 * @return the number of the base CRL a delta CRL refers to; null for full
+	 *         CRLs
+	 */
+	public BigInteger getBaseCrlNumber() {
+		return getIntegerExtension(Extension.deltaCRLIndicator);
+	}
+
+	private BigInteger getIntegerExtension(org.bouncycastle.asn1.ASN1ObjectIdentifier oid) {
+		Extension extension = crl.getExtension(oid);
+		return extension != null ? ASN1Integer.getInstance(extension.getParsedValue()).getValue() : null;
+	}
+
+	public int size() {
+		return serials.length + bigSerials.length;
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public X500Principal getIssuer() {
+		return issuer;
+	}
+
+	public X509CRLHolder getCrl() {
+		return crl;
+	}
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlsdiag.revocation;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bouncycastle.asn1.ASN1String;
+import org.bouncycastle.asn1.x509.CRLDistPoint;
+import org.bouncycastle.asn1.x509.DistributionPoint;
+import org.bouncycastle.asn1.x509.DistributionPointName;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
+
+import com.floragunn.searchguard.tools.tlstool.ToolException;
+
+/**
+ * Checks certificates against locally available CRLs. All CRLs are loaded and
+ * indexed once and can then be used for checking any number of certificates.
+ * Optionally, CRLs referenced by file: URIs in the CRL distribution points of
+ * checked certificates are loaded on demand; each of these is also only tried
+ * once, even if it cannot be read or belongs to another issuer.
+ */
+public class RevocationChecker {
+	private static final Logger log = LogManager.getLogger(RevocationChecker.class);
+
+	private final Map<X500Principal, List<CrlIndex>> crlsByIssuer = new HashMap<>();
+	private final Map<String, CrlIndex> crlsBySource = new HashMap<>();
+	private final Set<String> attemptedSources = new HashSet<>();
+	private final boolean followDistributionPoints;
+
+	public RevocationChecker(Collection<File> crlFiles, boolean followDistributionPoints) throws ToolException {
+		this.followDistributionPoints = followDistributionPoints;
+
+		for (File file : crlFiles) {
+			try {
+				add(CrlIndex.load(file));
+			} catch (IOException e) {
+				throw new ToolException("Error while reading CRL " + file + ": " + e, e);
+			}
+		}
+	}
+
+	public synchronized void add(CrlIndex crlIndex) {
+		List<CrlIndex> list = crlsByIssuer.get(crlIndex.getIssuer());
+
+		if (list == null) {
+			list = new ArrayList<>(1);
+			crlsByIssuer.put(crlIndex.getIssuer(), list);
+		}
+
+		list.add(crlIndex);
+		crlsBySource.put(crlIndex.getSource(), crlIndex);
+
+		log.debug("Loaded CRL " + crlIndex.getSource() + " of " + crlIndex.getIssuer() + " with " + crlIndex.size()
+				+ " entries");
+	}
+
+	/**
+	 * Checks the given certificate. The issuer certificate is used to verify the
+	 * signature of the CRLs.
+	 */
+	public RevocationStatus check(X509Certificate certificate, X509Certificate issuerCertificate) {
+		List<CrlIndex> crls = getCrls(certificate);
+
+		if (crls.isEmpty()) {
+			return RevocationStatus.unknown("No CRL is available for " + certificate.getIssuerX500Principal().getName());
+		}
+
+		Date now = new Date();
+		String problem = null;
+		String goodSource = null;
+		BigInteger newestBaseCrlNumber = null;
+		List<CrlIndex> currentDeltaCrls = new ArrayList<>();
+
+		// All CRLs of the issuer need to be checked, as there might be a full CRL
+		// and delta CRLs
+		for (CrlIndex crl : crls) {
+			if (!crl.verify(issuerCertificate.getPublicKey())) {
+				problem = "The signature of the CRL " + crl.getSource() + " is invalid";
+				continue;
+			}
+
+			if (crl.isRevoked(certificate.getSerialNumber())) {
+				return RevocationStatus.revoked(crl.getEntry(certificate.getSerialNumber()).getRevocationDate(),
+						crl.getReason(certificate.getSerialNumber()), crl.getSource());
+			}
+
+			if (crl.isOutdated(now)) {
+				problem = "The CRL " + crl.getSource() + " is outdated";
+				continue;
+			}
+
+			if (crl.isDelta()) {
+				// A certificate missing on a delta CRL is only known to be good together with its base CRL
+				currentDeltaCrls.add(crl);
+				continue;
+			}
+
+			if (goodSource == null) {
+				goodSource = crl.getSource();
+			}
+
+			BigInteger crlNumber = crl.getCrlNumber();
+
+			if (crlNumber != null && (newestBaseCrlNumber == null || crlNumber.compareTo(newestBaseCrlNumber) > 0)) {
+				newestBaseCrlNumber = crlNumber;
+			}
+		}
+
+		if (goodSource == null) {
+			return RevocationStatus.unknown(problem != null ? problem
+					: "No current full CRL is available for " + certificate.getIssuerX500Principal().getName());
+		}
+
+		for (CrlIndex deltaCrl : currentDeltaCrls) {
+			if (newestBaseCrlNumber == null || newestBaseCrlNumber.compareTo(deltaCrl.getBaseCrlNumber()) < 0) {
+				return RevocationStatus.unknown("The delta CRL " + deltaCrl.getSource() + " requires the base CRL #"
+						+ deltaCrl.getBaseCrlNumber() + ", which is not available or outdated");
+			}
+		}
+
+		return RevocationStatus.good(goodSource);
+	}
+
+	private synchronized List<CrlIndex> getCrls(X509Certificate certificate) {
+		List<CrlIndex> result = crlsByIssuer.get(certificate.getIssuerX500Principal());
+
+		if (result == null && followDistributionPoints) {
+			for (File file : getLocalDistributionPoints(certificate)) {
+				if (crlsBySource.containsKey(file.getPath()) || !attemptedSources.add(file.getPath())) {
+					continue;
+				}
+
+				try {
+					CrlIndex crlIndex = CrlIndex.load(file);
+
+					if (!crlIndex.getIssuer().equals(certificate.getIssuerX500Principal())) {
+						log.warn("CRL " + file + " from distribution point was issued by " + crlIndex.getIssuer()
+								+ " instead of " + certificate.getIssuerX500Principal());
+					}
+
+					add(crlIndex);
+				} catch (IOException e) {
+					log.warn("Error while reading CRL " + file + " from distribution point: " + e);
+				}
+			}
+
+			result = crlsByIssuer.get(certificate.getIssuerX500Principal());
+		}
+
+		return result != null ? result : Collections.<CrlIndex>emptyList();
+	}
+
+	private List<File> getLocalDistributionPoints(X509Certificate certificate) {
+		byte[] extensionBytes = certificate.getExtensionValue(Extension.cRLDistributionPoints.getId());
+
+		if (extensionBytes == null) {
+			return Collections.emptyList();
+		}
+
+		List<File> result = new ArrayList<>();
+
+		try {
+			CRLDistPoint distPoint = CRLDistPoint.getInstance(JcaX509ExtensionUtils.parseExtensionValue(extensionBytes));
+
+			for (DistributionPoint point : distPoint.getDistributionPoints()) {
+				DistributionPointName name = point.getDistributionPoint();
+
+				if (name == null || name.getType() != DistributionPointName.FULL_NAME) {
+					continue;
+				}
+
+				for (GeneralName generalName : GeneralNames.getInstance(name.getName()).getNames()) {
+					if (generalName.getTagNo() == GeneralName.uniformResourceIdentifier) {
+						String uri = ((ASN1String) generalName.getName()).getString();
+
+						if (uri.startsWith("file:")) {
+							try {
+								result.add(new File(URI.create(uri)));
+							} catch (IllegalArgumentException e) {
+								log.warn("Ignoring invalid CRL distribution point " + uri + " of "
+										+ certificate.getSubjectX500Principal() + ": " + e.getMessage());
+							}
+						}
+					}
+				}
+			}
+		} catch (Exception e) {
+			log.warn("Error while parsing CRL distribution points of " + certificate.getSubjectX500Principal(), e);
+		}
+
+		return result;
+	}
+}
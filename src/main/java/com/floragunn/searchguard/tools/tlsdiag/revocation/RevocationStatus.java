@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlsdiag.revocation;
+
+import java.util.Date;
+
+public class RevocationStatus {
+	public enum Status {
+		GOOD, UNKNOWN, REVOKED
+	}
+
+	private final Status status;
+	private final Date revocationDate;
+	private final String reason;
+	private final String source;
+	private final String message;
+
+	private RevocationStatus(Status status, Date revocationDate, String reason, String source, String message) {
+		this.status = status;
+		this.revocationDate = revocationDate;
+		this.reason = reason;
+		this.source = source;
+		this.message = message;
+	}
+
+	public static RevocationStatus good(String source) {
+		return new RevocationStatus(Status.GOOD, null, null, source, null);
+	}
+
+	public static RevocationStatus revoked(Date revocationDate, String reason, String source) {
+		return new RevocationStatus(Status.REVOKED, revocationDate, reason, source, null);
+	}
+
+	public static RevocationStatus unknown(String message) {
+		return new RevocationStatus(Status.UNKNOWN, null, null, null, message);
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public Date getRevocationDate() {
+		return revocationDate;
+	}
+
+	public String getReason() {
+		return reason;
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	@Override
+	public String toString() {
+		switch (status) {
+		case GOOD:
+			return "not revoked (" + source + ")";
+		case REVOKED:
+			return "REVOKED on " + revocationDate + (reason != null ? " [" + reason + "]" : "") + " (" + source + ")";
+		default:
+			return "unknown" + (message != null ? " (" + message + ")" : "");
+		}
+	}
+}
@@ -24,6 +24,8 @@ import java.net.InetAddress;
 import java.security.MessageDigest;
 import java.security.cert.CertificateParsingException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
@@ -44,6 +46,9 @@ import org.bouncycastle.openssl.PEMParser;
 import org.bouncycastle.util.encoders.Hex;
 import org.bouncycastle.util.io.pem.PemObject;
 
+import com.floragunn.searchguard.tools.tlsdiag.report.CertificateReport;
+import com.floragunn.searchguard.tools.tlsdiag.report.ErrorReport;
+import com.floragunn.searchguard.tools.tlstool.ToolException;
 import com.floragunn.searchguard.tools.util.PemFileUtils;
 import com.floragunn.searchguard.tools.util.ReverseKeyPurposeIdMap;
 
@@ -65,7 +70,11 @@ public class DumpCert extends Task {
 	}
 
 	@Override
-	public void run() {
+	public void run() throws ToolException {
+		if (reportWriter != null) {
+			writeReport();
+			return;
+		}
 
 		try {
 			log.info("\n========================================================================\n" + certPemFile
@@ -89,10 +98,61 @@ public class DumpCert extends Task {
 			}
 
 		} catch (Exception e) {
+			certificates = Collections.emptyList();
 			log.error("Error while reading " + certPemFile + ": " + e, e);
 		}
 	}
 
+	private void writeReport() throws ToolException {
+		try {
+			certificates = PemFileUtils.readCertificatesFromPemFile(certPemFile);
+		} catch (Exception e) {
+			certificates = Collections.emptyList();
+			reportWriter.write(new ErrorReport(certPemFile.getPath(), "Error while reading " + certPemFile + ": " + e));
+			return;
+		}
+
+		if (certificates.size() == 0) {
+			reportWriter.write(new ErrorReport(certPemFile.getPath(), "No certificates were found in " + certPemFile));
+			return;
+		}
+
+		for (int i = 0; i < certificates.size(); i++) {
+			reportWriter.write(createCertificateReport(certificates.get(i), i));
+		}
+	}
+
+	protected CertificateReport createCertificateReport(X509Certificate certificate, int index) {
+		CertificateReport report = new CertificateReport(certPemFile.getPath(), index);
+
+		report.setSha1Fingerprint(getFingerprint(certificate, "SHA1"));
+		report.setSha256Fingerprint(getFingerprint(certificate, "SHA-256"));
+		report.setMd5Fingerprint(getFingerprint(certificate, "MD5"));
+		report.setSubjectDn(certificate.getSubjectX500Principal().getName());
+		report.setSerialNumber(certificate.getSerialNumber().toString());
+		report.setIssuerDn(certificate.getIssuerX500Principal().getName());
+		report.setNotBefore(certificate.getNotBefore().toInstant().toString());
+		report.setNotAfter(certificate.getNotAfter().toInstant().toString());
+		report.setKeyUsage(getKeyUsageNames(certificate));
+		report.setSignatureAlgorithm(certificate.getSigAlgName());
+		report.setVersion(certificate.getVersion());
+		report.setBasicConstraints(certificate.getBasicConstraints());
+
+		try {
+			report.setExtendedKeyUsage(ReverseKeyPurposeIdMap.getNamesById(certificate.getExtendedKeyUsage()));
+		} catch (CertificateParsingException e) {
+			log.debug("Error while parsing extended key usage", e);
+		}
+
+		try {
+			report.setSubjectAlternativeNames(getSubjectAlternativeNames(certificate));
+		} catch (IOException e) {
+			log.debug("Error while parsing subject alternative names", e);
+		}
+
+		return report;
+	}
+
 	private String getPemFileSummary(File file) {
 		StringBuilder result = new StringBuilder();
 
@@ -165,20 +225,25 @@ public class DumpCert extends Task {
 	}
 
 	private String getKeyUsageInfo(X509Certificate certificate) {
+		return Strings.join(getKeyUsageNames(certificate), ' ');
+	}
+
+	private List<String> getKeyUsageNames(X509Certificate certificate) {
 		boolean[] keyUsage = certificate.getKeyUsage();
-		StringBuilder result = new StringBuilder();
+
+		if (keyUsage == null) {
+			return Collections.emptyList();
+		}
+
+		List<String> result = new ArrayList<>();
 
 		for (int i = 0; i < keyUsage.length && i < KEY_USAGE_NAMES.length; i++) {
 			if (keyUsage[i]) {
-				if (result.length() != 0) {
-					result.append(' ');
-				}
-
-				result.append(KEY_USAGE_NAMES[i]);
+				result.add(KEY_USAGE_NAMES[i]);
 			}
 		}
 
-		return result.toString();
+		return result;
 	}
 
 	private String getFingerprint(X509Certificate certificate, String algorithm) {
@@ -197,24 +262,17 @@ public class DumpCert extends Task {
 
 	private String getSubjectAlternativeNameInfo(X509Certificate cert) {
 		try {
-			byte[] extensionBytes = cert.getExtensionValue(Extension.subjectAlternativeName.getId());
+			List<CertificateReport.SubjectAlternativeName> names = getSubjectAlternativeNames(cert);
 
-			if (extensionBytes == null) {
+			if (names == null) {
 				return "(none)";
 			}
 
 			StringBuilder result = new StringBuilder("\n");
 
-			for (ASN1Encodable encodable : DERSequence
-					.getInstance(JcaX509ExtensionUtils.parseExtensionValue(extensionBytes))) {
-				GeneralName generalName = GeneralName.getInstance(encodable);
-
-				if (generalName.getTagNo() < GENERAL_NAME_TAG_NAMES.length) {
-					result.append("                  ").append(GENERAL_NAME_TAG_NAMES[generalName.getTagNo()])
-							.append(": ");
-				}
-
-				result.append(generalNameValueToString(generalName)).append('\n');
+			for (CertificateReport.SubjectAlternativeName name : names) {
+				result.append("                  ").append(name.getType()).append(": ").append(name.getValue())
+						.append('\n');
 			}
 
 			return result.toString();
@@ -224,6 +282,30 @@ public class DumpCert extends Task {
 		}
 	}
 
+	private List<CertificateReport.SubjectAlternativeName> getSubjectAlternativeNames(X509Certificate cert)
+			throws IOException {
+		byte[] extensionBytes = cert.getExtensionValue(Extension.subjectAlternativeName.getId());
+
+		if (extensionBytes == null) {
+			return null;
+		}
+
+		List<CertificateReport.SubjectAlternativeName> result = new ArrayList<>();
+
+		for (ASN1Encodable encodable : DERSequence
+				.getInstance(JcaX509ExtensionUtils.parseExtensionValue(extensionBytes))) {
+			GeneralName generalName = GeneralName.getInstance(encodable);
+
+			String type = generalName.getTagNo() < GENERAL_NAME_TAG_NAMES.length
+					? GENERAL_NAME_TAG_NAMES[generalName.getTagNo()]
+					: String.valueOf(generalName.getTagNo());
+
+			result.add(new CertificateReport.SubjectAlternativeName(type, generalNameValueToString(generalName)));
+		}
+
+		return result;
+	}
+
 	private String generalNameValueToString(GeneralName generalName) {
 		try {
 			switch (generalName.getTagNo()) {
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlsdiag.tasks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.floragunn.searchguard.tools.tlsdiag.exporter.CertificateScanCache;
+import com.floragunn.searchguard.tools.tlsdiag.exporter.PrometheusTextWriter;
+import com.floragunn.searchguard.tools.tlstool.ToolException;
+import com.floragunn.searchguard.tools.util.PemFileUtils;
+
+/**
+ * Scans PEM files for certificates and writes their remaining validity as a
+ * Prometheus textfile collector file. Parse results are cached by file
+ * modification time and size, so that repeated runs only need to parse files
+ * which have been changed in the meantime.
+ */
+public class ExportExpiryMetrics extends Task {
+	private static final Logger log = LogManager.getLogger(ExportExpiryMetrics.class);
+
+	private static final long DAY = 24 * 60 * 60;
+	static final long[] BUCKETS = new long[] { 0, DAY, 7 * DAY, 14 * DAY, 30 * DAY, 60 * DAY, 90 * DAY, 180 * DAY,
+			365 * DAY };
+
+	private final List<File> scanPaths;
+	private final File outputFile;
+	private final File cacheFile;
+
+	private int parsedFileCount;
+
+	public ExportExpiryMetrics(List<File> scanPaths, File outputFile) {
+		this(scanPaths, outputFile, new File(outputFile.getPath() + ".cache"));
+	}
+
+	public ExportExpiryMetrics(List<File> scanPaths, File outputFile, File cacheFile) {
+		this.scanPaths = scanPaths;
+		this.outputFile = outputFile;
+		this.cacheFile = cacheFile;
+	}
+
+	@Override
+	public void run() throws ToolException {
+		long start = System.currentTimeMillis();
+
+		CertificateScanCache oldCache = CertificateScanCache.load(cacheFile);
+		CertificateScanCache newCache = new CertificateScanCache();
+
+		for (File file : collectFiles()) {
+			CertificateScanCache.FileEntry entry = oldCache.getIfUnchanged(file);
+
+			if (entry == null) {
+				entry = scan(file);
+				parsedFileCount++;
+			}
+
+			newCache.getFiles().put(file.getPath(), entry);
+		}
+
+		writeMetrics(newCache, start);
+
+		try {
+			newCache.save(cacheFile);
+		} catch (IOException e) {
+			log.warn("Could not write cache file " + cacheFile + ": " + e);
+		}
+
+		log.info("Exported expiry metrics for " + newCache.getFiles().size() + " files to " + outputFile + " ("
+				+ parsedFileCount + " files parsed)");
+	}
+
+	private List<File> collectFiles() throws ToolException {
+		List<File> result = new ArrayList<>();
+
+		for (File scanPath : scanPaths) {
+			if (!scanPath.exists()) {
+				throw new ToolException("The file " + scanPath + " does not exist");
+			}
+
+			if (scanPath.isFile()) {
+				result.add(scanPath);
+				continue;
+			}
+
+			try (Stream<Path> stream = Files.walk(scanPath.toPath())) {
+				result.addAll(stream.filter(Files::isRegularFile).filter(ExportExpiryMetrics::isCertificateFile)
+						.map(Path::toFile).sorted().collect(Collectors.toList()));
+			} catch (IOException e) {
+				throw new ToolException("Error while scanning " + scanPath + ": " + e, e);
+			}
+		}
+
+		return result;
+	}
+
+	private static boolean isCertificateFile(Path path) {
+		String name = path.getFileName().toString().toLowerCase();
+		return name.endsWith(".pem") || name.endsWith(".crt") || name.endsWith(".cer");
+	}
+
+	private CertificateScanCache.FileEntry scan(File file) {
+		CertificateScanCache.FileEntry entry = new CertificateScanCache.FileEntry(file);
+
+		try {
+			for (X509Certificate certificate : PemFileUtils.readCertificatesFromPemFile(file)) {
+				entry.getCertificates()
+						.add(new CertificateScanCache.CertificateEntry(certificate.getSubjectX500Principal().getName(),
+								certificate.getIssuerX500Principal().getName(),
+								certificate.getSerialNumber().toString(), certificate.getNotAfter().getTime()));
+			}
+		} catch (Exception e) {
+			log.debug("Error while reading " + file, e);
+			entry.setError(e.toString());
+		}
+
+		return entry;
+	}
+
+	private void writeMetrics(CertificateScanCache cache, long start) throws ToolException {
+		File tempFile = new File(outputFile.getPath() + ".tmp");
+		long now = System.currentTimeMillis();
+		long[] bucketCounts = new long[BUCKETS.length];
+		double sum = 0;
+		long count = 0;
+		int errorCount = 0;
+
+		try (Writer writer = new BufferedWriter(
+				new OutputStreamWriter(Files.newOutputStream(tempFile.toPath()), StandardCharsets.UTF_8))) {
+			PrometheusTextWriter out = new PrometheusTextWriter(writer);
+
+			out.header("sgtls_certificate_expires_in_seconds", "gauge",
+					"Seconds until notAfter of the certificate; negative if already expired");
+
+			for (Map.Entry<String, CertificateScanCache.FileEntry> fileEntry : cache.getFiles().entrySet()) {
+				if (fileEntry.getValue().getError() != null) {
+					errorCount++;
+				}
+
+				for (CertificateScanCache.CertificateEntry certificate : fileEntry.getValue().getCertificates()) {
+					long secondsLeft = (certificate.getNotAfter() - now) / 1000;
+
+					out.sample("sgtls_certificate_expires_in_seconds", secondsLeft, "file", fileEntry.getKey(),
+							"subject", certificate.getSubject(), "issuer", certificate.getIssuer(), "serial",
+							certificate.getSerial());
+
+					for (int i = 0; i < BUCKETS.length; i++) {
+						if (secondsLeft <= BUCKETS[i]) {
+							bucketCounts[i]++;
+						}
+					}
+
+					sum += secondsLeft;
+					count++;
+				}
+			}
+
+			out.header("sgtls_certificate_expiry_seconds", "histogram",
+					"Distribution of the remaining validity of all scanned certificates");
+
+			for (int i = 0; i < BUCKETS.length; i++) {
+				out.sample("sgtls_certificate_expiry_seconds_bucket", bucketCounts[i], "le",
+						String.valueOf(BUCKETS[i]));
+			}
+
+			out.sample("sgtls_certificate_expiry_seconds_bucket", count, "le", "+Inf");
+			out.sample("sgtls_certificate_expiry_seconds_sum", sum);
+			out.sample("sgtls_certificate_expiry_seconds_count", count);
+
+			out.header("sgtls_scan_files", "gauge", "Number of scanned certificate files");
+			out.sample("sgtls_scan_files", cache.getFiles().size());
+			out.header("sgtls_scan_parsed_files", "gauge", "Number of files parsed because they changed since the last scan");
+			out.sample("sgtls_scan_parsed_files", parsedFileCount);
+			out.header("sgtls_scan_errors", "gauge", "Number of files which could not be read");
+			out.sample("sgtls_scan_errors", errorCount);
+			out.header("sgtls_scan_duration_seconds", "gauge", "Duration of the last scan");
+			out.sample("sgtls_scan_duration_seconds", (System.currentTimeMillis() - start) / 1000d);
+			out.header("sgtls_scan_timestamp_seconds", "gauge", "Time of the last scan");
+			out.sample("sgtls_scan_timestamp_seconds", now / 1000);
+		} catch (IOException e) {
+			throw new ToolException("Error while writing " + tempFile + ": " + e, e);
+		}
+
+		try {
+			// The textfile collector must never see partially written files
+			Files.move(tempFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new ToolException("Error while writing " + outputFile + ": " + e, e);
+		}
+	}
+
+	int getParsedFileCount() {
+		return parsedFileCount;
+	}
+}
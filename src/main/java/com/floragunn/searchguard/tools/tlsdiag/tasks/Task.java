@@ -17,9 +17,24 @@
 
 package com.floragunn.searchguard.tools.tlsdiag.tasks;
 
+import com.floragunn.searchguard.tools.tlsdiag.report.ReportWriter;
 import com.floragunn.searchguard.tools.tlstool.ToolException;
 
 public abstract class Task {
+	protected ReportWriter reportWriter;
+
 	public abstract void run() throws ToolException;
 
+	public ReportWriter getReportWriter() {
+		return reportWriter;
+	}
+
+	/**
+	 * If a report writer is set, the task emits structured records instead of
+	 * human readable log output.
+	 */
+	public void setReportWriter(ReportWriter reportWriter) {
+		this.reportWriter = reportWriter;
+	}
+
 }
@@ -18,15 +18,18 @@
 package com.floragunn.searchguard.tools.tlsdiag.tasks;
 
 import java.io.File;
+import java.security.cert.CertPath;
 import java.security.cert.CertPathBuilder;
 import java.security.cert.CertPathBuilderException;
 import java.security.cert.CertStore;
+import java.security.cert.Certificate;
 import java.security.cert.CollectionCertStoreParameters;
 import java.security.cert.PKIXBuilderParameters;
 import java.security.cert.PKIXCertPathBuilderResult;
 import java.security.cert.TrustAnchor;
 import java.security.cert.X509CertSelector;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
@@ -34,18 +37,47 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.bouncycastle.jce.exception.ExtCertPathValidatorException;
 
+import com.floragunn.searchguard.tools.jfr.FlightRecorderEvents;
+import com.floragunn.searchguard.tools.tlsdiag.report.ValidationReport;
+import com.floragunn.searchguard.tools.tlsdiag.revocation.RevocationChecker;
+import com.floragunn.searchguard.tools.tlsdiag.revocation.RevocationStatus;
+import com.floragunn.searchguard.tools.tlstool.ToolException;
+
 public class ValidateCert extends DumpCert {
 	private static final Logger log = LogManager.getLogger(ValidateCert.class);
 
 	private final Set<TrustAnchor> trustAnchors;
+	private final RevocationChecker revocationChecker;
+	private boolean logging = true;
 
 	public ValidateCert(Set<TrustAnchor> trustAnchors, File certPemFile) {
+		this(trustAnchors, certPemFile, null);
+	}
+
+	public ValidateCert(Set<TrustAnchor> trustAnchors, File certPemFile, RevocationChecker revocationChecker) {
 		super(certPemFile);
 		this.trustAnchors = trustAnchors;
+		this.revocationChecker = revocationChecker;
+	}
+
+	/**
+	 * Validates the given certificates without reading files and without
+	 * producing log output. The first certificate is the one to be validated; the
+	 * remaining certificates may be used as intermediate certificates.
+	 * 
+	 * @param source
+	 *            the name which is used for the file attribute of the report
+	 */
+	public static ValidationReport validate(Set<TrustAnchor> trustAnchors, List<X509Certificate> certificates,
+			String source, RevocationChecker revocationChecker) {
+		ValidateCert validateCert = new ValidateCert(trustAnchors, new File(source), revocationChecker);
+		validateCert.logging = false;
+
+		return validateCert.checkCertPath(certificates);
 	}
 
 	@Override
-	public void run() {
+	public void run() throws ToolException {
 
 		super.run();
 
@@ -53,21 +85,30 @@ public class ValidateCert extends DumpCert {
 			return;
 		}
 
-		checkCertPath(certificates);
+		ValidationReport report = checkCertPath(certificates);
+
+		if (reportWriter != null) {
+			reportWriter.write(report);
+		}
 	}
 
-	private void checkCertPath(List<X509Certificate> certificates) {
+	private ValidationReport checkCertPath(List<X509Certificate> certificates) {
+		ValidationReport report = new ValidationReport(certPemFile.getPath());
+		Object event = FlightRecorderEvents.beginPathBuilding();
+
 		try {
 			X509Certificate certificate = certificates.get(0);
 
+			report.setSubjectDn(certificate.getSubjectX500Principal().getName());
+
 			X509CertSelector target = new X509CertSelector();
 			target.setCertificate(certificate);
 			PKIXBuilderParameters builderParameters = new PKIXBuilderParameters(trustAnchors, target);
 			builderParameters
 					.addCertStore(CertStore.getInstance("Collection", new CollectionCertStoreParameters(certificates)));
 
-			// TODO
-
+			// Revocation is checked separately by checkRevocation() using pre-indexed
+			// CRLs. This avoids that the CRLs are scanned again for each certificate.
 			builderParameters.setRevocationEnabled(false);
 
 			CertPathBuilder builder = CertPathBuilder.getInstance("PKIX", "BC");
@@ -75,31 +116,125 @@ public class ValidateCert extends DumpCert {
 			PKIXCertPathBuilderResult certPathBuilderResult = (PKIXCertPathBuilderResult) builder
 					.build(builderParameters);
 
-			log.info("Trust anchor:\n" + certPathBuilderResult.getTrustAnchor().getTrustedCert().getSubjectDN());
+			FlightRecorderEvents.commitPathBuilding(event, certPemFile, report.getSubjectDn(), true,
+					certPathBuilderResult.getCertPath().getCertificates().size());
+			event = null;
+
+			X509Certificate trustedCert = certPathBuilderResult.getTrustAnchor().getTrustedCert();
+
+			report.setValid(true);
+			report.setTrustAnchor(trustedCert.getSubjectX500Principal().getName());
+			report.setCertPath(getSubjectDns(certPathBuilderResult.getCertPath()));
+
+			if (isLogging()) {
+				log.info("Trust anchor:\n" + trustedCert.getSubjectDN());
+			}
+
+			if (revocationChecker != null) {
+				checkRevocation(certPathBuilderResult.getCertPath(), trustedCert, report);
+			}
 
 		} catch (CertPathBuilderException e) {
+			FlightRecorderEvents.commitPathBuilding(event, certPemFile, report.getSubjectDn(), false, 0);
+			report.setValid(false);
+
 			if (e.getCause() instanceof ExtCertPathValidatorException) {
 				ExtCertPathValidatorException cause = (ExtCertPathValidatorException) e.getCause();
 
+				report.setError(cause.getMessage());
+
 				if (cause.getCause() != null && cause.getCause() != cause && cause.getCause().getMessage() != null) {
-					log.error("No certificate path could be found: " + cause.getMessage() + " ["
-							+ cause.getCause().getMessage() + "]");
-				} else {
-					log.error("No certificate path could be found: " + cause.getMessage());
+					report.setReason(cause.getCause().getMessage());
 				}
 
-				log.debug(cause.getCertPath().toString());
-				log.debug(cause.getReason());
+				if (isLogging()) {
+					if (report.getReason() != null) {
+						log.error("No certificate path could be found: " + cause.getMessage() + " ["
+								+ report.getReason() + "]");
+					} else {
+						log.error("No certificate path could be found: " + cause.getMessage());
+					}
+
+					log.debug(cause.getCertPath().toString());
+					log.debug(cause.getReason());
 
-				if (cause.getCause() != null && cause.getCause() != cause) {
-					log.debug(cause.getCause());
+					if (cause.getCause() != null && cause.getCause() != cause) {
+						log.debug(cause.getCause());
+					}
 				}
 			} else {
-				log.error("No certificate path could be found: " + e.getMessage());
+				report.setError(e.getMessage());
+
+				if (isLogging()) {
+					log.error("No certificate path could be found: " + e.getMessage());
+				}
 			}
 		} catch (Exception e) {
-			log.error("Error in checkCertPath()", e);
+			// The event is null if it has already been committed before the error occurred
+			FlightRecorderEvents.commitPathBuilding(event, certPemFile, report.getSubjectDn(), false, 0);
+			report.setValid(false);
+			report.setError(e.toString());
+
+			if (isLogging()) {
+				log.error("Error in checkCertPath()", e);
+			}
 		}
+
+		return report;
+	}
+
+	private void checkRevocation(CertPath certPath, X509Certificate trustedCert, ValidationReport report) {
+		List<? extends Certificate> pathCertificates = certPath.getCertificates();
+		RevocationStatus.Status worstStatus = RevocationStatus.Status.GOOD;
+		List<String> details = new ArrayList<>(pathCertificates.size());
+
+		for (int i = 0; i < pathCertificates.size(); i++) {
+			X509Certificate certificate = (X509Certificate) pathCertificates.get(i);
+			X509Certificate issuer = i + 1 < pathCertificates.size() ? (X509Certificate) pathCertificates.get(i + 1)
+					: trustedCert;
+
+			RevocationStatus status = revocationChecker.check(certificate, issuer);
+			String subject = certificate.getSubjectX500Principal().getName();
+
+			details.add(subject + ": " + status);
+
+			if (status.getStatus().compareTo(worstStatus) > 0) {
+				worstStatus = status.getStatus();
+			}
+
+			if (isLogging()) {
+				if (status.getStatus() == RevocationStatus.Status.REVOKED) {
+					log.error("Revocation status of " + subject + ": " + status);
+				} else {
+					log.info("Revocation status of " + subject + ": " + status);
+				}
+			}
+
+			if (status.getStatus() == RevocationStatus.Status.REVOKED && report.isValid()) {
+				report.setValid(false);
+				report.setError("Certificate " + subject + " has been revoked");
+				report.setReason(status.getReason());
+			}
+		}
+
+		report.setRevocationStatus(worstStatus.name().toLowerCase());
+		report.setRevocationDetails(details);
+	}
+
+	private boolean isLogging() {
+		return logging && reportWriter == null;
+	}
+
+	private List<String> getSubjectDns(CertPath certPath) {
+		List<String> result = new ArrayList<>();
+
+		for (Certificate certificate : certPath.getCertificates()) {
+			if (certificate instanceof X509Certificate) {
+				result.add(((X509Certificate) certificate).getSubjectX500Principal().getName());
+			}
+		}
+
+		return result;
 	}
 
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * In bundle layout, the files of each node and client are placed into an own
+ * directory, like nodes/3f/node1/node1.pem. The bundle directories are spread
+ * over 256 shard directories, which are named after the first two hex digits of
+ * the SHA-256 hash of the name. The hash is used instead of the leading
+ * characters of the name, because node names often share a prefix, like
+ * node0001 to node9999.
+ */
+public class BundleLayout {
+	public static final String NODES = "nodes";
+	public static final String CLIENTS = "clients";
+
+	/**
+	 * @return the directory for the files of the node or client with the given
+	 *         name; without bundle layout, this is the target directory
+	 */
+	public static File getDirectory(Context ctx, String kind, String name) {
+		if (!ctx.isBundleLayout()) {
+			return ctx.getTargetDirectory();
+		}
+
+		return new File(new File(new File(ctx.getTargetDirectory(), kind), getShard(name)), name);
+	}
+
+	public static String getShard(String name) {
+		return Hashing.sha256().hashString(name, StandardCharsets.UTF_8).toString().substring(0, 2);
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.CRLDistPoint;
+import org.bouncycastle.asn1.x509.DistributionPoint;
+import org.bouncycastle.asn1.x509.DistributionPointName;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.cert.CertIOException;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
+
+/**
+ * The extensions of a certificate profile. All extensions which are the same
+ * for every certificate issued by a CA are DER encoded only once, when the
+ * profile is created. Only the subject key identifier and the subject
+ * alternative names are encoded per certificate.
+ * 
+ * Instances are immutable and can be shared between threads.
+ */
+public class CertificateProfile {
+
+	public static final String NODE = "node";
+	public static final String CLIENT = "client";
+
+	private static final int KEY_USAGE = KeyUsage.digitalSignature | KeyUsage.nonRepudiation
+			| KeyUsage.keyEncipherment;
+
+	private final String name;
+	private final Extension authorityKeyIdentifier;
+	private final List<Extension> fixedExtensions;
+	private final Extension crlDistributionPoints;
+
+	private CertificateProfile(String name, Extension authorityKeyIdentifier, List<Extension> fixedExtensions,
+			Extension crlDistributionPoints) {
+		this.name = name;
+		this.authorityKeyIdentifier = authorityKeyIdentifier;
+		this.fixedExtensions = fixedExtensions;
+		this.crlDistributionPoints = crlDistributionPoints;
+	}
+
+	/**
+	 * The node profile is used for both transport and HTTP certificates.
+	 */
+	public static CertificateProfile createNodeProfile(X509CertificateHolder issuer,
+			Config.Ca.Certificate issuerConfig) throws ToolException {
+		return create(NODE, issuer, issuerConfig,
+				new KeyPurposeId[] { KeyPurposeId.id_kp_serverAuth, KeyPurposeId.id_kp_clientAuth });
+	}
+
+	/**
+	 * The client profile is used for both client and admin certificates.
+	 */
+	public static CertificateProfile createClientProfile(X509CertificateHolder issuer,
+			Config.Ca.Certificate issuerConfig) throws ToolException {
+		return create(CLIENT, issuer, issuerConfig, new KeyPurposeId[] { KeyPurposeId.id_kp_clientAuth });
+	}
+
+	private static CertificateProfile create(String name, X509CertificateHolder issuer,
+			Config.Ca.Certificate issuerConfig, KeyPurposeId[] extendedKeyUsage) throws ToolException {
+		try {
+			Extension authorityKeyIdentifier = encode(Extension.authorityKeyIdentifier, false,
+					createExtUtils().createAuthorityKeyIdentifier(issuer));
+
+			List<Extension> fixedExtensions = new ArrayList<>(3);
+			fixedExtensions.add(encode(Extension.basicConstraints, true, new BasicConstraints(false)));
+			fixedExtensions.add(encode(Extension.keyUsage, true, new KeyUsage(KEY_USAGE)));
+			fixedExtensions.add(encode(Extension.extendedKeyUsage, true, new ExtendedKeyUsage(extendedKeyUsage)));
+
+			return new CertificateProfile(name, authorityKeyIdentifier, fixedExtensions,
+					createCrlDistributionPoints(issuerConfig));
+		} catch (IOException e) {
+			throw new ToolException("Error while encoding the extensions of the " + name + " certificate profile",
+					e);
+		}
+	}
+
+	/**
+	 * Adds the extensions to the given builder. The order of the extensions is
+	 * the same as with the individually encoded extensions used before.
+	 * 
+	 * @param subjectAlternativeNames
+	 *            null or empty if the certificate has no subject alternative
+	 *            names; the extension is omitted then
+	 */
+	public void addExtensions(X509v3CertificateBuilder builder, SubjectPublicKeyInfo subjectPublicKeyInfo,
+			ASN1Encodable[] subjectAlternativeNames) throws CertIOException {
+		builder.addExtension(authorityKeyIdentifier);
+		builder.addExtension(Extension.subjectKeyIdentifier, false,
+				createExtUtils().createSubjectKeyIdentifier(subjectPublicKeyInfo));
+
+		for (Extension extension : fixedExtensions) {
+			builder.addExtension(extension);
+		}
+
+		if (subjectAlternativeNames != null && subjectAlternativeNames.length > 0) {
+			builder.addExtension(Extension.subjectAlternativeName, false, new DERSequence(subjectAlternativeNames));
+		}
+
+		if (crlDistributionPoints != null) {
+			builder.addExtension(crlDistributionPoints);
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns null if no distribution points are configured for the issuer.
+	 */
+	public static Extension createCrlDistributionPoints(Config.Ca.Certificate issuerConfig) throws IOException {
+		if (issuerConfig == null || issuerConfig.getCrlDistributionPoints() == null
+				|| issuerConfig.getCrlDistributionPoints().isEmpty()) {
+			return null;
+		}
+
+		List<DistributionPoint> distributionPoints = new ArrayList<>();
+
+		for (String uri : issuerConfig.getCrlDistributionPoints()) {
+			if (uri.startsWith("URI:")) {
+				uri = uri.substring("URI:".length());
+			}
+
+			distributionPoints.add(new DistributionPoint(new DistributionPointName(
+					new GeneralNames(new GeneralName(GeneralName.uniformResourceIdentifier, uri))), null, null));
+		}
+
+		return encode(Extension.cRLDistributionPoints, false,
+				new CRLDistPoint(distributionPoints.toArray(new DistributionPoint[distributionPoints.size()])));
+	}
+
+	private static Extension encode(ASN1ObjectIdentifier oid, boolean critical, ASN1Encodable value)
+			throws IOException {
+		return new Extension(oid, critical, new DEROctetString(value.toASN1Primitive().getEncoded("DER")));
+	}
+
+	private static JcaX509ExtensionUtils createExtUtils() {
+		try {
+			return new JcaX509ExtensionUtils();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -19,6 +19,8 @@ package com.floragunn.searchguard.tools.tlstool;
 
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 public class Config {
 	
 	public static final String DEFAULT_OID = "1.2.3.4.5.5";
@@ -26,6 +28,8 @@ public class Config {
 	private Ca ca;
 	private List<Node> nodes;
 	private List<Client> clients;
+	private List<String> nodeSources;
+	private List<String> clientSources;
 	private String target;
 	private String elasticSearchTarget;
 	private Defaults defaults;
@@ -78,6 +82,29 @@ public class Config {
 		this.clients = clients;
 	}
 	
+	/**
+	 * CSV or JSON Lines files which contain further nodes. These are read one by
+	 * one while the certificates are created.
+	 */
+	public List<String> getNodeSources() {
+		return nodeSources;
+	}
+
+	public void setNodeSources(List<String> nodeSources) {
+		this.nodeSources = nodeSources;
+	}
+
+	/**
+	 * CSV or JSON Lines files which contain further clients.
+	 */
+	public List<String> getClientSources() {
+		return clientSources;
+	}
+
+	public void setClientSources(List<String> clientSources) {
+		this.clientSources = clientSources;
+	}
+
 	public Defaults getDefaults() {
 		return defaults;
 	}
@@ -122,6 +149,8 @@ public class Config {
 		private boolean verifyHostnames;
 		private boolean resolveHostnames;
 		private String signatureAlgorithm = "SHA256withRSA";
+		private boolean pkcs12;
+		private String encoding = "pem";
 		
 		public String getPkPassword() {
 			return pkPassword;
@@ -188,16 +217,44 @@ public class Config {
 		}
 		public void setSignatureAlgorithm(String signatureAlgorithm) {
 			this.signatureAlgorithm = signatureAlgorithm;
-		}		
+		}
+		public boolean isPkcs12() {
+			return pkcs12;
+		}
+		public void setPkcs12(boolean pkcs12) {
+			this.pkcs12 = pkcs12;
+		}
+		public String getEncoding() {
+			return encoding;
+		}
+		public void setEncoding(String encoding) {
+			this.encoding = encoding;
+		}
 		
 	}
 
 
 	public static class Ca {
 	
+		private String name;
 		private Certificate root;
 		private Certificate intermediate;
+		private int crlValidityDays = 30;
+		private int deltaCrlValidityDays = 1;
+		private List<Ca> additional;
 		
+		/**
+		 * The name of an additional CA. It is appended to the names of the
+		 * certificate files signed by the CA.
+		 */
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
 		public Certificate getRoot() {
 			return root;
 		}
@@ -213,8 +270,46 @@ public class Config {
 		public void setIntermediate(Certificate intermediate) {
 			this.intermediate = intermediate;
 		}
+
+		/**
+		 * Returns the config of the certificate which is used for signing: the
+		 * intermediate certificate if configured, the root certificate otherwise.
+		 */
+		@JsonIgnore
+		public Certificate getSigningCertificate() {
+			return intermediate != null ? intermediate : root;
+		}
+
+		public int getCrlValidityDays() {
+			return crlValidityDays;
+		}
+
+		public void setCrlValidityDays(int crlValidityDays) {
+			this.crlValidityDays = crlValidityDays;
+		}
+
+		public int getDeltaCrlValidityDays() {
+			return deltaCrlValidityDays;
+		}
+
+		public void setDeltaCrlValidityDays(int deltaCrlValidityDays) {
+			this.deltaCrlValidityDays = deltaCrlValidityDays;
+		}
 		
 
+		/**
+		 * Existing CAs which sign each node and client certificate in addition to
+		 * this CA. The certificates share the key pair of the certificate signed by
+		 * this CA.
+		 */
+		public List<Ca> getAdditional() {
+			return additional;
+		}
+
+		public void setAdditional(List<Ca> additional) {
+			this.additional = additional;
+		}
+
 		public void applyDefaults(Defaults defaults) {
 			if (root != null) {
 				root.applyDefaults(defaults);
@@ -224,6 +319,11 @@ public class Config {
 				intermediate.applyDefaults(defaults);
 			}
 			
+			if (additional != null) {
+				for (Ca ca : additional) {
+					ca.applyDefaults(defaults);
+				}
+			}
 		}
 
 		public static class Certificate {
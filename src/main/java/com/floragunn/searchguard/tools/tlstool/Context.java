@@ -22,22 +22,46 @@ import java.math.BigInteger;
 import java.security.PrivateKey;
 import java.security.Provider;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
+import com.floragunn.searchguard.tools.tlstool.inventory.InventoryRecord;
+import com.floragunn.searchguard.tools.tlstool.output.DirectorySink;
+import com.floragunn.searchguard.tools.tlstool.output.OutputSink;
+
 public class Context {
 	private Provider securityProvider = new BouncyCastleProvider();
 	private final FileOutput fileOutput = new FileOutput(this);
+	private final DnCache dnCache = new DnCache();
+	private final Timings timings = new Timings();
+	private final Metrics metrics = new Metrics(timings);
 
 	private File targetDirectory;
 	private X509CertificateHolder signingCertificate;
 	private File rootCaFile;
+	private File signingCertificateFile;
+	private RevocationDatabase revocationDatabase;
 	private PrivateKey signingPrivateKey;
-	private long idCounter = System.currentTimeMillis();
 	private Config config;
 	private final SecureRandom secureRandom = new SecureRandom();
 	private boolean overwrite;
+	private Integer renewWithinDays;
+	private boolean reuseKeys;
+	private boolean resign;
+	private final List<InventoryRecord> issuedCertificates = new ArrayList<>();
+	private final List<SigningCa> additionalSigningCas = new ArrayList<>();
+	private File trustedCasFile;
+	private final Map<String, CertificateProfile> certificateProfiles = new ConcurrentHashMap<>();
+	private KeyGenerationStage keyGenerationStage;
+	private int encodingThreads = 1;
+	private int queueDepth = 16;
+	private OutputSink outputSink = new DirectorySink();
+	private boolean bundleLayout;
 
 	public Provider getSecurityProvider() {
 		return securityProvider;
@@ -47,12 +71,37 @@ public class Context {
 		return fileOutput;
 	}
 
+	public Timings getTimings() {
+		return timings;
+	}
+
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	public DnCache getDnCache() {
+		return dnCache;
+	}
+
 	public X509CertificateHolder getSigningCertificate() {
 		return signingCertificate;
 	}
 
 	public void setSigningCertificate(X509CertificateHolder signingCertificate) {
 		this.signingCertificate = signingCertificate;
+		this.certificateProfiles.clear();
+	}
+
+	/**
+	 * Returns the profile with the given name for the current signing
+	 * certificate; null if it has not been created yet.
+	 */
+	public CertificateProfile getCertificateProfile(String name) {
+		return certificateProfiles.get(name);
+	}
+
+	public void addCertificateProfile(CertificateProfile certificateProfile) {
+		certificateProfiles.put(certificateProfile.getName(), certificateProfile);
 	}
 
 	public PrivateKey getSigningPrivateKey() {
@@ -63,8 +112,13 @@ public class Context {
 		this.signingPrivateKey = signingPrivateKey;
 	}
 
+	/**
+	 * Returns a random positive serial number with 64 bits. Serials must be
+	 * unique per CA; as several contexts may issue certificates for the same CA
+	 * at the same time, a counter per context would not suffice.
+	 */
 	public BigInteger nextId() {
-		return BigInteger.valueOf(idCounter++);
+		return new BigInteger(64, secureRandom).setBit(63);
 	}
 
 	public Config getConfig() {
@@ -107,4 +161,122 @@ public class Context {
 		this.overwrite = overwrite;
 	}
 
+	public File getSigningCertificateFile() {
+		return signingCertificateFile;
+	}
+
+	public void setSigningCertificateFile(File signingCertificateFile) {
+		this.signingCertificateFile = signingCertificateFile;
+	}
+
+	public RevocationDatabase getRevocationDatabase() {
+		return revocationDatabase;
+	}
+
+	public void setRevocationDatabase(RevocationDatabase revocationDatabase) {
+		this.revocationDatabase = revocationDatabase;
+	}
+
+	/**
+	 * If set, existing certificates are only re-issued if they expire within the
+	 * given number of days.
+	 */
+	public Integer getRenewWithinDays() {
+		return renewWithinDays;
+	}
+
+	public void setRenewWithinDays(Integer renewWithinDays) {
+		this.renewWithinDays = renewWithinDays;
+	}
+
+	public boolean isReuseKeys() {
+		return reuseKeys;
+	}
+
+	public void setReuseKeys(boolean reuseKeys) {
+		this.reuseKeys = reuseKeys;
+	}
+
+	/**
+	 * If true, all existing certificates are re-issued using the current signing
+	 * CA while keeping their existing key pairs.
+	 */
+	public boolean isResign() {
+		return resign;
+	}
+
+	public void setResign(boolean resign) {
+		this.resign = resign;
+	}
+
+	public List<SigningCa> getAdditionalSigningCas() {
+		return additionalSigningCas;
+	}
+
+	public void addAdditionalSigningCa(SigningCa signingCa) {
+		additionalSigningCas.add(signingCa);
+	}
+
+	/**
+	 * The file containing all trusted root certificates. This is the root CA
+	 * file unless additional CAs are configured.
+	 */
+	public File getTrustedCasFile() {
+		return trustedCasFile != null ? trustedCasFile : rootCaFile;
+	}
+
+	public void setTrustedCasFile(File trustedCasFile) {
+		this.trustedCasFile = trustedCasFile;
+	}
+
+	public List<InventoryRecord> getIssuedCertificates() {
+		return issuedCertificates;
+	}
+
+	public void addIssuedCertificate(InventoryRecord record) {
+		issuedCertificates.add(record);
+	}
+
+	/**
+	 * Returns null if the key pairs shall be generated by the tasks themselves.
+	 */
+	public KeyGenerationStage getKeyGenerationStage() {
+		return keyGenerationStage;
+	}
+
+	public void setKeyGenerationStage(KeyGenerationStage keyGenerationStage) {
+		this.keyGenerationStage = keyGenerationStage;
+	}
+
+	public int getEncodingThreads() {
+		return encodingThreads;
+	}
+
+	public void setEncodingThreads(int encodingThreads) {
+		this.encodingThreads = encodingThreads;
+	}
+
+	public int getQueueDepth() {
+		return queueDepth;
+	}
+
+	public void setQueueDepth(int queueDepth) {
+		this.queueDepth = queueDepth;
+	}
+
+	public boolean isBundleLayout() {
+		return bundleLayout;
+	}
+
+	public void setBundleLayout(boolean bundleLayout) {
+		this.bundleLayout = bundleLayout;
+	}
+
+	public OutputSink getOutputSink() {
+		return outputSink;
+	}
+
+	public void setOutputSink(OutputSink outputSink) {
+		this.outputSink = outputSink;
+	}
 }
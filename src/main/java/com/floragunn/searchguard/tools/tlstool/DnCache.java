@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.tools.tlstool;
+
+import javax.naming.InvalidNameException;
+import javax.naming.ldap.LdapName;
+
+import org.bouncycastle.asn1.x500.RDN;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x500.style.RFC4519Style;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Parses each distinct DN string only once. The same DNs are needed many times
+ * per run: for building certificates, for deriving file names and for the DN
+ * lists in the config snippets.
+ * 
+ * The cache keeps the most recently used DNs up to a maximum number; thus, the
+ * memory usage does not grow with the number of streamed records. Each form of
+ * a DN is only parsed when it is requested. Parse errors are cached as well;
+ * they are reported by the caller.
+ */
+public class DnCache {
+
+	public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+
+	private final LoadingCache<String, ParsedDn> cache;
+
+	public DnCache() {
+		this(DEFAULT_MAXIMUM_SIZE);
+	}
+
+	public DnCache(int maximumSize) {
+		this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).build(CacheLoader.from(ParsedDn::new));
+	}
+
+	public ParsedDn get(String dn) {
+		return cache.getUnchecked(dn);
+	}
+
+	public long size() {
+		return cache.size();
+	}
+
+	public static class ParsedDn {
+		private final String dn;
+		private X500Name x500Name;
+		private IllegalArgumentException x500NameError;
+		private String canonicalName;
+		private InvalidNameException canonicalNameError;
+		private String simpleName;
+		private boolean x500NameParsed;
+		private boolean canonicalNameParsed;
+		private boolean simpleNameParsed;
+
+		ParsedDn(String dn) {
+			this.dn = dn;
+		}
+
+		public String getDn() {
+			return dn;
+		}
+
+		/**
+		 * Returns the DN parsed with RFC 4519 attribute names; null if the DN is
+		 * invalid.
+		 */
+		public synchronized X500Name getX500Name() {
+			parseX500Name();
+			return x500Name;
+		}
+
+		public synchronized IllegalArgumentException getX500NameError() {
+			parseX500Name();
+			return x500NameError;
+		}
+
+		/**
+		 * Returns the DN in RFC 2253 form; null if the DN is invalid.
+		 */
+		public synchronized String getCanonicalName() {
+			parseCanonicalName();
+			return canonicalName;
+		}
+
+		public synchronized InvalidNameException getCanonicalNameError() {
+			parseCanonicalName();
+			return canonicalNameError;
+		}
+
+		/**
+		 * Returns the value of the first RDN; null if not available.
+		 */
+		public synchronized String getSimpleName() {
+			if (!simpleNameParsed) {
+				simpleName = parseSimpleName(dn);
+				simpleNameParsed = true;
+			}
+
+			return simpleName;
+		}
+
+		private void parseX500Name() {
+			if (x500NameParsed) {
+				return;
+			}
+
+			try {
+				x500Name = new X500Name(RFC4519Style.INSTANCE, dn);
+			} catch (IllegalArgumentException e) {
+				x500NameError = e;
+			}
+
+			x500NameParsed = true;
+		}
+
+		private void parseCanonicalName() {
+			if (canonicalNameParsed) {
+				return;
+			}
+
+			try {
+				canonicalName = new LdapName(new LdapName(dn).getRdns()).toString();
+			} catch (InvalidNameException e) {
+				canonicalNameError = e;
+			}
+
+			canonicalNameParsed = true;
+		}
+
+		private static String parseSimpleName(String dn) {
+			try {
+				RDN[] rdns = new X500Name(dn).getRDNs();
+
+				if (rdns != null && rdns.length > 0) {
+					return rdns[0].getFirst().getValue().toString();
+				}
+			} catch (IllegalArgumentException e) {
+				// DN was invalid - fall through
+			}
+
+			return null;
+		}
+	}
+}
@@ -17,45 +17,79 @@
 
 package com.floragunn.searchguard.tools.tlstool;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
 import java.security.PrivateKey;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.DERSet;
+import org.bouncycastle.asn1.DLSet;
+import org.bouncycastle.asn1.cms.CMSObjectIdentifiers;
+import org.bouncycastle.asn1.cms.ContentInfo;
+import org.bouncycastle.asn1.cms.SignedData;
 import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
+import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.openssl.PKCS8Generator;
 import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
 import org.bouncycastle.openssl.jcajce.JceOpenSSLPKCS8EncryptorBuilder;
 import org.bouncycastle.operator.OperatorCreationException;
 import org.bouncycastle.operator.OutputEncryptor;
+import org.bouncycastle.pkcs.PKCS10CertificationRequest;
 import org.bouncycastle.util.io.pem.PemGenerationException;
 import org.bouncycastle.util.io.pem.PemObject;
 
+import com.floragunn.searchguard.tools.jfr.FlightRecorderEvents;
 import com.google.common.base.Ascii;
 
 public class FileOutput {
 	private static final Logger log = LogManager.getLogger(FileOutput.class);
 
-	private Map<File, FileEntry> fileEntryMap = new HashMap<>();
+	public static final String ENCODING_PEM = "pem";
+	public static final String ENCODING_DER = "der";
+	public static final String ENCODING_BOTH = "both";
+
+	private final Map<File, FileEntry> fileEntryMap = new ConcurrentHashMap<>();
 	private List<FileEntry> fileEntries = new ArrayList<>();
+	private final Map<File, byte[]> linkTargetContents = new HashMap<>();
+	private final AtomicInteger writtenFileCount = new AtomicInteger();
 	private final Context ctx;
+	private WriteStage writeStage;
 
 	public FileOutput(Context ctx) {
 		this.ctx = ctx;
 	}
 
 	public void add(String fileName, Object... entries) {
-		add(new File(fileName), null, entries);
+		add(new File(fileName), null, false, entries);
 	}
 
 	public void add(File file, Object... entries) {
-		add(file, null, entries);
+		add(file, null, false, entries);
 	}
 
 	public void addEncrypted(String fileName, String password, Object... entries) {
@@ -63,7 +97,20 @@ public class FileOutput {
 	}
 
 	public void addEncrypted(File file, String password, Object... entries) {
-		add(file, password, entries);
+		add(file, password, false, entries);
+	}
+
+	/**
+	 * Adds a file which is used by later tasks, for example as link target or
+	 * because they append to it. Shared files are kept until the end of the run
+	 * and are only written then, unless a link refers to them before.
+	 */
+	public void addShared(File file, Object... entries) {
+		add(file, null, true, entries);
+	}
+
+	public void addSharedEncrypted(File file, String password, Object... entries) {
+		add(file, password, true, entries);
 	}
 
 	public void append(File file, Object... entries) {
@@ -74,15 +121,65 @@ public class FileOutput {
 		append(file, password, entries);
 	}
 
+	/**
+	 * Sets the content of the given file, replacing any content which might have
+	 * been added before.
+	 */
+	public void replace(File file, Object... entries) {
+		FileEntry fileEntry = fileEntryMap.get(file);
+
+		if (fileEntry == null) {
+			add(file, null, true, entries);
+		} else {
+			checkNotWritten(fileEntry);
+			fileEntry.entries.clear();
+			fileEntry.entries.addAll(Arrays.asList(entries));
+		}
+	}
+
+	/**
+	 * Adds a file with the same content as the given target file. Depending on
+	 * the output sink, the file is created as hard link or as copy. The target
+	 * may be a file of this output or an existing file.
+	 */
+	public void addLink(File file, File target) {
+		FileEntry targetEntry = fileEntryMap.get(target);
+
+		if (targetEntry != null) {
+			// The target must stay available for encoding the link
+			targetEntry.shared = true;
+		}
+
+		FileEntry fileEntry = new FileEntry(file, null);
+		fileEntry.linkTarget = target;
+
+		if (fileEntryMap.putIfAbsent(file, fileEntry) == null) {
+			fileEntries.add(fileEntry);
+		}
+	}
+
+	/**
+	 * Returns the entry of the given file. Files which are not shared are only
+	 * available until they have been handed over to the write stage.
+	 */
 	public FileEntry getEntryByFileName(String fileName) {
 		return fileEntryMap.get(new File(fileName));
 	}
 
-	private void add(File file, String password, Object... entries) {
+	/**
+	 * Returns the number of files which have been passed to the output sink so
+	 * far.
+	 */
+	public int getWrittenFileCount() {
+		return writtenFileCount.get();
+	}
+
+	private void add(File file, String password, boolean shared, Object... entries) {
 		FileEntry fileEntry = fileEntryMap.get(file);
 
 		if (fileEntry == null) {
 			fileEntry = new FileEntry(file, password, entries);
+			fileEntry.shared = shared;
 			fileEntries.add(fileEntry);
 			fileEntryMap.put(file, fileEntry);
 
@@ -96,36 +193,515 @@ public class FileOutput {
 		FileEntry fileEntry = fileEntryMap.get(file);
 
 		if (fileEntry == null) {
-			fileEntry = new FileEntry(file, password, entries);
-			fileEntries.add(fileEntry);
-			fileEntryMap.put(file, fileEntry);
-
+			// Files which are appended to are usually written by several tasks
+			add(file, password, true, entries);
 		} else {
+			checkNotWritten(fileEntry);
 			fileEntry.entries.addAll(Arrays.asList(entries));
 		}
 
 	}
 
+	private void checkNotWritten(FileEntry fileEntry) {
+		if (fileEntry.written) {
+			throw new IllegalStateException("File has been already written: " + fileEntry.getFile());
+		}
+	}
+
+	/**
+	 * Starts the write stage, which encodes and writes files to the output sink
+	 * of the context while the tasks are still running. Afterwards, flush()
+	 * hands the files of each finished task over to the stage. As the stage
+	 * takes at most queueDepth batches, flush() blocks when the tasks are ahead
+	 * of the stage; thus, only the files of a bounded number of tasks are held
+	 * in memory.
+	 * 
+	 * Files written by this stage are not removed if a later task fails.
+	 */
+	public void startWriting() {
+		if (writeStage == null) {
+			writeStage = new WriteStage();
+		}
+	}
+
+	/**
+	 * Hands all files added since the last call, except shared files, over to
+	 * the write stage. Does nothing if the write stage has not been started.
+	 */
+	public void flush() throws ToolException {
+		if (writeStage != null) {
+			writeStage.submit(takeBatch(false));
+		}
+	}
+
+	/**
+	 * Writes all remaining files to the output sink of the context and waits
+	 * until all files have been written. If the write stage has not been
+	 * started, all files are written now.
+	 */
 	public void saveAllFiles() throws ToolException {
+		try (Timings.Timer timer = ctx.getTimings().start("save")) {
+			startWriting();
+			writeStage.submit(takeBatch(true));
+			writeStage.finish();
+		} finally {
+			writeStage = null;
+		}
+	}
+
+	/**
+	 * Stops the write stage after an error; files which have not been written
+	 * yet are discarded.
+	 */
+	public void abort() {
+		if (writeStage != null) {
+			writeStage.abort();
+			writeStage = null;
+		}
+	}
+
+	/**
+	 * Returns the name of the DER encoded variant of a file: The extension .pem
+	 * is replaced by .der, any other extension is kept and .der is appended.
+	 */
+	public static File getDerFile(File file) {
+		String name = file.getName();
+
+		if (name.endsWith(".pem")) {
+			name = name.substring(0, name.length() - 4);
+		}
+
+		return new File(file.getParentFile(), name + ".der");
+	}
+
+	/**
+	 * Removes the files which are due from the pending files. Files which are
+	 * not shared are also removed from the lookup map, unless this is the last
+	 * batch of the run. Link targets are put into the batch before the first
+	 * link referring to them; afterwards, they cannot be changed any more.
+	 */
+	private List<FileEntry> takeBatch(boolean last) {
+		List<FileEntry> batch = new ArrayList<>();
+		List<FileEntry> remaining = new ArrayList<>();
+
 		for (FileEntry fileEntry : fileEntries) {
-			log.debug("Going to write: " + fileEntry.getFile() + " " + filterEntriesForLog(fileEntry.getEntries()));
-
-			try (JcaPEMWriter writer = new JcaPEMWriter(new FileWriter(fileEntry.getFile()))) {
-				for (Object object : fileEntry.getEntries()) {
-					if (object instanceof String) {
-						writer.write((String) object);
-					} else {
-						if (object instanceof PrivateKey) {
-							object = createPkcs8PrivateKeyPem((PrivateKey) object, fileEntry.getPassword());
-						}
-
-						writer.writeObject(object);
-					}
+			if (fileEntry.written) {
+				continue;
+			}
+
+			if (fileEntry.shared && !last) {
+				remaining.add(fileEntry);
+				continue;
+			}
+
+			if (fileEntry.linkTarget != null) {
+				FileEntry targetEntry = fileEntryMap.get(fileEntry.linkTarget);
+
+				if (targetEntry != null && !targetEntry.written) {
+					targetEntry.written = true;
+					batch.add(targetEntry);
+				}
+			}
+
+			fileEntry.written = true;
+			batch.add(fileEntry);
+
+			if (!fileEntry.shared && !last) {
+				fileEntryMap.remove(fileEntry.getFile());
+			}
+		}
+
+		remaining.removeIf((fileEntry) -> fileEntry.written);
+		fileEntries = remaining;
+
+		return applyEncoding(batch, last);
+	}
+
+	/**
+	 * If DER encoding is configured in defaults.encoding, adds a DER encoded
+	 * variant of each file which only contains certificates, a private key, a CSR
+	 * or a CRL. For the encoding "der", the DER file replaces the PEM file. Files
+	 * with several certificates are written as PKCS#7 structures.
+	 * 
+	 * The DER entries of files which stay in the lookup map are added to the map
+	 * as well. Shared PEM entries are kept there, as later links are encoded
+	 * from them.
+	 */
+	private List<FileEntry> applyEncoding(List<FileEntry> batch, boolean last) {
+		String encoding = getEncoding();
+
+		if (ENCODING_PEM.equals(encoding)) {
+			return batch;
+		}
+
+		List<FileEntry> result = new ArrayList<>(batch.size() * 2);
+		Set<File> derFiles = new HashSet<>();
+
+		for (FileEntry fileEntry : batch) {
+			if (!isDerEncodable(fileEntry)) {
+				result.add(fileEntry);
+				continue;
+			}
+
+			FileEntry derEntry = new FileEntry(getDerFile(fileEntry.getFile()), fileEntry.getPassword(),
+					fileEntry.getEntries().toArray());
+			derEntry.der = true;
+			derEntry.linkTarget = fileEntry.linkTarget;
+
+			if (ENCODING_BOTH.equals(encoding)) {
+				result.add(fileEntry);
+			} else if (last && !fileEntry.shared) {
+				fileEntryMap.remove(fileEntry.getFile());
+			}
+
+			if (!derFiles.add(derEntry.getFile())) {
+				continue;
+			}
+
+			if (last || fileEntry.shared) {
+				derEntry.shared = fileEntry.shared;
+				derEntry.written = true;
+
+				if (fileEntryMap.putIfAbsent(derEntry.getFile(), derEntry) != null) {
+					continue;
 				}
+			}
+
+			result.add(derEntry);
+		}
+
+		return result;
+	}
+
+	private String getEncoding() {
+		if (ctx.getConfig() == null || ctx.getConfig().getDefaults() == null
+				|| ctx.getConfig().getDefaults().getEncoding() == null) {
+			return ENCODING_PEM;
+		}
+
+		return ctx.getConfig().getDefaults().getEncoding().toLowerCase();
+	}
+
+	/**
+	 * Links are DER encoded if their target is a DER encodable file of this
+	 * output.
+	 */
+	private boolean isDerEncodable(FileEntry fileEntry) {
+		if (fileEntry.linkTarget != null) {
+			FileEntry targetEntry = fileEntryMap.get(fileEntry.linkTarget);
+
+			return targetEntry != null && isDerEncodable(targetEntry.getEntries());
+		}
+
+		return isDerEncodable(fileEntry.getEntries());
+	}
+
+	private static boolean isDerEncodable(List<Object> entries) {
+		if (entries.isEmpty()) {
+			return false;
+		}
+
+		for (Object entry : entries) {
+			if (!(entry instanceof X509CertificateHolder)) {
+				return entries.size() == 1 && (entry instanceof PrivateKey || entry instanceof X509CRLHolder
+						|| entry instanceof PKCS10CertificationRequest);
+			}
+		}
+
+		return true;
+	}
+
+	private byte[] encode(FileEntry fileEntry) throws ToolException {
+		if (fileEntry.linkTarget != null) {
+			return getLinkTargetContent(fileEntry);
+		}
+
+		log.debug("Going to write: " + fileEntry.getFile() + " " + filterEntriesForLog(fileEntry.getEntries()));
+
+		if (fileEntry.der) {
+			return encodeDer(fileEntry);
+		}
+
+		if (fileEntry.getEntries().size() == 1 && fileEntry.getEntries().get(0) instanceof BinaryContent) {
+			try (Timings.Timer timer = ctx.getTimings().start("encode")) {
+				return ((BinaryContent) fileEntry.getEntries().get(0)).encode();
 			} catch (Exception e) {
 				throw new ToolException("Error while writing " + fileEntry.getFile() + ": " + e.getMessage(), e);
 			}
 		}
+
+		StringWriter stringWriter = new StringWriter();
+
+		try (Timings.Timer timer = ctx.getTimings().start("encode");
+				JcaPEMWriter writer = new JcaPEMWriter(stringWriter)) {
+			for (Object object : fileEntry.getEntries()) {
+				if (object instanceof String) {
+					writer.write((String) object);
+				} else {
+					if (object instanceof PrivateKey) {
+						object = createPkcs8PrivateKeyPem((PrivateKey) object, fileEntry.getPassword());
+					}
+
+					writer.writeObject(object);
+				}
+			}
+		} catch (Exception e) {
+			throw new ToolException("Error while writing " + fileEntry.getFile() + ": " + e.getMessage(), e);
+		}
+
+		return stringWriter.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private byte[] encodeDer(FileEntry fileEntry) throws ToolException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		try (Timings.Timer timer = ctx.getTimings().start("encode")) {
+			if (fileEntry.getEntries().size() > 1) {
+				return encodePkcs7(fileEntry.getEntries());
+			}
+
+			for (Object object : fileEntry.getEntries()) {
+				if (object instanceof PrivateKey) {
+					// The PKCS#8 PEM object wraps the DER structure; this also covers encryption
+					out.write(createPkcs8PrivateKeyPem((PrivateKey) object, fileEntry.getPassword()).getContent());
+				} else if (object instanceof X509CertificateHolder) {
+					out.write(((X509CertificateHolder) object).getEncoded());
+				} else if (object instanceof X509CRLHolder) {
+					out.write(((X509CRLHolder) object).getEncoded());
+				} else {
+					out.write(((PKCS10CertificationRequest) object).getEncoded());
+				}
+			}
+		} catch (Exception e) {
+			throw new ToolException("Error while writing " + fileEntry.getFile() + ": " + e.getMessage(), e);
+		}
+
+		return out.toByteArray();
+	}
+
+	/**
+	 * Concatenated DER certificates are no standard format. Thus, certificate
+	 * chains are written as PKCS#7 SignedData structures without content and
+	 * signers, as created by openssl crl2pkcs7. The certificates are encoded as
+	 * a definite length set without sorting, so that their order is kept.
+	 */
+	private static byte[] encodePkcs7(List<Object> certificates) throws IOException {
+		ASN1EncodableVector certificateVector = new ASN1EncodableVector();
+
+		for (Object certificate : certificates) {
+			certificateVector.add(((X509CertificateHolder) certificate).toASN1Structure());
+		}
+
+		SignedData signedData = new SignedData(new DERSet(), new ContentInfo(CMSObjectIdentifiers.data, null),
+				new DLSet(certificateVector), null, new DERSet());
+
+		return new ContentInfo(CMSObjectIdentifiers.signedData, signedData).getEncoded(ASN1Encoding.DL);
+	}
+
+	/**
+	 * Encodes the batches of files in the order they were submitted and writes
+	 * them to the output sink using a single writer thread. If more than one
+	 * encoding thread is configured, the files are PEM encoded and their private
+	 * keys encrypted in parallel as soon as their batch is submitted.
+	 * 
+	 * After an error, the remaining batches are discarded; the error is thrown
+	 * by the next call of submit() or finish().
+	 */
+	private class WriteStage {
+		private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(ctx.getQueueDepth());
+		private final ExecutorService encodingExecutor = ctx.getEncodingThreads() > 1
+				? Executors.newFixedThreadPool(ctx.getEncodingThreads())
+				: null;
+		private final Thread writerThread = new Thread(this::run, "sgtlstool-writer");
+		private volatile ToolException failure;
+		private volatile boolean aborted;
+
+		WriteStage() {
+			writerThread.setDaemon(true);
+			writerThread.start();
+		}
+
+		void submit(List<FileEntry> fileEntries) throws ToolException {
+			checkFailure();
+
+			if (fileEntries.isEmpty()) {
+				return;
+			}
+
+			List<Future<byte[]>> encodedFiles = null;
+
+			if (encodingExecutor != null) {
+				encodedFiles = new ArrayList<>(fileEntries.size());
+
+				for (FileEntry fileEntry : fileEntries) {
+					encodedFiles.add(encodingExecutor.submit(() -> encode(fileEntry)));
+				}
+			}
+
+			put(new Batch(fileEntries, encodedFiles));
+		}
+
+		void finish() throws ToolException {
+			try {
+				put(Batch.END);
+				join();
+			} finally {
+				shutdown();
+			}
+
+			checkFailure();
+		}
+
+		void abort() {
+			aborted = true;
+			queue.clear();
+
+			try {
+				put(Batch.END);
+				join();
+			} catch (ToolException e) {
+				log.debug("Error while stopping the write stage", e);
+			} finally {
+				shutdown();
+			}
+		}
+
+		private void run() {
+			for (;;) {
+				Batch batch;
+
+				try {
+					batch = queue.take();
+				} catch (InterruptedException e) {
+					return;
+				}
+
+				if (batch == Batch.END) {
+					return;
+				}
+
+				if (failure != null || aborted) {
+					continue;
+				}
+
+				try {
+					for (int i = 0; i < batch.fileEntries.size(); i++) {
+						FileEntry fileEntry = batch.fileEntries.get(i);
+						write(fileEntry, batch.encodedFiles != null ? await(fileEntry, batch.encodedFiles.get(i))
+								: encode(fileEntry));
+					}
+				} catch (ToolException e) {
+					failure = e;
+				} catch (RuntimeException e) {
+					failure = new ToolException("Error while writing files: " + e, e);
+				}
+			}
+		}
+
+		private void put(Batch batch) throws ToolException {
+			try {
+				queue.put(batch);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ToolException("Interrupted while writing files", e);
+			}
+		}
+
+		private void join() throws ToolException {
+			try {
+				writerThread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ToolException("Interrupted while writing files", e);
+			}
+		}
+
+		private void shutdown() {
+			if (encodingExecutor != null) {
+				encodingExecutor.shutdownNow();
+			}
+		}
+
+		private void checkFailure() throws ToolException {
+			if (failure != null) {
+				throw failure;
+			}
+		}
+	}
+
+	/**
+	 * The files of one or more finished tasks. If parallel encoding is enabled,
+	 * encodedFiles holds the pending results in the order of the files.
+	 */
+	private static class Batch {
+		static final Batch END = new Batch(Collections.emptyList(), null);
+
+		private final List<FileEntry> fileEntries;
+		private final List<Future<byte[]>> encodedFiles;
+
+		Batch(List<FileEntry> fileEntries, List<Future<byte[]>> encodedFiles) {
+			this.fileEntries = fileEntries;
+			this.encodedFiles = encodedFiles;
+		}
+	}
+
+	private byte[] await(FileEntry fileEntry, Future<byte[]> future) throws ToolException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof ToolException) {
+				throw (ToolException) e.getCause();
+			}
+
+			throw new ToolException("Error while writing " + fileEntry.getFile() + ": " + e.getCause(), e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ToolException("Interrupted while writing " + fileEntry.getFile(), e);
+		}
+	}
+
+	private void write(FileEntry fileEntry, byte[] bytes) throws ToolException {
+		Object event = FlightRecorderEvents.beginFileWrite();
+
+		try (Timings.Timer timer = ctx.getTimings().start("write")) {
+			if (fileEntry.linkTarget != null) {
+				ctx.getOutputSink().link(fileEntry.getFile(), fileEntry.getLinkTargetFile(), bytes);
+			} else {
+				ctx.getOutputSink().write(fileEntry.getFile(), bytes);
+			}
+		} catch (Exception e) {
+			throw new ToolException("Error while writing " + fileEntry.getFile() + ": " + e.getMessage(), e);
+		}
+
+		writtenFileCount.incrementAndGet();
+		FlightRecorderEvents.commitFileWrite(event, fileEntry.getFile(), bytes.length);
+	}
+
+	/**
+	 * Link targets are usually shared by many files. Thus, their content is
+	 * encoded or read only once.
+	 */
+	private synchronized byte[] getLinkTargetContent(FileEntry fileEntry) throws ToolException {
+		File targetFile = fileEntry.getLinkTargetFile();
+		byte[] content = linkTargetContents.get(targetFile);
+
+		if (content == null) {
+			FileEntry targetEntry = fileEntryMap.get(fileEntry.linkTarget);
+
+			if (targetEntry != null) {
+				content = fileEntry.der ? encodeDer(targetEntry) : encode(targetEntry);
+			} else {
+				try {
+					content = Files.readAllBytes(targetFile.toPath());
+				} catch (IOException e) {
+					throw new ToolException("Error while reading " + targetFile + ": " + e, e);
+				}
+			}
+
+			linkTargetContents.put(targetFile, content);
+		}
+
+		return content;
 	}
 
 	private List<Object> filterEntriesForLog(List<Object> entries) {
@@ -142,7 +718,18 @@ public class FileOutput {
 		return result;
 	}
 
-	private PemObject createPkcs8PrivateKeyPem(PrivateKey privateKey, String password)
+	PemObject createPkcs8PrivateKeyPem(PrivateKey privateKey, String password)
+			throws PemGenerationException, OperatorCreationException {
+		Object event = FlightRecorderEvents.beginPkcs8Encryption();
+
+		try (Timings.Timer timer = ctx.getTimings().start("pkcs8")) {
+			PemObject result = createPkcs8PrivateKeyPemTimed(privateKey, password);
+			FlightRecorderEvents.commitPkcs8Encryption(event, password != null);
+			return result;
+		}
+	}
+
+	private PemObject createPkcs8PrivateKeyPemTimed(PrivateKey privateKey, String password)
 			throws PemGenerationException, OperatorCreationException {
 		OutputEncryptor outputEncryptor = null;
 
@@ -159,10 +746,22 @@ public class FileOutput {
 		return generator.generate();
 	}
 
+	/**
+	 * Entry for files which are not written as PEM. If a file consists of a
+	 * single BinaryContent entry, its encoded bytes are written verbatim.
+	 */
+	public interface BinaryContent {
+		byte[] encode() throws GeneralSecurityException, IOException;
+	}
+
 	public static class FileEntry {
 		private final File file;
 		private final List<Object> entries;
 		private final String password;
+		private File linkTarget;
+		private boolean der;
+		private boolean shared;
+		private boolean written;
 
 		FileEntry(File file, String password, Object... entries) {
 			this.file = file;
@@ -182,5 +781,9 @@ public class FileOutput {
 			return password;
 		}
 
+		private File getLinkTargetFile() {
+			return der ? getDerFile(linkTarget) : linkTarget;
+		}
+
 	}
 }
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool;
+
+import java.io.Closeable;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.floragunn.searchguard.tools.jfr.FlightRecorderEvents;
+
+/**
+ * Generates RSA key pairs in background threads, ahead of the tasks which need
+ * them. Thus, the key generation overlaps with building, signing and encoding
+ * the certificates.
+ * 
+ * The threads for a key size are only started when the first key pair of that
+ * size is requested. Afterwards, the threads stay at most as many key pairs
+ * ahead of the requests as there are threads. Thus, a run which needs no or
+ * only few keys does not waste CPU time on speculative key generation; at most
+ * this number of key pairs is discarded when the stage is closed.
+ */
+public class KeyGenerationStage implements Closeable {
+	private static final Logger log = LogManager.getLogger(KeyGenerationStage.class);
+
+	private static final KeyPair STOPPED = new KeyPair(null, null);
+
+	private final Provider securityProvider;
+	private final Timings timings;
+	private final int threads;
+	private final int queueDepth;
+	private final int lookahead;
+	private final Map<Integer, KeyPool> pools = new ConcurrentHashMap<>();
+	private final List<Thread> generatorThreads = new ArrayList<>();
+	private volatile RuntimeException failure;
+	private volatile boolean closed;
+
+	/**
+	 * The time spent generating the key pairs is recorded in the given timings as
+	 * phase keygen.
+	 */
+	public KeyGenerationStage(Provider securityProvider, int threads, int queueDepth, Timings timings) {
+		if (threads < 1 || queueDepth < 1) {
+			throw new IllegalArgumentException("threads and queueDepth must be positive");
+		}
+
+		this.securityProvider = securityProvider;
+		this.timings = timings;
+		this.threads = threads;
+		this.queueDepth = queueDepth;
+		this.lookahead = Math.min(threads, queueDepth);
+	}
+
+	/**
+	 * Starts generating key pairs of the given size, if not already done. This
+	 * is only useful if it is known that keys of this size will be requested.
+	 */
+	public void prepare(int keySize) {
+		getPool(keySize);
+	}
+
+	/**
+	 * Blocks until a key pair of the given size is available. If the generation
+	 * fails or the stage is closed, the waiting threads are woken up by the
+	 * STOPPED marker.
+	 */
+	public KeyPair take(int keySize) throws ToolException {
+		if (failure != null) {
+			throw new ToolException("Error while generating key pair: " + failure, failure);
+		}
+
+		if (closed) {
+			throw new ToolException("Key generation has been already stopped");
+		}
+
+		KeyPool pool = getPool(keySize);
+
+		pool.request();
+
+		KeyPair keyPair;
+
+		try {
+			keyPair = pool.queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ToolException("Interrupted while waiting for key pair", e);
+		}
+
+		if (keyPair == STOPPED) {
+			// Leave the marker for other waiting threads
+			pool.queue.offer(STOPPED);
+
+			if (failure != null) {
+				throw new ToolException("Error while generating key pair: " + failure, failure);
+			}
+
+			throw new ToolException("Key generation has been already stopped");
+		}
+
+		return keyPair;
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+
+		synchronized (generatorThreads) {
+			for (Thread thread : generatorThreads) {
+				thread.interrupt();
+			}
+		}
+
+		for (KeyPool pool : pools.values()) {
+			stop(pool);
+		}
+	}
+
+	/**
+	 * Returns the number of key pairs of the given size which have been
+	 * generated or are being generated.
+	 */
+	int getGeneratedCount(int keySize) {
+		KeyPool pool = pools.get(keySize);
+
+		if (pool == null) {
+			return 0;
+		}
+
+		synchronized (pool) {
+			return pool.claimed;
+		}
+	}
+
+	private KeyPool getPool(int keySize) {
+		return pools.computeIfAbsent(keySize, (k) -> {
+			KeyPool pool = new KeyPool();
+			start(keySize, pool);
+			return pool;
+		});
+	}
+
+	private void start(int keySize, KeyPool pool) {
+		log.debug("Starting " + threads + " threads for generating " + keySize + " bit key pairs");
+
+		synchronized (generatorThreads) {
+			for (int i = 0; i < threads; i++) {
+				Thread thread = new Thread(() -> generate(keySize, pool), "keygen-" + keySize + "-" + i);
+				thread.setDaemon(true);
+				generatorThreads.add(thread);
+				thread.start();
+			}
+		}
+	}
+
+	private void generate(int keySize, KeyPool pool) {
+		try {
+			KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA", securityProvider);
+			generator.initialize(keySize);
+
+			while (!closed) {
+				pool.awaitDemand();
+
+				Object event = FlightRecorderEvents.beginKeyGeneration();
+				KeyPair keyPair;
+
+				try (Timings.Timer timer = timings.start("keygen")) {
+					keyPair = generator.generateKeyPair();
+				}
+
+				FlightRecorderEvents.commitKeyGeneration(event, "RSA", keySize, true);
+
+				pool.queue.put(keyPair);
+			}
+		} catch (InterruptedException e) {
+			// Stage was closed
+		} catch (NoSuchAlgorithmException e) {
+			failure = new RuntimeException(e);
+			stop(pool);
+		} catch (RuntimeException e) {
+			failure = e;
+			stop(pool);
+		}
+	}
+
+	/**
+	 * Replaces the buffered key pairs by the STOPPED marker.
+	 */
+	private static void stop(KeyPool pool) {
+		pool.queue.clear();
+		pool.queue.offer(STOPPED);
+	}
+
+	/**
+	 * The key pairs of one key size. Counts the requested and the generated key
+	 * pairs in order to bound the speculative generation.
+	 */
+	private class KeyPool {
+		private final BlockingQueue<KeyPair> queue = new ArrayBlockingQueue<>(queueDepth);
+		private int requested;
+		private int claimed;
+
+		synchronized void request() {
+			requested++;
+			notifyAll();
+		}
+
+		synchronized void awaitDemand() throws InterruptedException {
+			while (claimed >= requested + lookahead) {
+				wait();
+			}
+
+			claimed++;
+		}
+	}
+}
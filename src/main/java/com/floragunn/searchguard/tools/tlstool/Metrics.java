@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters of a run, like the number of created certificates. The latency
+ * histograms are provided by the {@link Timings} of the same context.
+ * 
+ * Instances are thread-safe and are bound to a single context. Thus, embedded
+ * usage can run the tool several times in one JVM and read the results of each
+ * run separately.
+ */
+public class Metrics implements MetricsMXBean {
+
+	public static final String NODE_CERTIFICATES = "node_certificates";
+	public static final String CLIENT_CERTIFICATES = "client_certificates";
+	public static final String NODE_CSRS = "node_csrs";
+	public static final String CLIENT_CSRS = "client_csrs";
+	public static final String SIGNED_CSRS = "signed_csrs";
+	public static final String NODE_PASSWORDS_GENERATED = "node_passwords_generated";
+	public static final String CLIENT_PASSWORDS_GENERATED = "client_passwords_generated";
+
+	private static final AtomicInteger registrationCounter = new AtomicInteger();
+
+	private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+	private final Timings timings;
+
+	public Metrics(Timings timings) {
+		this.timings = timings;
+	}
+
+	public void increment(String counter) {
+		counters.computeIfAbsent(counter, (k) -> new LongAdder()).increment();
+	}
+
+	public long getCount(String counter) {
+		LongAdder adder = counters.get(counter);
+
+		return adder != null ? adder.sum() : 0;
+	}
+
+	@Override
+	public Map<String, Long> getCounters() {
+		Map<String, Long> result = new TreeMap<>();
+
+		for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().sum());
+		}
+
+		return result;
+	}
+
+	@Override
+	public List<Timings.PhaseStatistics> getLatencies() {
+		return timings.getStatistics();
+	}
+
+	@Override
+	public long getCertificatesCreated() {
+		return getCount(NODE_CERTIFICATES) + getCount(CLIENT_CERTIFICATES) + getCount(SIGNED_CSRS);
+	}
+
+	@Override
+	public long getCsrsCreated() {
+		return getCount(NODE_CSRS) + getCount(CLIENT_CSRS);
+	}
+
+	/**
+	 * Registers this instance at the platform MBean server. As several runs might
+	 * take place in one JVM, each registration gets its own object name.
+	 * 
+	 * @return the object name; to be passed to {@link #unregister(ObjectName)}
+	 */
+	public ObjectName register() throws ToolException {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(
+					"com.floragunn.searchguard.tools:type=TlsToolMetrics,run=" + registrationCounter.incrementAndGet());
+
+			server.registerMBean(this, name);
+
+			return name;
+		} catch (JMException e) {
+			throw new ToolException("Error while registering metrics MBean: " + e, e);
+		}
+	}
+
+	public static void unregister(ObjectName name) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		} catch (JMException e) {
+			// Nothing to do; the bean is gone anyway
+		}
+	}
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JMX view on the {@link Metrics} of a run.
+ */
+public interface MetricsMXBean {
+
+	Map<String, Long> getCounters();
+
+	List<Timings.PhaseStatistics> getLatencies();
+
+	long getCertificatesCreated();
+
+	long getCsrsCreated();
+}
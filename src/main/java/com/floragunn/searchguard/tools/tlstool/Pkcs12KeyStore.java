@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.util.List;
+
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+
+/**
+ * A PKCS#12 file which is written by FileOutput. It either contains a private
+ * key with its certificate chain or a number of trusted certificates.
+ * 
+ * Keystores are encoded when the files are written. Thus, the expensive key
+ * derivation runs in the parallel encoding stage of FileOutput.
+ */
+public class Pkcs12KeyStore implements FileOutput.BinaryContent {
+
+	/**
+	 * Password used for keystores which protect an unencrypted private key.
+	 * This is the well-known default of the JDK and of Search Guard.
+	 */
+	public static final String DEFAULT_PASSWORD = "changeit";
+
+	public static final String TYPE = "PKCS12";
+
+	private final String alias;
+	private final PrivateKey privateKey;
+	private final X509CertificateHolder[] certificates;
+	private final String password;
+
+	private Pkcs12KeyStore(String alias, PrivateKey privateKey, String password,
+			X509CertificateHolder... certificates) {
+		this.alias = alias;
+		this.privateKey = privateKey;
+		this.password = password != null ? password : DEFAULT_PASSWORD;
+		this.certificates = certificates;
+	}
+
+	public static Pkcs12KeyStore createKeyStore(String alias, PrivateKey privateKey, String password,
+			X509CertificateHolder... chain) {
+		return new Pkcs12KeyStore(alias, privateKey, password, chain);
+	}
+
+	public static Pkcs12KeyStore createTrustStore(String password, List<X509CertificateHolder> trustedCertificates) {
+		return new Pkcs12KeyStore(null, null, password,
+				trustedCertificates.toArray(new X509CertificateHolder[trustedCertificates.size()]));
+	}
+
+	public String getPassword() {
+		return password;
+	}
+
+	@Override
+	public byte[] encode() throws GeneralSecurityException, IOException {
+		KeyStore keyStore = KeyStore.getInstance(TYPE);
+		keyStore.load(null, null);
+
+		JcaX509CertificateConverter converter = new JcaX509CertificateConverter();
+		Certificate[] convertedCertificates = new Certificate[certificates.length];
+
+		for (int i = 0; i < certificates.length; i++) {
+			convertedCertificates[i] = converter.getCertificate(certificates[i]);
+		}
+
+		if (privateKey != null) {
+			keyStore.setKeyEntry(alias, privateKey, password.toCharArray(), convertedCertificates);
+		} else {
+			for (int i = 0; i < convertedCertificates.length; i++) {
+				keyStore.setCertificateEntry("ca-" + i, convertedCertificates[i]);
+			}
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		keyStore.store(out, password.toCharArray());
+		return out.toByteArray();
+	}
+
+	@Override
+	public String toString() {
+		return "Pkcs12KeyStore [alias=" + alias + ", certificates=" + certificates.length + "]";
+	}
+}
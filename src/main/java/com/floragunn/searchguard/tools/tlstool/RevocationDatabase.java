@@ -0,0 +1,220 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps track of the certificates revoked by the local CA and of the numbers
+ * of the CRLs issued so far. The database is a plain text file with one line
+ * per revoked certificate. Each entry records the number of the first CRL
+ * which contains it. Thus, delta CRLs only need to include the entries which
+ * are newer than their base CRL.
+ * 
+ * Serial numbers are written in decimal, as in the inventory and on the
+ * command line. Databases written by older versions have hexadecimal serial
+ * numbers; these are recognized by the missing serial_radix line.
+ */
+public class RevocationDatabase {
+
+	private static final String HEADER = "# Revocation database maintained by sgtlstool. Do not edit.\n"
+			+ "# Entries: serial (decimal), revocation time (seconds), reason, first CRL number\n";
+	private static final int SERIAL_RADIX = 10;
+	private static final int LEGACY_SERIAL_RADIX = 16;
+
+	private final File file;
+	private final List<Entry> entries = new ArrayList<>();
+	private final Map<BigInteger, Entry> entriesBySerial = new HashMap<>();
+	private long crlNumber;
+	private long baseCrlNumber;
+	private long baseCrlTime;
+
+	private RevocationDatabase(File file) {
+		this.file = file;
+	}
+
+	public static RevocationDatabase load(File file) throws ToolException {
+		RevocationDatabase result = new RevocationDatabase(file);
+
+		if (!file.exists()) {
+			return result;
+		}
+
+		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			String line;
+			int lineNumber = 0;
+			int serialRadix = LEGACY_SERIAL_RADIX;
+
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+
+				try {
+					if (line.startsWith("serial_radix=")) {
+						serialRadix = Integer.parseInt(line.substring("serial_radix=".length()));
+					} else if (line.startsWith("crl_number=")) {
+						result.crlNumber = Long.parseLong(line.substring("crl_number=".length()));
+					} else if (line.startsWith("base_crl_number=")) {
+						result.baseCrlNumber = Long.parseLong(line.substring("base_crl_number=".length()));
+					} else if (line.startsWith("base_crl_time=")) {
+						result.baseCrlTime = Long.parseLong(line.substring("base_crl_time=".length())) * 1000;
+					} else {
+						String[] fields = line.split(" ");
+						result.add(new Entry(new BigInteger(fields[0], serialRadix), Long.parseLong(fields[1]) * 1000,
+								Integer.parseInt(fields[2]), Long.parseLong(fields[3])));
+					}
+				} catch (RuntimeException e) {
+					throw new ToolException("Invalid entry in " + file + " at line " + lineNumber + ": " + line, e);
+				}
+			}
+		} catch (IOException e) {
+			throw new ToolException("Error while reading " + file + ": " + e, e);
+		}
+
+		return result;
+	}
+
+	public boolean isRevoked(BigInteger serial) {
+		return entriesBySerial.containsKey(serial);
+	}
+
+	public Entry revoke(BigInteger serial, long revocationDate, int reason) {
+		Entry entry = new Entry(serial, revocationDate, reason, crlNumber + 1);
+		add(entry);
+		return entry;
+	}
+
+	private void add(Entry entry) {
+		if (!entriesBySerial.containsKey(entry.getSerial())) {
+			entries.add(entry);
+			entriesBySerial.put(entry.getSerial(), entry);
+		}
+	}
+
+	/**
+	 * Returns the entries which need to be included in a delta CRL relative to
+	 * the current base CRL.
+	 */
+	public List<Entry> getEntriesSinceBase() {
+		List<Entry> result = new ArrayList<>();
+
+		for (Entry entry : entries) {
+			if (entry.getCrlNumber() > baseCrlNumber) {
+				result.add(entry);
+			}
+		}
+
+		return result;
+	}
+
+	public List<Entry> getEntries() {
+		return Collections.unmodifiableList(entries);
+	}
+
+	public long nextCrlNumber(boolean full, long now) {
+		crlNumber++;
+
+		if (full) {
+			baseCrlNumber = crlNumber;
+			baseCrlTime = now;
+		}
+
+		return crlNumber;
+	}
+
+	public long getCrlNumber() {
+		return crlNumber;
+	}
+
+	public long getBaseCrlNumber() {
+		return baseCrlNumber;
+	}
+
+	public long getBaseCrlTime() {
+		return baseCrlTime;
+	}
+
+	public boolean hasBaseCrl() {
+		return baseCrlNumber > 0;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder(HEADER.length() + 64 + entries.size() * 40);
+
+		result.append(HEADER);
+		result.append("serial_radix=").append(SERIAL_RADIX).append('\n');
+		result.append("crl_number=").append(crlNumber).append('\n');
+		result.append("base_crl_number=").append(baseCrlNumber).append('\n');
+		result.append("base_crl_time=").append(baseCrlTime / 1000).append('\n');
+
+		for (Entry entry : entries) {
+			result.append(entry.getSerial().toString(SERIAL_RADIX)).append(' ').append(entry.getRevocationDate() / 1000)
+					.append(' ').append(entry.getReason()).append(' ').append(entry.getCrlNumber()).append('\n');
+		}
+
+		return result.toString();
+	}
+
+	public static class Entry {
+		private final BigInteger serial;
+		private final long revocationDate;
+		private final int reason;
+		private final long crlNumber;
+
+		Entry(BigInteger serial, long revocationDate, int reason, long crlNumber) {
+			this.serial = serial;
+			this.revocationDate = revocationDate;
+			this.reason = reason;
+			this.crlNumber = crlNumber;
+		}
+
+		public BigInteger getSerial() {
+			return serial;
+		}
+
+		public long getRevocationDate() {
+			return revocationDate;
+		}
+
+		public int getReason() {
+			return reason;
+		}
+
+		public long getCrlNumber() {
+			return crlNumber;
+		}
+	}
+}
@@ -17,12 +17,20 @@
 
 package com.floragunn.searchguard.tools.tlstool;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.security.Security;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import javax.management.ObjectName;
+
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -30,38 +38,70 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.LoggerContext;
 import org.apache.logging.log4j.core.config.Configurator;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.floragunn.searchguard.tools.tlstool.bench.ScaleBenchmark;
+import com.floragunn.searchguard.tools.tlstool.inventory.CertificateInventory;
+import com.floragunn.searchguard.tools.tlstool.output.DirectorySink;
+import com.floragunn.searchguard.tools.tlstool.output.OutputSink;
+import com.floragunn.searchguard.tools.tlstool.output.StdoutSink;
+import com.floragunn.searchguard.tools.tlstool.output.TarSink;
+import com.floragunn.searchguard.tools.tlstool.output.ZipSink;
+import com.floragunn.searchguard.tools.tlstool.source.NodeRangeSource;
 import com.floragunn.searchguard.tools.tlstool.tasks.CreateCa;
 import com.floragunn.searchguard.tools.tlstool.tasks.CreateClientCertificate;
 import com.floragunn.searchguard.tools.tlstool.tasks.CreateClientCsr;
+import com.floragunn.searchguard.tools.tlstool.tasks.CreateCrl;
 import com.floragunn.searchguard.tools.tlstool.tasks.CreateNodeCertificate;
 import com.floragunn.searchguard.tools.tlstool.tasks.CreateNodeCsr;
+import com.floragunn.searchguard.tools.tlstool.tasks.LoadAdditionalCa;
 import com.floragunn.searchguard.tools.tlstool.tasks.LoadCa;
+import com.floragunn.searchguard.tools.tlstool.tasks.ProcessConfigSource;
+import com.floragunn.searchguard.tools.tlstool.tasks.QueryInventory;
+import com.floragunn.searchguard.tools.tlstool.tasks.RevokeCertificate;
+import com.floragunn.searchguard.tools.tlstool.tasks.SignCsr;
 import com.floragunn.searchguard.tools.tlstool.tasks.Task;
 import com.floragunn.searchguard.tools.tlstool.tasks.Validate;
+import com.floragunn.searchguard.tools.tlstool.tasks.ValidateConfig;
 import com.google.common.base.Strings;
 
 public class SearchGuardTlsTool {
 
 	private static final ObjectMapper objectMapper = new ObjectMapper(new YAMLFactory());
 	private static final Logger log = LogManager.getLogger(SearchGuardTlsTool.class);
+	private static final int DEFAULT_MAX_KEY_GENERATION_THREADS = 4;
 	private static Options options;
 
 	public static void main(String[] args) {
 		objectMapper.configure(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY, true);
 
+		SearchGuardTlsTool tool = null;
+
 		try {
-			new SearchGuardTlsTool(parseOptions(args)).run();
+			if (args.length > 0 && "bench".equals(args[0])) {
+				ScaleBenchmark.main(Arrays.copyOfRange(args, 1, args.length));
+				return;
+			}
+
+			tool = new SearchGuardTlsTool(parseOptions(args));
+			tool.run();
 		} catch (ToolException e) {
 			log.error(e.getMessage());
-			log.info("No files have been written");
+
+			if (tool == null || tool.getWrittenFileCount() == 0) {
+				log.info("No files have been written");
+			} else {
+				log.info(tool.getWrittenFileCount() + " files had been already written before the error occurred");
+			}
+
 			log.debug("Exception: ", e);
 			System.exit(1);
 		}
@@ -74,10 +114,58 @@ public class SearchGuardTlsTool {
 				.desc("Create certificates using an existing or newly created local certificate authority").build());
 		options.addOption(
 				Option.builder("csr").longOpt("create-csr").desc("Create certificate signing requests").build());
+		options.addOption(Option.builder("scsr").longOpt("sign-csr").hasArg()
+				.desc("Sign the certificate signing requests (*.csr) in the given directory using the local certificate authority")
+				.build());
+		options.addOption(Option.builder("rev").longOpt("revoke").hasArgs()
+				.desc("Revoke the certificates with the given serial numbers or contained in the given PEM files")
+				.build());
+		options.addOption(Option.builder("rr").longOpt("revoke-reason").hasArg().desc(
+				"Reason for --revoke: unspecified, keyCompromise, cACompromise, affiliationChanged, superseded, cessationOfOperation, certificateHold, privilegeWithdrawn or aACompromise")
+				.build());
+		options.addOption(Option.builder("crl").longOpt("create-crl")
+				.desc("Create a CRL for the local certificate authority; creates a delta CRL if a recent full CRL exists")
+				.build());
+		options.addOption(
+				Option.builder("fcrl").longOpt("full-crl").desc("Always create a full CRL with --create-crl").build());
+
+		options.addOption(Option.builder("rw").longOpt("renew-within").hasArg().desc(
+				"Only re-issue existing certificates which expire within the given number of days. Implies --create-cert")
+				.build());
+		options.addOption(Option.builder("rk").longOpt("reuse-keys")
+				.desc("Keep the existing key pairs when renewing certificates with --renew-within").build());
+		options.addOption(Option.builder("rs").longOpt("resign").desc(
+				"Re-issue all existing node and client certificates using the current CA while keeping the existing keys. Implies --create-cert")
+				.build());
+		options.addOption(Option.builder("iq").longOpt("inventory-query").hasArg().desc(
+				"Query the inventory of issued certificates in the target directory: serial:SERIAL, fingerprint:SHA256, dn:DN, expires-within:DAYS, expired or all")
+				.build());
+
+		options.addOption(Option.builder("kt").longOpt("keygen-threads").hasArg().desc(
+				"Number of threads generating key pairs ahead of the certificate creation; 0 generates the keys on demand. Default: number of processors, at most " + DEFAULT_MAX_KEY_GENERATION_THREADS)
+				.build());
+		options.addOption(Option.builder("et").longOpt("encode-threads").hasArg()
+				.desc("Number of threads encoding and encrypting the output files. Default: number of processors")
+				.build());
+		options.addOption(Option.builder("qd").longOpt("queue-depth").hasArg()
+				.desc("Maximum number of key pairs and of finished tasks buffered per stage. Default: 16").build());
+
+		options.addOption(Option.builder("tm").longOpt("timings").hasArg().optionalArg(true).argName("json-file").desc(
+				"Print the time spent in the phases of the run (key generation, signing, encoding, ...); optionally also write them as JSON to the given file")
+				.build());
 
 		options.addOption(Option.builder("c").longOpt("config").hasArg().desc("Path to the config file").build());
 		options.addOption(Option.builder("t").longOpt("target").hasArg().desc("Path to the target directory").build());
 		options.addOption(Option.builder("o").longOpt("overwrite").desc("Overwrite existing files").build());
+		options.addOption(Option.builder("of").longOpt("output-format").hasArg().argName("format").desc(
+				"How to output the created files: directory (individual files in the target directory; default), tar, zip or stdout")
+				.build());
+		options.addOption(Option.builder("b").longOpt("bundles").desc(
+				"Put the files of each node and client into a directory of its own, like nodes/3f/node1/. The directories are sharded by a hash of the name. The file with the trusted CAs is hard linked into each directory")
+				.build());
+		options.addOption(Option.builder("out").longOpt("output-file").hasArg().argName("file").desc(
+				"The archive file for --output-format tar or zip. If omitted or -, the archive is written to stdout")
+				.build());
 
 		options.addOption(Option.builder("v").longOpt("verbose").desc("Enable detailed output").build());
 		options.addOption(Option.builder("f").longOpt("force")
@@ -97,11 +185,201 @@ public class SearchGuardTlsTool {
 	}
 
 	private CommandLine commandLine;
+	private Context context;
+	private boolean outputDiscarded;
 
 	SearchGuardTlsTool(CommandLine commandLine) {
 		this.commandLine = commandLine;
 	}
 
+	/**
+	 * Returns the number of files which have been written by the last run and
+	 * which are still present.
+	 */
+	int getWrittenFileCount() {
+		if (context == null || outputDiscarded) {
+			return 0;
+		}
+
+		return context.getFileOutput().getWrittenFileCount();
+	}
+
+	private void addConfigSourceTasks(Context ctx, Config config, List<Task> tasks) {
+		boolean csr = commandLine.hasOption("csr");
+
+		if (config.getNodeSources() != null) {
+			for (String source : config.getNodeSources()) {
+				tasks.add(new ProcessConfigSource<>(ctx, new File(source), Config.Node.class, (nodeConfig) -> {
+					nodeConfig.applyDefaults(config.getDefaults());
+					return csr ? new CreateNodeCsr(ctx, nodeConfig) : new CreateNodeCertificate(ctx, nodeConfig);
+				}));
+			}
+		}
+
+		if (config.getClientSources() != null) {
+			for (String source : config.getClientSources()) {
+				tasks.add(new ProcessConfigSource<>(ctx, new File(source), Config.Client.class, (clientConfig) -> {
+					if (clientConfig.isAdmin()) {
+						// The admin DNs must be known before the first config snippet is written
+						throw new ToolException("Admin clients must be specified in the clients section of the config: "
+								+ clientConfig.getDn());
+					}
+
+					clientConfig.applyDefaults(config.getDefaults());
+					return csr ? new CreateClientCsr(ctx, clientConfig) : new CreateClientCertificate(ctx, clientConfig);
+				}));
+			}
+		}
+	}
+
+	private void reportTimings(Timings timings, String jsonFile) throws ToolException {
+		log.info("Timings:\n" + timings.toTable());
+
+		if (jsonFile != null) {
+			try {
+				Files.write(new File(jsonFile).toPath(), timings.toJson().getBytes(StandardCharsets.UTF_8));
+			} catch (IOException e) {
+				throw new ToolException("Error while writing " + jsonFile + ": " + e, e);
+			}
+		}
+	}
+
+	private boolean isWritingToStdout(String outputFormat) {
+		if (outputFormat.equals("stdout")) {
+			return true;
+		}
+
+		return (outputFormat.equals("tar") || outputFormat.equals("zip"))
+				&& (commandLine.getOptionValue("out") == null || commandLine.getOptionValue("out").equals("-"));
+	}
+
+	/**
+	 * The files are written while the tasks are running. If a task fails, an
+	 * archive file is deleted by discardOutput().
+	 */
+	private OutputSink createOutputSink(String outputFormat, File targetDirectory) throws ToolException {
+		if (outputFormat.equals("directory")) {
+			return new DirectorySink();
+		} else if (outputFormat.equals("stdout")) {
+			return new StdoutSink(targetDirectory);
+		}
+
+		OutputStream outputStream;
+
+		if (isWritingToStdout(outputFormat)) {
+			outputStream = new CloseShieldOutputStream(System.out);
+		} else {
+			try {
+				outputStream = new BufferedOutputStream(new FileOutputStream(commandLine.getOptionValue("out")));
+			} catch (IOException e) {
+				throw new ToolException("Error while creating " + commandLine.getOptionValue("out") + ": " + e, e);
+			}
+		}
+
+		if (outputFormat.equals("tar")) {
+			return new TarSink(targetDirectory, outputStream);
+		} else {
+			return new ZipSink(targetDirectory, outputStream);
+		}
+	}
+
+	private void discardOutput(String outputFormat) {
+		if ((outputFormat.equals("tar") || outputFormat.equals("zip")) && !isWritingToStdout(outputFormat)) {
+			File outputFile = new File(commandLine.getOptionValue("out"));
+
+			if (outputFile.exists() && !outputFile.delete()) {
+				log.warn("Could not delete incomplete archive " + outputFile);
+			} else {
+				outputDiscarded = true;
+			}
+		}
+	}
+
+	/**
+	 * Runs the tasks while the write stage of the file output writes the files of
+	 * the finished tasks.
+	 */
+	private void runTasks(Context ctx, List<Task> tasks) throws ToolException {
+		FileOutput fileOutput = ctx.getFileOutput();
+		boolean success = false;
+
+		fileOutput.startWriting();
+
+		try {
+			try {
+				for (Task task : tasks) {
+					log.debug("Executing: " + task);
+
+					try (Timings.Timer timer = ctx.getTimings().start("task " + task.getClass().getSimpleName())) {
+						task.run();
+					}
+
+					fileOutput.flush();
+				}
+			} finally {
+				if (ctx.getKeyGenerationStage() != null) {
+					ctx.getKeyGenerationStage().close();
+				}
+			}
+
+			fileOutput.saveAllFiles();
+			success = true;
+		} finally {
+			if (!success) {
+				fileOutput.abort();
+			}
+		}
+	}
+
+	private void logSummary(Metrics metrics) {
+		if (metrics.getCount(Metrics.NODE_CERTIFICATES) > 0) {
+			log.info("Created " + metrics.getCount(Metrics.NODE_CERTIFICATES) + " node certificates.");
+		}
+
+		if (metrics.getCount(Metrics.NODE_CSRS) > 0) {
+			log.info("Created " + metrics.getCount(Metrics.NODE_CSRS) + " node certificate signing requests.");
+		}
+
+		if (metrics.getCount(Metrics.NODE_PASSWORDS_GENERATED) > 0) {
+			log.info(
+					"Passwords for the private keys of the node certificates have been auto-generated. The passwords are stored in the config snippet files.");
+		}
+
+		if (metrics.getCount(Metrics.CLIENT_CERTIFICATES) > 0) {
+			log.info("Created " + metrics.getCount(Metrics.CLIENT_CERTIFICATES) + " client certificates.");
+		}
+
+		if (metrics.getCount(Metrics.SIGNED_CSRS) > 0) {
+			log.info("Signed " + metrics.getCount(Metrics.SIGNED_CSRS) + " certificate signing requests.");
+		}
+
+		if (metrics.getCount(Metrics.CLIENT_CSRS) > 0) {
+			log.info("Created " + metrics.getCount(Metrics.CLIENT_CSRS) + " client certificate signing requests.");
+		}
+
+		if (metrics.getCount(Metrics.CLIENT_PASSWORDS_GENERATED) > 0) {
+			log.info(
+					"Passwords for the private keys of the client certificates have been auto-generated. The passwords are stored in the file \"client-certificates.readme\"");
+		}
+	}
+
+	private int getIntOption(String option, int defaultValue) throws ToolException {
+		if (!commandLine.hasOption(option)) {
+			return defaultValue;
+		}
+
+		try {
+			return Integer.parseInt(commandLine.getOptionValue(option));
+		} catch (NumberFormatException e) {
+			throw new ToolException("Invalid value for --" + options.getOption(option).getLongOpt() + ": "
+					+ commandLine.getOptionValue(option));
+		}
+	}
+
+	private boolean isCreatingCertificates() {
+		return commandLine.hasOption("crt") || commandLine.hasOption("rw") || commandLine.hasOption("rs");
+	}
+
 	private Config getConfig() throws ToolException {
 		try {
 			String configOptionValue = commandLine.getOptionValue("config");
@@ -128,9 +406,11 @@ public class SearchGuardTlsTool {
 	}
 
 	private void run() throws ToolException {
-		if (!commandLine.hasOption("ca") && !commandLine.hasOption("crt") && !commandLine.hasOption("csr")) {
+		if (!commandLine.hasOption("ca") && !isCreatingCertificates() && !commandLine.hasOption("csr")
+				&& !commandLine.hasOption("scsr") && !commandLine.hasOption("rev") && !commandLine.hasOption("crl")
+				&& !commandLine.hasOption("iq")) {
 			System.out.println(
-					"In order to use sgtlstool, you have to use at least one of these parameters:\n\n--create-ca - Creates a new CA\n--create-cert - Creates new certificates\n--create-csr - Creates certificate signing requests.\n");
+					"In order to use sgtlstool, you have to use at least one of these parameters:\n\n--create-ca - Creates a new CA\n--create-cert - Creates new certificates\n--renew-within - Renews expiring certificates\n--resign - Re-issues certificates for the existing keys\n--create-csr - Creates certificate signing requests\n--sign-csr - Signs certificate signing requests\n--revoke - Revokes certificates\n--create-crl - Creates a certificate revocation list\n--inventory-query - Queries the inventory of issued certificates\n\nTo measure the certificate creation with a synthetic config, use: sgtlstool.sh bench --nodes N --clients M\n");
 
 			if (!commandLine.hasOption("c")) {
 				System.out.println(
@@ -141,15 +421,45 @@ public class SearchGuardTlsTool {
 			System.exit(1);
 		}
 
+		if (commandLine.hasOption("iq") && !commandLine.hasOption("ca") && !isCreatingCertificates()
+				&& !commandLine.hasOption("csr") && !commandLine.hasOption("scsr") && !commandLine.hasOption("rev")
+				&& !commandLine.hasOption("crl")) {
+			// Queries do not need a config
+			Context ctx = new Context();
+			ctx.setTargetDirectory(new File(commandLine.getOptionValue("t", "out")));
+			new QueryInventory(ctx, commandLine.getOptionValue("iq")).run();
+			return;
+		}
+
 		Config config = getConfig();
 
 		Context ctx = new Context();
 		ctx.setConfig(config);
+		context = ctx;
 
 		Security.addProvider(ctx.getSecurityProvider());
 
 		List<Task> tasks = new ArrayList<>();
 
+		String outputFormat = commandLine.getOptionValue("of", "directory").toLowerCase();
+
+		if (!Arrays.asList("directory", "tar", "zip", "stdout").contains(outputFormat)) {
+			throw new ToolException("Invalid value for --output-format: " + outputFormat);
+		}
+
+		if (!outputFormat.equals("directory")
+				&& (commandLine.hasOption("ca") || commandLine.hasOption("rev") || commandLine.hasOption("crl"))) {
+			// The CA files and the revocation database must be kept in the target directory for later runs
+			throw new ToolException("--create-ca, --revoke and --create-crl cannot be used with --output-format "
+					+ outputFormat);
+		}
+
+		if (isWritingToStdout(outputFormat)) {
+			// Keeps the log output out of the data written to stdout
+			System.setProperty("sgtlstool.log.target", "SYSTEM_ERR");
+			((LoggerContext) LogManager.getContext(false)).reconfigure();
+		}
+
 		if (commandLine.hasOption("v")) {
 			Configurator.setRootLevel(Level.DEBUG);
 			Configurator.setLevel("STDOUT", Level.DEBUG);
@@ -171,20 +481,61 @@ public class SearchGuardTlsTool {
 			ctx.setOverwrite(true);
 		}
 
+		if (commandLine.hasOption("b")) {
+			ctx.setBundleLayout(true);
+		}
+
+		if (commandLine.hasOption("rw")) {
+			try {
+				ctx.setRenewWithinDays(Integer.parseInt(commandLine.getOptionValue("rw")));
+			} catch (NumberFormatException e) {
+				throw new ToolException("Invalid value for --renew-within: " + commandLine.getOptionValue("rw"));
+			}
+
+			ctx.setReuseKeys(commandLine.hasOption("rk"));
+		} else if (commandLine.hasOption("rk")) {
+			throw new ToolException("--reuse-keys can be only used together with --renew-within");
+		}
+
+		if (commandLine.hasOption("rs")) {
+			if (commandLine.hasOption("rw")) {
+				throw new ToolException("--resign and --renew-within cannot be used together");
+			}
+
+			ctx.setResign(true);
+		}
+
+		if (commandLine.hasOption("csr") || isCreatingCertificates()) {
+			tasks.add(new ValidateConfig(ctx, !commandLine.hasOption("ca") && isCreatingCertificates()));
+		}
+
 		if (!commandLine.hasOption("f")) {
 			tasks.add(new Validate(ctx));
 		}
 
 		if (commandLine.hasOption("ca")) {
 			tasks.add(new CreateCa(ctx, config.getCa()));
-		} else if (commandLine.hasOption("crt")) {
+		} else if (isCreatingCertificates() || commandLine.hasOption("scsr") || commandLine.hasOption("rev")
+				|| commandLine.hasOption("crl")) {
 			tasks.add(new LoadCa(ctx, config.getCa()));
 		}
 
+		if (config.getCa() != null && config.getCa().getAdditional() != null
+				&& (isCreatingCertificates() || commandLine.hasOption("scsr"))) {
+			for (Config.Ca additionalCaConfig : config.getCa().getAdditional()) {
+				tasks.add(new LoadAdditionalCa(ctx, additionalCaConfig));
+			}
+		}
+
 		if (commandLine.hasOption("csr")) {
 			if (config.getNodes() != null) {
 				for (Config.Node nodeConfig : config.getNodes()) {
-					tasks.add(new CreateNodeCsr(ctx, nodeConfig));
+					if (NodeRangeSource.isRange(nodeConfig)) {
+						tasks.add(ProcessConfigSource.forNodeRange(ctx, nodeConfig,
+								(expandedNodeConfig) -> new CreateNodeCsr(ctx, expandedNodeConfig)));
+					} else {
+						tasks.add(new CreateNodeCsr(ctx, nodeConfig));
+					}
 				}
 			}
 
@@ -194,10 +545,15 @@ public class SearchGuardTlsTool {
 				}
 			}
 
-		} else if (commandLine.hasOption("crt")) {
+		} else if (isCreatingCertificates()) {
 			if (config.getNodes() != null) {
 				for (Config.Node nodeConfig : config.getNodes()) {
-					tasks.add(new CreateNodeCertificate(ctx, nodeConfig));
+					if (NodeRangeSource.isRange(nodeConfig)) {
+						tasks.add(ProcessConfigSource.forNodeRange(ctx, nodeConfig,
+								(expandedNodeConfig) -> new CreateNodeCertificate(ctx, expandedNodeConfig)));
+					} else {
+						tasks.add(new CreateNodeCertificate(ctx, nodeConfig));
+					}
 				}
 			}
 
@@ -208,49 +564,75 @@ public class SearchGuardTlsTool {
 			}
 		}
 
-		for (Task task : tasks) {
-			log.debug("Executing: " + task);
-			task.run();
+		if (commandLine.hasOption("csr") || isCreatingCertificates()) {
+			addConfigSourceTasks(ctx, config, tasks);
 		}
 
-		ctx.getFileOutput().saveAllFiles();
+		if (commandLine.hasOption("scsr")) {
+			tasks.add(new SignCsr(ctx, new File(commandLine.getOptionValue("scsr"))));
+		}
 
-		if (CreateNodeCertificate.getGeneratedCertificateCount() > 0) {
-			log.info("Created " + CreateNodeCertificate.getGeneratedCertificateCount() + " node certificates.");
+		if (commandLine.hasOption("rev")) {
+			tasks.add(new RevokeCertificate(ctx, Arrays.asList(commandLine.getOptionValues("rev")),
+					commandLine.getOptionValue("rr")));
+		}
 
-			if (CreateNodeCertificate.isPasswordAutoGenerated()) {
-				log.info(
-						"Passwords for the private keys of the node certificates have been auto-generated. The passwords are stored in the config snippet files.");
-			}
+		if (commandLine.hasOption("crl")) {
+			tasks.add(new CreateCrl(ctx, config.getCa(), commandLine.hasOption("fcrl")));
 		}
 
-		if (CreateNodeCsr.getGeneratedCsrCount() > 0) {
-			log.info("Created " + CreateNodeCsr.getGeneratedCsrCount() + " node certificate signing requests.");
+		int availableProcessors = Runtime.getRuntime().availableProcessors();
+		int keyGenerationThreads = getIntOption("kt",
+				Math.min(availableProcessors, DEFAULT_MAX_KEY_GENERATION_THREADS));
 
-			if (CreateNodeCsr.isPasswordAutoGenerated()) {
-				log.info(
-						"Passwords for the private keys of the node certificates have been auto-generated. The passwords are stored in the config snippet files.");
-			}
+		ctx.setEncodingThreads(getIntOption("et", availableProcessors));
+		ctx.setQueueDepth(Math.max(1, getIntOption("qd", 16)));
+
+		// The stage starts generating only when the first key is requested
+		if (keyGenerationThreads > 0 && (commandLine.hasOption("csr")
+				|| (isCreatingCertificates() && !ctx.isReuseKeys() && !ctx.isResign()))) {
+			ctx.setKeyGenerationStage(new KeyGenerationStage(ctx.getSecurityProvider(), keyGenerationThreads,
+					ctx.getQueueDepth(), ctx.getTimings()));
 		}
 
-		if (CreateClientCertificate.getGeneratedCertificateCount() > 0) {
-			log.info("Created " + CreateClientCertificate.getGeneratedCertificateCount() + " client certificates.");
+		// The MXBean stays registered until the files are written and the inventory is updated
+		ObjectName metricsName = ctx.getMetrics().register();
 
-			if (CreateClientCertificate.isPasswordAutoGenerated()) {
-				log.info(
-						"Passwords for the private keys of the client certificates have been auto-generated. The passwords are stored in the file \"client-certificates.readme\"");
+		try {
+			try (OutputSink outputSink = createOutputSink(outputFormat, targetDirectory)) {
+				ctx.setOutputSink(outputSink);
+				runTasks(ctx, tasks);
+			} catch (IOException e) {
+				discardOutput(outputFormat);
+				throw new ToolException("Error while closing the output: " + e, e);
+			} catch (ToolException e) {
+				discardOutput(outputFormat);
+				throw e;
 			}
-		}
 
-		if (CreateClientCsr.getGeneratedCsrCount() > 0) {
-			log.info("Created " + CreateClientCsr.getGeneratedCsrCount() + " client certificate signing requests.");
+			if (!ctx.getIssuedCertificates().isEmpty()) {
+				CertificateInventory inventory = CertificateInventory.forTargetDirectory(targetDirectory);
 
-			if (CreateClientCsr.isPasswordAutoGenerated()) {
-				log.info(
-						"Passwords for the private keys of the client certificates have been auto-generated. The passwords are stored in the file \"client-certificates.readme\"");
+				try {
+					inventory.append(ctx.getIssuedCertificates());
+				} catch (IOException e) {
+					throw new ToolException("Error while updating inventory " + inventory.getDirectory() + ": " + e,
+							e);
+				}
 			}
+		} finally {
+			Metrics.unregister(metricsName);
+		}
+
+		if (commandLine.hasOption("iq")) {
+			new QueryInventory(ctx, commandLine.getOptionValue("iq")).run();
+		}
+
+		if (commandLine.hasOption("tm")) {
+			reportTimings(ctx.getTimings(), commandLine.getOptionValue("tm"));
 		}
 
+		logSummary(ctx.getMetrics());
 	}
 
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool;
+
+import java.security.PrivateKey;
+
+import org.bouncycastle.cert.X509CertificateHolder;
+
+/**
+ * An additional CA which signs certificates besides the CA configured in
+ * ca.root and ca.intermediate.
+ */
+public class SigningCa {
+	private final Config.Ca config;
+	private final X509CertificateHolder signingCertificate;
+	private final PrivateKey signingPrivateKey;
+	private final X509CertificateHolder rootCertificate;
+
+	public SigningCa(Config.Ca config, X509CertificateHolder signingCertificate, PrivateKey signingPrivateKey,
+			X509CertificateHolder rootCertificate) {
+		this.config = config;
+		this.signingCertificate = signingCertificate;
+		this.signingPrivateKey = signingPrivateKey;
+		this.rootCertificate = rootCertificate;
+	}
+
+	public String getName() {
+		return config.getName();
+	}
+
+	public Config.Ca getConfig() {
+		return config;
+	}
+
+	public X509CertificateHolder getSigningCertificate() {
+		return signingCertificate;
+	}
+
+	public PrivateKey getSigningPrivateKey() {
+		return signingPrivateKey;
+	}
+
+	public X509CertificateHolder getRootCertificate() {
+		return rootCertificate;
+	}
+
+	public boolean hasIntermediate() {
+		return config.getIntermediate() != null;
+	}
+
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Collects the durations of the phases of a run, like key generation, signing
+ * or PKCS#8 encryption. Count, total and maximum are exact. The percentiles are
+ * computed from a uniform sample of at most SAMPLE_SIZE durations per phase;
+ * thus, the memory used does not grow with the number of certificates.
+ * 
+ * Instances are thread-safe.
+ */
+public class Timings {
+	static final int SAMPLE_SIZE = 4096;
+
+	private final Map<String, Durations> phases = new LinkedHashMap<>();
+
+	/**
+	 * Starts measuring the given phase. The measurement ends when the returned
+	 * timer is closed.
+	 */
+	public Timer start(String phase) {
+		return new Timer(phase, System.nanoTime());
+	}
+
+	public void record(String phase, long nanos) {
+		Durations durations;
+
+		synchronized (phases) {
+			durations = phases.computeIfAbsent(phase, (k) -> new Durations());
+		}
+
+		durations.add(nanos);
+	}
+
+	public List<PhaseStatistics> getStatistics() {
+		List<Map.Entry<String, Durations>> entries;
+
+		synchronized (phases) {
+			entries = new ArrayList<>(phases.entrySet());
+		}
+
+		List<PhaseStatistics> result = new ArrayList<>(entries.size());
+
+		for (Map.Entry<String, Durations> entry : entries) {
+			result.add(entry.getValue().getStatistics(entry.getKey()));
+		}
+
+		return result;
+	}
+
+	public String toTable() {
+		StringBuilder result = new StringBuilder(String.format(Locale.ROOT, "%-28s %8s %12s %10s %10s %10s\n",
+				"Phase", "Count", "Total ms", "p50 ms", "p95 ms", "Max ms"));
+
+		for (PhaseStatistics statistics : getStatistics()) {
+			result.append(String.format(Locale.ROOT, "%-28s %8d %12.1f %10.3f %10.3f %10.3f\n",
+					statistics.getPhase(), statistics.getCount(), statistics.getTotalMillis(),
+					statistics.getP50Millis(), statistics.getP95Millis(), statistics.getMaxMillis()));
+		}
+
+		return result.toString();
+	}
+
+	public String toJson() {
+		try {
+			return new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(getStatistics());
+		} catch (JsonProcessingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public class Timer implements AutoCloseable {
+		private final String phase;
+		private final long start;
+
+		Timer(String phase, long start) {
+			this.phase = phase;
+			this.start = start;
+		}
+
+		@Override
+		public void close() {
+			record(phase, System.nanoTime() - start);
+		}
+	}
+
+	public static class PhaseStatistics {
+		private final String phase;
+		private final int count;
+		private final long totalNanos;
+		private final long p50Nanos;
+		private final long p95Nanos;
+		private final long maxNanos;
+
+		PhaseStatistics(String phase, int count, long totalNanos, long p50Nanos, long p95Nanos, long maxNanos) {
+			this.phase = phase;
+			this.count = count;
+			this.totalNanos = totalNanos;
+			this.p50Nanos = p50Nanos;
+			this.p95Nanos = p95Nanos;
+			this.maxNanos = maxNanos;
+		}
+
+		public String getPhase() {
+			return phase;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		public double getTotalMillis() {
+			return totalNanos / 1e6;
+		}
+
+		public double getP50Millis() {
+			return p50Nanos / 1e6;
+		}
+
+		public double getP95Millis() {
+			return p95Nanos / 1e6;
+		}
+
+		public double getMaxMillis() {
+			return maxNanos / 1e6;
+		}
+	}
+
+	/**
+	 * Keeps a reservoir sample of the durations (algorithm R).
+	 */
+	private static class Durations {
+		private final long[] sample = new long[SAMPLE_SIZE];
+		private int count;
+		private long total;
+		private long max;
+
+		synchronized void add(long nanos) {
+			if (count < sample.length) {
+				sample[count] = nanos;
+			} else {
+				long index = ThreadLocalRandom.current().nextLong(count + 1L);
+
+				if (index < sample.length) {
+					sample[(int) index] = nanos;
+				}
+			}
+
+			count++;
+			total += nanos;
+			max = Math.max(max, nanos);
+		}
+
+		synchronized PhaseStatistics getStatistics(String phase) {
+			long[] sorted = Arrays.copyOf(sample, Math.min(count, sample.length));
+			Arrays.sort(sorted);
+
+			return new PhaseStatistics(phase, count, total, percentile(sorted, 0.5), percentile(sorted, 0.95), max);
+		}
+
+		/**
+		 * Nearest-rank percentile
+		 */
+		private static long percentile(long[] sorted, double percentile) {
+			if (sorted.length == 0) {
+				return 0;
+			}
+
+			int rank = (int) Math.ceil(percentile * sorted.length);
+
+			return sorted[Math.max(rank, 1) - 1];
+		}
+	}
+}
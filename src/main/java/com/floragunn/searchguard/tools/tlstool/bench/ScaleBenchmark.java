@@ -0,0 +1,386 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.floragunn.searchguard.tools.tlstool.Config;
+import com.floragunn.searchguard.tools.tlstool.Context;
+import com.floragunn.searchguard.tools.tlstool.KeyGenerationStage;
+import com.floragunn.searchguard.tools.tlstool.ToolException;
+import com.floragunn.searchguard.tools.tlstool.inventory.CertificateInventory;
+import com.floragunn.searchguard.tools.tlstool.tasks.CreateCa;
+import com.floragunn.searchguard.tools.tlstool.tasks.CreateClientCertificate;
+import com.floragunn.searchguard.tools.tlstool.tasks.CreateNodeCertificate;
+import com.floragunn.searchguard.tools.tlstool.tasks.Task;
+import com.floragunn.searchguard.tools.tlstool.tasks.ValidateConfig;
+
+/**
+ * Runs the complete certificate issuance for a synthetic config with the given
+ * number of nodes and clients. The files are written to a temporary directory,
+ * which is deleted afterwards. Reports the throughput, the wall time of each
+ * phase, the peak heap usage and the GC time.
+ * 
+ * Invoked by: sgtlstool.sh bench [options]
+ */
+public class ScaleBenchmark {
+	private static final Logger log = LogManager.getLogger(ScaleBenchmark.class);
+
+	private final int nodeCount;
+	private final int clientCount;
+	private final boolean intermediate;
+	private final boolean httpsEnabled;
+	private final boolean autoPasswords;
+	private final int keySize;
+	private final int keyGenerationThreads;
+	private final int encodingThreads;
+	private final boolean keepFiles;
+
+	private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+
+	public ScaleBenchmark(int nodeCount, int clientCount, boolean intermediate, boolean httpsEnabled,
+			boolean autoPasswords, int keySize, int keyGenerationThreads, int encodingThreads, boolean keepFiles) {
+		this.nodeCount = nodeCount;
+		this.clientCount = clientCount;
+		this.intermediate = intermediate;
+		this.httpsEnabled = httpsEnabled;
+		this.autoPasswords = autoPasswords;
+		this.keySize = keySize;
+		this.keyGenerationThreads = keyGenerationThreads;
+		this.encodingThreads = encodingThreads;
+		this.keepFiles = keepFiles;
+	}
+
+	public static void main(String[] args) throws ToolException {
+		Options options = new Options();
+		options.addOption(Option.builder("n").longOpt("nodes").hasArg().desc("Number of nodes. Default: 100").build());
+		options.addOption(
+				Option.builder("m").longOpt("clients").hasArg().desc("Number of clients. Default: 10").build());
+		options.addOption(Option.builder("i").longOpt("intermediate")
+				.desc("Use an intermediate CA for signing the certificates").build());
+		options.addOption(
+				Option.builder("https").longOpt("https").desc("Create HTTP certificates for the nodes").build());
+		options.addOption(Option.builder("ap").longOpt("auto-passwords")
+				.desc("Encrypt the private keys with auto-generated passwords").build());
+		options.addOption(
+				Option.builder("ks").longOpt("keysize").hasArg().desc("Size of the keys in bits. Default: 2048").build());
+		options.addOption(Option.builder("kt").longOpt("keygen-threads").hasArg()
+				.desc("Number of key generation threads. Default: number of processors").build());
+		options.addOption(Option.builder("et").longOpt("encode-threads").hasArg()
+				.desc("Number of encoding threads. Default: number of processors").build());
+		options.addOption(Option.builder("k").longOpt("keep").desc("Keep the generated files").build());
+
+		CommandLine commandLine;
+
+		try {
+			CommandLineParser parser = new DefaultParser();
+			commandLine = parser.parse(options, args);
+		} catch (ParseException e) {
+			new HelpFormatter().printHelp("sgtlstool.sh bench", options, true);
+			System.exit(1);
+			return;
+		}
+
+		int availableProcessors = Runtime.getRuntime().availableProcessors();
+
+		new ScaleBenchmark(getIntOption(commandLine, "n", 100), getIntOption(commandLine, "m", 10),
+				commandLine.hasOption("i"), commandLine.hasOption("https"), commandLine.hasOption("ap"),
+				getIntOption(commandLine, "ks", 2048), getIntOption(commandLine, "kt", availableProcessors),
+				getIntOption(commandLine, "et", availableProcessors), commandLine.hasOption("k")).run();
+	}
+
+	public Result run() throws ToolException {
+		File targetDirectory;
+
+		try {
+			targetDirectory = Files.createTempDirectory("sgtlstool-bench").toFile();
+		} catch (IOException e) {
+			throw new ToolException("Could not create temporary directory: " + e, e);
+		}
+
+		try {
+			return run(targetDirectory);
+		} finally {
+			if (keepFiles) {
+				log.info("Generated files are in " + targetDirectory);
+			} else {
+				FileUtils.deleteQuietly(targetDirectory);
+			}
+		}
+	}
+
+	private Result run(File targetDirectory) throws ToolException {
+		List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+				heapPools.add(pool);
+			}
+		}
+
+		long gcTimeBefore = getGcTimeMillis();
+		long start = System.nanoTime();
+
+		Context ctx = phase("config", () -> createContext(targetDirectory));
+		Security.addProvider(ctx.getSecurityProvider());
+		Config config = ctx.getConfig();
+
+		if (keyGenerationThreads > 0) {
+			ctx.setKeyGenerationStage(new KeyGenerationStage(ctx.getSecurityProvider(), keyGenerationThreads,
+					ctx.getQueueDepth(), ctx.getTimings()));
+			ctx.getKeyGenerationStage().prepare(keySize);
+		}
+
+		// As in sgtlstool, the files are written while the certificates are created
+		ctx.getFileOutput().startWriting();
+
+		try {
+			phase("validate", () -> run(new ValidateConfig(ctx, false)));
+			phase("ca", () -> run(new CreateCa(ctx, config.getCa())));
+			phase("nodes", () -> {
+				for (Config.Node node : config.getNodes()) {
+					new CreateNodeCertificate(ctx, node).run();
+					ctx.getFileOutput().flush();
+				}
+				return null;
+			});
+			phase("clients", () -> {
+				for (Config.Client client : config.getClients()) {
+					new CreateClientCertificate(ctx, client).run();
+					ctx.getFileOutput().flush();
+				}
+				return null;
+			});
+		} catch (ToolException | RuntimeException e) {
+			ctx.getFileOutput().abort();
+			throw e;
+		} finally {
+			if (ctx.getKeyGenerationStage() != null) {
+				ctx.getKeyGenerationStage().close();
+			}
+		}
+
+		phase("write", () -> {
+			ctx.getFileOutput().saveAllFiles();
+			return null;
+		});
+		phase("inventory", () -> {
+			try {
+				CertificateInventory.forTargetDirectory(targetDirectory).append(ctx.getIssuedCertificates());
+			} catch (IOException e) {
+				throw new ToolException("Error while writing inventory: " + e, e);
+			}
+			return null;
+		});
+
+		long totalNanos = System.nanoTime() - start;
+		long peakHeapBytes = 0;
+
+		for (MemoryPoolMXBean pool : heapPools) {
+			peakHeapBytes += pool.getPeakUsage().getUsed();
+		}
+
+		int certificateCount = (int) ctx.getMetrics().getCertificatesCreated();
+		Result result = new Result(certificateCount, totalNanos, phaseNanos, peakHeapBytes,
+				getGcTimeMillis() - gcTimeBefore);
+
+		log.info(result.toString());
+		log.info("Timings:\n" + ctx.getTimings().toTable());
+
+		return result;
+	}
+
+	private Context createContext(File targetDirectory) {
+		Config config = new Config();
+		Config.Defaults defaults = new Config.Defaults();
+		Config.Ca caConfig = new Config.Ca();
+		Config.Ca.Certificate root = new Config.Ca.Certificate();
+
+		defaults.setKeysize(keySize);
+		defaults.setHttpsEnabled(httpsEnabled);
+		defaults.setPkPassword(autoPasswords ? "auto" : "none");
+		defaults.setNodesDn(Collections.singletonList("CN=*.bench.example.com,OU=Bench,O=Example Com,DC=example,DC=com"));
+
+		root.setDn("CN=root.ca.bench.example.com,OU=CA,O=Example Com,DC=example,DC=com");
+		caConfig.setRoot(root);
+
+		if (intermediate) {
+			Config.Ca.Certificate intermediateCertificate = new Config.Ca.Certificate();
+			intermediateCertificate.setDn("CN=signing.ca.bench.example.com,OU=CA,O=Example Com,DC=example,DC=com");
+			caConfig.setIntermediate(intermediateCertificate);
+		}
+
+		List<Config.Node> nodes = new ArrayList<>(nodeCount);
+
+		for (int i = 0; i < nodeCount; i++) {
+			Config.Node node = new Config.Node();
+			String name = String.format("node%05d", i);
+			node.setName(name);
+			node.setDn("CN=" + name + ".bench.example.com,OU=Bench,O=Example Com,DC=example,DC=com");
+			node.setDns(Arrays.asList(name + ".bench.example.com"));
+			node.setIp(Arrays.asList("10." + ((i >> 16) & 0xff) + "." + ((i >> 8) & 0xff) + "." + (i & 0xff)));
+			nodes.add(node);
+		}
+
+		List<Config.Client> clients = new ArrayList<>(clientCount);
+
+		for (int i = 0; i < clientCount; i++) {
+			Config.Client client = new Config.Client();
+			String name = String.format("client%05d", i);
+			client.setName(name);
+			client.setDn("CN=" + name + ",OU=Bench,O=Example Com,DC=example,DC=com");
+			client.setAdmin(i == 0);
+			clients.add(client);
+		}
+
+		config.setDefaults(defaults);
+		config.setCa(caConfig);
+		config.setNodes(nodes);
+		config.setClients(clients);
+		config.applyDefaults();
+
+		Context ctx = new Context();
+		ctx.setConfig(config);
+		ctx.setTargetDirectory(targetDirectory);
+		ctx.setEncodingThreads(encodingThreads);
+
+		return ctx;
+	}
+
+	private Void run(Task task) throws ToolException {
+		task.run();
+		return null;
+	}
+
+	private <T> T phase(String name, Phase<T> phase) throws ToolException {
+		long start = System.nanoTime();
+
+		try {
+			return phase.run();
+		} finally {
+			phaseNanos.put(name, System.nanoTime() - start);
+		}
+	}
+
+	private static long getGcTimeMillis() {
+		long result = 0;
+
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			result += Math.max(0, gc.getCollectionTime());
+		}
+
+		return result;
+	}
+
+	private static int getIntOption(CommandLine commandLine, String option, int defaultValue) throws ToolException {
+		if (!commandLine.hasOption(option)) {
+			return defaultValue;
+		}
+
+		try {
+			return Integer.parseInt(commandLine.getOptionValue(option));
+		} catch (NumberFormatException e) {
+			throw new ToolException("Invalid value for -" + option + ": " + commandLine.getOptionValue(option));
+		}
+	}
+
+	@FunctionalInterface
+	private interface Phase<T> {
+		T run() throws ToolException;
+	}
+
+	public static class Result {
+		private final int certificateCount;
+		private final long totalNanos;
+		private final Map<String, Long> phaseNanos;
+		private final long peakHeapBytes;
+		private final long gcTimeMillis;
+
+		Result(int certificateCount, long totalNanos, Map<String, Long> phaseNanos, long peakHeapBytes,
+				long gcTimeMillis) {
+			this.certificateCount = certificateCount;
+			this.totalNanos = totalNanos;
+			this.phaseNanos = new LinkedHashMap<>(phaseNanos);
+			this.peakHeapBytes = peakHeapBytes;
+			this.gcTimeMillis = gcTimeMillis;
+		}
+
+		public int getCertificateCount() {
+			return certificateCount;
+		}
+
+		public double getCertificatesPerSecond() {
+			return totalNanos > 0 ? certificateCount / (totalNanos / 1e9) : 0;
+		}
+
+		public Map<String, Long> getPhaseNanos() {
+			return phaseNanos;
+		}
+
+		public long getPeakHeapBytes() {
+			return peakHeapBytes;
+		}
+
+		public long getGcTimeMillis() {
+			return gcTimeMillis;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder result = new StringBuilder();
+
+			result.append(String.format(Locale.ROOT, "Issued %d certificates in %.3f s (%.1f certificates/s)\n",
+					certificateCount, totalNanos / 1e9, getCertificatesPerSecond()));
+
+			for (Map.Entry<String, Long> entry : phaseNanos.entrySet()) {
+				result.append(String.format(Locale.ROOT, "  %-10s %10.3f s\n", entry.getKey(), entry.getValue() / 1e9));
+			}
+
+			result.append(String.format(Locale.ROOT, "Peak heap: %.1f MB\n", peakHeapBytes / (1024.0 * 1024.0)));
+			result.append(String.format(Locale.ROOT, "GC time: %d ms", gcTimeMillis));
+
+			return result.toString();
+		}
+	}
+}
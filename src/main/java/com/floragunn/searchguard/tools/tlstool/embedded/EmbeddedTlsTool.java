@@ -0,0 +1,194 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.embedded;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.Security;
+import java.security.cert.CertificateException;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import com.floragunn.searchguard.tools.tlsdiag.report.ValidationReport;
+import com.floragunn.searchguard.tools.tlsdiag.tasks.ValidateCert;
+import com.floragunn.searchguard.tools.tlstool.Config;
+import com.floragunn.searchguard.tools.tlstool.Context;
+import com.floragunn.searchguard.tools.tlstool.ToolException;
+import com.floragunn.searchguard.tools.tlstool.output.MemorySink;
+import com.floragunn.searchguard.tools.tlstool.source.NodeRangeSource;
+import com.floragunn.searchguard.tools.tlstool.tasks.CreateClientCertificate;
+import com.floragunn.searchguard.tools.tlstool.tasks.CreateClientCsr;
+import com.floragunn.searchguard.tools.tlstool.tasks.CreateNodeCertificate;
+import com.floragunn.searchguard.tools.tlstool.tasks.CreateNodeCsr;
+import com.floragunn.searchguard.tools.tlstool.tasks.LoadAdditionalCa;
+import com.floragunn.searchguard.tools.tlstool.tasks.LoadCa;
+import com.floragunn.searchguard.tools.tlstool.tasks.ProcessConfigSource;
+import com.floragunn.searchguard.tools.tlstool.tasks.Task;
+import com.floragunn.searchguard.tools.tlstool.tasks.ValidateConfig;
+import com.floragunn.searchguard.tools.util.PemFileUtils;
+
+/**
+ * In-process API for issuing certificates, creating CSRs and validating
+ * certificate chains. It runs the same tasks as sgtlstool, but returns the
+ * resulting files instead of writing them, and reports errors only by
+ * ToolException.
+ * 
+ * Each call uses its own context. Thus, an instance can be shared by the threads
+ * of a long-lived application. The node and client configs passed to a call are
+ * completed with the defaults; they must not be used by concurrent calls.
+ */
+public class EmbeddedTlsTool {
+
+	static {
+		Security.addProvider(new BouncyCastleProvider());
+	}
+
+	private final Config.Ca caConfig;
+	private final Config.Defaults defaults;
+	private final File caDirectory;
+
+	/**
+	 * @param config
+	 *            provides the ca and defaults sections; nodes and clients are
+	 *            ignored
+	 * @param caDirectory
+	 *            the directory the CA files are read from; this corresponds to
+	 *            the target directory of sgtlstool. Nothing is written to it.
+	 */
+	public EmbeddedTlsTool(Config config, File caDirectory) {
+		config.applyDefaults();
+
+		this.caConfig = config.getCa();
+		this.defaults = config.getDefaults();
+		this.caDirectory = caDirectory;
+	}
+
+	public IssuanceResult createCertificates(List<Config.Node> nodes, List<Config.Client> clients)
+			throws ToolException {
+		return run(nodes, clients, false);
+	}
+
+	public IssuanceResult createCsrs(List<Config.Node> nodes, List<Config.Client> clients) throws ToolException {
+		return run(nodes, clients, true);
+	}
+
+	/**
+	 * Validates a certificate chain.
+	 * 
+	 * @param certificateChainPem
+	 *            PEM or DER encoded certificates; the first one is validated, the
+	 *            others may be used as intermediate certificates
+	 * @param trustedCasPem
+	 *            PEM or DER encoded trust anchors
+	 */
+	public static ValidationReport validateChain(byte[] certificateChainPem, byte[] trustedCasPem)
+			throws ToolException {
+		List<X509Certificate> certificates = readCertificates(certificateChainPem, "certificate chain");
+		Set<TrustAnchor> trustAnchors = new HashSet<>();
+
+		for (X509Certificate trustedCa : readCertificates(trustedCasPem, "trusted CAs")) {
+			trustAnchors.add(new TrustAnchor(trustedCa, null));
+		}
+
+		return ValidateCert.validate(trustAnchors, certificates, "certificate chain", null);
+	}
+
+	private IssuanceResult run(List<Config.Node> nodes, List<Config.Client> clients, boolean csr)
+			throws ToolException {
+		Config config = new Config();
+		config.setCa(caConfig);
+		config.setDefaults(defaults);
+		config.setNodes(nodes != null ? nodes : Collections.emptyList());
+		config.setClients(clients != null ? clients : Collections.emptyList());
+
+		for (Config.Node node : config.getNodes()) {
+			node.applyDefaults(defaults);
+		}
+
+		for (Config.Client client : config.getClients()) {
+			client.applyDefaults(defaults);
+		}
+
+		Context ctx = new Context();
+		ctx.setConfig(config);
+		ctx.setTargetDirectory(caDirectory);
+		// Existing files in the CA directory are never touched; thus, there is nothing to protect
+		ctx.setOverwrite(true);
+
+		List<Task> tasks = new ArrayList<>();
+
+		tasks.add(new ValidateConfig(ctx, !csr));
+
+		if (!csr) {
+			tasks.add(new LoadCa(ctx, caConfig));
+
+			if (caConfig.getAdditional() != null) {
+				for (Config.Ca additionalCaConfig : caConfig.getAdditional()) {
+					tasks.add(new LoadAdditionalCa(ctx, additionalCaConfig));
+				}
+			}
+		}
+
+		for (Config.Node nodeConfig : config.getNodes()) {
+			if (NodeRangeSource.isRange(nodeConfig)) {
+				tasks.add(ProcessConfigSource.forNodeRange(ctx, nodeConfig,
+						(expandedNodeConfig) -> csr ? new CreateNodeCsr(ctx, expandedNodeConfig)
+								: new CreateNodeCertificate(ctx, expandedNodeConfig)));
+			} else {
+				tasks.add(csr ? new CreateNodeCsr(ctx, nodeConfig) : new CreateNodeCertificate(ctx, nodeConfig));
+			}
+		}
+
+		for (Config.Client clientConfig : config.getClients()) {
+			tasks.add(csr ? new CreateClientCsr(ctx, clientConfig) : new CreateClientCertificate(ctx, clientConfig));
+		}
+
+		for (Task task : tasks) {
+			task.run();
+		}
+
+		MemorySink memorySink = new MemorySink(caDirectory);
+		ctx.setOutputSink(memorySink);
+		ctx.getFileOutput().saveAllFiles();
+
+		return new IssuanceResult(memorySink.getFiles(), ctx.getIssuedCertificates(), ctx.getMetrics().getCounters());
+	}
+
+	private static List<X509Certificate> readCertificates(byte[] pem, String name) throws ToolException {
+		List<X509Certificate> result;
+
+		try {
+			result = PemFileUtils.readCertificates(pem);
+		} catch (IOException | CertificateException e) {
+			throw new ToolException("Error while reading " + name + ": " + e, e);
+		}
+
+		if (result.isEmpty()) {
+			throw new ToolException("No certificates were found in " + name);
+		}
+
+		return result;
+	}
+}
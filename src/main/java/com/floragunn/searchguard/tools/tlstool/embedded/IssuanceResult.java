@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.embedded;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.floragunn.searchguard.tools.tlstool.inventory.InventoryRecord;
+
+/**
+ * The result of an {@link EmbeddedTlsTool} call. The files are identified by the
+ * names sgtlstool would use in its target directory.
+ */
+public class IssuanceResult {
+	private final Map<String, byte[]> files;
+	private final List<InventoryRecord> issuedCertificates;
+	private final Map<String, Long> counters;
+
+	IssuanceResult(Map<String, byte[]> files, List<InventoryRecord> issuedCertificates, Map<String, Long> counters) {
+		this.files = Collections.unmodifiableMap(new LinkedHashMap<>(files));
+		this.issuedCertificates = Collections.unmodifiableList(issuedCertificates);
+		this.counters = Collections.unmodifiableMap(counters);
+	}
+
+	/**
+	 * The created files, like certificates, private keys and config snippets, in
+	 * the order they were created.
+	 */
+	public Map<String, byte[]> getFiles() {
+		return files;
+	}
+
+	public byte[] getFile(String name) {
+		return files.get(name);
+	}
+
+	public String getFileAsString(String name) {
+		byte[] content = files.get(name);
+
+		return content != null ? new String(content, StandardCharsets.UTF_8) : null;
+	}
+
+	/**
+	 * The inventory records of the issued certificates. As nothing is written to
+	 * disk, these are not added to any inventory.
+	 */
+	public List<InventoryRecord> getIssuedCertificates() {
+		return issuedCertificates;
+	}
+
+	/**
+	 * The counters of the call; see {@link com.floragunn.searchguard.tools.tlstool.Metrics}
+	 */
+	public Map<String, Long> getCounters() {
+		return counters;
+	}
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.inventory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Records the certificates issued by sgtlstool. The records are kept in an
+ * append-only log file (one JSON record per line). Sorted index files map the
+ * serial number, the SHA-256 fingerprint, the subject DN and the expiry date of
+ * each certificate to the position of its record in the log. Thus, lookups only
+ * need a binary search in the respective index file and then read the matching
+ * records; their cost grows logarithmically with the number of records.
+ * Appending rewrites each index file once.
+ */
+public class CertificateInventory {
+	public static final String DIRECTORY_NAME = "inventory";
+
+	private static final ObjectMapper objectMapper = new ObjectMapper();
+	private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+	enum IndexType {
+		SERIAL("serial.idx", InventoryRecord::getSerial),
+		FINGERPRINT("fingerprint.idx", InventoryRecord::getSha256Fingerprint),
+		DN("dn.idx", (record) -> InventoryRecord.normalizeDn(record.getSubjectDn())),
+		EXPIRY("expiry.idx", (record) -> InventoryRecord.normalizeExpiry(record.getNotAfter()));
+
+		private final String fileName;
+		private final Function<InventoryRecord, String> keyFunction;
+
+		IndexType(String fileName, Function<InventoryRecord, String> keyFunction) {
+			this.fileName = fileName;
+			this.keyFunction = keyFunction;
+		}
+	}
+
+	private final File directory;
+	private final File logFile;
+	private final Map<IndexType, InventoryIndex> indexes = new EnumMap<>(IndexType.class);
+	private long indexedLogSize = -1;
+
+	public CertificateInventory(File directory) {
+		this.directory = directory;
+		this.logFile = new File(directory, "certificates.jsonl");
+	}
+
+	public static CertificateInventory forTargetDirectory(File targetDirectory) {
+		return new CertificateInventory(new File(targetDirectory, DIRECTORY_NAME));
+	}
+
+	public synchronized void append(List<InventoryRecord> records) throws IOException {
+		if (records.isEmpty()) {
+			return;
+		}
+
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Could not create directory " + directory);
+		}
+
+		ensureIndexesLoaded();
+
+		long offset = logFile.length();
+		long[] offsets = new long[records.size()];
+
+		try (OutputStream out = new FileOutputStream(logFile, true)) {
+			for (int i = 0; i < records.size(); i++) {
+				byte[] line = objectMapper.writeValueAsBytes(records.get(i));
+
+				out.write(line);
+				out.write('\n');
+				offsets[i] = offset;
+				offset += line.length + 1;
+			}
+		}
+
+		for (IndexType indexType : IndexType.values()) {
+			String[] keys = new String[records.size()];
+
+			for (int i = 0; i < keys.length; i++) {
+				keys[i] = indexType.keyFunction.apply(records.get(i));
+			}
+
+			indexes.put(indexType, InventoryIndex.merge(indexes.get(indexType), keys, offsets,
+					new File(directory, indexType.fileName), offset));
+		}
+
+		indexedLogSize = offset;
+	}
+
+	public List<InventoryRecord> findBySerial(BigInteger serial) throws IOException {
+		return find(IndexType.SERIAL, InventoryRecord.normalizeSerial(serial));
+	}
+
+	public List<InventoryRecord> findByFingerprint(String fingerprint) throws IOException {
+		return find(IndexType.FINGERPRINT, InventoryRecord.normalizeFingerprint(fingerprint));
+	}
+
+	public List<InventoryRecord> findBySubjectDn(String dn) throws IOException {
+		return find(IndexType.DN, InventoryRecord.normalizeDn(dn));
+	}
+
+	/**
+	 * Returns the records of all certificates with from <= notAfter < to, ordered
+	 * by notAfter.
+	 */
+	public synchronized List<InventoryRecord> findExpiringBetween(long from, long to) throws IOException {
+		ensureIndexesLoaded();
+
+		return readRecords(indexes.get(IndexType.EXPIRY).findRange(InventoryRecord.normalizeExpiry(from),
+				InventoryRecord.normalizeExpiry(to)));
+	}
+
+	public List<InventoryRecord> findExpiringWithin(int days) throws IOException {
+		long now = System.currentTimeMillis();
+		return findExpiringBetween(now, now + days * DAY_MILLIS);
+	}
+
+	/**
+	 * Executes a query of the form serial:SERIAL, fingerprint:SHA256, dn:DN,
+	 * expires-within:DAYS, expired or all. Serials may be decimal or hex prefixed
+	 * with 0x.
+	 */
+	public List<InventoryRecord> query(String query) throws IOException {
+		int separator = query.indexOf(':');
+		String type = separator != -1 ? query.substring(0, separator).trim() : query.trim();
+		String argument = separator != -1 ? query.substring(separator + 1).trim() : null;
+
+		try {
+			switch (type) {
+			case "serial":
+				return findBySerial(parseSerial(argument));
+			case "fingerprint":
+				return findByFingerprint(argument);
+			case "dn":
+				return findBySubjectDn(argument);
+			case "expires-within":
+				return findExpiringWithin(Integer.parseInt(argument));
+			case "expired":
+				return findExpiringBetween(0, System.currentTimeMillis());
+			case "all":
+				return findExpiringBetween(0, Long.MAX_VALUE / 2);
+			default:
+				throw new IllegalArgumentException("Unknown inventory query: " + query
+						+ ". Use serial:SERIAL, fingerprint:SHA256, dn:DN, expires-within:DAYS, expired or all");
+			}
+		} catch (NullPointerException | NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid inventory query: " + query, e);
+		}
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	private synchronized List<InventoryRecord> find(IndexType indexType, String key) throws IOException {
+		ensureIndexesLoaded();
+
+		return readRecords(indexes.get(indexType).find(key));
+	}
+
+	private void ensureIndexesLoaded() throws IOException {
+		long logSize = logFile.length();
+
+		if (logSize == indexedLogSize) {
+			return;
+		}
+
+		boolean complete = true;
+
+		for (IndexType indexType : IndexType.values()) {
+			InventoryIndex index = InventoryIndex.open(new File(directory, indexType.fileName), logSize);
+
+			if (index == null) {
+				complete = false;
+				break;
+			}
+
+			indexes.put(indexType, index);
+		}
+
+		if (!complete) {
+			rebuildIndexes(logSize);
+		}
+
+		indexedLogSize = logSize;
+	}
+
+	/**
+	 * Reads the whole log and writes new index files. This is only necessary if
+	 * the index files are missing, have been left in an inconsistent state or
+	 * have been written by an older version.
+	 */
+	private void rebuildIndexes(long logSize) throws IOException {
+		List<InventoryRecord> records = new ArrayList<>();
+		List<Long> offsetList = new ArrayList<>();
+
+		if (logFile.exists()) {
+			byte[] log = Files.readAllBytes(logFile.toPath());
+			int start = 0;
+
+			for (int i = 0; i < log.length; i++) {
+				if (log[i] == '\n') {
+					if (i > start) {
+						records.add(objectMapper.readValue(log, start, i - start, InventoryRecord.class));
+						offsetList.add((long) start);
+					}
+
+					start = i + 1;
+				}
+			}
+		}
+
+		long[] offsets = offsetList.stream().mapToLong(Long::longValue).toArray();
+
+		for (IndexType indexType : IndexType.values()) {
+			if (!directory.exists()) {
+				indexes.put(indexType, InventoryIndex.empty());
+				continue;
+			}
+
+			String[] keys = records.stream().map(indexType.keyFunction).toArray(String[]::new);
+			indexes.put(indexType, InventoryIndex.merge(InventoryIndex.empty(), keys, offsets,
+					new File(directory, indexType.fileName), logSize));
+		}
+	}
+
+	private List<InventoryRecord> readRecords(long[] offsets) throws IOException {
+		List<InventoryRecord> result = new ArrayList<>(offsets.length);
+
+		if (offsets.length == 0) {
+			return result;
+		}
+
+		try (RandomAccessFile file = new RandomAccessFile(logFile, "r")) {
+			byte[] buffer = new byte[4096];
+
+			for (long offset : offsets) {
+				file.seek(offset);
+				ByteArrayOutputStream line = new ByteArrayOutputStream();
+				int read;
+
+				outer: while ((read = file.read(buffer)) > 0) {
+					for (int i = 0; i < read; i++) {
+						if (buffer[i] == '\n') {
+							line.write(buffer, 0, i);
+							break outer;
+						}
+					}
+
+					line.write(buffer, 0, read);
+				}
+
+				result.add(objectMapper.readValue(new String(line.toByteArray(), StandardCharsets.UTF_8),
+						InventoryRecord.class));
+			}
+		}
+
+		return result;
+	}
+
+	private static BigInteger parseSerial(String serial) {
+		if (serial.startsWith("0x") || serial.startsWith("0X")) {
+			return new BigInteger(serial.substring(2), 16);
+		} else {
+			return new BigInteger(serial);
+		}
+	}
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.floragunn.searchguard.tools.tlstool.inventory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * A sorted on-disk index which maps keys to offsets in the inventory log. The
+ * first line of the file records the format version and the size of the log at
+ * the time the index was written; an index which does not match the current
+ * version or log size is stale and gets rebuilt. The second line holds the
+ * number of entries.
+ * 
+ * Each following line consists of a key, a tab and an offset. The lines are
+ * sorted by key. Lookups do a binary search on the byte positions of the file:
+ * Each step seeks to the middle of the remaining range and reads the first line
+ * starting there. Thus, a lookup reads O(log n) lines and the index is never
+ * loaded into memory. Appending merges the new entries into a new file, which
+ * reads the existing index once.
+ */
+class InventoryIndex {
+	/**
+	 * Must be increased if the format of the keys or of the file changes.
+	 */
+	private static final int VERSION = 3;
+	private static final String SIZE_HEADER = "# version=" + VERSION + " log_size=";
+	private static final int BUFFER_SIZE = 4096;
+
+	private final File file;
+	private final long dataStart;
+	private final int size;
+
+	private InventoryIndex(File file, long dataStart, int size) {
+		this.file = file;
+		this.dataStart = dataStart;
+		this.size = size;
+	}
+
+	/**
+	 * An index without entries, which has no file.
+	 */
+	static InventoryIndex empty() {
+		return new InventoryIndex(null, 0, 0);
+	}
+
+	/**
+	 * Reads the header of the index. Returns null if the index does not exist or
+	 * does not match the given log size.
+	 */
+	static InventoryIndex open(File file, long logSize) throws IOException {
+		if (!file.exists()) {
+			return null;
+		}
+
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+			Line header = readLine(randomAccessFile, 0);
+
+			if (header == null || !header.text.equals(SIZE_HEADER + logSize)) {
+				return null;
+			}
+
+			Line count = readLine(randomAccessFile, header.next);
+
+			if (count == null) {
+				return null;
+			}
+
+			return new InventoryIndex(file, count.next, Integer.parseInt(count.text));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Writes a new index file containing the entries of the given index and the
+	 * given entries. Entries with equal keys stay in log order.
+	 */
+	static InventoryIndex merge(InventoryIndex index, String[] newKeys, long[] newOffsets, File file, long logSize)
+			throws IOException {
+		Integer[] order = new Integer[newKeys.length];
+
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+
+		Arrays.sort(order, (a, b) -> {
+			int result = newKeys[a].compareTo(newKeys[b]);
+			return result != 0 ? result : Long.compare(newOffsets[a], newOffsets[b]);
+		});
+
+		File tempFile = new File(file.getPath() + ".tmp");
+		int count = index.size + newKeys.length;
+		long dataStart;
+
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempFile.toPath()));
+				Reader reader = index.new Reader(index.dataStart)) {
+			byte[] header = (SIZE_HEADER + logSize + "\n" + count + "\n").getBytes(StandardCharsets.UTF_8);
+			out.write(header);
+			dataStart = header.length;
+
+			Line line = reader.next();
+			int j = 0;
+
+			while (line != null || j < order.length) {
+				if (j >= order.length || (line != null && line.getKey().compareTo(newKeys[order[j]]) <= 0)) {
+					write(out, line.getKey(), line.getOffset());
+					line = reader.next();
+				} else {
+					write(out, newKeys[order[j]], newOffsets[order[j++]]);
+				}
+			}
+		}
+
+		Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+
+		return new InventoryIndex(file, dataStart, count);
+	}
+
+	long[] find(String key) throws IOException {
+		return findRange(key, null);
+	}
+
+	/**
+	 * Returns the offsets of all entries with from <= key < to. If to is null,
+	 * the offsets of the entries with key == from are returned.
+	 */
+	long[] findRange(String from, String to) throws IOException {
+		if (file == null) {
+			return new long[0];
+		}
+
+		long[] result = new long[16];
+		int count = 0;
+
+		try (Reader reader = new Reader(lowerBound(from))) {
+			for (Line line = reader.next(); line != null; line = reader.next()) {
+				String key = line.getKey();
+
+				if (to == null ? !key.equals(from) : key.compareTo(to) >= 0) {
+					break;
+				}
+
+				if (count == result.length) {
+					result = Arrays.copyOf(result, count * 2);
+				}
+
+				result[count++] = line.getOffset();
+			}
+		}
+
+		return Arrays.copyOf(result, count);
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the position of the first line whose key is not less than the given
+	 * key, or the length of the file.
+	 */
+	private long lowerBound(String key) throws IOException {
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+			// low is always the start of a line; all lines before low have smaller keys
+			long low = dataStart;
+			long high = randomAccessFile.length();
+
+			while (low < high) {
+				long mid = (low + high) >>> 1;
+				long lineStart = mid == low ? low : skipLine(randomAccessFile, mid - 1);
+
+				if (lineStart >= high) {
+					// No line starts in [mid, high); the remaining lines are checked one by one
+					break;
+				}
+
+				Line line = readLine(randomAccessFile, lineStart);
+
+				if (line.getKey().compareTo(key) < 0) {
+					low = line.next;
+				} else {
+					high = lineStart;
+				}
+			}
+
+			while (low < high) {
+				Line line = readLine(randomAccessFile, low);
+
+				if (line.getKey().compareTo(key) >= 0) {
+					break;
+				}
+
+				low = line.next;
+			}
+
+			return low;
+		}
+	}
+
+	private static void write(OutputStream out, String key, long offset) throws IOException {
+		out.write((key + "\t" + offset + "\n").getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Returns the position after the next line break at or after the given
+	 * position.
+	 */
+	private static long skipLine(RandomAccessFile randomAccessFile, long position) throws IOException {
+		byte[] buffer = new byte[BUFFER_SIZE];
+
+		randomAccessFile.seek(position);
+
+		for (;;) {
+			int read = randomAccessFile.read(buffer);
+
+			if (read <= 0) {
+				return randomAccessFile.length();
+			}
+
+			for (int i = 0; i < read; i++) {
+				if (buffer[i] == '\n') {
+					return position + i + 1;
+				}
+			}
+
+			position += read;
+		}
+	}
+
+	private static Line readLine(RandomAccessFile randomAccessFile, long position) throws IOException {
+		byte[] buffer = new byte[BUFFER_SIZE];
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		long start = position;
+
+		randomAccessFile.seek(position);
+
+		for (;;) {
+			int read = randomAccessFile.read(buffer);
+
+			if (read <= 0) {
+				return line.size() > 0 ? new Line(line.toString("UTF-8"), position) : null;
+			}
+
+			for (int i = 0; i < read; i++) {
+				if (buffer[i] == '\n') {
+					line.write(buffer, 0, i);
+					return new Line(line.toString("UTF-8"), start + line.size() + 1);
+				}
+			}
+
+			line.write(buffer, 0, read);
+			position += read;
+		}
+	}
+
+	private static class Line {
+		private final String text;
+		private final long next;
+
+		Line(String text, long next) {
+			this.text = text;
+			this.next = next;
+		}
+
+		String getKey() {
+			return text.substring(0, text.lastIndexOf('\t'));
+		}
+
+		long getOffset() {
+			return Long.parseLong(text.substring(text.lastIndexOf('\t') + 1));
+		}
+	}
+
+	/**
+	 * Reads the entries sequentially, starting at the given position.
+	 */
+	private class Reader implements AutoCloseable {
+		private final InputStream in;
+		private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+		Reader(long position) throws IOException {
+			if (file == null) {
+				in = null;
+				return;
+			}
+
+			RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+			in = new BufferedInputStream(Channels.newInputStream(randomAccessFile.getChannel().position(position)),
+					BUFFER_SIZE);
+		}
+
+		Line next() throws IOException {
+			if (in == null) {
+				return null;
+			}
+
+			line.reset();
+
+			for (int b = in.read(); b != '\n'; b = in.read()) {
+				if (b == -1) {
+					return line.size() > 0 ? new Line(line.toString("UTF-8"), -1) : null;
+				}
+
+				line.write(b);
+			}
+
+			return new Line(line.toString("UTF-8"), -1);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (in != null) {
+				in.close();
+			}
+		}
+	}
+}
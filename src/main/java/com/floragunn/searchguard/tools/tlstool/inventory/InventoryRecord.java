@@ -0,0 +1,363 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.inventory;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.x500.AttributeTypeAndValue;
+import org.bouncycastle.asn1.x500.RDN;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x500.style.BCStyle;
+import org.bouncycastle.asn1.x500.style.IETFUtils;
+import org.bouncycastle.asn1.x500.style.RFC4519Style;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.util.encoders.Hex;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * A single entry of the certificate inventory. Each entry describes one
+ * certificate issued by sgtlstool.
+ */
+@JsonInclude(Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class InventoryRecord {
+	private static final ObjectMapper objectMapper = new ObjectMapper();
+	private static final List<String> EXCLUDED_FROM_HASH = Arrays.asList("pkPassword", "file");
+
+	private String serial;
+	private String subjectDn;
+	private String issuerDn;
+	private List<String> subjectAlternativeNames;
+	private String sha256Fingerprint;
+	private long notBefore;
+	private long notAfter;
+	private String certificateFile;
+	private String keyFile;
+	private String configHash;
+	private long issuedAt;
+
+	/**
+	 * Creates a record for the given certificate. The file names are stored
+	 * relative to the given base directory, which is usually the target
+	 * directory. Thus, the files can be located in the bundle layout as well.
+	 */
+	public static InventoryRecord create(X509CertificateHolder certificate, File baseDirectory,
+			File certificateFile, File keyFile, Object config) throws IOException {
+		InventoryRecord result = new InventoryRecord();
+
+		result.serial = normalizeSerial(certificate.getSerialNumber());
+		result.subjectDn = certificate.getSubject().toString();
+		result.issuerDn = certificate.getIssuer().toString();
+		result.subjectAlternativeNames = getSubjectAlternativeNames(certificate);
+		result.sha256Fingerprint = Hex.toHexString(digest("SHA-256", certificate.getEncoded()));
+		result.notBefore = certificate.getNotBefore().getTime();
+		result.notAfter = certificate.getNotAfter().getTime();
+		result.certificateFile = certificateFile != null ? getRelativePath(baseDirectory, certificateFile) : null;
+		result.keyFile = keyFile != null ? getRelativePath(baseDirectory, keyFile) : null;
+		result.configHash = config != null ? configHash(config) : null;
+		result.issuedAt = System.currentTimeMillis();
+
+		return result;
+	}
+
+	/**
+	 * Returns the path of the file relative to the base directory, using / as
+	 * separator. Files outside of the base directory get a path starting with
+	 * "..".
+	 */
+	static String getRelativePath(File baseDirectory, File file) {
+		if (baseDirectory == null) {
+			return file.getPath().replace(File.separatorChar, '/');
+		}
+
+		Path basePath = baseDirectory.toPath().toAbsolutePath().normalize();
+		Path path = file.toPath().toAbsolutePath().normalize();
+
+		if (!path.getRoot().equals(basePath.getRoot())) {
+			return path.toString().replace(File.separatorChar, '/');
+		}
+
+		return basePath.relativize(path).toString().replace(File.separatorChar, '/');
+	}
+
+	/**
+	 * Returns a hash of the given config object. Comparing the hash with the hash
+	 * of the current config tells whether the settings of a certificate have
+	 * changed since it was issued.
+	 * 
+	 * Private key passwords and file names are left out. Otherwise, the
+	 * unsalted hash in the inventory could be used to brute force the
+	 * passwords, as the other settings are known from the config.
+	 */
+	public static String configHash(Object config) {
+		try {
+			JsonNode tree = objectMapper.valueToTree(config);
+			removeExcludedFromHash(tree);
+			return Hex.toHexString(digest("SHA-256", objectMapper.writeValueAsBytes(tree)));
+		} catch (JsonProcessingException | IllegalArgumentException e) {
+			throw new IllegalArgumentException("Cannot hash config " + config, e);
+		}
+	}
+
+	private static void removeExcludedFromHash(JsonNode node) {
+		if (node instanceof ObjectNode) {
+			((ObjectNode) node).remove(EXCLUDED_FROM_HASH);
+		}
+
+		for (JsonNode child : node) {
+			removeExcludedFromHash(child);
+		}
+	}
+
+	/**
+	 * Serials are stored in decimal, like they are shown by the diagnosis tool and
+	 * parsed by the serial: query and --revoke without 0x prefix.
+	 */
+	static String normalizeSerial(BigInteger serial) {
+		return serial.toString();
+	}
+
+	static String normalizeFingerprint(String fingerprint) {
+		return fingerprint.replace(":", "").toLowerCase();
+	}
+
+	/**
+	 * Returns a canonical form of the DN, which consists of the attribute OIDs
+	 * and the canonicalized values. DNs which cannot be parsed are only trimmed
+	 * and lower-cased; thus, this never fails for the index.
+	 */
+	static String normalizeDn(String dn) {
+		RDN[] rdns = parseDn(dn);
+
+		if (rdns == null) {
+			return dn.trim().toLowerCase(Locale.ROOT);
+		}
+
+		StringBuilder result = new StringBuilder();
+
+		for (RDN rdn : rdns) {
+			if (result.length() > 0) {
+				result.append(',');
+			}
+
+			AttributeTypeAndValue[] typesAndValues = rdn.getTypesAndValues();
+
+			for (int i = 0; i < typesAndValues.length; i++) {
+				if (i > 0) {
+					result.append('+');
+				}
+
+				result.append(typesAndValues[i].getType().getId()).append('=')
+						.append(IETFUtils.canonicalize(IETFUtils.valueToString(typesAndValues[i].getValue())));
+			}
+		}
+
+		return result.toString();
+	}
+
+	/**
+	 * Returns the RDNs in the order they are written in the string. The subject
+	 * DNs are stored as printed by BC, which uses RFC 4519 names like title or
+	 * postalCode. Queries may also use the short names of BCStyle like T or E.
+	 */
+	private static RDN[] parseDn(String dn) {
+		try {
+			// RFC4519Style reverses the order of the RDNs
+			RDN[] rdns = new X500Name(RFC4519Style.INSTANCE, dn).getRDNs();
+			Collections.reverse(Arrays.asList(rdns));
+			return rdns;
+		} catch (IllegalArgumentException e) {
+			// Try BCStyle
+		}
+
+		try {
+			return new X500Name(BCStyle.INSTANCE, dn).getRDNs();
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	static String normalizeExpiry(long notAfter) {
+		return String.format("%016d", notAfter);
+	}
+
+	private static List<String> getSubjectAlternativeNames(X509CertificateHolder certificate) {
+		GeneralNames generalNames = GeneralNames.fromExtensions(certificate.getExtensions(),
+				Extension.subjectAlternativeName);
+
+		if (generalNames == null) {
+			return null;
+		}
+
+		List<String> result = new ArrayList<>();
+
+		for (GeneralName generalName : generalNames.getNames()) {
+			switch (generalName.getTagNo()) {
+			case GeneralName.dNSName:
+				result.add("DNS:" + generalName.getName());
+				break;
+			case GeneralName.iPAddress:
+				result.add("IP:" + formatIpAddress(generalName));
+				break;
+			case GeneralName.registeredID:
+				result.add("RID:" + generalName.getName());
+				break;
+			default:
+				result.add(generalName.getTagNo() + ":" + generalName.getName());
+			}
+		}
+
+		return result;
+	}
+
+	private static String formatIpAddress(GeneralName generalName) {
+		byte[] address = DEROctetString.getInstance(generalName.getName()).getOctets();
+
+		try {
+			return InetAddress.getByAddress(address).getHostAddress();
+		} catch (UnknownHostException e) {
+			return Hex.toHexString(address);
+		}
+	}
+
+	private static byte[] digest(String algorithm, byte[] data) {
+		try {
+			return MessageDigest.getInstance(algorithm).digest(data);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public String getSerial() {
+		return serial;
+	}
+
+	public void setSerial(String serial) {
+		this.serial = serial;
+	}
+
+	public String getSubjectDn() {
+		return subjectDn;
+	}
+
+	public void setSubjectDn(String subjectDn) {
+		this.subjectDn = subjectDn;
+	}
+
+	public String getIssuerDn() {
+		return issuerDn;
+	}
+
+	public void setIssuerDn(String issuerDn) {
+		this.issuerDn = issuerDn;
+	}
+
+	public List<String> getSubjectAlternativeNames() {
+		return subjectAlternativeNames;
+	}
+
+	public void setSubjectAlternativeNames(List<String> subjectAlternativeNames) {
+		this.subjectAlternativeNames = subjectAlternativeNames;
+	}
+
+	public String getSha256Fingerprint() {
+		return sha256Fingerprint;
+	}
+
+	public void setSha256Fingerprint(String sha256Fingerprint) {
+		this.sha256Fingerprint = sha256Fingerprint;
+	}
+
+	public long getNotBefore() {
+		return notBefore;
+	}
+
+	public void setNotBefore(long notBefore) {
+		this.notBefore = notBefore;
+	}
+
+	public long getNotAfter() {
+		return notAfter;
+	}
+
+	public void setNotAfter(long notAfter) {
+		this.notAfter = notAfter;
+	}
+
+	public String getCertificateFile() {
+		return certificateFile;
+	}
+
+	public void setCertificateFile(String certificateFile) {
+		this.certificateFile = certificateFile;
+	}
+
+	public String getKeyFile() {
+		return keyFile;
+	}
+
+	public void setKeyFile(String keyFile) {
+		this.keyFile = keyFile;
+	}
+
+	public String getConfigHash() {
+		return configHash;
+	}
+
+	public void setConfigHash(String configHash) {
+		this.configHash = configHash;
+	}
+
+	public long getIssuedAt() {
+		return issuedAt;
+	}
+
+	public void setIssuedAt(long issuedAt) {
+		this.issuedAt = issuedAt;
+	}
+
+	@Override
+	public String toString() {
+		return "serial: " + serial + "; subject: " + subjectDn + "; not after: " + new Date(notAfter)
+				+ "; file: " + certificateFile;
+	}
+}
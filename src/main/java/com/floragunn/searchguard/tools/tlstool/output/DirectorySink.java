@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.output;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Writes each file to its path in the file system, creating missing
+ * directories. This is the default sink.
+ */
+public class DirectorySink implements OutputSink {
+
+	@Override
+	public void write(File file, byte[] content) throws IOException {
+		createParentDirectory(file);
+		Files.write(file.toPath(), content);
+	}
+
+	/**
+	 * Creates a hard link. If this is not possible, for example because the
+	 * target is on another file system, the file is copied.
+	 */
+	@Override
+	public void link(File file, File target, byte[] content) throws IOException {
+		createParentDirectory(file);
+		Files.deleteIfExists(file.toPath());
+
+		try {
+			Files.createLink(file.toPath(), target.toPath());
+		} catch (IOException | UnsupportedOperationException e) {
+			Files.write(file.toPath(), content);
+		}
+	}
+
+	private void createParentDirectory(File file) throws IOException {
+		File parent = file.getParentFile();
+
+		if (parent != null && !parent.isDirectory()) {
+			Files.createDirectories(parent.toPath());
+		}
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.output;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the files in memory. Used for embedding and tests.
+ */
+public class MemorySink extends NamedOutputSink {
+	private final Map<String, byte[]> files = Collections.synchronizedMap(new LinkedHashMap<>());
+
+	public MemorySink(File baseDirectory) {
+		super(baseDirectory);
+	}
+
+	@Override
+	public void write(File file, byte[] content) throws IOException {
+		files.put(getName(file), content);
+	}
+
+	/**
+	 * @return the files by their names relative to the base directory, in the
+	 *         order they were written
+	 */
+	public Map<String, byte[]> getFiles() {
+		synchronized (files) {
+			return new LinkedHashMap<>(files);
+		}
+	}
+}
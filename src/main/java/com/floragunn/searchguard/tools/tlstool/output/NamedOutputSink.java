@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.output;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Base class for sinks which identify files by their path relative to the
+ * target directory instead of by their path in the file system.
+ */
+public abstract class NamedOutputSink implements OutputSink {
+	private final File baseDirectory;
+
+	protected NamedOutputSink(File baseDirectory) {
+		this.baseDirectory = baseDirectory;
+	}
+
+	/**
+	 * Returns the name of the file relative to the base directory. Files outside
+	 * the base directory are refused, as their names would point outside of the
+	 * extraction directory of an archive.
+	 */
+	protected String getName(File file) throws IOException {
+		String name = getRelativeName(file);
+
+		if (name.startsWith("/") || name.equals("..") || name.startsWith("../")) {
+			throw new IOException("The file " + file + " is not located in the target directory");
+		}
+
+		return name;
+	}
+
+	protected String getRelativeName(File file) {
+		if (baseDirectory == null) {
+			return file.getPath().replace(File.separatorChar, '/');
+		}
+
+		return baseDirectory.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.output;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Receives the files created by FileOutput. The files are passed in the order
+ * they were created; write() is always called from a single thread.
+ */
+public interface OutputSink extends Closeable {
+
+	void write(File file, byte[] content) throws IOException;
+
+	/**
+	 * Creates a file with the same content as the given target file. Sinks which
+	 * support links may create a hard link instead of a copy.
+	 */
+	default void link(File file, File target, byte[] content) throws IOException {
+		write(file, content);
+	}
+
+	@Override
+	default void close() throws IOException {
+	}
+}
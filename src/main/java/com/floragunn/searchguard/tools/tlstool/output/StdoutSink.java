@@ -0,0 +1,57 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.output;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the contents of all files to standard output. Each file is preceded
+ * by a line with its name. Meant for inspection and for single files; use tar
+ * or zip for machine processing.
+ */
+public class StdoutSink extends NamedOutputSink {
+	private final OutputStream outputStream;
+
+	public StdoutSink(File baseDirectory) {
+		this(baseDirectory, System.out);
+	}
+
+	StdoutSink(File baseDirectory, PrintStream outputStream) {
+		super(baseDirectory);
+		this.outputStream = outputStream;
+	}
+
+	@Override
+	public void write(File file, byte[] content) throws IOException {
+		outputStream.write(("==> " + getName(file) + " <==\n").getBytes(StandardCharsets.UTF_8));
+		outputStream.write(content);
+
+		if (content.length > 0 && content[content.length - 1] != '\n') {
+			outputStream.write('\n');
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		outputStream.flush();
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.output;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Streams all files into a single uncompressed tar archive using the POSIX
+ * ustar format. As the created files may contain private keys, the entries get
+ * the mode 0600.
+ */
+public class TarSink extends NamedOutputSink {
+	private static final int BLOCK_SIZE = 512;
+
+	private final OutputStream outputStream;
+	private final Set<String> writtenNames = new HashSet<>();
+
+	public TarSink(File baseDirectory, OutputStream outputStream) {
+		super(baseDirectory);
+		this.outputStream = outputStream;
+	}
+
+	@Override
+	public void write(File file, byte[] content) throws IOException {
+		String name = getName(file);
+
+		outputStream.write(createHeader(name, content.length, System.currentTimeMillis() / 1000));
+		outputStream.write(content);
+		writtenNames.add(name);
+
+		int padding = (BLOCK_SIZE - content.length % BLOCK_SIZE) % BLOCK_SIZE;
+
+		if (padding > 0) {
+			outputStream.write(new byte[padding]);
+		}
+	}
+
+	/**
+	 * Creates a hard link entry if the target is part of this archive. Otherwise,
+	 * the content is written as normal file, as the archive must be self-contained.
+	 */
+	@Override
+	public void link(File file, File target, byte[] content) throws IOException {
+		String targetName = getRelativeName(target);
+
+		if (!writtenNames.contains(targetName)) {
+			write(file, content);
+			return;
+		}
+
+		byte[] linkNameBytes = targetName.getBytes(StandardCharsets.UTF_8);
+
+		if (linkNameBytes.length > 100) {
+			write(file, content);
+			return;
+		}
+
+		byte[] header = createHeader(getName(file), 0, System.currentTimeMillis() / 1000);
+		header[156] = '1';
+		put(header, 157, linkNameBytes);
+		updateChecksum(header);
+
+		outputStream.write(header);
+	}
+
+	/**
+	 * Writes the two empty blocks which terminate the archive.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			outputStream.write(new byte[BLOCK_SIZE * 2]);
+			outputStream.flush();
+		} finally {
+			outputStream.close();
+		}
+	}
+
+	static byte[] createHeader(String name, long size, long modificationTime) throws IOException {
+		byte[] header = new byte[BLOCK_SIZE];
+		byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+
+		if (nameBytes.length > 100) {
+			// The ustar prefix field takes the leading directories of longer names
+			int split = name.lastIndexOf('/', 155);
+			byte[] prefixBytes = split > 0 ? name.substring(0, split).getBytes(StandardCharsets.UTF_8) : null;
+			byte[] suffixBytes = split > 0 ? name.substring(split + 1).getBytes(StandardCharsets.UTF_8) : null;
+
+			if (prefixBytes == null || prefixBytes.length > 155 || suffixBytes.length > 100) {
+				throw new IOException("File name is too long for a tar archive: " + name);
+			}
+
+			put(header, 0, suffixBytes);
+			put(header, 345, prefixBytes);
+		} else {
+			put(header, 0, nameBytes);
+		}
+
+		putOctal(header, 100, 8, 0600);
+		putOctal(header, 108, 8, 0);
+		putOctal(header, 116, 8, 0);
+		putOctal(header, 124, 12, size);
+		putOctal(header, 136, 12, modificationTime);
+		header[156] = '0';
+		put(header, 257, "ustar\0".getBytes(StandardCharsets.US_ASCII));
+		put(header, 263, "00".getBytes(StandardCharsets.US_ASCII));
+
+		updateChecksum(header);
+
+		return header;
+	}
+
+	/**
+	 * The checksum is computed with the checksum field filled with spaces
+	 */
+	private static void updateChecksum(byte[] header) throws IOException {
+		for (int i = 148; i < 156; i++) {
+			header[i] = ' ';
+		}
+
+		long checksum = 0;
+
+		for (byte b : header) {
+			checksum += b & 0xff;
+		}
+
+		putOctal(header, 148, 7, checksum);
+	}
+
+	private static void put(byte[] header, int offset, byte[] value) {
+		System.arraycopy(value, 0, header, offset, value.length);
+	}
+
+	/**
+	 * Writes a zero padded, NUL terminated octal number.
+	 */
+	private static void putOctal(byte[] header, int offset, int length, long value) throws IOException {
+		String octal = Long.toOctalString(value);
+
+		if (octal.length() > length - 1) {
+			throw new IOException("Value too large for tar header: " + value);
+		}
+
+		while (octal.length() < length - 1) {
+			octal = "0" + octal;
+		}
+
+		put(header, offset, octal.getBytes(StandardCharsets.US_ASCII));
+		header[offset + length - 1] = 0;
+	}
+}
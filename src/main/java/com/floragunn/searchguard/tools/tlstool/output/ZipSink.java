@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.output;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams all files into a single ZIP archive.
+ */
+public class ZipSink extends NamedOutputSink {
+	private final ZipOutputStream zipOutputStream;
+
+	public ZipSink(File baseDirectory, OutputStream outputStream) {
+		super(baseDirectory);
+		this.zipOutputStream = new ZipOutputStream(outputStream);
+	}
+
+	@Override
+	public void write(File file, byte[] content) throws IOException {
+		ZipEntry entry = new ZipEntry(getName(file));
+		entry.setTime(System.currentTimeMillis());
+
+		zipOutputStream.putNextEntry(entry);
+		zipOutputStream.write(content);
+		zipOutputStream.closeEntry();
+	}
+
+	@Override
+	public void close() throws IOException {
+		zipOutputStream.close();
+	}
+}
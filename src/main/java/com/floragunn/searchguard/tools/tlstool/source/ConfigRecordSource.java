@@ -0,0 +1,144 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.source;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.floragunn.searchguard.tools.tlstool.ToolException;
+
+/**
+ * Reads config records such as Config.Node or Config.Client one by one from a
+ * CSV or JSON Lines file. Thus, the records of huge lists of nodes are not
+ * materialized in memory. However, the created files and inventory records are
+ * still collected until the end of the run, so the memory usage grows with the
+ * number of certificates.
+ * 
+ * CSV files need a header line naming the properties of the records. Properties
+ * with multiple values (like dns or ip) are separated by semicolons within a
+ * cell. Files ending with .gz are decompressed on the fly.
+ */
+public class ConfigRecordSource<T> implements RecordSource<T> {
+
+	private static final ObjectMapper jsonMapper = new ObjectMapper()
+			.configure(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY, true);
+	private static final CsvMapper csvMapper = new CsvMapper();
+
+	private final File file;
+	private final MappingIterator<T> iterator;
+
+	private ConfigRecordSource(File file, MappingIterator<T> iterator) {
+		this.file = file;
+		this.iterator = iterator;
+	}
+
+	public static <T> ConfigRecordSource<T> open(File file, Class<T> type) throws ToolException {
+		String name = file.getName().toLowerCase();
+		boolean gzip = name.endsWith(".gz");
+
+		if (gzip) {
+			name = name.substring(0, name.length() - 3);
+		}
+
+		ObjectReader reader;
+
+		if (name.endsWith(".csv")) {
+			reader = csvMapper.readerFor(type)
+					.with(CsvSchema.emptySchema().withHeader().withArrayElementSeparator(";"));
+		} else if (name.endsWith(".jsonl") || name.endsWith(".ndjson") || name.endsWith(".json")) {
+			reader = jsonMapper.readerFor(type);
+		} else {
+			throw new ToolException("Unsupported file type: " + file
+					+ ". Supported are .csv, .jsonl and .ndjson files, optionally compressed with gzip.");
+		}
+
+		InputStream in = null;
+
+		try {
+			in = new BufferedInputStream(Files.newInputStream(file.toPath()));
+
+			if (gzip) {
+				in = new GZIPInputStream(in);
+			}
+
+			return new ConfigRecordSource<T>(file, reader.readValues(in));
+		} catch (IOException e) {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e1) {
+					e.addSuppressed(e1);
+				}
+			}
+
+			throw new ToolException("Error while opening " + file + ": " + e, e);
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		try {
+			return iterator.hasNextValue();
+		} catch (IOException e) {
+			throw new RecordSourceException(createMessage(e), e);
+		}
+	}
+
+	@Override
+	public T next() {
+		try {
+			if (!iterator.hasNextValue()) {
+				throw new NoSuchElementException();
+			}
+
+			return iterator.nextValue();
+		} catch (IOException e) {
+			throw new RecordSourceException(createMessage(e), e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		iterator.close();
+	}
+
+	@Override
+	public String getName() {
+		return file.getPath();
+	}
+
+	private String createMessage(IOException e) {
+		JsonLocation location = iterator.getCurrentLocation();
+
+		return "Error while reading " + file + (location != null ? " at line " + location.getLineNr() : "") + ": "
+				+ e.getMessage();
+	}
+
+}
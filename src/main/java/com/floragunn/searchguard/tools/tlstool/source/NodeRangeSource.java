@@ -0,0 +1,286 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.source;
+
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.floragunn.searchguard.tools.tlstool.Config;
+import com.floragunn.searchguard.tools.tlstool.ToolException;
+import com.google.common.net.InetAddresses;
+
+/**
+ * Expands a node config containing ranges into single nodes. Ranges have the
+ * form [001-480]; leading zeros of the start value define the width of the
+ * generated numbers. Additionally, ip entries may be address ranges like
+ * 10.0.1.10-10.0.2.233.
+ * 
+ * All ranges of a node config are advanced together: The n-th generated node
+ * gets the n-th value of each range. Thus, all ranges must have the same length.
+ * The nodes are generated on demand.
+ */
+public class NodeRangeSource implements RecordSource<Config.Node> {
+	private static final Pattern RANGE = Pattern.compile("\\[(\\d+)-(\\d+)\\]");
+
+	private final Config.Node template;
+	private final int count;
+	private int index = 0;
+
+	private NodeRangeSource(Config.Node template, int count) {
+		this.template = template;
+		this.count = count;
+	}
+
+	public static boolean isRange(Config.Node node) {
+		if (containsRange(node.getName()) || containsRange(node.getDn())) {
+			return true;
+		}
+
+		if (node.getDns() != null) {
+			for (String dns : node.getDns()) {
+				if (containsRange(dns)) {
+					return true;
+				}
+			}
+		}
+
+		if (node.getIp() != null) {
+			for (String ip : node.getIp()) {
+				if (containsRange(ip) || isIpRange(ip)) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	public static NodeRangeSource expand(Config.Node template) throws ToolException {
+		List<String> values = new ArrayList<>();
+		values.add(template.getName());
+		values.add(template.getDn());
+
+		if (template.getDns() != null) {
+			values.addAll(template.getDns());
+		}
+
+		int count = -1;
+
+		for (String value : values) {
+			count = checkCount(template, count, getRangeCount(value));
+		}
+
+		if (template.getIp() != null) {
+			for (String ip : template.getIp()) {
+				count = checkCount(template, count, isIpRange(ip) ? getIpRangeCount(ip) : getRangeCount(ip));
+			}
+		}
+
+		if (count <= 0) {
+			throw new ToolException("Node config does not contain a valid range: " + template.getDn());
+		}
+
+		return new NodeRangeSource(template, count);
+	}
+
+	/**
+	 * Replaces the ranges in the given value by wildcards. This can be used for
+	 * DN patterns matching all generated nodes.
+	 */
+	public static String toWildcard(String value) {
+		return value != null ? RANGE.matcher(value).replaceAll("*") : null;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return index < count;
+	}
+
+	@Override
+	public Config.Node next() {
+		if (index >= count) {
+			throw new NoSuchElementException();
+		}
+
+		Config.Node result = new Config.Node();
+		result.setName(expandValue(template.getName(), index));
+		result.setDn(expandValue(template.getDn(), index));
+		result.setDns(expandValues(template.getDns(), index));
+		result.setIp(template.getIp() != null ? new ArrayList<>(template.getIp().size()) : null);
+		result.setOid(template.getOid());
+		result.setKeysize(template.getKeysize());
+		result.setPkPassword(template.getPkPassword());
+		result.setValidityDays(template.getValidityDays());
+
+		if (template.getIp() != null) {
+			for (String ip : template.getIp()) {
+				result.getIp().add(isIpRange(ip) ? expandIpRange(ip, index) : expandValue(ip, index));
+			}
+		}
+
+		index++;
+
+		return result;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	@Override
+	public String getName() {
+		return "range " + (template.getName() != null ? template.getName() : template.getDn());
+	}
+
+	@Override
+	public void close() {
+	}
+
+	private static boolean containsRange(String value) {
+		return value != null && RANGE.matcher(value).find();
+	}
+
+	private static boolean isIpRange(String value) {
+		int separator = value.indexOf('-');
+
+		return separator != -1 && InetAddresses.isInetAddress(value.substring(0, separator).trim())
+				&& InetAddresses.isInetAddress(value.substring(separator + 1).trim());
+	}
+
+	/**
+	 * Returns -1 if the value does not contain a range.
+	 */
+	private static int getRangeCount(String value) throws ToolException {
+		if (value == null) {
+			return -1;
+		}
+
+		Matcher matcher = RANGE.matcher(value);
+		int result = -1;
+
+		while (matcher.find()) {
+			long start = Long.parseLong(matcher.group(1));
+			long end = Long.parseLong(matcher.group(2));
+
+			if (end < start || end - start >= Integer.MAX_VALUE) {
+				throw new ToolException("Invalid range in " + value);
+			}
+
+			int count = (int) (end - start + 1);
+
+			if (result != -1 && result != count) {
+				throw new ToolException("All ranges in " + value + " must have the same length");
+			}
+
+			result = count;
+		}
+
+		return result;
+	}
+
+	private static int getIpRangeCount(String value) throws ToolException {
+		int separator = value.indexOf('-');
+		BigInteger start = toBigInteger(value.substring(0, separator));
+		BigInteger end = toBigInteger(value.substring(separator + 1));
+		BigInteger count = end.subtract(start).add(BigInteger.ONE);
+
+		if (count.signum() <= 0 || count.bitLength() > 31) {
+			throw new ToolException("Invalid IP address range " + value);
+		}
+
+		return count.intValue();
+	}
+
+	private static int checkCount(Config.Node template, int count, int valueCount) throws ToolException {
+		if (valueCount == -1) {
+			return count;
+		}
+
+		if (count != -1 && count != valueCount) {
+			throw new ToolException(
+					"All ranges of a node config must have the same length: " + template.getName() + " " + template.getDn());
+		}
+
+		return valueCount;
+	}
+
+	private static String expandValue(String value, int index) {
+		if (value == null) {
+			return null;
+		}
+
+		Matcher matcher = RANGE.matcher(value);
+		StringBuffer result = new StringBuffer();
+
+		while (matcher.find()) {
+			String start = matcher.group(1);
+			long number = Long.parseLong(start) + index;
+			String formatted = start.length() > 1 && start.startsWith("0")
+					? String.format("%0" + start.length() + "d", number)
+					: String.valueOf(number);
+
+			matcher.appendReplacement(result, formatted);
+		}
+
+		matcher.appendTail(result);
+
+		return result.toString();
+	}
+
+	private static List<String> expandValues(List<String> values, int index) {
+		if (values == null) {
+			return null;
+		}
+
+		String[] result = new String[values.size()];
+
+		for (int i = 0; i < result.length; i++) {
+			result[i] = expandValue(values.get(i), index);
+		}
+
+		return Arrays.asList(result);
+	}
+
+	private static String expandIpRange(String value, int index) {
+		String start = value.substring(0, value.indexOf('-')).trim();
+		BigInteger address = toBigInteger(start).add(BigInteger.valueOf(index));
+		int length = InetAddresses.forString(start).getAddress().length;
+
+		byte[] bytes = address.toByteArray();
+		byte[] addressBytes = new byte[length];
+		int copy = Math.min(bytes.length, length);
+		System.arraycopy(bytes, bytes.length - copy, addressBytes, length - copy, copy);
+
+		try {
+			return InetAddresses.toAddrString(InetAddress.getByAddress(addressBytes));
+		} catch (UnknownHostException e) {
+			throw new RecordSourceException("Invalid IP address range " + value, e);
+		}
+	}
+
+	private static BigInteger toBigInteger(String address) {
+		return new BigInteger(1, InetAddresses.forString(address.trim()).getAddress());
+	}
+}
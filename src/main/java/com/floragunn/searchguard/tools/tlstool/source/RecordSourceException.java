@@ -0,0 +1,34 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.source;
+
+/**
+ * Thrown by the iterator methods of a RecordSource if a record cannot be
+ * provided.
+ */
+public class RecordSourceException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	public RecordSourceException(String message) {
+		super(message);
+	}
+
+	public RecordSourceException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
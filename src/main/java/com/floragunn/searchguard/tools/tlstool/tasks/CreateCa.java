@@ -34,7 +34,6 @@ import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cert.X509v3CertificateBuilder;
 import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
 import org.bouncycastle.operator.OperatorCreationException;
-import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 
 import com.floragunn.searchguard.tools.tlstool.Config;
 import com.floragunn.searchguard.tools.tlstool.Context;
@@ -87,8 +86,10 @@ public class CreateCa extends Task {
 		String rootPrivateKeyPassword = getPassword(rootCertificateConfig.getPkPassword());
 		String signingPrivateKeyPassword = null;
 
-		addOutputFile(rootCertFile, rootCaCertificate);
-		addEncryptedOutputFile(rootKeyFile, rootPrivateKeyPassword, rootCaKeyPair.getPrivate());
+		// The CA files are shared, so that they are written together at the end of the run
+		addSharedOutputFile(rootCertFile, rootCaCertificate);
+		addSharedEncryptedOutputFile(rootKeyFile, rootPrivateKeyPassword, rootCaKeyPair.getPrivate());
+		addToInventory(rootCaCertificate, rootCertFile, rootKeyFile, rootCertificateConfig);
 
 		if (signingCertificateConfig != null) {
 			File signingKeyFile = getConfiguredFile(signingCertificateConfig.getFile(), "signing-ca.key", "key");
@@ -108,19 +109,22 @@ public class CreateCa extends Task {
 
 			ctx.setSigningCertificate(intermediateCertificate);
 			ctx.setSigningPrivateKey(intermediateKeyPair.getPrivate());
+			ctx.setSigningCertificateFile(signingCertFile);
 
 			signingPrivateKeyPassword = getPassword(signingCertificateConfig.getPkPassword());
 
-			addOutputFile(signingCertFile, intermediateCertificate);
-			addEncryptedOutputFile(signingKeyFile, signingPrivateKeyPassword, intermediateKeyPair.getPrivate());
+			addSharedOutputFile(signingCertFile, intermediateCertificate);
+			addSharedEncryptedOutputFile(signingKeyFile, signingPrivateKeyPassword, intermediateKeyPair.getPrivate());
+			addToInventory(intermediateCertificate, signingCertFile, signingKeyFile, signingCertificateConfig);
 		} else {
 			ctx.setSigningCertificate(rootCaCertificate);
 			ctx.setSigningPrivateKey(rootCaKeyPair.getPrivate());
+			ctx.setSigningCertificateFile(rootCertFile);
 		}
 
 		if (isPasswordAutoGenerationEnabled(rootCertificateConfig.getPkPassword()) || (signingCertificateConfig != null
 				&& isPasswordAutoGenerationEnabled(signingCertificateConfig.getPkPassword()))) {
-			addOutputFile(readmeFile, createReadme(rootPrivateKeyPassword, signingPrivateKeyPassword));
+			addSharedOutputFile(readmeFile, createReadme(rootPrivateKeyPassword, signingPrivateKeyPassword));
 		}
 
 		log.info(createSuccessLog());
@@ -171,9 +175,7 @@ public class CreateCa extends Task {
 					.addExtension(Extension.keyUsage, true,
 							new KeyUsage(KeyUsage.digitalSignature | KeyUsage.keyCertSign | KeyUsage.cRLSign));
 
-			X509CertificateHolder cert = builder
-					.build(new JcaContentSignerBuilder(ctx.getConfig().getDefaults().getSignatureAlgorithm())
-							.setProvider(ctx.getSecurityProvider()).build(keyPair.getPrivate()));
+			X509CertificateHolder cert = signCertificate(builder, keyPair.getPrivate());
 			return cert;
 		} catch (CertIOException | OperatorCreationException e) {
 			throw new ToolException("Error while composing certificate", e);
@@ -205,9 +207,9 @@ public class CreateCa extends Task {
 					.addExtension(Extension.keyUsage, true,
 							new KeyUsage(KeyUsage.digitalSignature | KeyUsage.keyCertSign | KeyUsage.cRLSign));
 
-			X509CertificateHolder cert = builder
-					.build(new JcaContentSignerBuilder(ctx.getConfig().getDefaults().getSignatureAlgorithm())
-							.setProvider(ctx.getSecurityProvider()).build(caKey.getPrivate()));
+			addCrlDistributionPoints(builder, rootCertificateConfig);
+
+			X509CertificateHolder cert = signCertificate(builder, caKey.getPrivate());
 			return cert;
 		} catch (CertIOException | OperatorCreationException e) {
 			throw new ToolException("Error while composing certificate", e);
@@ -22,28 +22,19 @@ import java.security.KeyPair;
 import java.util.Date;
 
 import org.bouncycastle.asn1.x500.X500Name;
-import org.bouncycastle.asn1.x509.BasicConstraints;
-import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
-import org.bouncycastle.asn1.x509.Extension;
-import org.bouncycastle.asn1.x509.KeyPurposeId;
-import org.bouncycastle.asn1.x509.KeyUsage;
 import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
 import org.bouncycastle.cert.CertIOException;
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cert.X509v3CertificateBuilder;
-import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
 import org.bouncycastle.operator.OperatorCreationException;
-import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 
 import com.floragunn.searchguard.tools.tlstool.Config;
 import com.floragunn.searchguard.tools.tlstool.Context;
+import com.floragunn.searchguard.tools.tlstool.Metrics;
 import com.floragunn.searchguard.tools.tlstool.ToolException;
 
 public class CreateClientCertificate extends CreateClientCertificateBase {
 
-	private static int generatedCertificateCount = 0;
-	private static boolean passwordAutoGenerated = false;
-
 	public CreateClientCertificate(Context ctx, Config.Client clientConfig) {
 		super(ctx, clientConfig);
 	}
@@ -52,18 +43,37 @@ public class CreateClientCertificate extends CreateClientCertificateBase {
 	public void run() throws ToolException {
 		try {
 
-			File privateKeyFile = new File(ctx.getTargetDirectory(), getClientFileName(clientConfig) + ".key");
-			File certificateFile = new File(ctx.getTargetDirectory(), getClientFileName(clientConfig) + ".pem");
+			File directory = getClientDirectory(clientConfig);
+			File privateKeyFile = new File(directory, getClientFileName(clientConfig) + ".key");
+			File certificateFile = new File(directory, getClientFileName(clientConfig) + ".pem");
+			File keyStoreFile = new File(directory, getClientFileName(clientConfig) + ".p12");
 			File readmeFile = new File(ctx.getTargetDirectory(), "client-certificates.readme");
 
-			if (!checkFileOverwrite("certificate", clientConfig.getDn(), privateKeyFile, certificateFile)) {
+			boolean reuseKeys = false;
+
+			if (ctx.isResign()) {
+				if (!checkResign("certificate", clientConfig.getDn(), new File[] { certificateFile },
+						new File[] { privateKeyFile })) {
+					return;
+				}
+
+				reuseKeys = true;
+			} else if (ctx.getRenewWithinDays() != null) {
+				if (!checkRenewal("certificate", clientConfig.getDn(), certificateFile)) {
+					return;
+				}
+
+				reuseKeys = isKeyReusable(certificateFile);
+			} else if (!checkFileOverwrite("certificate", clientConfig.getDn(), privateKeyFile, certificateFile,
+					keyStoreFile)) {
 				return;
 			}
 
-			KeyPair clientKeyPair = generateKeyPair(clientConfig.getKeysize());
+			KeyPair clientKeyPair = reuseKeys ? null : generateKeyPair(clientConfig.getKeysize());
 
-			SubjectPublicKeyInfo subPubKeyInfo = SubjectPublicKeyInfo
-					.getInstance(clientKeyPair.getPublic().getEncoded());
+			SubjectPublicKeyInfo subPubKeyInfo = reuseKeys ? readExistingPublicKey(certificateFile, privateKeyFile,
+					clientConfig.getPkPassword())
+					: SubjectPublicKeyInfo.getInstance(clientKeyPair.getPublic().getEncoded());
 
 			X500Name subjectName = createDn(clientConfig.getDn(), "client");
 			Date validityStartDate = new Date(System.currentTimeMillis());
@@ -72,24 +82,9 @@ public class CreateClientCertificate extends CreateClientCertificateBase {
 			X509v3CertificateBuilder builder = new X509v3CertificateBuilder(ctx.getSigningCertificate().getSubject(),
 					ctx.nextId(), validityStartDate, validityEndDate, subjectName, subPubKeyInfo);
 
-			JcaX509ExtensionUtils extUtils = getExtUtils();
+			addClientCertificateExtensions(builder, subPubKeyInfo);
 
-			builder.addExtension(Extension.authorityKeyIdentifier, false,
-					extUtils.createAuthorityKeyIdentifier(ctx.getSigningCertificate()))
-					.addExtension(Extension.subjectKeyIdentifier, false,
-							extUtils.createSubjectKeyIdentifier(clientKeyPair.getPublic()))
-					.addExtension(Extension.basicConstraints, true, new BasicConstraints(false))
-					.addExtension(Extension.keyUsage, true,
-							new KeyUsage(
-									KeyUsage.digitalSignature | KeyUsage.nonRepudiation | KeyUsage.keyEncipherment))
-					.addExtension(Extension.extendedKeyUsage, true,
-							new ExtendedKeyUsage(new KeyPurposeId[] { KeyPurposeId.id_kp_clientAuth }));
-
-			X509CertificateHolder clientCertificate = builder
-					.build(new JcaContentSignerBuilder(ctx.getConfig().getDefaults().getSignatureAlgorithm())
-							.setProvider(ctx.getSecurityProvider()).build(ctx.getSigningPrivateKey()));
-
-			String privateKeyPassword = getPassword(clientConfig.getPkPassword());
+			X509CertificateHolder clientCertificate = signCertificate(builder, ctx.getSigningPrivateKey());
 
 			if (ctx.getConfig().getCa().getIntermediate() == null) {
 				addOutputFile(certificateFile, clientCertificate);
@@ -97,27 +92,35 @@ public class CreateClientCertificate extends CreateClientCertificateBase {
 				addOutputFile(certificateFile, clientCertificate, ctx.getSigningCertificate());
 			}
 
-			addEncryptedOutputFile(privateKeyFile, privateKeyPassword, clientKeyPair.getPrivate());
-			addOutputFile(readmeFile, createReadme());
+			addToInventory(clientCertificate, certificateFile, privateKeyFile, clientConfig);
+			addAdditionalCaCertificates(clientCertificate, certificateFile, privateKeyFile, clientConfig);
+
+			String privateKeyPassword = null;
+
+			if (clientKeyPair != null) {
+				privateKeyPassword = getPassword(clientConfig.getPkPassword());
 
-			if (isPasswordAutoGenerationEnabled(clientConfig.getPkPassword())) {
-				appendOutputFile(readmeFile, createPasswordInfo(privateKeyFile, privateKeyPassword));
-				passwordAutoGenerated = true;
+				addEncryptedOutputFile(privateKeyFile, privateKeyPassword, clientKeyPair.getPrivate());
+				addSharedOutputFile(readmeFile, createReadme());
+
+				if (isPasswordAutoGenerationEnabled(clientConfig.getPkPassword())) {
+					appendOutputFile(readmeFile, createPasswordInfo(privateKeyFile, privateKeyPassword));
+					ctx.getMetrics().increment(Metrics.CLIENT_PASSWORDS_GENERATED);
+				}
+			}
+
+			if (isPkcs12Enabled()) {
+				addKeyStore(keyStoreFile, getClientFileName(clientConfig), clientKeyPair, privateKeyFile,
+						privateKeyPassword, clientConfig.getPkPassword(), clientCertificate);
 			}
 
-			generatedCertificateCount++;
+			addTrustedCasLink(directory);
+
+			ctx.getMetrics().increment(Metrics.CLIENT_CERTIFICATES);
 
 		} catch (CertIOException | OperatorCreationException e) {
 			throw new ToolException("Error while composing certificate", e);
 		}
 	}
 
-	public static int getGeneratedCertificateCount() {
-		return generatedCertificateCount;
-	}
-
-	public static boolean isPasswordAutoGenerated() {
-		return passwordAutoGenerated;
-	}
-
 }
@@ -19,6 +19,7 @@ package com.floragunn.searchguard.tools.tlstool.tasks;
 
 import java.io.File;
 
+import com.floragunn.searchguard.tools.tlstool.BundleLayout;
 import com.floragunn.searchguard.tools.tlstool.Config;
 import com.floragunn.searchguard.tools.tlstool.Context;
 
@@ -31,6 +32,13 @@ public abstract class CreateClientCertificateBase extends Task {
 		this.clientConfig = clientConfig;
 	}
 	
+	/**
+	 * The directory for the files of the given client; see {@link BundleLayout}
+	 */
+	protected File getClientDirectory(Config.Client client) {
+		return BundleLayout.getDirectory(ctx, BundleLayout.CLIENTS, getClientFileName(client));
+	}
+
 	protected String createPasswordInfo(File privateKeyFile, String privateKeyPassword) {
 		return clientConfig.getDn() + " Password: " + privateKeyPassword + "\n";
 	}
@@ -35,13 +35,11 @@ import org.bouncycastle.pkcs.jcajce.JcaPKCS10CertificationRequestBuilder;
 
 import com.floragunn.searchguard.tools.tlstool.Config;
 import com.floragunn.searchguard.tools.tlstool.Context;
+import com.floragunn.searchguard.tools.tlstool.Metrics;
 import com.floragunn.searchguard.tools.tlstool.ToolException;
 
 public class CreateClientCsr extends CreateClientCertificateBase {
 
-	private static int generatedCsrCount = 0;
-	private static boolean passwordAutoGenerated = false;
-
 	public CreateClientCsr(Context ctx, Config.Client clientConfig) {
 		super(ctx, clientConfig);
 	}
@@ -49,8 +47,9 @@ public class CreateClientCsr extends CreateClientCertificateBase {
 	@Override
 	public void run() throws ToolException {
 		try {
-			File privateKeyFile = new File(ctx.getTargetDirectory(), getClientFileName(clientConfig) + ".key");
-			File csrFile = new File(ctx.getTargetDirectory(), getClientFileName(clientConfig) + ".csr");
+			File directory = getClientDirectory(clientConfig);
+			File privateKeyFile = new File(directory, getClientFileName(clientConfig) + ".key");
+			File csrFile = new File(directory, getClientFileName(clientConfig) + ".csr");
 			File readmeFile = new File(ctx.getTargetDirectory(), "client-csr.readme");
 
 			if (!checkFileOverwrite("csr", clientConfig.getDn(), privateKeyFile, csrFile)) {
@@ -84,21 +83,13 @@ public class CreateClientCsr extends CreateClientCertificateBase {
 
 			if (isPasswordAutoGenerationEnabled(clientConfig.getPkPassword())) {
 				appendOutputFile(readmeFile, createPasswordInfo(privateKeyFile, privateKeyPassword));
-				passwordAutoGenerated = true;
+				ctx.getMetrics().increment(Metrics.CLIENT_PASSWORDS_GENERATED);
 			}
 
-			generatedCsrCount++;
+			ctx.getMetrics().increment(Metrics.CLIENT_CSRS);
 
 		} catch (OperatorCreationException | IOException e) {
 			throw new ToolException("Error while composing certificate", e);
 		}
 	}
-
-	public static int getGeneratedCsrCount() {
-		return generatedCsrCount;
-	}
-
-	public static boolean isPasswordAutoGenerated() {
-		return passwordAutoGenerated;
-	}
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.tasks;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bouncycastle.asn1.x509.CRLNumber;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.CertIOException;
+import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.operator.OperatorCreationException;
+
+import com.floragunn.searchguard.tools.tlstool.Config;
+import com.floragunn.searchguard.tools.tlstool.Context;
+import com.floragunn.searchguard.tools.tlstool.RevocationDatabase;
+import com.floragunn.searchguard.tools.tlstool.ToolException;
+
+/**
+ * Creates a CRL for the signing certificate. If a full CRL has already been
+ * created and is not older than half of its validity, a delta CRL containing
+ * only the revocations since that full CRL is created. Thus, a single
+ * revocation does not require to distribute a new full CRL.
+ */
+public class CreateCrl extends CrlTaskBase {
+	private static final Logger log = LogManager.getLogger(CreateCrl.class);
+
+	private final Config.Ca caConfig;
+	private final boolean forceFullCrl;
+
+	public CreateCrl(Context ctx, Config.Ca caConfig, boolean forceFullCrl) throws ToolException {
+		super(ctx);
+
+		if (caConfig == null) {
+			throw new ToolException("Configuration ca is required");
+		}
+
+		this.caConfig = caConfig;
+		this.forceFullCrl = forceFullCrl;
+	}
+
+	@Override
+	public void run() throws ToolException {
+		RevocationDatabase revocationDatabase = getRevocationDatabase();
+		Date now = new Date();
+		boolean full = forceFullCrl || !revocationDatabase.hasBaseCrl() || isBaseCrlDue(revocationDatabase, now);
+		long baseCrlNumber = revocationDatabase.getBaseCrlNumber();
+		long crlNumber = revocationDatabase.nextCrlNumber(full, now.getTime());
+		List<RevocationDatabase.Entry> entries = full ? revocationDatabase.getEntries()
+				: revocationDatabase.getEntriesSinceBase();
+
+		try {
+			X509v2CRLBuilder builder = new X509v2CRLBuilder(ctx.getSigningCertificate().getSubject(), now);
+			builder.setNextUpdate(
+					getEndDate(now, full ? caConfig.getCrlValidityDays() : caConfig.getDeltaCrlValidityDays()));
+
+			for (RevocationDatabase.Entry entry : entries) {
+				builder.addCRLEntry(entry.getSerial(), new Date(entry.getRevocationDate()), entry.getReason());
+			}
+
+			builder.addExtension(Extension.authorityKeyIdentifier, false,
+					getExtUtils().createAuthorityKeyIdentifier(ctx.getSigningCertificate()));
+			builder.addExtension(Extension.cRLNumber, false, new CRLNumber(BigInteger.valueOf(crlNumber)));
+
+			if (!full) {
+				builder.addExtension(Extension.deltaCRLIndicator, true,
+						new CRLNumber(BigInteger.valueOf(baseCrlNumber)));
+			}
+
+			X509CRLHolder crl = signCrl(builder, ctx.getSigningPrivateKey());
+
+			File crlFile = getSigningCaFile(full ? ".crl" : "-delta.crl");
+
+			ctx.getFileOutput().replace(crlFile, crl);
+			saveRevocationDatabase();
+
+			log.info("Created " + (full ? "full" : "delta") + " CRL #" + crlNumber + " with " + entries.size()
+					+ " entries: " + crlFile);
+		} catch (CertIOException | OperatorCreationException e) {
+			throw new ToolException("Error while composing CRL", e);
+		}
+	}
+
+	private boolean isBaseCrlDue(RevocationDatabase revocationDatabase, Date now) {
+		long halfValidity = caConfig.getCrlValidityDays() * 24L * 60 * 60 * 1000 / 2;
+		return revocationDatabase.getBaseCrlTime() + halfValidity < now.getTime();
+	}
+}
@@ -21,33 +21,27 @@ import java.io.File;
 import java.security.KeyPair;
 import java.util.Date;
 
-import org.bouncycastle.asn1.DERSequence;
 import org.bouncycastle.asn1.x500.X500Name;
-import org.bouncycastle.asn1.x509.BasicConstraints;
-import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
-import org.bouncycastle.asn1.x509.Extension;
-import org.bouncycastle.asn1.x509.KeyPurposeId;
-import org.bouncycastle.asn1.x509.KeyUsage;
 import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
 import org.bouncycastle.cert.CertIOException;
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cert.X509v3CertificateBuilder;
-import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
 import org.bouncycastle.operator.OperatorCreationException;
-import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 
 import com.floragunn.searchguard.tools.tlstool.Config;
 import com.floragunn.searchguard.tools.tlstool.Context;
+import com.floragunn.searchguard.tools.tlstool.Metrics;
+import com.floragunn.searchguard.tools.tlstool.Pkcs12KeyStore;
 import com.floragunn.searchguard.tools.tlstool.ToolException;
 
 public class CreateNodeCertificate extends CreateNodeCertificateBase {
 
-	private static int generatedCertificateCount = 0;
-	private static boolean passwordAutoGenerated = false;
-
 	private Config.Node nodeConfig;
 	private File certificateFile;
 	private File httpCertificateFile;
+	private File keyStoreFile;
+	private File httpKeyStoreFile;
+	private boolean reuseKeys;
 
 	public CreateNodeCertificate(Context ctx, Config.Node nodeConfig) {
 		super(ctx, nodeConfig);
@@ -56,16 +50,37 @@ public class CreateNodeCertificate extends CreateNodeCertificateBase {
 
 	@Override
 	public void run() throws ToolException {
-		privateKeyFile = new File(ctx.getTargetDirectory(), getNodeFileName(nodeConfig) + ".key");
-		certificateFile = new File(ctx.getTargetDirectory(), getNodeFileName(nodeConfig) + ".pem");
-		httpPrivateKeyFile = new File(ctx.getTargetDirectory(), getNodeFileName(nodeConfig) + "_http.key");
-		httpCertificateFile = new File(ctx.getTargetDirectory(), getNodeFileName(nodeConfig) + "_http.pem");
+		File directory = getNodeDirectory(nodeConfig);
+
+		privateKeyFile = new File(directory, getNodeFileName(nodeConfig) + ".key");
+		certificateFile = new File(directory, getNodeFileName(nodeConfig) + ".pem");
+		httpPrivateKeyFile = new File(directory, getNodeFileName(nodeConfig) + "_http.key");
+		httpCertificateFile = new File(directory, getNodeFileName(nodeConfig) + "_http.pem");
+		keyStoreFile = new File(directory, getNodeFileName(nodeConfig) + ".p12");
+		httpKeyStoreFile = new File(directory, getNodeFileName(nodeConfig) + "_http.p12");
 
-		configSnippetFile = new File(ctx.getTargetDirectory(),
+		configSnippetFile = new File(directory,
 				getNodeFileName(nodeConfig) + "_elasticsearch_config_snippet.yml");
 
-		if (!checkFileOverwrite("certificate", nodeConfig.getDn(), privateKeyFile, certificateFile, httpPrivateKeyFile,
-				httpCertificateFile)) {
+		if (ctx.isResign()) {
+			File[] certificateFiles = getCertificateFiles();
+
+			if (!checkResign("certificate", nodeConfig.getDn(), certificateFiles,
+					getPrivateKeyFiles(certificateFiles.length))) {
+				return;
+			}
+
+			reuseKeys = true;
+		} else if (ctx.getRenewWithinDays() != null) {
+			File[] certificateFiles = getCertificateFiles();
+
+			if (!checkRenewal("certificate", nodeConfig.getDn(), certificateFiles)) {
+				return;
+			}
+
+			reuseKeys = isKeyReusable(certificateFiles);
+		} else if (!checkFileOverwrite("certificate", nodeConfig.getDn(), privateKeyFile, certificateFile,
+				httpPrivateKeyFile, httpCertificateFile, keyStoreFile, httpKeyStoreFile)) {
 			return;
 		}
 
@@ -81,7 +96,25 @@ public class CreateNodeCertificate extends CreateNodeCertificateBase {
 			nodeResultConfig.setHttpsEnabled(false);
 		}
 
-		addOutputFile(configSnippetFile, createConfigSnippetComment(), createConfigSnippet());
+		if (!reuseKeys) {
+			// Key files and passwords stay the same if keys are reused. Thus, the snippet does not change.
+			addOutputFile(configSnippetFile, createConfigSnippetComment(), createConfigSnippet());
+		}
+
+		addTrustedCasLink(directory);
+	}
+
+	private File[] getCertificateFiles() {
+		if (ctx.getConfig().getDefaults().isHttpsEnabled()
+				&& !ctx.getConfig().getDefaults().isReuseTransportCertificatesForHttp()) {
+			return new File[] { certificateFile, httpCertificateFile };
+		} else {
+			return new File[] { certificateFile };
+		}
+	}
+
+	private File[] getPrivateKeyFiles(int count) {
+		return count == 2 ? new File[] { privateKeyFile, httpPrivateKeyFile } : new File[] { privateKeyFile };
 	}
 
 	private String createConfigSnippetComment() {
@@ -94,9 +127,10 @@ public class CreateNodeCertificate extends CreateNodeCertificateBase {
 
 	private void createTransportCertificate() throws ToolException {
 		try {
-			KeyPair nodeKeyPair = generateKeyPair(nodeConfig.getKeysize());
+			KeyPair nodeKeyPair = reuseKeys ? null : generateKeyPair(nodeConfig.getKeysize());
 
-			SubjectPublicKeyInfo subPubKeyInfo = SubjectPublicKeyInfo.getInstance(nodeKeyPair.getPublic().getEncoded());
+			SubjectPublicKeyInfo subPubKeyInfo = reuseKeys ? readExistingPublicKey(certificateFile, privateKeyFile, nodeConfig.getPkPassword())
+					: SubjectPublicKeyInfo.getInstance(nodeKeyPair.getPublic().getEncoded());
 			X500Name subjectName = createDn(nodeConfig.getDn(), "node");
 			Date validityStartDate = new Date(System.currentTimeMillis());
 			Date validityEndDate = getEndDate(validityStartDate, nodeConfig.getValidityDays());
@@ -104,29 +138,16 @@ public class CreateNodeCertificate extends CreateNodeCertificateBase {
 			X509v3CertificateBuilder builder = new X509v3CertificateBuilder(ctx.getSigningCertificate().getSubject(),
 					ctx.nextId(), validityStartDate, validityEndDate, subjectName, subPubKeyInfo);
 
-			JcaX509ExtensionUtils extUtils = getExtUtils();
-
-			builder.addExtension(Extension.authorityKeyIdentifier, false,
-					extUtils.createAuthorityKeyIdentifier(ctx.getSigningCertificate()))
-					.addExtension(Extension.subjectKeyIdentifier, false,
-							extUtils.createSubjectKeyIdentifier(nodeKeyPair.getPublic()))
-					.addExtension(Extension.basicConstraints, true, new BasicConstraints(false))
-					.addExtension(Extension.keyUsage, true,
-							new KeyUsage(
-									KeyUsage.digitalSignature | KeyUsage.nonRepudiation | KeyUsage.keyEncipherment))
-					.addExtension(Extension.extendedKeyUsage, true, new ExtendedKeyUsage(
-							new KeyPurposeId[] { KeyPurposeId.id_kp_serverAuth, KeyPurposeId.id_kp_clientAuth }));
+			addNodeCertificateExtensions(builder, subPubKeyInfo, createSubjectAlternativeNameList(true));
 
-			builder.addExtension(Extension.subjectAlternativeName, false,
-					new DERSequence(createSubjectAlternativeNameList(true)));
+			X509CertificateHolder nodeCertificate = signCertificate(builder, ctx.getSigningPrivateKey());
 
-			X509CertificateHolder nodeCertificate = builder
-					.build(new JcaContentSignerBuilder(ctx.getConfig().getDefaults().getSignatureAlgorithm())
-							.setProvider(ctx.getSecurityProvider()).build(ctx.getSigningPrivateKey()));
+			String privateKeyPassword = null;
 
-			String privateKeyPassword = getPassword(nodeConfig.getPkPassword());
-
-			addEncryptedOutputFile(privateKeyFile, privateKeyPassword, nodeKeyPair.getPrivate());
+			if (nodeKeyPair != null) {
+				privateKeyPassword = getPassword(nodeConfig.getPkPassword());
+				addEncryptedOutputFile(privateKeyFile, privateKeyPassword, nodeKeyPair.getPrivate());
+			}
 			
 			if (ctx.getConfig().getCa().getIntermediate() == null) {
 				addOutputFile(certificateFile, nodeCertificate);
@@ -134,15 +155,30 @@ public class CreateNodeCertificate extends CreateNodeCertificateBase {
 				addOutputFile(certificateFile, nodeCertificate, ctx.getSigningCertificate());
 			}
 
-			nodeResultConfig.setTransportPemCertFilePath(certificateFile.getName());
-			nodeResultConfig.setTransportPemKeyFilePath(privateKeyFile.getName());
-			nodeResultConfig.setTransportPemKeyPassword(privateKeyPassword);
-			nodeResultConfig.setTransportPemTrustedCasFilePath(ctx.getRootCaFile().getName());
+			addToInventory(nodeCertificate, certificateFile, privateKeyFile, nodeConfig);
+			addAdditionalCaCertificates(nodeCertificate, certificateFile, privateKeyFile, nodeConfig);
 
-			generatedCertificateCount++;
+			if (isPkcs12Enabled()) {
+				Pkcs12KeyStore keyStore = addKeyStore(keyStoreFile, getNodeFileName(nodeConfig), nodeKeyPair,
+						privateKeyFile, privateKeyPassword, nodeConfig.getPkPassword(), nodeCertificate);
 
-			if (isPasswordAutoGenerationEnabled(nodeConfig.getPkPassword())) {
-				passwordAutoGenerated = true;
+				nodeResultConfig.setTransportKeystoreType(Pkcs12KeyStore.TYPE);
+				nodeResultConfig.setTransportKeystoreFilePath(keyStoreFile.getName());
+				nodeResultConfig.setTransportKeystorePassword(keyStore.getPassword());
+				nodeResultConfig.setTransportTruststoreType(Pkcs12KeyStore.TYPE);
+				nodeResultConfig.setTransportTruststoreFilepath(addTrustStore().getName());
+				nodeResultConfig.setTransportTruststorePassword(Pkcs12KeyStore.DEFAULT_PASSWORD);
+			} else {
+				nodeResultConfig.setTransportPemCertFilePath(certificateFile.getName());
+				nodeResultConfig.setTransportPemKeyFilePath(privateKeyFile.getName());
+				nodeResultConfig.setTransportPemKeyPassword(privateKeyPassword);
+				nodeResultConfig.setTransportPemTrustedCasFilePath(ctx.getTrustedCasFile().getName());
+			}
+
+			ctx.getMetrics().increment(Metrics.NODE_CERTIFICATES);
+
+			if (nodeKeyPair != null && isPasswordAutoGenerationEnabled(nodeConfig.getPkPassword())) {
+				ctx.getMetrics().increment(Metrics.NODE_PASSWORDS_GENERATED);
 			}
 		} catch (CertIOException | OperatorCreationException e) {
 			throw new ToolException("Error while composing certificate for " + nodeConfig, e);
@@ -152,9 +188,11 @@ public class CreateNodeCertificate extends CreateNodeCertificateBase {
 	private void createRestCertificate() throws ToolException {
 
 		try {
-			KeyPair nodeKeyPair = generateKeyPair(nodeConfig.getKeysize());
+			KeyPair nodeKeyPair = reuseKeys ? null : generateKeyPair(nodeConfig.getKeysize());
 
-			SubjectPublicKeyInfo subPubKeyInfo = SubjectPublicKeyInfo.getInstance(nodeKeyPair.getPublic().getEncoded());
+			SubjectPublicKeyInfo subPubKeyInfo = reuseKeys ? readExistingPublicKey(httpCertificateFile, httpPrivateKeyFile,
+					nodeConfig.getPkPassword())
+					: SubjectPublicKeyInfo.getInstance(nodeKeyPair.getPublic().getEncoded());
 			X500Name subjectName = createDn(nodeConfig.getDn(), "node");
 			Date validityStartDate = new Date(System.currentTimeMillis());
 			Date validityEndDate = getEndDate(validityStartDate, nodeConfig.getValidityDays());
@@ -162,29 +200,16 @@ public class CreateNodeCertificate extends CreateNodeCertificateBase {
 			X509v3CertificateBuilder builder = new X509v3CertificateBuilder(ctx.getSigningCertificate().getSubject(),
 					ctx.nextId(), validityStartDate, validityEndDate, subjectName, subPubKeyInfo);
 
-			JcaX509ExtensionUtils extUtils = getExtUtils();
-
-			builder.addExtension(Extension.authorityKeyIdentifier, false,
-					extUtils.createAuthorityKeyIdentifier(ctx.getSigningCertificate()))
-					.addExtension(Extension.subjectKeyIdentifier, false,
-							extUtils.createSubjectKeyIdentifier(nodeKeyPair.getPublic()))
-					.addExtension(Extension.basicConstraints, true, new BasicConstraints(false))
-					.addExtension(Extension.keyUsage, true,
-							new KeyUsage(
-									KeyUsage.digitalSignature | KeyUsage.nonRepudiation | KeyUsage.keyEncipherment))
-					.addExtension(Extension.extendedKeyUsage, true, new ExtendedKeyUsage(
-							new KeyPurposeId[] { KeyPurposeId.id_kp_serverAuth, KeyPurposeId.id_kp_clientAuth }));
+			addNodeCertificateExtensions(builder, subPubKeyInfo, createSubjectAlternativeNameList(false));
 
-			builder.addExtension(Extension.subjectAlternativeName, false,
-					new DERSequence(createSubjectAlternativeNameList(false)));
+			X509CertificateHolder nodeCertificate = signCertificate(builder, ctx.getSigningPrivateKey());
 
-			X509CertificateHolder nodeCertificate = builder
-					.build(new JcaContentSignerBuilder(ctx.getConfig().getDefaults().getSignatureAlgorithm())
-							.setProvider(ctx.getSecurityProvider()).build(ctx.getSigningPrivateKey()));
+			String privateKeyPassword = null;
 
-			String privateKeyPassword = getPassword(nodeConfig.getPkPassword());
-
-			addEncryptedOutputFile(httpPrivateKeyFile, privateKeyPassword, nodeKeyPair.getPrivate());
+			if (nodeKeyPair != null) {
+				privateKeyPassword = getPassword(nodeConfig.getPkPassword());
+				addEncryptedOutputFile(httpPrivateKeyFile, privateKeyPassword, nodeKeyPair.getPrivate());
+			}
 			
 			if (ctx.getConfig().getCa().getIntermediate() == null) {
 				addOutputFile(httpCertificateFile, nodeCertificate);				
@@ -192,15 +217,30 @@ public class CreateNodeCertificate extends CreateNodeCertificateBase {
 				addOutputFile(httpCertificateFile, nodeCertificate, ctx.getSigningCertificate());
 			}
 
-			nodeResultConfig.setHttpPemCertFilePath(httpCertificateFile.getName());
-			nodeResultConfig.setHttpPemKeyFilePath(httpPrivateKeyFile.getName());
-			nodeResultConfig.setHttpPemKeyPassword(privateKeyPassword);
-			nodeResultConfig.setHttpPemTrustedCasFilePath(ctx.getRootCaFile().getName());
+			addToInventory(nodeCertificate, httpCertificateFile, httpPrivateKeyFile, nodeConfig);
+			addAdditionalCaCertificates(nodeCertificate, httpCertificateFile, httpPrivateKeyFile, nodeConfig);
 
-			generatedCertificateCount++;
+			if (isPkcs12Enabled()) {
+				Pkcs12KeyStore keyStore = addKeyStore(httpKeyStoreFile, getNodeFileName(nodeConfig), nodeKeyPair,
+						httpPrivateKeyFile, privateKeyPassword, nodeConfig.getPkPassword(), nodeCertificate);
 
-			if (isPasswordAutoGenerationEnabled(nodeConfig.getPkPassword())) {
-				passwordAutoGenerated = true;
+				nodeResultConfig.setHttpKeystoreType(Pkcs12KeyStore.TYPE);
+				nodeResultConfig.setHttpKeystoreFilepath(httpKeyStoreFile.getName());
+				nodeResultConfig.setHttpKeystorePassword(keyStore.getPassword());
+				nodeResultConfig.setHttpTruststoreType(Pkcs12KeyStore.TYPE);
+				nodeResultConfig.setHttpTruststoreFilepath(addTrustStore().getName());
+				nodeResultConfig.setHttpTruststorePassword(Pkcs12KeyStore.DEFAULT_PASSWORD);
+			} else {
+				nodeResultConfig.setHttpPemCertFilePath(httpCertificateFile.getName());
+				nodeResultConfig.setHttpPemKeyFilePath(httpPrivateKeyFile.getName());
+				nodeResultConfig.setHttpPemKeyPassword(privateKeyPassword);
+				nodeResultConfig.setHttpPemTrustedCasFilePath(ctx.getTrustedCasFile().getName());
+			}
+
+			ctx.getMetrics().increment(Metrics.NODE_CERTIFICATES);
+
+			if (nodeKeyPair != null && isPasswordAutoGenerationEnabled(nodeConfig.getPkPassword())) {
+				ctx.getMetrics().increment(Metrics.NODE_PASSWORDS_GENERATED);
 			}
 
 		} catch (CertIOException | OperatorCreationException e) {
@@ -213,14 +253,12 @@ public class CreateNodeCertificate extends CreateNodeCertificateBase {
 		nodeResultConfig.setHttpPemKeyFilePath(nodeResultConfig.getTransportPemKeyFilePath());
 		nodeResultConfig.setHttpPemKeyPassword(nodeResultConfig.getTransportPemKeyPassword());
 		nodeResultConfig.setHttpPemTrustedCasFilePath(nodeResultConfig.getTransportPemTrustedCasFilePath());
-	}
-
-	public static int getGeneratedCertificateCount() {
-		return generatedCertificateCount;
-	}
-
-	public static boolean isPasswordAutoGenerated() {
-		return passwordAutoGenerated;
+		nodeResultConfig.setHttpKeystoreType(nodeResultConfig.getTransportKeystoreType());
+		nodeResultConfig.setHttpKeystoreFilepath(nodeResultConfig.getTransportKeystoreFilePath());
+		nodeResultConfig.setHttpKeystorePassword(nodeResultConfig.getTransportKeystorePassword());
+		nodeResultConfig.setHttpTruststoreType(nodeResultConfig.getTransportTruststoreType());
+		nodeResultConfig.setHttpTruststoreFilepath(nodeResultConfig.getTransportTruststoreFilepath());
+		nodeResultConfig.setHttpTruststorePassword(nodeResultConfig.getTransportTruststorePassword());
 	}
 
 }
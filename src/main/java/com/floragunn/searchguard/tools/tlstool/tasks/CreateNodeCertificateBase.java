@@ -30,9 +30,12 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.fasterxml.jackson.dataformat.yaml.YAMLGenerator;
 import com.floragunn.searchguard.support.WildcardMatcher;
+import com.floragunn.searchguard.tools.tlstool.BundleLayout;
 import com.floragunn.searchguard.tools.tlstool.Config;
 import com.floragunn.searchguard.tools.tlstool.Context;
+import com.floragunn.searchguard.tools.tlstool.Timings;
 import com.floragunn.searchguard.tools.tlstool.ToolException;
+import com.floragunn.searchguard.tools.tlstool.source.NodeRangeSource;
 import com.floragunn.searchguard.tools.util.EsNodeConfig;
 import com.google.common.base.Strings;
 
@@ -71,6 +74,13 @@ public abstract class CreateNodeCertificateBase extends Task {
 		return subjectAlternativeNameList.toArray(new ASN1Encodable[subjectAlternativeNameList.size()]);
 	}
 
+	/**
+	 * The directory for the files of the given node; see {@link BundleLayout}
+	 */
+	protected File getNodeDirectory(Config.Node node) {
+		return BundleLayout.getDirectory(ctx, BundleLayout.NODES, getNodeFileName(node));
+	}
+
 	protected String getNodeFileName(Config.Node node) {
 		if (node.getName() != null) {
 			return node.getName();
@@ -88,12 +98,12 @@ public abstract class CreateNodeCertificateBase extends Task {
 			}
 		}
 
-		return "node" + (ctx.getConfig().getNodes().indexOf(node) + 1);
+		return getNumberedFileName("node", ctx.getConfig().getNodes(), node);
 	}
 
 	protected String createConfigSnippet() throws ToolException {
 
-		try {
+		try (Timings.Timer timer = ctx.getTimings().start("snippet")) {
 
 			nodeResultConfig.setAuthczAdminDn(collectAdminDn());
 
@@ -145,7 +155,8 @@ public abstract class CreateNodeCertificateBase extends Task {
 
 		for (Config.Node node : ctx.getConfig().getNodes()) {
 			if (node.getDn() != null) {
-				result.add(sanitizeDn(node.getDn(), "node"));
+				// Nodes generated from a range are matched by a wildcard pattern
+				result.add(sanitizeDn(NodeRangeSource.toWildcard(node.getDn()), "node"));
 			}
 		}
 
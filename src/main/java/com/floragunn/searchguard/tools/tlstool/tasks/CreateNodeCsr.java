@@ -38,12 +38,10 @@ import org.bouncycastle.pkcs.jcajce.JcaPKCS10CertificationRequestBuilder;
 
 import com.floragunn.searchguard.tools.tlstool.Config;
 import com.floragunn.searchguard.tools.tlstool.Context;
+import com.floragunn.searchguard.tools.tlstool.Metrics;
 import com.floragunn.searchguard.tools.tlstool.ToolException;
 
 public class CreateNodeCsr extends CreateNodeCertificateBase {
-	private static int generatedCsrCount = 0;
-	private static boolean passwordAutoGenerated = false;
-
 	private Config.Node nodeConfig;
 	private File transportCsrFile;
 	private File httpCsrFile;
@@ -55,11 +53,13 @@ public class CreateNodeCsr extends CreateNodeCertificateBase {
 
 	@Override
 	public void run() throws ToolException {
-		privateKeyFile = new File(ctx.getTargetDirectory(), getNodeFileName(nodeConfig) + ".key");
-		transportCsrFile = new File(ctx.getTargetDirectory(), getNodeFileName(nodeConfig) + ".csr");
-		httpPrivateKeyFile = new File(ctx.getTargetDirectory(), getNodeFileName(nodeConfig) + "_http.key");
-		httpCsrFile = new File(ctx.getTargetDirectory(), getNodeFileName(nodeConfig) + "_http.csr");
-		configSnippetFile = new File(ctx.getTargetDirectory(),
+		File directory = getNodeDirectory(nodeConfig);
+
+		privateKeyFile = new File(directory, getNodeFileName(nodeConfig) + ".key");
+		transportCsrFile = new File(directory, getNodeFileName(nodeConfig) + ".csr");
+		httpPrivateKeyFile = new File(directory, getNodeFileName(nodeConfig) + "_http.key");
+		httpCsrFile = new File(directory, getNodeFileName(nodeConfig) + "_http.csr");
+		configSnippetFile = new File(directory,
 				getNodeFileName(nodeConfig) + "_elasticsearch_config_snippet.yml");
 
 		if (!checkFileOverwrite("certificate", nodeConfig.getDn(), privateKeyFile, transportCsrFile, httpPrivateKeyFile,
@@ -136,10 +136,10 @@ public class CreateNodeCsr extends CreateNodeCertificateBase {
 			nodeResultConfig.setTransportPemCertFilePath(
 					"<path to transport certificate for " + getNodeFileName(nodeConfig) + ">");
 
-			generatedCsrCount++;
+			ctx.getMetrics().increment(Metrics.NODE_CSRS);
 
 			if (isPasswordAutoGenerationEnabled(nodeConfig.getPkPassword())) {
-				passwordAutoGenerated = true;
+				ctx.getMetrics().increment(Metrics.NODE_PASSWORDS_GENERATED);
 			}
 
 		} catch (OperatorCreationException | IOException e) {
@@ -183,10 +183,10 @@ public class CreateNodeCsr extends CreateNodeCertificateBase {
 			nodeResultConfig
 					.setHttpPemCertFilePath("<path to HTTP certificate for " + getNodeFileName(nodeConfig) + ">");
 
-			generatedCsrCount++;
+			ctx.getMetrics().increment(Metrics.NODE_CSRS);
 
 			if (isPasswordAutoGenerationEnabled(nodeConfig.getPkPassword())) {
-				passwordAutoGenerated = true;
+				ctx.getMetrics().increment(Metrics.NODE_PASSWORDS_GENERATED);
 			}
 
 		} catch (OperatorCreationException | IOException e) {
@@ -194,14 +194,6 @@ public class CreateNodeCsr extends CreateNodeCertificateBase {
 		}
 	}
 
-	public static int getGeneratedCsrCount() {
-		return generatedCsrCount;
-	}
-
-	public static boolean isPasswordAutoGenerated() {
-		return passwordAutoGenerated;
-	}
-
 	private void addTransportCertificateToConfigAsHttpCertificate() {
 		nodeResultConfig.setHttpPemCertFilePath(nodeResultConfig.getTransportPemCertFilePath());
 		nodeResultConfig.setHttpPemKeyFilePath(nodeResultConfig.getTransportPemKeyFilePath());
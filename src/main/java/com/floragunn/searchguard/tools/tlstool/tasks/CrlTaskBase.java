@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.tasks;
+
+import java.io.File;
+
+import org.apache.commons.io.FilenameUtils;
+
+import com.floragunn.searchguard.tools.tlstool.Context;
+import com.floragunn.searchguard.tools.tlstool.RevocationDatabase;
+import com.floragunn.searchguard.tools.tlstool.ToolException;
+
+public abstract class CrlTaskBase extends Task {
+
+	protected CrlTaskBase(Context ctx) {
+		super(ctx);
+	}
+
+	protected RevocationDatabase getRevocationDatabase() throws ToolException {
+		if (ctx.getRevocationDatabase() == null) {
+			ctx.setRevocationDatabase(RevocationDatabase.load(getSigningCaFile(".revoked")));
+		}
+
+		return ctx.getRevocationDatabase();
+	}
+
+	protected void saveRevocationDatabase() throws ToolException {
+		RevocationDatabase revocationDatabase = getRevocationDatabase();
+		ctx.getFileOutput().replace(revocationDatabase.getFile(), revocationDatabase.toString());
+	}
+
+	/**
+	 * Returns a file next to the signing certificate; for example signing-ca.crl
+	 * for signing-ca.pem
+	 */
+	protected File getSigningCaFile(String suffix) throws ToolException {
+		if (ctx.getSigningCertificateFile() == null) {
+			throw new ToolException("No signing certificate is available");
+		}
+
+		return new File(FilenameUtils.removeExtension(ctx.getSigningCertificateFile().getPath()) + suffix);
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.tasks;
+
+import java.io.File;
+import java.security.PrivateKey;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bouncycastle.cert.X509CertificateHolder;
+
+import com.floragunn.searchguard.tools.tlstool.Config;
+import com.floragunn.searchguard.tools.tlstool.Context;
+import com.floragunn.searchguard.tools.tlstool.FileOutput;
+import com.floragunn.searchguard.tools.tlstool.SigningCa;
+import com.floragunn.searchguard.tools.tlstool.ToolException;
+import com.google.common.base.Strings;
+
+/**
+ * Loads an existing CA configured in ca.additional. Certificates issued
+ * afterwards are signed by this CA, too. Additionally, a bundle of all trusted
+ * root certificates is written.
+ */
+public class LoadAdditionalCa extends Task {
+	private static final Logger log = LogManager.getLogger(LoadAdditionalCa.class);
+
+	static final String TRUSTED_CAS_FILE_NAME = "trusted-cas.pem";
+
+	private final Config.Ca caConfig;
+	private final File rootCertFile;
+	private final File keyFile;
+	private final File certFile;
+
+	public LoadAdditionalCa(Context ctx, Config.Ca caConfig) throws ToolException {
+		super(ctx);
+		this.caConfig = caConfig;
+
+		if (Strings.isNullOrEmpty(caConfig.getName())) {
+			throw new ToolException("Configuration ca.additional.name is required");
+		}
+
+		if (caConfig.getRoot() == null) {
+			throw new ToolException("Configuration ca.additional.root is required for " + caConfig.getName());
+		}
+
+		String fileNameBase = caConfig.getName() + (caConfig.getIntermediate() != null ? "-signing-ca" : "-root-ca");
+		Config.Ca.Certificate signingCertificateConfig = caConfig.getSigningCertificate();
+
+		this.rootCertFile = getConfiguredFile(caConfig.getRoot().getFile(), caConfig.getName() + "-root-ca.pem",
+				"pem");
+		this.keyFile = getConfiguredFile(signingCertificateConfig.getFile(), fileNameBase + ".key", "key");
+		this.certFile = getConfiguredFile(signingCertificateConfig.getFile(), fileNameBase + ".pem", "pem");
+	}
+
+	@Override
+	public void run() throws ToolException {
+		for (SigningCa existing : ctx.getAdditionalSigningCas()) {
+			if (existing.getName().equals(caConfig.getName())) {
+				throw new ToolException("Duplicate name in ca.additional: " + caConfig.getName());
+			}
+		}
+
+		PrivateKey signingPrivateKey = readObjectFromPem(keyFile, PrivateKey.class,
+				caConfig.getSigningCertificate().getPkPassword());
+		X509CertificateHolder signingCertificate = readObjectFromPem(certFile, X509CertificateHolder.class);
+		X509CertificateHolder rootCertificate = readObjectFromPem(rootCertFile, X509CertificateHolder.class);
+
+		ctx.addAdditionalSigningCa(new SigningCa(caConfig, signingCertificate, signingPrivateKey, rootCertificate));
+
+		addToTrustedCas(rootCertificate);
+
+		log.info("Using additional signing certificate: " + certFile.getAbsolutePath());
+	}
+
+	private void addToTrustedCas(X509CertificateHolder rootCertificate) throws ToolException {
+		File trustedCasFile = new File(ctx.getTargetDirectory(), TRUSTED_CAS_FILE_NAME);
+
+		if (ctx.getFileOutput().getEntryByFileName(trustedCasFile.getPath()) == null) {
+			appendOutputFile(trustedCasFile, getPrimaryRootCertificate());
+			ctx.setTrustedCasFile(trustedCasFile);
+		}
+
+		appendOutputFile(trustedCasFile, rootCertificate);
+	}
+
+	/**
+	 * The root certificate might have been just created by CreateCa; in this case,
+	 * it is only available in the file output.
+	 */
+	private X509CertificateHolder getPrimaryRootCertificate() throws ToolException {
+		FileOutput.FileEntry fileEntry = ctx.getFileOutput().getEntryByFileName(ctx.getRootCaFile().getPath());
+
+		if (fileEntry != null) {
+			return (X509CertificateHolder) fileEntry.getEntries().get(0);
+		} else {
+			return readObjectFromPem(ctx.getRootCaFile(), X509CertificateHolder.class);
+		}
+	}
+}
@@ -67,7 +67,8 @@ public class LoadCa extends Task {
 
 		ctx.setSigningPrivateKey(readObjectFromPem(keyFile, PrivateKey.class, signingCertificateConfig.getPkPassword()));
 		ctx.setSigningCertificate(readObjectFromPem(certFile, X509CertificateHolder.class));
+		ctx.setSigningCertificateFile(certFile);
 
-		log.info("Using signing certificate: " + certFile.getAbsolutePath());
+		log.info("Using signing certificate: " + getExistingFile(certFile).getAbsolutePath());
 	}
 }
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.tasks;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.floragunn.searchguard.tools.tlstool.Config;
+import com.floragunn.searchguard.tools.tlstool.Context;
+import com.floragunn.searchguard.tools.tlstool.ToolException;
+import com.floragunn.searchguard.tools.tlstool.source.ConfigRecordSource;
+import com.floragunn.searchguard.tools.tlstool.source.NodeRangeSource;
+import com.floragunn.searchguard.tools.tlstool.source.RecordSource;
+import com.floragunn.searchguard.tools.tlstool.source.RecordSourceException;
+
+/**
+ * Streams config records from a record source and runs a task for each record.
+ * The tasks are created only when the respective record has been read. The
+ * files of each task are handed over to the write stage when the task has
+ * finished.
+ * 
+ * Records which provide no name for their files are named by the fallback file
+ * name prefix followed by their running index within the source.
+ */
+public class ProcessConfigSource<T> extends Task {
+	private static final Logger log = LogManager.getLogger(ProcessConfigSource.class);
+
+	private final SourceFactory<T> sourceFactory;
+	private final TaskFactory<T> taskFactory;
+	private final String fallbackFileNamePrefix;
+	private int recordCount;
+
+	public ProcessConfigSource(Context ctx, SourceFactory<T> sourceFactory, TaskFactory<T> taskFactory) {
+		this(ctx, sourceFactory, null, taskFactory);
+	}
+
+	public ProcessConfigSource(Context ctx, SourceFactory<T> sourceFactory, String fallbackFileNamePrefix,
+			TaskFactory<T> taskFactory) {
+		super(ctx);
+		this.sourceFactory = sourceFactory;
+		this.fallbackFileNamePrefix = fallbackFileNamePrefix;
+		this.taskFactory = taskFactory;
+	}
+
+	/**
+	 * The fallback file names are derived from the name of the file without
+	 * extensions, like cmdb-export-17 for the 17th record of cmdb-export.csv.gz.
+	 */
+	public ProcessConfigSource(Context ctx, File file, Class<T> type, TaskFactory<T> taskFactory) {
+		this(ctx, () -> ConfigRecordSource.open(file, type), getBaseName(file) + "-", taskFactory);
+	}
+
+	/**
+	 * Processes the nodes of a range from the nodes section of the config. The
+	 * fallback file names are like node3-17 for the 17th node of the third entry.
+	 */
+	public static ProcessConfigSource<Config.Node> forNodeRange(Context ctx, Config.Node template,
+			TaskFactory<Config.Node> taskFactory) {
+		return new ProcessConfigSource<>(ctx, () -> NodeRangeSource.expand(template),
+				"node" + (ctx.getConfig().getNodes().indexOf(template) + 1) + "-", taskFactory);
+	}
+
+	@Override
+	public void run() throws ToolException {
+		String name = null;
+
+		try (RecordSource<T> source = sourceFactory.open()) {
+			name = source.getName();
+
+			while (source.hasNext()) {
+				T record = source.next();
+				recordCount++;
+
+				Task task = taskFactory.create(record);
+
+				if (fallbackFileNamePrefix != null) {
+					task.setFallbackFileName(fallbackFileNamePrefix + recordCount);
+				}
+
+				log.debug("Executing: " + task);
+				task.run();
+				ctx.getFileOutput().flush();
+			}
+		} catch (RecordSourceException e) {
+			throw new ToolException(e.getMessage(), e);
+		} catch (IOException e) {
+			throw new ToolException("Error while reading " + name + ": " + e, e);
+		}
+
+		log.debug("Processed " + recordCount + " records from " + name);
+	}
+
+	public int getRecordCount() {
+		return recordCount;
+	}
+
+	private static String getBaseName(File file) {
+		String name = file.getName();
+		int dot = name.indexOf('.');
+
+		return dot > 0 ? name.substring(0, dot) : name;
+	}
+
+	@FunctionalInterface
+	public interface SourceFactory<T> {
+		RecordSource<T> open() throws ToolException;
+	}
+
+	@FunctionalInterface
+	public interface TaskFactory<T> {
+		Task create(T record) throws ToolException;
+	}
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.tasks;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.floragunn.searchguard.tools.tlstool.Context;
+import com.floragunn.searchguard.tools.tlstool.ToolException;
+import com.floragunn.searchguard.tools.tlstool.inventory.CertificateInventory;
+import com.floragunn.searchguard.tools.tlstool.inventory.InventoryRecord;
+
+public class QueryInventory extends Task {
+	private static final Logger log = LogManager.getLogger(QueryInventory.class);
+
+	private final String query;
+	private List<InventoryRecord> result;
+
+	public QueryInventory(Context ctx, String query) {
+		super(ctx);
+		this.query = query;
+	}
+
+	@Override
+	public void run() throws ToolException {
+		CertificateInventory inventory = CertificateInventory.forTargetDirectory(ctx.getTargetDirectory());
+
+		try {
+			result = inventory.query(query);
+		} catch (IllegalArgumentException e) {
+			throw new ToolException(e.getMessage(), e);
+		} catch (IOException e) {
+			throw new ToolException("Error while reading inventory " + inventory.getDirectory() + ": " + e, e);
+		}
+
+		if (result.isEmpty()) {
+			log.info("No certificates in the inventory match " + query);
+		} else {
+			log.info(result.size() + " certificates in the inventory match " + query + ":");
+
+			for (InventoryRecord record : result) {
+				log.info(record);
+			}
+		}
+	}
+
+	public List<InventoryRecord> getResult() {
+		return result;
+	}
+
+}
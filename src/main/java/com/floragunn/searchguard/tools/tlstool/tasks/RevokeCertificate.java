@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.tasks;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.cert.X509CertificateHolder;
+
+import com.floragunn.searchguard.tools.tlstool.Context;
+import com.floragunn.searchguard.tools.tlstool.RevocationDatabase;
+import com.floragunn.searchguard.tools.tlstool.ToolException;
+
+public class RevokeCertificate extends CrlTaskBase {
+	private static final Logger log = LogManager.getLogger(RevokeCertificate.class);
+
+	private static final String[] REASON_NAMES = new String[] { "unspecified", "keyCompromise", "cACompromise",
+			"affiliationChanged", "superseded", "cessationOfOperation", "certificateHold", null, "removeFromCRL",
+			"privilegeWithdrawn", "aACompromise" };
+
+	private final List<String> certificates;
+	private final int reason;
+
+	public RevokeCertificate(Context ctx, List<String> certificates, String reason) throws ToolException {
+		super(ctx);
+		this.certificates = certificates;
+		this.reason = parseReason(reason);
+	}
+
+	@Override
+	public void run() throws ToolException {
+		RevocationDatabase revocationDatabase = getRevocationDatabase();
+		long now = System.currentTimeMillis();
+		int count = 0;
+
+		for (String certificate : certificates) {
+			BigInteger serial = getSerial(certificate);
+
+			if (revocationDatabase.isRevoked(serial)) {
+				log.info("Certificate " + serial + " is already revoked");
+				continue;
+			}
+
+			revocationDatabase.revoke(serial, now, reason);
+			count++;
+		}
+
+		saveRevocationDatabase();
+
+		log.info("Revoked " + count + " certificates. Use --create-crl to publish the revocation.");
+	}
+
+	private BigInteger getSerial(String certificate) throws ToolException {
+		File file = new File(certificate);
+
+		if (file.isFile()) {
+			X509CertificateHolder certificateHolder = readObjectFromPem(file, X509CertificateHolder.class);
+
+			if (!certificateHolder.getIssuer().equals(ctx.getSigningCertificate().getSubject())) {
+				throw new ToolException("The certificate in " + file + " was not issued by "
+						+ ctx.getSigningCertificate().getSubject());
+			}
+
+			return certificateHolder.getSerialNumber();
+		}
+
+		try {
+			if (certificate.startsWith("0x") || certificate.startsWith("0X")) {
+				return new BigInteger(certificate.substring(2), 16);
+			} else {
+				return new BigInteger(certificate);
+			}
+		} catch (NumberFormatException e) {
+			throw new ToolException(
+					"Invalid certificate to be revoked: " + certificate + ". Specify a serial number or a PEM file.");
+		}
+	}
+
+	private static int parseReason(String reason) throws ToolException {
+		if (reason == null) {
+			return CRLReason.unspecified;
+		}
+
+		for (int i = 0; i < REASON_NAMES.length; i++) {
+			if (reason.equalsIgnoreCase(REASON_NAMES[i])) {
+				return i;
+			}
+		}
+
+		throw new ToolException("Invalid revocation reason: " + reason);
+	}
+}
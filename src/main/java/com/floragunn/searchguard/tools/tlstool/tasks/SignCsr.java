@@ -0,0 +1,250 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.tasks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.pkcs.Attribute;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.cert.CertIOException;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
+import org.bouncycastle.pkcs.PKCS10CertificationRequest;
+import org.bouncycastle.pkcs.PKCSException;
+
+import com.floragunn.searchguard.tools.tlstool.Context;
+import com.floragunn.searchguard.tools.tlstool.Metrics;
+import com.floragunn.searchguard.tools.tlstool.ToolException;
+import com.google.common.base.Strings;
+
+/**
+ * Signs the certificate signing requests (*.csr) found in a directory with the
+ * local CA. Certificates requesting the serverAuth extended key usage are
+ * issued using the node certificate profile, all others using the client
+ * certificate profile.
+ */
+public class SignCsr extends Task {
+	private static final Logger log = LogManager.getLogger(SignCsr.class);
+
+	private final File csrDirectory;
+
+	public SignCsr(Context ctx, File csrDirectory) {
+		super(ctx);
+		this.csrDirectory = csrDirectory;
+	}
+
+	@Override
+	public void run() throws ToolException {
+		List<File> csrFiles = listCsrFiles();
+
+		// Parsing and verifying the requests is independent of the CA state; thus, it can be done in parallel
+		List<VerifiedCsr> verifiedCsrs = csrFiles.parallelStream().map(this::verify).collect(Collectors.toList());
+
+		List<String> errors = verifiedCsrs.stream().filter((csr) -> csr.error != null)
+				.map((csr) -> csr.file + ": " + csr.error).collect(Collectors.toList());
+
+		if (!errors.isEmpty()) {
+			throw new ToolException("Invalid certificate signing requests:\n" + String.join("\n", errors));
+		}
+
+		for (VerifiedCsr verifiedCsr : verifiedCsrs) {
+			sign(verifiedCsr);
+			ctx.getFileOutput().flush();
+		}
+	}
+
+	private List<File> listCsrFiles() throws ToolException {
+		if (!csrDirectory.isDirectory()) {
+			throw new ToolException("CSR directory does not exist: " + csrDirectory);
+		}
+
+		List<File> result = new ArrayList<>();
+
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(csrDirectory.toPath(), "*.csr")) {
+			for (Path path : stream) {
+				result.add(path.toFile());
+			}
+		} catch (IOException e) {
+			throw new ToolException("Error while reading " + csrDirectory + ": " + e, e);
+		}
+
+		if (result.isEmpty()) {
+			log.info("No *.csr files found in " + csrDirectory);
+		}
+
+		result.sort(null);
+
+		return result;
+	}
+
+	private VerifiedCsr verify(File file) {
+		VerifiedCsr result = new VerifiedCsr(file);
+
+		try {
+			PKCS10CertificationRequest csr = readObjectFromPem(file, PKCS10CertificationRequest.class);
+
+			if (!csr.isSignatureValid(new JcaContentVerifierProviderBuilder().setProvider(ctx.getSecurityProvider())
+					.build(csr.getSubjectPublicKeyInfo()))) {
+				result.error = "Invalid signature";
+				return result;
+			}
+
+			result.csr = csr;
+
+			Extensions requestedExtensions = getRequestedExtensions(csr);
+
+			if (requestedExtensions != null) {
+				for (ASN1ObjectIdentifier oid : requestedExtensions.getExtensionOIDs()) {
+					if (!oid.equals(Extension.subjectAlternativeName) && !oid.equals(Extension.keyUsage)
+							&& !oid.equals(Extension.extendedKeyUsage)
+							&& requestedExtensions.getExtension(oid).isCritical()) {
+						result.error = "Unsupported critical extension " + oid;
+						return result;
+					}
+				}
+
+				ExtendedKeyUsage extendedKeyUsage = ExtendedKeyUsage.fromExtensions(requestedExtensions);
+				result.node = extendedKeyUsage != null && extendedKeyUsage.hasKeyPurposeId(KeyPurposeId.id_kp_serverAuth);
+
+				GeneralNames generalNames = GeneralNames.fromExtensions(requestedExtensions,
+						Extension.subjectAlternativeName);
+
+				if (generalNames != null) {
+					result.subjectAlternativeNames = checkSubjectAlternativeNames(generalNames.getNames());
+				}
+			}
+		} catch (ToolException | OperatorCreationException | PKCSException | IllegalArgumentException e) {
+			result.error = e.getMessage();
+		}
+
+		return result;
+	}
+
+	private Extensions getRequestedExtensions(PKCS10CertificationRequest csr) {
+		for (Attribute attribute : csr.getAttributes(PKCSObjectIdentifiers.pkcs_9_at_extensionRequest)) {
+			if (attribute.getAttrValues().size() > 0) {
+				return Extensions.getInstance(attribute.getAttrValues().getObjectAt(0));
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Only DNS names, IP addresses and the configured node OID are accepted. The
+	 * node OID identifies certificates of cluster nodes; thus, no other OIDs may be
+	 * requested. Returns null if no names are requested; an empty extension would
+	 * not be valid.
+	 */
+	private ASN1Encodable[] checkSubjectAlternativeNames(GeneralName[] generalNames) throws ToolException {
+		String nodeOid = ctx.getConfig().getDefaults().getNodeOid();
+
+		for (GeneralName generalName : generalNames) {
+			switch (generalName.getTagNo()) {
+			case GeneralName.dNSName:
+			case GeneralName.iPAddress:
+				break;
+			case GeneralName.registeredID:
+				if (Strings.isNullOrEmpty(nodeOid)
+						|| !ASN1ObjectIdentifier.getInstance(generalName.getName()).getId().equals(nodeOid)) {
+					throw new ToolException(
+							"Requested OID " + generalName.getName() + " is not allowed");
+				}
+				break;
+			default:
+				throw new ToolException(
+						"Unsupported subject alternative name " + generalName);
+			}
+		}
+
+		return generalNames.length > 0 ? generalNames : null;
+	}
+
+	private void sign(VerifiedCsr verifiedCsr) throws ToolException {
+		File certificateFile = new File(ctx.getTargetDirectory(),
+				FilenameUtils.getBaseName(verifiedCsr.file.getName()) + ".pem");
+
+		if (!checkFileOverwrite("certificate", verifiedCsr.csr.getSubject().toString(), certificateFile)) {
+			return;
+		}
+
+		try {
+			Date validityStartDate = new Date(System.currentTimeMillis());
+			Date validityEndDate = getEndDate(validityStartDate, ctx.getConfig().getDefaults().getValidityDays());
+
+			X509v3CertificateBuilder builder = new X509v3CertificateBuilder(ctx.getSigningCertificate().getSubject(),
+					ctx.nextId(), validityStartDate, validityEndDate, verifiedCsr.csr.getSubject(),
+					verifiedCsr.csr.getSubjectPublicKeyInfo());
+
+			if (verifiedCsr.node) {
+				addNodeCertificateExtensions(builder, verifiedCsr.csr.getSubjectPublicKeyInfo(),
+						verifiedCsr.subjectAlternativeNames);
+			} else {
+				addClientCertificateExtensions(builder, verifiedCsr.csr.getSubjectPublicKeyInfo());
+			}
+
+			X509CertificateHolder certificate = signCertificate(builder, ctx.getSigningPrivateKey());
+
+			if (ctx.getConfig().getCa().getIntermediate() == null) {
+				addOutputFile(certificateFile, certificate);
+			} else {
+				addOutputFile(certificateFile, certificate, ctx.getSigningCertificate());
+			}
+
+			addToInventory(certificate, certificateFile, null, null);
+			addAdditionalCaCertificates(certificate, certificateFile, null, null);
+
+			ctx.getMetrics().increment(Metrics.SIGNED_CSRS);
+		} catch (CertIOException | OperatorCreationException e) {
+			throw new ToolException("Error while signing " + verifiedCsr.file, e);
+		}
+	}
+
+	private static class VerifiedCsr {
+		private final File file;
+		private PKCS10CertificationRequest csr;
+		private boolean node;
+		private ASN1Encodable[] subjectAlternativeNames;
+		private String error;
+
+		VerifiedCsr(File file) {
+			this.file = file;
+		}
+	}
+}
@@ -18,29 +18,52 @@
 package com.floragunn.searchguard.tools.tlstool.tasks;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
-
-import javax.naming.InvalidNameException;
-import javax.naming.ldap.LdapName;
+import java.util.List;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.text.CharacterPredicates;
 import org.apache.commons.text.RandomStringGenerator;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DERSequence;
 import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
-import org.bouncycastle.asn1.x500.RDN;
 import org.bouncycastle.asn1.x500.X500Name;
-import org.bouncycastle.asn1.x500.style.RFC4519Style;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.CRLDistPoint;
+import org.bouncycastle.asn1.x509.DistributionPoint;
+import org.bouncycastle.asn1.x509.DistributionPointName;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.cert.CertIOException;
+import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
 import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
 import org.bouncycastle.openssl.PEMEncryptedKeyPair;
 import org.bouncycastle.openssl.PEMException;
@@ -49,38 +72,101 @@ import org.bouncycastle.openssl.PEMParser;
 import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
 import org.bouncycastle.openssl.jcajce.JceOpenSSLPKCS8DecryptorProviderBuilder;
 import org.bouncycastle.openssl.jcajce.JcePEMDecryptorProviderBuilder;
+import org.bouncycastle.operator.ContentSigner;
 import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 import org.bouncycastle.pkcs.PKCS8EncryptedPrivateKeyInfo;
 import org.bouncycastle.pkcs.PKCSException;
 
+import com.floragunn.searchguard.tools.jfr.FlightRecorderEvents;
+import com.floragunn.searchguard.tools.tlstool.CertificateProfile;
 import com.floragunn.searchguard.tools.tlstool.Config;
 import com.floragunn.searchguard.tools.tlstool.Context;
+import com.floragunn.searchguard.tools.tlstool.DnCache;
+import com.floragunn.searchguard.tools.tlstool.FileOutput;
+import com.floragunn.searchguard.tools.tlstool.Pkcs12KeyStore;
+import com.floragunn.searchguard.tools.tlstool.SigningCa;
+import com.floragunn.searchguard.tools.tlstool.Timings;
 import com.floragunn.searchguard.tools.tlstool.ToolException;
+import com.floragunn.searchguard.tools.tlstool.inventory.InventoryRecord;
+import com.floragunn.searchguard.tools.util.PemFileUtils;
 import com.google.common.base.Strings;
 
 public abstract class Task {
 	private static final Logger log = LogManager.getLogger(Task.class);
 
+	static final String TRUSTSTORE_FILE_NAME = "truststore.p12";
+
 	protected final Context ctx;
 
+	private String fallbackFileName;
+
 	protected Task(Context ctx) {
 		this.ctx = ctx;
 	}
 
 	public abstract void run() throws ToolException;
 
+	/**
+	 * The file name used for records from a ProcessConfigSource which have
+	 * neither a name nor a DNS name or CN to derive the file name from.
+	 */
+	void setFallbackFileName(String fallbackFileName) {
+		this.fallbackFileName = fallbackFileName;
+	}
+
 	protected KeyPair generateKeyPair(int keySize) throws ToolException {
-		try {
+		if (ctx.getKeyGenerationStage() != null) {
+			// The stage records keygen and emits the key generation events on its own
+			// threads; here, only the time waited for the key pair is measured
+			try (Timings.Timer timer = ctx.getTimings().start("keygen-wait")) {
+				return ctx.getKeyGenerationStage().take(keySize);
+			}
+		}
+
+		Object event = FlightRecorderEvents.beginKeyGeneration();
+
+		try (Timings.Timer timer = ctx.getTimings().start("keygen")) {
 			KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA", ctx.getSecurityProvider());
 			generator.initialize(keySize);
 
 			KeyPair keyPair = generator.generateKeyPair();
+			FlightRecorderEvents.commitKeyGeneration(event, "RSA", keySize, false);
 			return keyPair;
 		} catch (NoSuchAlgorithmException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
+	protected X509CertificateHolder signCertificate(X509v3CertificateBuilder builder, PrivateKey signingKey)
+			throws OperatorCreationException {
+		Object event = FlightRecorderEvents.beginCertificateSigning();
+
+		try (Timings.Timer timer = ctx.getTimings().start("sign")) {
+			String signatureAlgorithm = ctx.getConfig().getDefaults().getSignatureAlgorithm();
+			X509CertificateHolder certificate = builder.build(createContentSigner(signingKey));
+
+			if (event != null) {
+				FlightRecorderEvents.commitCertificateSigning(event, certificate.getSubject().toString(),
+						signatureAlgorithm);
+			}
+
+			return certificate;
+		}
+	}
+
+	protected X509CRLHolder signCrl(X509v2CRLBuilder builder, PrivateKey signingKey)
+			throws OperatorCreationException {
+		try (Timings.Timer timer = ctx.getTimings().start("sign")) {
+			return builder.build(createContentSigner(signingKey));
+		}
+	}
+
+	private ContentSigner createContentSigner(PrivateKey signingKey) throws OperatorCreationException {
+		return new JcaContentSignerBuilder(ctx.getConfig().getDefaults().getSignatureAlgorithm())
+				.setProvider(ctx.getSecurityProvider()).build(signingKey);
+	}
+
 	protected void addOutputFile(String fileName, Object... entries) {
 		ctx.getFileOutput().add(fileName, entries);
 	}
@@ -97,6 +183,104 @@ public abstract class Task {
 		ctx.getFileOutput().addEncrypted(file, password, entries);
 	}
 
+	/**
+	 * Adds a file which is read or extended by later tasks. See
+	 * FileOutput.addShared().
+	 */
+	protected void addSharedOutputFile(File file, Object... entries) {
+		ctx.getFileOutput().addShared(file, entries);
+	}
+
+	protected void addSharedEncryptedOutputFile(File file, String password, Object... entries) {
+		ctx.getFileOutput().addSharedEncrypted(file, password, entries);
+	}
+
+	/**
+	 * In bundle layout, adds a link to the file with the trusted CAs to the given
+	 * bundle directory. If PKCS#12 output is enabled, the truststore is linked as
+	 * well.
+	 */
+	protected void addTrustedCasLink(File directory) throws ToolException {
+		if (ctx.isBundleLayout() && ctx.getTrustedCasFile() != null) {
+			ctx.getFileOutput().addLink(new File(directory, ctx.getTrustedCasFile().getName()),
+					ctx.getTrustedCasFile());
+
+			if (isPkcs12Enabled()) {
+				File trustStoreFile = addTrustStore();
+				ctx.getFileOutput().addLink(new File(directory, trustStoreFile.getName()), trustStoreFile);
+			}
+		}
+	}
+
+	protected boolean isPkcs12Enabled() {
+		return ctx.getConfig().getDefaults().isPkcs12();
+	}
+
+	/**
+	 * Adds a PKCS#12 keystore with the private key and the certificate chain. The
+	 * keystore is protected by the password of the private key. If keys are
+	 * re-used, the existing private key is read.
+	 */
+	protected Pkcs12KeyStore addKeyStore(File keyStoreFile, String alias, KeyPair keyPair, File privateKeyFile,
+			String privateKeyPassword, String passwordConfig, X509CertificateHolder certificate)
+			throws ToolException {
+		PrivateKey privateKey;
+		String password;
+
+		if (keyPair != null) {
+			privateKey = keyPair.getPrivate();
+			password = privateKeyPassword;
+		} else {
+			privateKey = readExistingPrivateKey(privateKeyFile, passwordConfig);
+			password = getPassword(passwordConfig);
+		}
+
+		Pkcs12KeyStore keyStore = ctx.getConfig().getCa().getIntermediate() == null
+				? Pkcs12KeyStore.createKeyStore(alias, privateKey, password, certificate)
+				: Pkcs12KeyStore.createKeyStore(alias, privateKey, password, certificate,
+						ctx.getSigningCertificate());
+
+		addOutputFile(keyStoreFile, keyStore);
+
+		return keyStore;
+	}
+
+	/**
+	 * Adds the PKCS#12 truststore with all trusted root certificates to the
+	 * target directory. The truststore is shared by all nodes; it is only created
+	 * once.
+	 */
+	protected File addTrustStore() throws ToolException {
+		File trustStoreFile = new File(ctx.getTargetDirectory(), TRUSTSTORE_FILE_NAME);
+
+		if (ctx.getFileOutput().getEntryByFileName(trustStoreFile.getPath()) == null) {
+			addSharedOutputFile(trustStoreFile, Pkcs12KeyStore.createTrustStore(null, getTrustedCertificates()));
+		}
+
+		return trustStoreFile;
+	}
+
+	/**
+	 * The trusted CAs file might have been just created by CreateCa or
+	 * LoadAdditionalCa; in this case, it is only available in the file output.
+	 */
+	private List<X509CertificateHolder> getTrustedCertificates() throws ToolException {
+		FileOutput.FileEntry fileEntry = ctx.getFileOutput().getEntryByFileName(ctx.getTrustedCasFile().getPath());
+		List<X509CertificateHolder> result = new ArrayList<>();
+
+		if (fileEntry != null) {
+			for (Object entry : fileEntry.getEntries()) {
+				if (entry instanceof X509CertificateHolder) {
+					result.add((X509CertificateHolder) entry);
+				}
+			}
+		} else {
+			result.add(readObjectFromPem(ctx.getTrustedCasFile(), X509CertificateHolder.class));
+		}
+
+		return result;
+	}
+
 	protected void appendOutputFile(File file, Object... entries) {
 		ctx.getFileOutput().append(file, entries);
 	}
@@ -105,9 +289,23 @@ public abstract class Task {
 		ctx.getFileOutput().appendEncrypted(file, password, entries);
 	}
 
+	/**
+	 * Records the certificate in the inventory which is written to the target
+	 * directory after all files have been saved.
+	 */
+	protected void addToInventory(X509CertificateHolder certificate, File certificateFile, File privateKeyFile,
+			Object config) throws ToolException {
+		try {
+			ctx.addIssuedCertificate(InventoryRecord.create(certificate, ctx.getTargetDirectory(), certificateFile,
+					privateKeyFile, config));
+		} catch (IOException e) {
+			throw new ToolException("Error while creating inventory record for " + certificate.getSubject(), e);
+		}
+	}
+
 	protected boolean checkFileOverwrite(String artifact, String dn, File... files) {
 		for (File file : files) {
-			if (file.exists()) {
+			if (getExistingFile(file).exists()) {
 				if (!ctx.isOverwrite()) {
 					log.info(file + " does already exist. Skipping creation of " + artifact + " for " + dn);
 					return false;
@@ -120,6 +318,115 @@ public abstract class Task {
 		return true;
 	}
 
+	/**
+	 * Used instead of checkFileOverwrite() in renewal mode: Returns true if one of
+	 * the given certificate files does not exist yet or expires within the renewal
+	 * window.
+	 */
+	protected boolean checkRenewal(String artifact, String dn, File... certificateFiles) throws ToolException {
+		long renewalDeadline = System.currentTimeMillis() + ctx.getRenewWithinDays() * 24L * 60 * 60 * 1000;
+
+		for (File file : certificateFiles) {
+			if (!getExistingFile(file).exists()) {
+				log.debug(file + " does not exist yet. Creating " + artifact + " for " + dn);
+				return true;
+			}
+
+			X509CertificateHolder certificate = readObjectFromPem(file, X509CertificateHolder.class);
+
+			if (certificate.getNotAfter().getTime() < renewalDeadline) {
+				log.info("Renewing " + artifact + " for " + dn + ". " + file + " expires on "
+						+ certificate.getNotAfter());
+				return true;
+			}
+		}
+
+		log.debug("Certificates for " + dn + " are not due for renewal");
+		return false;
+	}
+
+	/**
+	 * Returns true if the certificates to be renewed shall keep their existing key
+	 * pairs. This is only possible if all certificate files of the artifact exist.
+	 */
+	protected boolean isKeyReusable(File... certificateFiles) {
+		if (ctx.getRenewWithinDays() == null || !ctx.isReuseKeys()) {
+			return false;
+		}
+
+		for (File file : certificateFiles) {
+			if (!getExistingFile(file).exists()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Used instead of checkFileOverwrite() when re-signing: Returns true if a
+	 * certificate or a private key exists for each of the given pairs of files.
+	 */
+	protected boolean checkResign(String artifact, String dn, File[] certificateFiles, File[] privateKeyFiles) {
+		for (int i = 0; i < certificateFiles.length; i++) {
+			if (!getExistingFile(certificateFiles[i]).exists() && !getExistingFile(privateKeyFiles[i]).exists()) {
+				log.info("Neither " + certificateFiles[i] + " nor " + privateKeyFiles[i]
+						+ " exist. Skipping re-signing of " + artifact + " for " + dn);
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the public key of an existing certificate. If the certificate does
+	 * not exist, the public key is derived from the existing private key.
+	 */
+	protected SubjectPublicKeyInfo readExistingPublicKey(File certificateFile, File privateKeyFile,
+			String passwordConfig) throws ToolException {
+		if (getExistingFile(certificateFile).exists()) {
+			return readObjectFromPem(certificateFile, X509CertificateHolder.class).getSubjectPublicKeyInfo();
+		}
+
+		if (isPasswordAutoGenerationEnabled(passwordConfig)) {
+			throw new ToolException("Cannot read " + privateKeyFile
+					+ " because its password was auto-generated. The certificate file " + certificateFile
+					+ " is required for re-using the key.");
+		}
+
+		PrivateKey privateKey = readObjectFromPem(privateKeyFile, PrivateKey.class, getPassword(passwordConfig));
+
+		if (!(privateKey instanceof RSAPrivateCrtKey)) {
+			throw new ToolException("Cannot derive the public key from " + privateKeyFile + ". The certificate file "
+					+ certificateFile + " is required for re-using the key.");
+		}
+
+		RSAPrivateCrtKey rsaPrivateKey = (RSAPrivateCrtKey) privateKey;
+
+		try {
+			PublicKey publicKey = KeyFactory.getInstance("RSA", ctx.getSecurityProvider()).generatePublic(
+					new RSAPublicKeySpec(rsaPrivateKey.getModulus(), rsaPrivateKey.getPublicExponent()));
+
+			return SubjectPublicKeyInfo.getInstance(publicKey.getEncoded());
+		} catch (GeneralSecurityException e) {
+			throw new ToolException("Error while deriving public key from " + privateKeyFile, e);
+		}
+	}
+
+	/**
+	 * Reads an existing private key which is re-used for a new certificate. This
+	 * is only possible if the password of the key is configured.
+	 */
+	protected PrivateKey readExistingPrivateKey(File privateKeyFile, String passwordConfig) throws ToolException {
+		if (isPasswordAutoGenerationEnabled(passwordConfig)) {
+			throw new ToolException("Cannot read " + privateKeyFile
+					+ " because its password was auto-generated. Re-using keys for PKCS#12 output requires a configured password.");
+		}
+
+		return readObjectFromPem(privateKeyFile, PrivateKey.class, getPassword(passwordConfig));
+	}
+
 	protected String getPassword(String passwordConfig) {
 		if (Strings.isNullOrEmpty(passwordConfig) || "none".equalsIgnoreCase(passwordConfig)) {
 			return null;
@@ -150,16 +457,118 @@ public abstract class Task {
 		}
 	}
 
+	/**
+	 * Adds the extensions of the node certificate profile. This profile is used
+	 * for both transport and HTTP certificates.
+	 */
+	protected void addNodeCertificateExtensions(X509v3CertificateBuilder builder,
+			SubjectPublicKeyInfo subjectPublicKeyInfo, ASN1Encodable[] subjectAlternativeNames)
+			throws CertIOException, ToolException {
+		getCertificateProfile(CertificateProfile.NODE).addExtensions(builder, subjectPublicKeyInfo,
+				subjectAlternativeNames);
+	}
+
+	/**
+	 * Adds the extensions of the client certificate profile.
+	 */
+	protected void addClientCertificateExtensions(X509v3CertificateBuilder builder,
+			SubjectPublicKeyInfo subjectPublicKeyInfo) throws CertIOException, ToolException {
+		getCertificateProfile(CertificateProfile.CLIENT).addExtensions(builder, subjectPublicKeyInfo, null);
+	}
+
+	private CertificateProfile getCertificateProfile(String name) throws ToolException {
+		CertificateProfile profile = ctx.getCertificateProfile(name);
+
+		if (profile == null) {
+			Config.Ca.Certificate issuerConfig = ctx.getConfig().getCa().getSigningCertificate();
+
+			if (CertificateProfile.NODE.equals(name)) {
+				profile = CertificateProfile.createNodeProfile(ctx.getSigningCertificate(), issuerConfig);
+			} else {
+				profile = CertificateProfile.createClientProfile(ctx.getSigningCertificate(), issuerConfig);
+			}
+
+			ctx.addCertificateProfile(profile);
+		}
+
+		return profile;
+	}
+
+	/**
+	 * Issues copies of the given certificate signed by the additional CAs. The
+	 * copies share the subject, public key, validity and extensions of the
+	 * original certificate; thus, no further key pairs need to be generated. The
+	 * copies are written next to the original file, with the name of the CA
+	 * appended.
+	 */
+	protected void addAdditionalCaCertificates(X509CertificateHolder certificate, File certificateFile,
+			File privateKeyFile, Object config) throws ToolException {
+		for (SigningCa signingCa : ctx.getAdditionalSigningCas()) {
+			try {
+				X509v3CertificateBuilder builder = new X509v3CertificateBuilder(
+						signingCa.getSigningCertificate().getSubject(), ctx.nextId(), certificate.getNotBefore(),
+						certificate.getNotAfter(), certificate.getSubject(), certificate.getSubjectPublicKeyInfo());
+
+				for (Object oid : certificate.getExtensionOIDs()) {
+					if (!oid.equals(Extension.authorityKeyIdentifier) && !oid.equals(Extension.cRLDistributionPoints)) {
+						builder.copyAndAddExtension((ASN1ObjectIdentifier) oid,
+								certificate.getExtension((ASN1ObjectIdentifier) oid).isCritical(), certificate);
+					}
+				}
+
+				builder.addExtension(Extension.authorityKeyIdentifier, false,
+						getExtUtils().createAuthorityKeyIdentifier(signingCa.getSigningCertificate()));
+
+				addCrlDistributionPoints(builder, signingCa.getConfig().getSigningCertificate());
+
+				X509CertificateHolder additionalCertificate = signCertificate(builder,
+						signingCa.getSigningPrivateKey());
+
+				File additionalCertificateFile = new File(certificateFile.getParentFile(),
+						FilenameUtils.getBaseName(certificateFile.getName()) + "-" + signingCa.getName() + ".pem");
+
+				if (signingCa.hasIntermediate()) {
+					addOutputFile(additionalCertificateFile, additionalCertificate, signingCa.getSigningCertificate());
+				} else {
+					addOutputFile(additionalCertificateFile, additionalCertificate);
+				}
+
+				addToInventory(additionalCertificate, additionalCertificateFile, privateKeyFile, config);
+			} catch (CertIOException | OperatorCreationException e) {
+				throw new ToolException("Error while composing certificate for " + certificate.getSubject()
+						+ " signed by " + signingCa.getName(), e);
+			}
+		}
+	}
+
+	protected void addCrlDistributionPoints(X509v3CertificateBuilder builder, Config.Ca.Certificate issuerConfig)
+			throws CertIOException {
+		try {
+			Extension crlDistributionPoints = CertificateProfile.createCrlDistributionPoints(issuerConfig);
+
+			if (crlDistributionPoints != null) {
+				builder.addExtension(crlDistributionPoints);
+			}
+		} catch (CertIOException e) {
+			throw e;
+		} catch (IOException e) {
+			throw new CertIOException("cannot encode extension: " + e.getMessage(), e);
+		}
+	}
+
 	protected X500Name createDn(String dn, String role) throws ToolException {
 		if (Strings.isNullOrEmpty(dn)) {
 			throw new ToolException("No DN specified for " + role + " certificate");
 		}
 
-		try {
-			return new X500Name(RFC4519Style.INSTANCE, dn);
-		} catch (IllegalArgumentException e) {
-			throw new ToolException("Invalid DN specified for " + role + " certificate: " + dn, e);
+		DnCache.ParsedDn parsedDn = ctx.getDnCache().get(dn);
+
+		if (parsedDn.getX500Name() == null) {
+			throw new ToolException("Invalid DN specified for " + role + " certificate: " + dn,
+					parsedDn.getX500NameError());
 		}
+
+		return parsedDn.getX500Name();
 	}
 	
 	protected String sanitizeDn(String dn, String role) throws ToolException {
@@ -167,11 +576,14 @@ public abstract class Task {
 			throw new ToolException("No DN specified for " + role + " certificate");
 		}
 
-		try {
-			return new LdapName(new LdapName(dn).getRdns()).toString();
-		} catch (InvalidNameException e) {
-			throw new ToolException("Invalid DN specified for " + role + " certificate: " + dn, e);
+		DnCache.ParsedDn parsedDn = ctx.getDnCache().get(dn);
+
+		if (parsedDn.getCanonicalName() == null) {
+			throw new ToolException("Invalid DN specified for " + role + " certificate: " + dn,
+					parsedDn.getCanonicalNameError());
 		}
+
+		return parsedDn.getCanonicalName();
 	}
 
 	protected Date getEndDate(Date startDate, int validityDays) {
@@ -182,23 +594,41 @@ public abstract class Task {
 	}
 
 	protected <E> E readObjectFromPem(File file, Class<E> expectedType) throws ToolException {
-		try {
-			return readObjectFromPem(file, new FileReader(file), expectedType);
-		} catch (FileNotFoundException e) {
-			throw new ToolException("File does not exist: " + file);
-		}
+		return readObjectFromPem(file, expectedType, null);
 	}
 
+	/**
+	 * Reads the first object of the given file. The file may be PEM or DER
+	 * encoded. If the file does not exist, but its DER variant does, the DER
+	 * variant is read.
+	 */
 	protected <E> E readObjectFromPem(File file, Class<E> expectedType, String password) throws ToolException {
-		try {
-			if ("auto".equalsIgnoreCase(password) || "none".equalsIgnoreCase(password)) {
-				password = null;
-			}
+		if ("auto".equalsIgnoreCase(password) || "none".equalsIgnoreCase(password)) {
+			password = null;
+		}
+
+		File existingFile = getExistingFile(file);
+		byte[] content;
 
-			return readObjectFromPem(file, new FileReader(file), expectedType, password);
-		} catch (FileNotFoundException e) {
+		try {
+			content = Files.readAllBytes(existingFile.toPath());
+		} catch (NoSuchFileException e) {
 			throw new ToolException("File does not exist: " + file);
+		} catch (IOException e) {
+			throw new ToolException("Error while reading " + existingFile + ": " + e.getMessage(), e);
+		}
+
+		if (PemFileUtils.isDer(content)) {
+			try {
+				return toExpectedType(existingFile, PemFileUtils.readDerObject(content, expectedType), expectedType,
+						password);
+			} catch (IOException | OperatorCreationException | PKCSException e) {
+				throw new ToolException("Error while reading " + existingFile + ": " + e.getMessage(), e);
+			}
 		}
+
+		return readObjectFromPem(existingFile, new StringReader(new String(content, StandardCharsets.UTF_8)),
+				expectedType, password);
 	}
 
 	protected <E> E readObjectFromPem(File file, Reader reader, Class<E> expectedType) throws ToolException {
@@ -214,21 +644,42 @@ public abstract class Task {
 				throw new ToolException("No object found in file " + file);
 			}
 
-			if (!(expectedType.isAssignableFrom(object.getClass()))) {
-				object = tryConvertObjectToExpectedType(file, object, expectedType, password);
-			}
-
-			if (!(expectedType.isAssignableFrom(object.getClass()))) {
-				throw new ToolException("Object in file " + file + " is not of type " + expectedType + "; Actually: "
-						+ object.getClass());
-			}
-
-			return expectedType.cast(object);
+			return toExpectedType(file, object, expectedType, password);
 		} catch (IOException | OperatorCreationException | PKCSException e) {
 			throw new ToolException("Error while reading " + file + ": " + e.getMessage(), e);
 		}
 	}
 
+	private <E> E toExpectedType(File file, Object object, Class<E> expectedType, String password)
+			throws IOException, OperatorCreationException, PKCSException, ToolException {
+		if (!(expectedType.isAssignableFrom(object.getClass()))) {
+			object = tryConvertObjectToExpectedType(file, object, expectedType, password);
+		}
+
+		if (!(expectedType.isAssignableFrom(object.getClass()))) {
+			throw new ToolException("Object in file " + file + " is not of type " + expectedType + "; Actually: "
+					+ object.getClass());
+		}
+
+		return expectedType.cast(object);
+	}
+
+	/**
+	 * Returns the DER variant of the given file if only the DER variant exists.
+	 * Otherwise, the file itself is returned.
+	 */
+	protected File getExistingFile(File file) {
+		if (!file.exists()) {
+			File derFile = FileOutput.getDerFile(file);
+
+			if (derFile.exists()) {
+				return derFile;
+			}
+		}
+
+		return file;
+	}
+
 	private Object tryConvertObjectToExpectedType(File file, Object object, Class<?> expectedType, String password)
 			throws IOException, OperatorCreationException, PKCSException, ToolException {
 		if (expectedType.equals(PrivateKey.class)) {
@@ -286,18 +737,25 @@ public abstract class Task {
 	}
 
 	protected String getSimpleNameFromDn(String dnString) {
-		try {
-			X500Name dn = new X500Name(dnString);
-			RDN[] rdns = dn.getRDNs();
+		return ctx.getDnCache().get(dnString).getSimpleName();
+	}
 
-			if (rdns != null && rdns.length > 0) {
-				return rdns[0].getFirst().getValue().toString();
-			}
-		} catch (IllegalArgumentException e) {
-			// DN was invalid - fall through
+	/**
+	 * Entries of the config without derivable name are numbered by their position
+	 * in the config. Records from sources get a fallback name from the source.
+	 */
+	protected String getNumberedFileName(String prefix, List<?> configEntries, Object entry) {
+		if (fallbackFileName != null) {
+			return fallbackFileName;
+		}
+
+		int index = configEntries != null ? configEntries.indexOf(entry) : -1;
+
+		if (index == -1) {
+			throw new IllegalStateException("Cannot derive a file name for a " + prefix + " outside of the config");
 		}
 
-		return null;
+		return prefix + (index + 1);
 	}
 
 	protected String getClientFileName(Config.Client client) {
@@ -313,6 +771,6 @@ public abstract class Task {
 			}
 		}
 
-		return "client" + (ctx.getConfig().getClients().indexOf(client) + 1);
+		return getNumberedFileName("client", ctx.getConfig().getClients(), client);
 	}
 }
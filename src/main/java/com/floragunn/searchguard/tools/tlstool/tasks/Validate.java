@@ -20,6 +20,7 @@ package com.floragunn.searchguard.tools.tlstool.tasks;
 import com.floragunn.searchguard.tools.tlstool.Config;
 import com.floragunn.searchguard.tools.tlstool.Context;
 import com.floragunn.searchguard.tools.tlstool.ToolException;
+import com.google.common.base.Strings;
 
 public class Validate extends Task {
 
@@ -30,6 +31,23 @@ public class Validate extends Task {
 	@Override
 	public void run() throws ToolException {
 		validateAdminCert();
+		validateNodeSources();
+	}
+
+	/**
+	 * Config snippets are written while the node sources are still being read.
+	 * Thus, the DNs of streamed nodes cannot be listed in the snippets; nodes must
+	 * be recognized by OID or by DN patterns instead.
+	 */
+	private void validateNodeSources() throws ToolException {
+		Config.Defaults defaults = ctx.getConfig().getDefaults();
+
+		if (ctx.getConfig().getNodeSources() != null && !ctx.getConfig().getNodeSources().isEmpty()
+				&& Strings.isNullOrEmpty(defaults.getNodeOid())
+				&& (defaults.getNodesDn() == null || defaults.getNodesDn().isEmpty())) {
+			throw new ToolException(
+					"If nodeSources are used, nodes must be recognized by defaults.nodeOid or by patterns in defaults.nodesDn. In order to generate the certificates anyway, specify the -f flag.");
+		}
 	}
 
 	private void validateAdminCert() throws ToolException {
@@ -0,0 +1,406 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.tasks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DERIA5String;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.operator.DefaultSignatureAlgorithmIdentifierFinder;
+
+import com.floragunn.searchguard.tools.tlstool.Config;
+import com.floragunn.searchguard.tools.tlstool.Context;
+import com.floragunn.searchguard.tools.tlstool.FileOutput;
+import com.floragunn.searchguard.tools.tlstool.ToolException;
+import com.floragunn.searchguard.tools.tlstool.source.ConfigRecordSource;
+import com.floragunn.searchguard.tools.tlstool.source.NodeRangeSource;
+import com.floragunn.searchguard.tools.tlstool.source.RecordSource;
+import com.floragunn.searchguard.tools.tlstool.source.RecordSourceException;
+import com.google.common.base.Strings;
+
+/**
+ * Checks the whole config before any keys are generated. The nodes and clients
+ * are checked in parallel; all problems found are reported together. Node
+ * ranges and record sources are read in a streaming pass; only the file names
+ * are kept to detect duplicates.
+ * 
+ * In contrast to Validate, this task checks only for problems which would make
+ * the certificate generation fail anyway. Thus, it cannot be disabled by the -f
+ * flag.
+ */
+public class ValidateConfig extends Task {
+
+	private static final int MIN_KEY_SIZE = 512;
+
+	private final boolean loadingCa;
+
+	public ValidateConfig(Context ctx, boolean loadingCa) {
+		super(ctx);
+		this.loadingCa = loadingCa;
+	}
+
+	@Override
+	public void run() throws ToolException {
+		List<String> problems = validate();
+
+		if (!problems.isEmpty()) {
+			StringBuilder message = new StringBuilder("The configuration contains ").append(problems.size())
+					.append(problems.size() == 1 ? " problem:" : " problems:");
+
+			for (String problem : problems) {
+				message.append("\n  - ").append(problem);
+			}
+
+			throw new ToolException(message.toString());
+		}
+	}
+
+	List<String> validate() {
+		Config config = ctx.getConfig();
+		List<String> problems = new ArrayList<>();
+
+		validateDefaults(config, problems);
+
+		if (loadingCa) {
+			validateCaFiles(config.getCa(), problems);
+		}
+
+		Map<String, String> fileNames = new HashMap<>();
+		RecordBatch<Config.Node> nodes = new RecordBatch<>(this::validateNode, problems);
+		RecordBatch<Config.Client> clients = new RecordBatch<>(this::validateClient, problems);
+
+		Consumer<Config.Node> nodeConsumer = (node) -> {
+			validateUniqueFileName(getNodeName(node), "node", fileNames, problems);
+			nodes.add(node);
+		};
+
+		Consumer<Config.Client> clientConsumer = (client) -> {
+			validateUniqueFileName(getClientName(client), "client", fileNames, problems);
+			clients.add(client);
+		};
+
+		if (config.getNodes() != null) {
+			for (Config.Node node : config.getNodes()) {
+				if (NodeRangeSource.isRange(node)) {
+					validateRecords(() -> NodeRangeSource.expand(node), nodeConsumer, problems);
+				} else {
+					nodeConsumer.accept(node);
+				}
+			}
+		}
+
+		if (config.getClients() != null) {
+			config.getClients().forEach(clientConsumer);
+		}
+
+		if (config.getNodeSources() != null) {
+			for (String source : config.getNodeSources()) {
+				validateRecords(() -> ConfigRecordSource.open(new File(source), Config.Node.class), (node) -> {
+					node.applyDefaults(config.getDefaults());
+					nodeConsumer.accept(node);
+				}, problems);
+			}
+		}
+
+		if (config.getClientSources() != null) {
+			for (String source : config.getClientSources()) {
+				validateRecords(() -> ConfigRecordSource.open(new File(source), Config.Client.class), (client) -> {
+					if (client.isAdmin()) {
+						problems.add("Admin clients must be specified in the clients section of the config: "
+								+ client.getDn());
+					}
+
+					client.applyDefaults(config.getDefaults());
+					clientConsumer.accept(client);
+				}, problems);
+			}
+		}
+
+		nodes.flush();
+		clients.flush();
+
+		return problems;
+	}
+
+	/**
+	 * Reads all records of a source without keeping them. Problems with the source
+	 * itself end the validation of this source.
+	 */
+	private <T> void validateRecords(ProcessConfigSource.SourceFactory<T> sourceFactory, Consumer<T> consumer,
+			List<String> problems) {
+		String name = null;
+
+		try (RecordSource<T> source = sourceFactory.open()) {
+			name = source.getName();
+
+			while (source.hasNext()) {
+				consumer.accept(source.next());
+			}
+		} catch (ToolException | RecordSourceException e) {
+			problems.add(e.getMessage());
+		} catch (IOException e) {
+			problems.add("Error while reading " + name + ": " + e);
+		}
+	}
+
+	private void validateDefaults(Config config, List<String> problems) {
+		Config.Defaults defaults = config.getDefaults();
+
+		if (!Strings.isNullOrEmpty(defaults.getNodeOid()) && !isValidOid(defaults.getNodeOid())) {
+			problems.add("Invalid OID in defaults.nodeOid: " + defaults.getNodeOid());
+		}
+
+		if (defaults.getNodesDn() != null) {
+			for (String pattern : defaults.getNodesDn()) {
+				if (pattern.length() > 2 && pattern.startsWith("/") && pattern.endsWith("/")) {
+					try {
+						Pattern.compile(pattern.substring(1, pattern.length() - 1));
+					} catch (PatternSyntaxException e) {
+						problems.add("Invalid regular expression in defaults.nodesDn: " + pattern);
+					}
+				}
+			}
+		}
+
+		try {
+			new DefaultSignatureAlgorithmIdentifierFinder().find(defaults.getSignatureAlgorithm());
+		} catch (IllegalArgumentException e) {
+			problems.add("Unknown signature algorithm in defaults.signatureAlgorithm: "
+					+ defaults.getSignatureAlgorithm());
+		}
+
+		if (defaults.getEncoding() != null && !Arrays.asList(FileOutput.ENCODING_PEM, FileOutput.ENCODING_DER,
+				FileOutput.ENCODING_BOTH).contains(defaults.getEncoding().toLowerCase())) {
+			problems.add("Invalid value in defaults.encoding: " + defaults.getEncoding()
+					+ ". Supported values: pem, der, both");
+		} else if (FileOutput.ENCODING_DER.equalsIgnoreCase(defaults.getEncoding()) && !defaults.isPkcs12()
+				&& hasNodes(config)) {
+			// Search Guard expects PEM files for the pemcert_filepath settings in the node config snippets
+			problems.add("defaults.encoding: der cannot be used for nodes, as the node config snippets refer to "
+					+ "PEM files. Use both or enable defaults.pkcs12");
+		}
+	}
+
+	private static boolean hasNodes(Config config) {
+		return (config.getNodes() != null && !config.getNodes().isEmpty())
+				|| (config.getNodeSources() != null && !config.getNodeSources().isEmpty());
+	}
+
+	private void validateCaFiles(Config.Ca caConfig, List<String> problems) {
+		if (caConfig == null || caConfig.getRoot() == null) {
+			problems.add("Configuration ca.root is required");
+			return;
+		}
+
+		String fileNameBase = caConfig.getIntermediate() != null ? "signing-ca" : "root-ca";
+		String configuredFile = caConfig.getSigningCertificate().getFile();
+
+		validateReadable(getConfiguredFile(configuredFile, fileNameBase + ".key", "key"), "CA private key", problems);
+		validateReadable(getConfiguredFile(configuredFile, fileNameBase + ".pem", "pem"), "CA certificate", problems);
+
+		if (caConfig.getAdditional() != null) {
+			for (Config.Ca additionalCaConfig : caConfig.getAdditional()) {
+				if (Strings.isNullOrEmpty(additionalCaConfig.getName()) || additionalCaConfig.getRoot() == null) {
+					// Reported by LoadAdditionalCa
+					continue;
+				}
+
+				String name = additionalCaConfig.getName();
+				String additionalFileNameBase = name
+						+ (additionalCaConfig.getIntermediate() != null ? "-signing-ca" : "-root-ca");
+				String additionalConfiguredFile = additionalCaConfig.getSigningCertificate().getFile();
+
+				validateReadable(getConfiguredFile(additionalConfiguredFile, additionalFileNameBase + ".key", "key"),
+						"private key of CA " + name, problems);
+				validateReadable(getConfiguredFile(additionalConfiguredFile, additionalFileNameBase + ".pem", "pem"),
+						"certificate of CA " + name, problems);
+			}
+		}
+	}
+
+	private void validateReadable(File file, String artifact, List<String> problems) {
+		file = getExistingFile(file);
+
+		if (!file.exists()) {
+			problems.add("The " + artifact + " " + file + " does not exist");
+		} else if (!file.canRead()) {
+			problems.add("The " + artifact + " " + file + " is not readable");
+		}
+	}
+
+	private List<String> validateNode(Config.Node node) {
+		List<String> problems = new ArrayList<>();
+		String label = "node " + (node.getName() != null ? node.getName() : node.getDn());
+
+		validateDn(node.getDn(), "node", problems);
+
+		if (node.getDns() != null) {
+			for (String dns : node.getDns()) {
+				if (Strings.isNullOrEmpty(dns) || !DERIA5String.isIA5String(dns) || dns.trim().length() != dns.length()
+						|| dns.contains(" ")) {
+					problems.add("Invalid DNS name for " + label + ": '" + dns + "'");
+				}
+			}
+		}
+
+		if (node.getIp() != null) {
+			for (String ip : node.getIp()) {
+				try {
+					new GeneralName(GeneralName.iPAddress, ip);
+				} catch (IllegalArgumentException | NullPointerException e) {
+					problems.add("Invalid IP address for " + label + ": '" + ip + "'");
+				}
+			}
+		}
+
+		if (node.getOid() != null) {
+			for (String oid : node.getOid()) {
+				if (!isValidOid(oid)) {
+					problems.add("Invalid OID for " + label + ": " + oid);
+				}
+			}
+		}
+
+		validateKeyParameters(node.getKeysize(), node.getValidityDays(), label, problems);
+
+		return problems;
+	}
+
+	private List<String> validateClient(Config.Client client) {
+		List<String> problems = new ArrayList<>();
+
+		validateDn(client.getDn(), client.isAdmin() ? "admin" : "client", problems);
+		validateKeyParameters(client.getKeysize(), client.getValidityDays(),
+				"client " + (client.getName() != null ? client.getName() : client.getDn()), problems);
+
+		return problems;
+	}
+
+	private void validateDn(String dn, String role, List<String> problems) {
+		try {
+			createDn(dn, role);
+			sanitizeDn(dn, role);
+		} catch (ToolException e) {
+			problems.add(e.getMessage());
+		}
+	}
+
+	private void validateKeyParameters(Integer keysize, Integer validityDays, String label, List<String> problems) {
+		if (keysize != null && keysize < MIN_KEY_SIZE) {
+			problems.add("Invalid key size for " + label + ": " + keysize);
+		}
+
+		if (validityDays != null && validityDays <= 0) {
+			problems.add("Invalid validity days for " + label + ": " + validityDays);
+		}
+	}
+
+	/**
+	 * The file names are derived like in CreateNodeCertificateBase and Task.
+	 * Entries without derivable name get numbered names which cannot collide.
+	 */
+	private String getNodeName(Config.Node node) {
+		String name = node.getName();
+
+		if (name == null && node.getDns() != null && !node.getDns().isEmpty()) {
+			name = node.getDns().get(0);
+		}
+
+		if (name == null && node.getDn() != null) {
+			name = getSimpleNameFromDn(node.getDn());
+		}
+
+		return name;
+	}
+
+	private String getClientName(Config.Client client) {
+		String name = client.getName();
+
+		if (name == null && client.getDn() != null) {
+			name = getSimpleNameFromDn(client.getDn());
+		}
+
+		return name;
+	}
+
+	private void validateUniqueFileName(String name, String role, Map<String, String> fileNames,
+			List<String> problems) {
+		if (name == null) {
+			return;
+		}
+
+		String existingRole = fileNames.putIfAbsent(name, role);
+
+		if (existingRole != null) {
+			problems.add("The name " + name + " is used by more than one " + (existingRole.equals(role) ? role
+					: existingRole + " and " + role) + "; the files would overwrite each other");
+		}
+	}
+
+	/**
+	 * Collects records and validates them in parallel once BATCH_SIZE records are
+	 * available. Thus, large sources and ranges are never held in memory as a
+	 * whole.
+	 */
+	private static class RecordBatch<T> {
+		private static final int BATCH_SIZE = 1024;
+
+		private final Function<T, List<String>> validator;
+		private final List<String> problems;
+		private final List<T> records = new ArrayList<>(BATCH_SIZE);
+
+		RecordBatch(Function<T, List<String>> validator, List<String> problems) {
+			this.validator = validator;
+			this.problems = problems;
+		}
+
+		void add(T record) {
+			records.add(record);
+
+			if (records.size() >= BATCH_SIZE) {
+				flush();
+			}
+		}
+
+		void flush() {
+			problems.addAll(records.parallelStream().map(validator).flatMap(List::stream).collect(Collectors.toList()));
+			records.clear();
+		}
+	}
+
+	private static boolean isValidOid(String oid) {
+		try {
+			new ASN1ObjectIdentifier(oid);
+			return true;
+		} catch (IllegalArgumentException | NullPointerException e) {
+			return false;
+		}
+	}
+}
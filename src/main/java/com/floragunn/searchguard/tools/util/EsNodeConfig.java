@@ -78,15 +78,39 @@ public class EsNodeConfig {
     @JsonProperty("searchguard.ssl.transport.keystore_filepath")
     private String transportKeystoreFilePath;
 
+    @JsonProperty("searchguard.ssl.transport.keystore_type")
+    private String transportKeystoreType;
+
+    @JsonProperty("searchguard.ssl.transport.keystore_password")
+    private String transportKeystorePassword;
+
     @JsonProperty("searchguard.ssl.transport.truststore_filepath")
     private String transportTruststoreFilepath;
 
+    @JsonProperty("searchguard.ssl.transport.truststore_type")
+    private String transportTruststoreType;
+
+    @JsonProperty("searchguard.ssl.transport.truststore_password")
+    private String transportTruststorePassword;
+
     @JsonProperty("searchguard.ssl.http.keystore_filepath")
     private String httpKeystoreFilepath;
 
+    @JsonProperty("searchguard.ssl.http.keystore_type")
+    private String httpKeystoreType;
+
+    @JsonProperty("searchguard.ssl.http.keystore_password")
+    private String httpKeystorePassword;
+
     @JsonProperty("searchguard.ssl.http.truststore_filepath")
     private String httpTruststoreFilepath;
 
+    @JsonProperty("searchguard.ssl.http.truststore_type")
+    private String httpTruststoreType;
+
+    @JsonProperty("searchguard.ssl.http.truststore_password")
+    private String httpTruststorePassword;
+
     public String getTransportPemCertFilePath() {
         return transportPemCertFilePath;
     }
@@ -239,6 +263,70 @@ public class EsNodeConfig {
         this.httpTruststoreFilepath = httpTruststoreFilepath;
     }
 
+    public String getTransportKeystoreType() {
+        return transportKeystoreType;
+    }
+
+    public void setTransportKeystoreType(String transportKeystoreType) {
+        this.transportKeystoreType = transportKeystoreType;
+    }
+
+    public String getTransportKeystorePassword() {
+        return transportKeystorePassword;
+    }
+
+    public void setTransportKeystorePassword(String transportKeystorePassword) {
+        this.transportKeystorePassword = transportKeystorePassword;
+    }
+
+    public String getTransportTruststoreType() {
+        return transportTruststoreType;
+    }
+
+    public void setTransportTruststoreType(String transportTruststoreType) {
+        this.transportTruststoreType = transportTruststoreType;
+    }
+
+    public String getTransportTruststorePassword() {
+        return transportTruststorePassword;
+    }
+
+    public void setTransportTruststorePassword(String transportTruststorePassword) {
+        this.transportTruststorePassword = transportTruststorePassword;
+    }
+
+    public String getHttpKeystoreType() {
+        return httpKeystoreType;
+    }
+
+    public void setHttpKeystoreType(String httpKeystoreType) {
+        this.httpKeystoreType = httpKeystoreType;
+    }
+
+    public String getHttpKeystorePassword() {
+        return httpKeystorePassword;
+    }
+
+    public void setHttpKeystorePassword(String httpKeystorePassword) {
+        this.httpKeystorePassword = httpKeystorePassword;
+    }
+
+    public String getHttpTruststoreType() {
+        return httpTruststoreType;
+    }
+
+    public void setHttpTruststoreType(String httpTruststoreType) {
+        this.httpTruststoreType = httpTruststoreType;
+    }
+
+    public String getHttpTruststorePassword() {
+        return httpTruststorePassword;
+    }
+
+    public void setHttpTruststorePassword(String httpTruststorePassword) {
+        this.httpTruststorePassword = httpTruststorePassword;
+    }
+
     @JsonIgnore
     public boolean isKeystoreOrTruststoreAttributeSet() {
         return !Strings.isNullOrEmpty(transportKeystoreFilePath) || !Strings.isNullOrEmpty(transportTruststoreFilepath)
@@ -18,23 +18,59 @@
 package com.floragunn.searchguard.tools.util;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.PrivateKey;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1InputStream;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.ASN1Set;
+import org.bouncycastle.asn1.DLSet;
+import org.bouncycastle.asn1.cms.CMSObjectIdentifiers;
+import org.bouncycastle.asn1.cms.ContentInfo;
+import org.bouncycastle.asn1.cms.SignedData;
+import org.bouncycastle.asn1.pkcs.EncryptedPrivateKeyInfo;
+import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
+import org.bouncycastle.cert.X509CRLHolder;
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
 import org.bouncycastle.openssl.PEMParser;
+import org.bouncycastle.pkcs.PKCS10CertificationRequest;
+import org.bouncycastle.pkcs.PKCS8EncryptedPrivateKeyInfo;
 
 public class PemFileUtils {
+	/**
+	 * Reads all certificates from the given file. The file may be PEM encoded, a
+	 * DER encoded PKCS#7 structure or consist of one or more concatenated DER
+	 * encoded certificates.
+	 */
 	public static List<X509Certificate> readCertificatesFromPemFile(File file) throws IOException, CertificateException {
+		return readCertificates(Files.readAllBytes(file.toPath()));
+	}
+
+	public static List<X509Certificate> readCertificates(byte[] content) throws IOException, CertificateException {
+		if (isDer(content)) {
+			return readCertificatesFromDer(content);
+		}
+
+		return readCertificatesFromPem(new StringReader(new String(content, StandardCharsets.UTF_8)));
+	}
+
+	public static List<X509Certificate> readCertificatesFromPem(Reader reader) throws IOException, CertificateException {
 
 		List<X509Certificate> result = new ArrayList<>();
 
-		try (PEMParser pemParser = new PEMParser(new FileReader(file))) {
+		try (PEMParser pemParser = new PEMParser(reader)) {
 
 			Object object;
 
@@ -49,4 +85,102 @@ public class PemFileUtils {
 
 		return result;
 	}
+
+	public static List<X509Certificate> readCertificatesFromDer(byte[] content) throws IOException, CertificateException {
+		List<X509Certificate> result = new ArrayList<>();
+
+		try (ASN1InputStream in = new ASN1InputStream(content)) {
+			ASN1Primitive object;
+
+			while ((object = in.readObject()) != null) {
+				ASN1Set pkcs7Certificates = getPkcs7Certificates(object);
+
+				if (pkcs7Certificates != null) {
+					for (ASN1Encodable certificate : pkcs7Certificates) {
+						result.add(new JcaX509CertificateConverter().setProvider("BC")
+								.getCertificate(new X509CertificateHolder(certificate.toASN1Primitive().getEncoded())));
+					}
+				} else {
+					result.add(new JcaX509CertificateConverter().setProvider("BC")
+							.getCertificate(new X509CertificateHolder(object.getEncoded())));
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * PEM files start with readable text, while DER files start with the tag of
+	 * an ASN.1 sequence.
+	 */
+	public static boolean isDer(byte[] content) {
+		return content.length > 0 && content[0] == 0x30;
+	}
+
+	/**
+	 * Decodes the first DER structure of the given content to the object which
+	 * PEMParser would return for the same structure in PEM encoding. As DER
+	 * carries no type label, the expected type decides how the structure is
+	 * interpreted.
+	 */
+	public static Object readDerObject(byte[] content, Class<?> expectedType) throws IOException {
+		ASN1Primitive object;
+
+		try (ASN1InputStream in = new ASN1InputStream(content)) {
+			object = in.readObject();
+		}
+
+		if (X509CertificateHolder.class.isAssignableFrom(expectedType)) {
+			ASN1Set pkcs7Certificates = getPkcs7Certificates(object);
+
+			if (pkcs7Certificates != null) {
+				// Certificate chains start with the end entity certificate
+				if (pkcs7Certificates.size() == 0) {
+					throw new IOException("The PKCS#7 structure does not contain a certificate");
+				}
+
+				return new X509CertificateHolder(pkcs7Certificates.getObjectAt(0).toASN1Primitive().getEncoded());
+			}
+
+			return new X509CertificateHolder(object.getEncoded());
+		} else if (X509CRLHolder.class.isAssignableFrom(expectedType)) {
+			return new X509CRLHolder(object.getEncoded());
+		} else if (PKCS10CertificationRequest.class.isAssignableFrom(expectedType)) {
+			return new PKCS10CertificationRequest(object.getEncoded());
+		} else if (PrivateKey.class.isAssignableFrom(expectedType)
+				|| PrivateKeyInfo.class.isAssignableFrom(expectedType)) {
+			ASN1Sequence sequence = ASN1Sequence.getInstance(object);
+
+			// PrivateKeyInfo starts with a version number, EncryptedPrivateKeyInfo with an algorithm identifier
+			if (sequence.getObjectAt(0) instanceof ASN1Integer) {
+				return PrivateKeyInfo.getInstance(sequence);
+			} else {
+				return new PKCS8EncryptedPrivateKeyInfo(EncryptedPrivateKeyInfo.getInstance(sequence));
+			}
+		} else {
+			throw new IOException("Cannot read DER encoded " + expectedType.getSimpleName());
+		}
+	}
+
+	/**
+	 * Returns the certificates of a PKCS#7 SignedData structure or null if the
+	 * given object is no such structure.
+	 */
+	private static ASN1Set getPkcs7Certificates(ASN1Primitive object) {
+		if (!(object instanceof ASN1Sequence)) {
+			return null;
+		}
+
+		ASN1Sequence sequence = (ASN1Sequence) object;
+
+		if (sequence.size() != 2 || !CMSObjectIdentifiers.signedData.equals(sequence.getObjectAt(0))) {
+			return null;
+		}
+
+		ASN1Set certificates = SignedData.getInstance(ContentInfo.getInstance(sequence).getContent())
+				.getCertificates();
+
+		return certificates != null ? certificates : new DLSet();
+	}
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.jfr;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class FlightRecorderEventsTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testEvents() throws Exception {
+		File recordingFile = temporaryFolder.newFile("test.jfr");
+
+		try (Recording recording = new Recording()) {
+			recording.enable("com.floragunn.searchguard.tools.KeyGeneration");
+			recording.enable("com.floragunn.searchguard.tools.FileWrite");
+			recording.start();
+
+			FlightRecorderEvents.commitKeyGeneration(FlightRecorderEvents.beginKeyGeneration(), "RSA", 2048, true);
+			FlightRecorderEvents.commitFileWrite(FlightRecorderEvents.beginFileWrite(), new File("node1.pem"), 1234);
+
+			recording.stop();
+			recording.dump(recordingFile.toPath());
+		}
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile.toPath());
+
+		Assert.assertEquals(2, events.size());
+
+		RecordedEvent keyGenerationEvent = events.stream()
+				.filter((e) -> e.getEventType().getName().endsWith("KeyGeneration")).findFirst().get();
+
+		Assert.assertEquals("RSA", keyGenerationEvent.getString("algorithm"));
+		Assert.assertEquals(2048, keyGenerationEvent.getInt("keySize"));
+		Assert.assertTrue(keyGenerationEvent.getBoolean("pregenerated"));
+
+		RecordedEvent fileWriteEvent = events.stream().filter((e) -> e.getEventType().getName().endsWith("FileWrite"))
+				.findFirst().get();
+
+		Assert.assertEquals("node1.pem", fileWriteEvent.getString("path"));
+		Assert.assertEquals(1234, fileWriteEvent.getLong("size"));
+	}
+}
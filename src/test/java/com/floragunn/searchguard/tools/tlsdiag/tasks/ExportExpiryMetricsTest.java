@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlsdiag.tasks;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.Security;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.floragunn.searchguard.tools.util.PemFileUtils;
+
+public class ExportExpiryMetricsTest {
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@BeforeClass
+	public static void init() {
+		Security.addProvider(new BouncyCastleProvider());
+	}
+
+	@Test
+	public void testExportOnlyRescansChangedFiles() throws Exception {
+		File certDir = temporaryFolder.newFolder("certs");
+		FileUtils.copyDirectory(new File(TestResources.getAbsolutePath("with-intermediate")), certDir);
+		File outputFile = new File(temporaryFolder.getRoot(), "sgtls.prom");
+
+		ExportExpiryMetrics export = new ExportExpiryMetrics(Collections.singletonList(certDir), outputFile);
+		export.run();
+
+		Assert.assertEquals(12, export.getParsedFileCount());
+
+		String metrics = new String(Files.readAllBytes(outputFile.toPath()), StandardCharsets.UTF_8);
+		Assert.assertTrue(metrics, metrics.contains("sgtls_certificate_expires_in_seconds{file=\""));
+		Assert.assertTrue(metrics,
+				metrics.contains("subject=\"CN=node1.example.com,OU=Ops,O=Example Com\\\\, Inc.,DC=example,DC=com\""));
+		Assert.assertTrue(metrics, metrics.contains("sgtls_certificate_expiry_seconds_bucket{le=\"+Inf\"} 22\n"));
+		Assert.assertTrue(metrics, metrics.contains("sgtls_scan_files 12\n"));
+
+		// Serials are given in decimal, like in the inventory
+		BigInteger serial = PemFileUtils.readCertificatesFromPemFile(new File(certDir, "node1.pem")).get(0)
+				.getSerialNumber();
+		Assert.assertTrue(metrics, metrics.contains("serial=\"" + serial + "\""));
+
+		export = new ExportExpiryMetrics(Collections.singletonList(certDir), outputFile);
+		export.run();
+
+		Assert.assertEquals(0, export.getParsedFileCount());
+
+		File nodeFile = new File(certDir, "node1.pem");
+		Files.write(nodeFile.toPath(), "\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+		export = new ExportExpiryMetrics(Collections.singletonList(certDir), outputFile);
+		export.run();
+
+		Assert.assertEquals(1, export.getParsedFileCount());
+	}
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlsdiag.tasks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.Security;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.floragunn.searchguard.tools.tlsdiag.report.ReportFormat;
+import com.floragunn.searchguard.tools.tlsdiag.report.ReportWriter;
+import com.floragunn.searchguard.tools.tlsdiag.revocation.CrlIndex;
+import com.floragunn.searchguard.tools.tlsdiag.revocation.RevocationChecker;
+import com.floragunn.searchguard.tools.tlsdiag.revocation.RevocationStatus;
+import com.floragunn.searchguard.tools.tlstool.Config;
+import com.floragunn.searchguard.tools.tlstool.Context;
+import com.floragunn.searchguard.tools.tlstool.tasks.LoadCa;
+import com.floragunn.searchguard.tools.util.PemFileUtils;
+
+public class ValidateCertTest {
+	private static final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@BeforeClass
+	public static void init() {
+		Security.addProvider(new BouncyCastleProvider());
+	}
+
+	@Test
+	public void testNdjsonReport() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		try (ReportWriter reportWriter = new ReportWriter(ReportFormat.NDJSON, out)) {
+			ValidateCert validateCert = new ValidateCert(loadTrustAnchors("with-intermediate/root-ca.pem"),
+					new File(TestResources.getAbsolutePath("with-intermediate/node1.pem")));
+			validateCert.setReportWriter(reportWriter);
+			validateCert.run();
+		}
+
+		String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+
+		Assert.assertEquals(3, lines.length);
+
+		JsonNode leaf = objectMapper.readTree(lines[0]);
+		Assert.assertEquals("certificate", leaf.get("type").asText());
+		Assert.assertEquals(0, leaf.get("index").asInt());
+		Assert.assertTrue(leaf.get("subjectDn").asText().startsWith("CN=node1.example.com"));
+		Assert.assertEquals(40, leaf.get("sha1Fingerprint").asText().length());
+
+		JsonNode signingCa = objectMapper.readTree(lines[1]);
+		Assert.assertEquals(1, signingCa.get("index").asInt());
+
+		JsonNode validation = objectMapper.readTree(lines[2]);
+		Assert.assertEquals("validation", validation.get("type").asText());
+		Assert.assertTrue(validation.get("valid").asBoolean());
+		Assert.assertTrue(validation.get("trustAnchor").asText().contains("CN=root.ca.example.com"));
+	}
+
+	@Test
+	public void testJsonReportWithUntrustedCertificate() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		try (ReportWriter reportWriter = new ReportWriter(ReportFormat.JSON, out)) {
+			ValidateCert validateCert = new ValidateCert(loadTrustAnchors("without-intermediate/root-ca.pem"),
+					new File(TestResources.getAbsolutePath("with-intermediate/node1.pem")));
+			validateCert.setReportWriter(reportWriter);
+			validateCert.run();
+		}
+
+		JsonNode records = objectMapper.readTree(out.toByteArray());
+
+		Assert.assertTrue(records.isArray());
+		Assert.assertEquals(3, records.size());
+
+		JsonNode validation = records.get(2);
+		Assert.assertEquals("validation", validation.get("type").asText());
+		Assert.assertFalse(validation.get("valid").asBoolean());
+		Assert.assertNotNull(validation.get("error"));
+	}
+
+	@Test
+	public void testRevocationCheck() throws Exception {
+		File crlFile = temporaryFolder.newFile("signing-ca.crl");
+		X509Certificate revokedCertificate = PemFileUtils
+				.readCertificatesFromPemFile(new File(TestResources.getAbsolutePath("with-intermediate/node1.pem")))
+				.get(0);
+		createCrl(crlFile, revokedCertificate.getSerialNumber());
+
+		RevocationChecker revocationChecker = new RevocationChecker(Collections.singletonList(crlFile), false);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		try (ReportWriter reportWriter = new ReportWriter(ReportFormat.NDJSON, out)) {
+			for (String file : new String[] { "with-intermediate/node1.pem", "with-intermediate/node2.pem" }) {
+				ValidateCert validateCert = new ValidateCert(loadTrustAnchors("with-intermediate/root-ca.pem"),
+						new File(TestResources.getAbsolutePath(file)), revocationChecker);
+				validateCert.setReportWriter(reportWriter);
+				validateCert.run();
+			}
+		}
+
+		String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+
+		JsonNode revoked = objectMapper.readTree(lines[2]);
+		Assert.assertEquals("validation", revoked.get("type").asText());
+		Assert.assertFalse(revoked.get("valid").asBoolean());
+		Assert.assertEquals("revoked", revoked.get("revocationStatus").asText());
+		Assert.assertTrue(revoked.get("reason").asText(), revoked.get("reason").asText().contains("keyCompromise"));
+
+		JsonNode good = objectMapper.readTree(lines[5]);
+		Assert.assertEquals("validation", good.get("type").asText());
+		Assert.assertTrue(good.get("valid").asBoolean());
+		// The signing CA itself is not covered by the CRL
+		Assert.assertEquals("unknown", good.get("revocationStatus").asText());
+		Assert.assertTrue(good.get("revocationDetails").get(0).asText().contains("not revoked"));
+	}
+
+	@Test
+	public void testDeltaCrlWithOutdatedBase() throws Exception {
+		Context ctx = loadSigningCa();
+		X509Certificate certificate = PemFileUtils
+				.readCertificatesFromPemFile(new File(TestResources.getAbsolutePath("with-intermediate/node2.pem")))
+				.get(0);
+		X509Certificate issuerCertificate = new JcaX509CertificateConverter().setProvider("BC")
+				.getCertificate(ctx.getSigningCertificate());
+		long day = 24 * 60 * 60 * 1000L;
+		Date now = new Date();
+
+		RevocationChecker revocationChecker = new RevocationChecker(Collections.emptyList(), false);
+		revocationChecker.add(new CrlIndex("base.crl", buildCrl(ctx, new Date(now.getTime() - 3 * day),
+				new Date(now.getTime() - day), 1, null)));
+		revocationChecker.add(new CrlIndex("delta.crl", buildCrl(ctx, now, new Date(now.getTime() + day), 2, 1)));
+
+		RevocationStatus status = revocationChecker.check(certificate, issuerCertificate);
+		Assert.assertEquals(status.toString(), RevocationStatus.Status.UNKNOWN, status.getStatus());
+
+		// A delta CRL alone is not sufficient either
+		revocationChecker = new RevocationChecker(Collections.emptyList(), false);
+		revocationChecker.add(new CrlIndex("delta.crl", buildCrl(ctx, now, new Date(now.getTime() + day), 2, 1)));
+
+		status = revocationChecker.check(certificate, issuerCertificate);
+		Assert.assertEquals(status.toString(), RevocationStatus.Status.UNKNOWN, status.getStatus());
+
+		revocationChecker.add(new CrlIndex("base.crl", buildCrl(ctx, now, new Date(now.getTime() + day), 1, null)));
+
+		status = revocationChecker.check(certificate, issuerCertificate);
+		Assert.assertEquals(status.toString(), RevocationStatus.Status.GOOD, status.getStatus());
+	}
+
+	private X509CRLHolder buildCrl(Context ctx, Date thisUpdate, Date nextUpdate, long crlNumber,
+			Integer baseCrlNumber) throws Exception {
+		X509v2CRLBuilder builder = new X509v2CRLBuilder(ctx.getSigningCertificate().getSubject(), thisUpdate);
+		builder.setNextUpdate(nextUpdate);
+		builder.addExtension(Extension.cRLNumber, false, new ASN1Integer(crlNumber));
+
+		if (baseCrlNumber != null) {
+			builder.addExtension(Extension.deltaCRLIndicator, true, new ASN1Integer(baseCrlNumber));
+		}
+
+		return builder.build(new JcaContentSignerBuilder("SHA256withRSA").setProvider("BC")
+				.build(ctx.getSigningPrivateKey()));
+	}
+
+	private Context loadSigningCa() throws Exception {
+		Context ctx = new Context();
+		Config.Ca caConfig = new Config.Ca();
+		Config.Ca.Certificate rootCertificateConfig = new Config.Ca.Certificate();
+		Config.Ca.Certificate intermediateCertificateConfig = new Config.Ca.Certificate();
+
+		rootCertificateConfig.setFile(TestResources.getAbsolutePath("with-intermediate/root-ca.pem"));
+		rootCertificateConfig.setPkPassword("secret");
+		intermediateCertificateConfig.setFile(TestResources.getAbsolutePath("with-intermediate/signing-ca.pem"));
+		intermediateCertificateConfig.setPkPassword("secret");
+		caConfig.setRoot(rootCertificateConfig);
+		caConfig.setIntermediate(intermediateCertificateConfig);
+
+		new LoadCa(ctx, caConfig).run();
+
+		return ctx;
+	}
+
+	private void createCrl(File file, BigInteger revokedSerial) throws Exception {
+		Context ctx = loadSigningCa();
+		Date now = new Date();
+		X509v2CRLBuilder builder = new X509v2CRLBuilder(ctx.getSigningCertificate().getSubject(), now);
+		builder.setNextUpdate(new Date(now.getTime() + 24 * 60 * 60 * 1000L));
+
+		for (long i = 1; i < 1000; i++) {
+			builder.addCRLEntry(BigInteger.valueOf(i * 7919), now, CRLReason.superseded);
+		}
+
+		builder.addCRLEntry(revokedSerial, now, CRLReason.keyCompromise);
+
+		X509CRLHolder crl = builder.build(new JcaContentSignerBuilder("SHA256withRSA").setProvider("BC")
+				.build(ctx.getSigningPrivateKey()));
+
+		try (JcaPEMWriter writer = new JcaPEMWriter(new FileWriter(file))) {
+			writer.writeObject(crl);
+		}
+	}
+
+	private Set<TrustAnchor> loadTrustAnchors(String resource) throws Exception {
+		X509Certificate certificate = PemFileUtils
+				.readCertificatesFromPemFile(new File(TestResources.getAbsolutePath(resource))).get(0);
+		return Collections.singleton(new TrustAnchor(certificate, null));
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DnCacheTest {
+
+	@Test
+	public void testParsedOnce() {
+		DnCache dnCache = new DnCache();
+
+		DnCache.ParsedDn parsedDn = dnCache.get("CN=node1.example.com, OU=Ops,O=Example Com\\, Inc.");
+
+		Assert.assertSame(parsedDn, dnCache.get("CN=node1.example.com, OU=Ops,O=Example Com\\, Inc."));
+		Assert.assertEquals(1, dnCache.size());
+		Assert.assertEquals("CN=node1.example.com,OU=Ops,O=Example Com\\, Inc.", parsedDn.getCanonicalName());
+		Assert.assertEquals("node1.example.com", parsedDn.getSimpleName());
+		Assert.assertEquals(3, parsedDn.getX500Name().getRDNs().length);
+	}
+
+	@Test
+	public void testBounded() {
+		DnCache dnCache = new DnCache(10);
+
+		for (int i = 0; i < 100; i++) {
+			Assert.assertEquals("node" + i, dnCache.get("CN=node" + i + ",OU=Ops").getSimpleName());
+		}
+
+		Assert.assertTrue(String.valueOf(dnCache.size()), dnCache.size() <= 10);
+	}
+
+	@Test
+	public void testInvalidDn() {
+		DnCache.ParsedDn parsedDn = new DnCache().get("CN=node1,invalid");
+
+		Assert.assertNull(parsedDn.getX500Name());
+		Assert.assertNotNull(parsedDn.getX500NameError());
+		Assert.assertNull(parsedDn.getCanonicalName());
+		Assert.assertNotNull(parsedDn.getCanonicalNameError());
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool;
+
+import java.security.KeyPair;
+import java.security.interfaces.RSAPublicKey;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KeyGenerationStageTest {
+
+	@Test
+	public void testTake() throws Exception {
+		Timings timings = new Timings();
+
+		try (KeyGenerationStage stage = new KeyGenerationStage(new BouncyCastleProvider(), 2, 2, timings)) {
+			stage.prepare(1024);
+
+			KeyPair keyPair1 = stage.take(1024);
+			KeyPair keyPair2 = stage.take(1024);
+			KeyPair keyPair3 = stage.take(512);
+
+			Assert.assertNotEquals(keyPair1.getPublic(), keyPair2.getPublic());
+			Assert.assertEquals(1024, ((RSAPublicKey) keyPair1.getPublic()).getModulus().bitLength());
+			Assert.assertEquals(512, ((RSAPublicKey) keyPair3.getPublic()).getModulus().bitLength());
+
+			// The generation of the taken key pairs has been recorded before they were queued
+			Assert.assertEquals("keygen", timings.getStatistics().get(0).getPhase());
+			Assert.assertTrue(timings.getStatistics().get(0).getCount() >= 3);
+		}
+	}
+
+	@Test
+	public void testBoundedGeneration() throws Exception {
+		try (KeyGenerationStage stage = new KeyGenerationStage(new BouncyCastleProvider(), 2, 16, new Timings())) {
+			Thread.sleep(200);
+			Assert.assertEquals(0, stage.getGeneratedCount(1024));
+
+			stage.take(1024);
+			Thread.sleep(500);
+
+			// The requested key pair plus at most one per thread
+			Assert.assertTrue(String.valueOf(stage.getGeneratedCount(1024)), stage.getGeneratedCount(1024) <= 3);
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testCloseWakesWaitingThread() throws Exception {
+		KeyGenerationStage stage = new KeyGenerationStage(new BouncyCastleProvider(), 1, 1, new Timings());
+		Thread closer = new Thread(() -> {
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				return;
+			}
+
+			stage.close();
+		});
+
+		closer.start();
+
+		try {
+			// Generating the key pair takes much longer than closing the stage
+			stage.take(4096);
+			Assert.fail();
+		} catch (ToolException e) {
+			Assert.assertEquals("Key generation has been already stopped", e.getMessage());
+		}
+	}
+
+	@Test(expected = ToolException.class)
+	public void testClosed() throws Exception {
+		KeyGenerationStage stage = new KeyGenerationStage(new BouncyCastleProvider(), 1, 1, new Timings());
+		stage.close();
+		stage.take(1024);
+	}
+}
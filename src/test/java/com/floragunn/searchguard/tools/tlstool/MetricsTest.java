@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MetricsTest {
+
+	@Test
+	public void testConcurrentIncrements() throws Exception {
+		Metrics metrics = new Metrics(new Timings());
+		ExecutorService executorService = Executors.newFixedThreadPool(4);
+
+		for (int i = 0; i < 1000; i++) {
+			executorService.submit(() -> metrics.increment(Metrics.NODE_CERTIFICATES));
+		}
+
+		executorService.shutdown();
+		Assert.assertTrue(executorService.awaitTermination(30, TimeUnit.SECONDS));
+
+		metrics.increment(Metrics.CLIENT_CSRS);
+
+		Assert.assertEquals(1000, metrics.getCount(Metrics.NODE_CERTIFICATES));
+		Assert.assertEquals(0, metrics.getCount(Metrics.CLIENT_CERTIFICATES));
+		Assert.assertEquals(1000, metrics.getCertificatesCreated());
+		Assert.assertEquals(1, metrics.getCsrsCreated());
+		Assert.assertEquals(Long.valueOf(1), metrics.getCounters().get(Metrics.CLIENT_CSRS));
+	}
+
+	@Test
+	public void testMBean() throws Exception {
+		Timings timings = new Timings();
+		Metrics metrics = new Metrics(timings);
+
+		metrics.increment(Metrics.CLIENT_CERTIFICATES);
+		timings.record("sign", 2000000L);
+
+		ObjectName name = metrics.register();
+
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+			Assert.assertEquals(1L, server.getAttribute(name, "CertificatesCreated"));
+
+			CompositeData[] latencies = (CompositeData[]) server.getAttribute(name, "Latencies");
+
+			Assert.assertEquals(1, latencies.length);
+			Assert.assertEquals("sign", latencies[0].get("phase"));
+			Assert.assertEquals(2.0, (Double) latencies[0].get("p95Millis"), 0.001);
+		} finally {
+			Metrics.unregister(name);
+		}
+
+		Assert.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+	}
+}
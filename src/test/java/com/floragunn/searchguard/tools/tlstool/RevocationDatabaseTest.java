@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RevocationDatabaseTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testLegacyHexSerials() throws Exception {
+		File file = temporaryFolder.newFile("signing-ca.revoked");
+		Files.write(file.toPath(), ("# Revocation database maintained by sgtlstool. Do not edit.\n"
+				+ "crl_number=1\nbase_crl_number=1\nbase_crl_time=1000\nff 1000 1 1\n")
+						.getBytes(StandardCharsets.UTF_8));
+
+		RevocationDatabase database = RevocationDatabase.load(file);
+		Assert.assertTrue(database.isRevoked(BigInteger.valueOf(255)));
+
+		Files.write(file.toPath(), database.toString().getBytes(StandardCharsets.UTF_8));
+
+		RevocationDatabase reloaded = RevocationDatabase.load(file);
+		Assert.assertTrue(database.toString(), database.toString().contains("\n255 1000 1 1\n"));
+		Assert.assertTrue(reloaded.isRevoked(BigInteger.valueOf(255)));
+		Assert.assertEquals(1, reloaded.getEntries().size());
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TimingsTest {
+
+	@Test
+	public void testStatistics() {
+		Timings timings = new Timings();
+
+		for (int i = 1; i <= 100; i++) {
+			timings.record("sign", i * 1000000L);
+		}
+
+		try (Timings.Timer timer = timings.start("keygen")) {
+			// empty
+		}
+
+		List<Timings.PhaseStatistics> statistics = timings.getStatistics();
+
+		Assert.assertEquals(2, statistics.size());
+		Assert.assertEquals("sign", statistics.get(0).getPhase());
+		Assert.assertEquals(100, statistics.get(0).getCount());
+		Assert.assertEquals(5050.0, statistics.get(0).getTotalMillis(), 0.001);
+		Assert.assertEquals(50.0, statistics.get(0).getP50Millis(), 0.001);
+		Assert.assertEquals(95.0, statistics.get(0).getP95Millis(), 0.001);
+		Assert.assertEquals(100.0, statistics.get(0).getMaxMillis(), 0.001);
+		Assert.assertEquals(1, statistics.get(1).getCount());
+
+		Assert.assertTrue(timings.toTable(), timings.toTable().contains("sign"));
+		Assert.assertTrue(timings.toJson(), timings.toJson().contains("\"p95Millis\" : 95.0"));
+	}
+
+	@Test
+	public void testSampling() {
+		Timings timings = new Timings();
+		int count = Timings.SAMPLE_SIZE * 10;
+
+		for (int i = 1; i <= count; i++) {
+			timings.record("sign", i * 1000L);
+		}
+
+		Timings.PhaseStatistics statistics = timings.getStatistics().get(0);
+
+		Assert.assertEquals(count, statistics.getCount());
+		Assert.assertEquals(count * (count + 1L) / 2 / 1000.0, statistics.getTotalMillis(), 0.001);
+		Assert.assertEquals(count / 1000.0, statistics.getMaxMillis(), 0.001);
+		Assert.assertEquals(count / 2000.0, statistics.getP50Millis(), count / 20000.0);
+		Assert.assertEquals(count * 0.95 / 1000.0, statistics.getP95Millis(), count / 20000.0);
+	}
+}
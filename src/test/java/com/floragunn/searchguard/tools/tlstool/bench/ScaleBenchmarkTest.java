@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.bench;
+
+import java.security.Security;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ScaleBenchmarkTest {
+
+	@BeforeClass
+	public static void init() {
+		Security.addProvider(new BouncyCastleProvider());
+	}
+
+	@Test
+	public void testSmallFleet() throws Exception {
+		ScaleBenchmark.Result result = new ScaleBenchmark(3, 2, true, true, true, 1024, 1, 2, false).run();
+
+		Assert.assertEquals(8, result.getCertificateCount());
+		Assert.assertTrue(result.getCertificatesPerSecond() > 0);
+		Assert.assertEquals("[config, validate, ca, nodes, clients, write, inventory]",
+				result.getPhaseNanos().keySet().toString());
+		Assert.assertTrue(result.toString(), result.toString().startsWith("Issued 8 certificates in "));
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.embedded;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.floragunn.searchguard.tools.tlsdiag.report.ValidationReport;
+import com.floragunn.searchguard.tools.tlstool.Config;
+import com.floragunn.searchguard.tools.tlstool.Metrics;
+import com.floragunn.searchguard.tools.tlstool.ToolException;
+import com.floragunn.searchguard.tools.tlstool.inventory.InventoryRecord;
+
+public class EmbeddedTlsToolTest {
+
+	@Test
+	public void testCreateCertificates() throws Exception {
+		File caDirectory = getCaDirectory();
+		EmbeddedTlsTool tool = new EmbeddedTlsTool(createConfig(), caDirectory);
+
+		IssuanceResult result = tool.createCertificates(Collections.singletonList(createNode("node1")),
+				Collections.singletonList(createClient("admin")));
+
+		Assert.assertTrue(result.getFiles().keySet().toString(), result.getFiles().keySet()
+				.containsAll(Arrays.asList("node1.pem", "node1.key", "node1_http.pem", "node1_http.key", "admin.pem")));
+		Assert.assertTrue(result.getFileAsString("node1.key").contains("ENCRYPTED PRIVATE KEY"));
+		Assert.assertEquals(2, result.getCounters().get(Metrics.NODE_CERTIFICATES).longValue());
+		Assert.assertEquals(3, result.getIssuedCertificates().size());
+		Assert.assertEquals(2, result.getCounters().get(Metrics.NODE_PASSWORDS_GENERATED).longValue());
+		Assert.assertFalse(new File(caDirectory, "admin.pem").exists());
+
+		ValidationReport report = EmbeddedTlsTool.validateChain(result.getFile("node1.pem"),
+				Files.readAllBytes(new File(caDirectory, "root-ca.pem").toPath()));
+
+		Assert.assertTrue(report.getError(), report.isValid());
+		Assert.assertEquals("CN=node1.example.com", report.getSubjectDn());
+	}
+
+	@Test
+	public void testCreateCsrs() throws Exception {
+		EmbeddedTlsTool tool = new EmbeddedTlsTool(new Config(), null);
+
+		IssuanceResult result = tool.createCsrs(Collections.singletonList(createNode("node1")), null);
+
+		Assert.assertTrue(result.getFileAsString("node1.csr").contains("CERTIFICATE REQUEST"));
+		Assert.assertTrue(result.getIssuedCertificates().isEmpty());
+	}
+
+	@Test
+	public void testConcurrentCalls() throws Exception {
+		EmbeddedTlsTool tool = new EmbeddedTlsTool(createConfig(), getCaDirectory());
+		ExecutorService executorService = Executors.newFixedThreadPool(3);
+
+		try {
+			List<Future<IssuanceResult>> futures = new ArrayList<>();
+
+			for (int i = 0; i < 3; i++) {
+				Config.Node node = createNode("node" + i);
+				futures.add(executorService.submit(() -> tool.createCertificates(Collections.singletonList(node), null)));
+			}
+
+			for (int i = 0; i < 3; i++) {
+				IssuanceResult result = futures.get(i).get();
+
+				Assert.assertEquals(result.getFiles().keySet().toString(), 2,
+						result.getCounters().get(Metrics.NODE_CERTIFICATES).longValue());
+				Assert.assertNotNull(result.getFile("node" + i + ".pem"));
+			}
+		} finally {
+			executorService.shutdown();
+		}
+	}
+
+	@Test
+	public void testUniqueSerialsOfConcurrentCalls() throws Exception {
+		EmbeddedTlsTool tool = new EmbeddedTlsTool(createConfig(), getCaDirectory());
+		ExecutorService executorService = Executors.newFixedThreadPool(4);
+
+		try {
+			List<Future<IssuanceResult>> futures = new ArrayList<>();
+
+			for (int i = 0; i < 4; i++) {
+				List<Config.Node> nodes = Arrays.asList(createNode("a" + i), createNode("b" + i), createNode("c" + i));
+				futures.add(executorService.submit(() -> tool.createCertificates(nodes, null)));
+			}
+
+			Set<String> serials = new HashSet<>();
+			int issued = 0;
+
+			for (Future<IssuanceResult> future : futures) {
+				for (InventoryRecord record : future.get().getIssuedCertificates()) {
+					serials.add(record.getSerial());
+					issued++;
+				}
+			}
+
+			Assert.assertEquals(24, issued);
+			Assert.assertEquals(issued, serials.size());
+		} finally {
+			executorService.shutdown();
+		}
+	}
+
+	@Test(expected = ToolException.class)
+	public void testInvalidChain() throws Exception {
+		EmbeddedTlsTool.validateChain(new byte[0], new byte[0]);
+	}
+
+	private Config createConfig() {
+		Config config = new Config();
+		Config.Ca caConfig = new Config.Ca();
+		Config.Ca.Certificate rootCertificateConfig = new Config.Ca.Certificate();
+		Config.Ca.Certificate intermediateCertificateConfig = new Config.Ca.Certificate();
+
+		rootCertificateConfig.setFile("root-ca.pem");
+		rootCertificateConfig.setPkPassword("secret");
+		intermediateCertificateConfig.setFile("signing-ca.pem");
+		intermediateCertificateConfig.setPkPassword("secret");
+
+		caConfig.setRoot(rootCertificateConfig);
+		caConfig.setIntermediate(intermediateCertificateConfig);
+
+		Config.Defaults defaults = new Config.Defaults();
+		defaults.setHttpsEnabled(true);
+		defaults.setPkPassword("auto");
+
+		config.setCa(caConfig);
+		config.setDefaults(defaults);
+
+		return config;
+	}
+
+	private Config.Node createNode(String name) {
+		Config.Node node = new Config.Node();
+		node.setName(name);
+		node.setDn("CN=" + name + ".example.com");
+		node.setDns(Collections.singletonList(name + ".example.com"));
+		node.setKeysize(1024);
+		return node;
+	}
+
+	private Config.Client createClient(String name) {
+		Config.Client client = new Config.Client();
+		client.setName(name);
+		client.setDn("CN=" + name);
+		client.setAdmin(true);
+		client.setKeysize(1024);
+		return client;
+	}
+
+	private File getCaDirectory() throws URISyntaxException {
+		return Paths.get(getClass().getClassLoader().getResource("with-intermediate").toURI()).toFile();
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.floragunn.searchguard.tools.tlstool.inventory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Strings;
+
+public class InventoryIndexTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testFind() throws Exception {
+		File file = new File(temporaryFolder.getRoot(), "test.idx");
+		Random random = new Random(1);
+		List<String> allKeys = new ArrayList<>();
+		List<Long> allOffsets = new ArrayList<>();
+		InventoryIndex index = InventoryIndex.empty();
+
+		for (int batch = 0; batch < 3; batch++) {
+			String[] keys = new String[500];
+			long[] offsets = new long[keys.length];
+
+			for (int i = 0; i < keys.length; i++) {
+				// Some keys are longer than the read buffer; some occur several times
+				keys[i] = i % 100 == 0 ? Strings.repeat("x", 5000) + random.nextInt(3)
+						: "key" + random.nextInt(1000);
+				offsets[i] = allOffsets.size();
+				allKeys.add(keys[i]);
+				allOffsets.add(offsets[i]);
+			}
+
+			index = InventoryIndex.merge(index, keys, offsets, file, allKeys.size());
+		}
+
+		index = InventoryIndex.open(file, allKeys.size());
+		Assert.assertEquals(allKeys.size(), index.size());
+		Assert.assertNull(InventoryIndex.open(file, allKeys.size() + 1));
+
+		for (String key : new String[] { "key1", "key500", "key999", "key", "key5000", "a", "z",
+				Strings.repeat("x", 5000) + "1", Strings.repeat("x", 5000) }) {
+			Assert.assertArrayEquals(key, getOffsets(allKeys, allOffsets, key, null), sorted(index.find(key)));
+		}
+
+		Assert.assertArrayEquals(getOffsets(allKeys, allOffsets, "key2", "key3"), sorted(index.findRange("key2", "key3")));
+		Assert.assertEquals(allKeys.size(), index.findRange("", "zzz").length);
+	}
+
+	private static long[] getOffsets(List<String> keys, List<Long> offsets, String from, String to) {
+		List<Long> result = new ArrayList<>();
+
+		for (int i = 0; i < keys.size(); i++) {
+			String key = keys.get(i);
+
+			if (to == null ? key.equals(from) : key.compareTo(from) >= 0 && key.compareTo(to) < 0) {
+				result.add(offsets.get(i));
+			}
+		}
+
+		return sorted(result.stream().mapToLong(Long::longValue).toArray());
+	}
+
+	private static long[] sorted(long[] values) {
+		long[] result = values.clone();
+		Arrays.sort(result);
+		return result;
+	}
+}
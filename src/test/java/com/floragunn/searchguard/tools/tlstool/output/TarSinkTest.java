@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TarSinkTest {
+
+	@Test
+	public void testArchive() throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		File baseDirectory = new File("out");
+
+		try (TarSink sink = new TarSink(baseDirectory, outputStream)) {
+			sink.write(new File(baseDirectory, "node1.pem"), "abc\n".getBytes(StandardCharsets.UTF_8));
+			sink.write(new File(baseDirectory, "node1.key"), new byte[512]);
+		}
+
+		byte[] archive = outputStream.toByteArray();
+
+		// header + 1 data block + header + 1 data block + 2 end blocks
+		Assert.assertEquals(6 * 512, archive.length);
+		Assert.assertEquals("node1.pem", readString(archive, 0, 100));
+		Assert.assertEquals("ustar", readString(archive, 257, 6));
+		Assert.assertEquals(4, Long.parseLong(readString(archive, 124, 12), 8));
+		Assert.assertEquals("abc\n", new String(archive, 512, 4, StandardCharsets.UTF_8));
+		Assert.assertEquals("node1.key", readString(archive, 1024, 100));
+		Assert.assertEquals(Long.parseLong(readString(archive, 148, 8).trim(), 8), checksum(archive, 0));
+		Assert.assertTrue(Arrays.equals(new byte[1024], Arrays.copyOfRange(archive, 2048, 3072)));
+	}
+
+	@Test
+	public void testLink() throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		File baseDirectory = new File("out");
+		byte[] content = "ca\n".getBytes(StandardCharsets.UTF_8);
+
+		try (TarSink sink = new TarSink(baseDirectory, outputStream)) {
+			sink.write(new File(baseDirectory, "root-ca.pem"), content);
+			sink.link(new File(baseDirectory, "nodes/ab/node1/root-ca.pem"), new File(baseDirectory, "root-ca.pem"),
+					content);
+			sink.link(new File(baseDirectory, "nodes/ab/node1/other.pem"), new File("elsewhere.pem"), content);
+		}
+
+		byte[] archive = outputStream.toByteArray();
+
+		Assert.assertEquals("nodes/ab/node1/root-ca.pem", readString(archive, 1024, 100));
+		Assert.assertEquals('1', archive[1024 + 156]);
+		Assert.assertEquals("root-ca.pem", readString(archive, 1024 + 157, 100));
+		Assert.assertEquals(0, Long.parseLong(readString(archive, 1024 + 124, 12), 8));
+
+		// Targets outside of the archive are copied
+		Assert.assertEquals("nodes/ab/node1/other.pem", readString(archive, 1536, 100));
+		Assert.assertEquals('0', archive[1536 + 156]);
+		Assert.assertEquals("ca\n", new String(archive, 2048, 3, StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testLongName() throws Exception {
+		String directory = String.join("/", new String[] { "a123456789", "b123456789", "c123456789", "d123456789",
+				"e123456789", "f123456789", "g123456789", "h123456789", "i123456789", "j123456789" });
+		byte[] header = TarSink.createHeader(directory + "/node1.pem", 0, 0);
+
+		Assert.assertEquals("node1.pem", readString(header, 0, 100));
+		Assert.assertEquals(directory, readString(header, 345, 155));
+	}
+
+	@Test(expected = IOException.class)
+	public void testTooLongName() throws Exception {
+		char[] name = new char[300];
+		Arrays.fill(name, 'a');
+
+		TarSink.createHeader(new String(name), 0, 0);
+	}
+
+	private static String readString(byte[] data, int offset, int length) {
+		int end = offset;
+
+		while (end < offset + length && data[end] != 0) {
+			end++;
+		}
+
+		return new String(data, offset, end - offset, StandardCharsets.US_ASCII);
+	}
+
+	private static long checksum(byte[] data, int offset) {
+		long result = 0;
+
+		for (int i = offset; i < offset + 512; i++) {
+			result += i >= offset + 148 && i < offset + 156 ? ' ' : data[i] & 0xff;
+		}
+
+		return result;
+	}
+}
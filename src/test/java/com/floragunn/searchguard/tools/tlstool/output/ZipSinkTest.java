@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.output;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ZipSinkTest {
+
+	@Test
+	public void testArchive() throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		File baseDirectory = new File("out");
+
+		try (ZipSink sink = new ZipSink(baseDirectory, outputStream)) {
+			sink.write(new File(baseDirectory, "node1.pem"), "abc".getBytes(StandardCharsets.UTF_8));
+			sink.write(new File(new File(baseDirectory, "sub"), "node1.key"), "def".getBytes(StandardCharsets.UTF_8));
+		}
+
+		try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+			ZipEntry entry = zipInputStream.getNextEntry();
+			Assert.assertEquals("node1.pem", entry.getName());
+			Assert.assertEquals("abc", new String(IOUtils.toByteArray(zipInputStream), StandardCharsets.UTF_8));
+
+			entry = zipInputStream.getNextEntry();
+			Assert.assertEquals("sub/node1.key", entry.getName());
+			Assert.assertEquals("def", new String(IOUtils.toByteArray(zipInputStream), StandardCharsets.UTF_8));
+
+			Assert.assertNull(zipInputStream.getNextEntry());
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testFileOutsideBaseDirectory() throws Exception {
+		try (ZipSink sink = new ZipSink(new File("out"), new ByteArrayOutputStream())) {
+			sink.write(new File("ca/root-ca.key"), new byte[] { 1 });
+		}
+	}
+
+	@Test
+	public void testMemorySink() throws Exception {
+		MemorySink sink = new MemorySink(new File("out"));
+
+		sink.write(new File("out/b.pem"), new byte[] { 1 });
+		sink.write(new File("out/a.pem"), new byte[] { 2 });
+
+		Assert.assertArrayEquals(new String[] { "b.pem", "a.pem" }, sink.getFiles().keySet().toArray());
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.tasks;
+
+import java.math.BigInteger;
+import java.security.Security;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.commons.io.FilenameUtils;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.floragunn.searchguard.tools.tlstool.Config;
+import com.floragunn.searchguard.tools.tlstool.Context;
+import com.floragunn.searchguard.tools.tlstool.FileOutput;
+import com.floragunn.searchguard.tools.tlstool.RevocationDatabase;
+
+public class CreateCrlTest {
+	@BeforeClass
+	public static void init() {
+		Security.addProvider(new BouncyCastleProvider());
+	}
+
+	@Test
+	public void testFullAndDeltaCrl() throws Exception {
+		Context ctx = new Context();
+		Config config = new Config();
+		Config.Ca caConfig = new Config.Ca();
+		Config.Ca.Certificate rootCertificateConfig = new Config.Ca.Certificate();
+		Config.Ca.Certificate intermediateCertificateConfig = new Config.Ca.Certificate();
+
+		rootCertificateConfig.setFile(TestResources.getAbsolutePath("with-intermediate/root-ca.pem"));
+		rootCertificateConfig.setPkPassword("secret");
+		intermediateCertificateConfig.setFile(TestResources.getAbsolutePath("with-intermediate/signing-ca.pem"));
+		intermediateCertificateConfig.setPkPassword("secret");
+
+		caConfig.setRoot(rootCertificateConfig);
+		caConfig.setIntermediate(intermediateCertificateConfig);
+
+		config.setDefaults(new Config.Defaults());
+		config.setCa(caConfig);
+		ctx.setConfig(config);
+
+		new LoadCa(ctx, caConfig).run();
+
+		String node1File = TestResources.getAbsolutePath("with-intermediate/node1.pem");
+		String base = FilenameUtils.removeExtension(intermediateCertificateConfig.getFile());
+
+		new RevokeCertificate(ctx, Arrays.asList("1234", node1File), "keyCompromise").run();
+		new CreateCrl(ctx, caConfig, false).run();
+
+		FileOutput fileOutput = ctx.getFileOutput();
+		X509CRLHolder fullCrl = (X509CRLHolder) fileOutput.getEntryByFileName(base + ".crl").getEntries().get(0);
+
+		Assert.assertEquals(2, fullCrl.getRevokedCertificates().size());
+		Assert.assertNotNull(fullCrl.getRevokedCertificate(BigInteger.valueOf(1234)));
+		Assert.assertNotNull(fullCrl.getRevokedCertificate(BigInteger.valueOf(1522513141670L)));
+		Assert.assertEquals(BigInteger.ONE, getCrlNumber(fullCrl, Extension.cRLNumber));
+		Assert.assertNull(fullCrl.getExtension(Extension.deltaCRLIndicator));
+		Assert.assertTrue(fullCrl.isSignatureValid(new JcaContentVerifierProviderBuilder().setProvider("BC")
+				.build(ctx.getSigningCertificate())));
+
+		new RevokeCertificate(ctx, Collections.singletonList("0xff"), null).run();
+		new CreateCrl(ctx, caConfig, false).run();
+
+		X509CRLHolder deltaCrl = (X509CRLHolder) fileOutput.getEntryByFileName(base + "-delta.crl").getEntries()
+				.get(0);
+
+		Assert.assertEquals(1, deltaCrl.getRevokedCertificates().size());
+		Assert.assertNotNull(deltaCrl.getRevokedCertificate(BigInteger.valueOf(255)));
+		Assert.assertEquals(BigInteger.valueOf(2), getCrlNumber(deltaCrl, Extension.cRLNumber));
+		Assert.assertEquals(BigInteger.ONE, getCrlNumber(deltaCrl, Extension.deltaCRLIndicator));
+
+		String database = (String) fileOutput.getEntryByFileName(base + ".revoked").getEntries().get(0);
+		Assert.assertTrue(database, database.contains("crl_number=2\n"));
+		Assert.assertTrue(database, database.contains("base_crl_number=1\n"));
+		Assert.assertTrue(database, database.contains("serial_radix=10\n"));
+		Assert.assertTrue(database, database.contains("\n255 "));
+
+		RevocationDatabase revocationDatabase = ctx.getRevocationDatabase();
+		Assert.assertEquals(3, revocationDatabase.getEntries().size());
+		Assert.assertEquals(1, revocationDatabase.getEntriesSinceBase().size());
+	}
+
+	private BigInteger getCrlNumber(X509CRLHolder crl, org.bouncycastle.asn1.ASN1ObjectIdentifier oid) {
+		return ASN1Integer.getInstance(crl.getExtension(oid).getParsedValue()).getValue();
+	}
+}
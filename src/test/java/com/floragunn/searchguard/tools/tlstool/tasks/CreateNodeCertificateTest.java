@@ -17,9 +17,18 @@
 
 package com.floragunn.searchguard.tools.tlstool.tasks;
 
+import java.io.File;
 import java.net.InetAddress;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.KeyStore;
 import java.security.Security;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
 import org.bouncycastle.asn1.ASN1String;
@@ -29,18 +38,28 @@ import org.bouncycastle.asn1.x509.Extension;
 import org.bouncycastle.asn1.x509.GeneralName;
 import org.bouncycastle.asn1.x509.GeneralNames;
 import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cms.CMSSignedData;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.junit.Assert;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import com.floragunn.searchguard.tools.tlstool.BundleLayout;
+import com.floragunn.searchguard.tools.tlstool.CertificateProfile;
 import com.floragunn.searchguard.tools.tlstool.Config;
 import com.floragunn.searchguard.tools.tlstool.Context;
 import com.floragunn.searchguard.tools.tlstool.FileOutput;
+import com.floragunn.searchguard.tools.tlstool.Pkcs12KeyStore;
 import com.floragunn.searchguard.tools.tlstool.ToolException;
+import com.floragunn.searchguard.tools.util.PemFileUtils;
 import com.google.common.collect.Lists;
 
 public class CreateNodeCertificateTest {
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
 	@BeforeClass
 	public static void init() {
 		Security.addProvider(new BouncyCastleProvider());
@@ -112,6 +131,19 @@ public class CreateNodeCertificateTest {
 		Assert.assertEquals(2, fileEntry.getEntries().size());
 
 		Assert.assertNotNull(fileOutput.getEntryByFileName("test-node_http.key"));
+
+		X509CertificateHolder httpCert = (X509CertificateHolder) fileEntry.getEntries().get(0);
+
+		Assert.assertEquals(cert.getExtensionOIDs(), httpCert.getExtensionOIDs());
+		Assert.assertEquals(Arrays.asList(Extension.authorityKeyIdentifier, Extension.subjectKeyIdentifier,
+				Extension.basicConstraints, Extension.keyUsage, Extension.extendedKeyUsage,
+				Extension.subjectAlternativeName), cert.getExtensionOIDs());
+		Assert.assertTrue(cert.getExtension(Extension.keyUsage).isCritical());
+		Assert.assertEquals(cert.getExtension(Extension.extendedKeyUsage),
+				httpCert.getExtension(Extension.extendedKeyUsage));
+		Assert.assertNotEquals(cert.getExtension(Extension.subjectKeyIdentifier),
+				httpCert.getExtension(Extension.subjectKeyIdentifier));
+		Assert.assertNotNull(ctx.getCertificateProfile(CertificateProfile.NODE));
 	}
 
 	@Test
@@ -168,6 +200,302 @@ public class CreateNodeCertificateTest {
 		Assert.assertNotNull(fileOutput.getEntryByFileName("test-node_http.key"));
 	}
 
+	@Test
+	public void testRenewal() throws Exception {
+		File targetDirectory = temporaryFolder.getRoot();
+		Context ctx = createRenewalTestContext(targetDirectory, "without-intermediate");
+		Config.Node nodeConfig = ctx.getConfig().getNodes().get(0);
+
+		new CreateNodeCertificate(ctx, nodeConfig).run();
+		ctx.getFileOutput().saveAllFiles();
+
+		X509CertificateHolder originalCertificate = (X509CertificateHolder) ctx.getFileOutput()
+				.getEntryByFileName(new File(targetDirectory, "test-node.pem").getPath()).getEntries().get(0);
+
+		// The certificate is valid for 10 days and thus not due for renewal
+		ctx = createRenewalTestContext(targetDirectory, "without-intermediate");
+		ctx.setRenewWithinDays(5);
+		new CreateNodeCertificate(ctx, nodeConfig).run();
+
+		Assert.assertNull(ctx.getFileOutput().getEntryByFileName(new File(targetDirectory, "test-node.pem").getPath()));
+
+		ctx = createRenewalTestContext(targetDirectory, "without-intermediate");
+		ctx.setRenewWithinDays(30);
+		ctx.setReuseKeys(true);
+		new CreateNodeCertificate(ctx, nodeConfig).run();
+
+		FileOutput fileOutput = ctx.getFileOutput();
+		X509CertificateHolder renewedCertificate = (X509CertificateHolder) fileOutput
+				.getEntryByFileName(new File(targetDirectory, "test-node.pem").getPath()).getEntries().get(0);
+
+		Assert.assertNotEquals(originalCertificate.getSerialNumber(), renewedCertificate.getSerialNumber());
+		Assert.assertEquals(originalCertificate.getSubjectPublicKeyInfo(), renewedCertificate.getSubjectPublicKeyInfo());
+		Assert.assertNotNull(fileOutput.getEntryByFileName(new File(targetDirectory, "test-node_http.pem").getPath()));
+		Assert.assertNull(fileOutput.getEntryByFileName(new File(targetDirectory, "test-node.key").getPath()));
+		Assert.assertNull(fileOutput.getEntryByFileName(new File(targetDirectory, "test-node_http.key").getPath()));
+		Assert.assertNull(fileOutput.getEntryByFileName(
+				new File(targetDirectory, "test-node_elasticsearch_config_snippet.yml").getPath()));
+	}
+
+	@Test
+	public void testResign() throws Exception {
+		File targetDirectory = temporaryFolder.getRoot();
+		Context ctx = createRenewalTestContext(targetDirectory, "without-intermediate");
+		Config.Node nodeConfig = ctx.getConfig().getNodes().get(0);
+
+		new CreateNodeCertificate(ctx, nodeConfig).run();
+		ctx.getFileOutput().saveAllFiles();
+
+		FileOutput fileOutput = ctx.getFileOutput();
+		X509CertificateHolder originalCertificate = (X509CertificateHolder) fileOutput
+				.getEntryByFileName(new File(targetDirectory, "test-node.pem").getPath()).getEntries().get(0);
+		X509CertificateHolder originalHttpCertificate = (X509CertificateHolder) fileOutput
+				.getEntryByFileName(new File(targetDirectory, "test-node_http.pem").getPath()).getEntries().get(0);
+
+		// Without certificate, the public key is derived from the private key
+		Assert.assertTrue(new File(targetDirectory, "test-node_http.pem").delete());
+
+		ctx = createRenewalTestContext(targetDirectory, "with-intermediate");
+		ctx.setResign(true);
+		new CreateNodeCertificate(ctx, nodeConfig).run();
+
+		fileOutput = ctx.getFileOutput();
+		FileOutput.FileEntry fileEntry = fileOutput
+				.getEntryByFileName(new File(targetDirectory, "test-node.pem").getPath());
+		X509CertificateHolder resignedCertificate = (X509CertificateHolder) fileEntry.getEntries().get(0);
+
+		Assert.assertEquals(ctx.getSigningCertificate().getSubject(), resignedCertificate.getIssuer());
+		Assert.assertEquals(ctx.getSigningCertificate(), fileEntry.getEntries().get(1));
+		Assert.assertEquals(originalCertificate.getSubjectPublicKeyInfo(), resignedCertificate.getSubjectPublicKeyInfo());
+
+		X509CertificateHolder resignedHttpCertificate = (X509CertificateHolder) fileOutput
+				.getEntryByFileName(new File(targetDirectory, "test-node_http.pem").getPath()).getEntries().get(0);
+
+		Assert.assertEquals(originalHttpCertificate.getSubjectPublicKeyInfo(),
+				resignedHttpCertificate.getSubjectPublicKeyInfo());
+		Assert.assertNull(fileOutput.getEntryByFileName(new File(targetDirectory, "test-node.key").getPath()));
+	}
+
+	@Test
+	public void testAdditionalCa() throws Exception {
+		File targetDirectory = temporaryFolder.getRoot();
+		Context ctx = createRenewalTestContext(targetDirectory, "without-intermediate");
+		Config.Node nodeConfig = ctx.getConfig().getNodes().get(0);
+
+		Config.Ca additionalCaConfig = new Config.Ca();
+		Config.Ca.Certificate rootCertificateConfig = new Config.Ca.Certificate();
+		Config.Ca.Certificate intermediateCertificateConfig = new Config.Ca.Certificate();
+		rootCertificateConfig.setFile(TestResources.getAbsolutePath("with-intermediate/root-ca.pem"));
+		intermediateCertificateConfig.setFile(TestResources.getAbsolutePath("with-intermediate/signing-ca.pem"));
+		intermediateCertificateConfig.setPkPassword("secret");
+		additionalCaConfig.setName("new");
+		additionalCaConfig.setRoot(rootCertificateConfig);
+		additionalCaConfig.setIntermediate(intermediateCertificateConfig);
+
+		// The CA files are specified by absolute paths
+		ctx.setTargetDirectory(null);
+		LoadAdditionalCa loadAdditionalCa = new LoadAdditionalCa(ctx, additionalCaConfig);
+		ctx.setTargetDirectory(targetDirectory);
+		loadAdditionalCa.run();
+
+		new CreateNodeCertificate(ctx, nodeConfig).run();
+
+		FileOutput fileOutput = ctx.getFileOutput();
+		X509CertificateHolder certificate = (X509CertificateHolder) fileOutput
+				.getEntryByFileName(new File(targetDirectory, "test-node.pem").getPath()).getEntries().get(0);
+		FileOutput.FileEntry additionalEntry = fileOutput
+				.getEntryByFileName(new File(targetDirectory, "test-node-new.pem").getPath());
+		X509CertificateHolder additionalCertificate = (X509CertificateHolder) additionalEntry.getEntries().get(0);
+
+		Assert.assertEquals(ctx.getAdditionalSigningCas().get(0).getSigningCertificate().getSubject(),
+				additionalCertificate.getIssuer());
+		Assert.assertEquals(2, additionalEntry.getEntries().size());
+		Assert.assertEquals(certificate.getSubjectPublicKeyInfo(), additionalCertificate.getSubjectPublicKeyInfo());
+		Assert.assertEquals(certificate.getExtension(Extension.subjectAlternativeName),
+				additionalCertificate.getExtension(Extension.subjectAlternativeName));
+		Assert.assertNotNull(fileOutput.getEntryByFileName(new File(targetDirectory, "test-node_http-new.pem").getPath()));
+
+		Assert.assertEquals(2, fileOutput.getEntryByFileName(new File(targetDirectory, "trusted-cas.pem").getPath())
+				.getEntries().size());
+		String snippet = (String) fileOutput
+				.getEntryByFileName(
+						new File(targetDirectory, "test-node_elasticsearch_config_snippet.yml").getPath())
+				.getEntries().get(1);
+		Assert.assertTrue(snippet, snippet.contains("pemtrustedcas_filepath: trusted-cas.pem"));
+	}
+
+	@Test
+	public void testBundleLayout() throws Exception {
+		File targetDirectory = temporaryFolder.getRoot();
+		Context ctx = createRenewalTestContext(targetDirectory, "without-intermediate");
+		ctx.setBundleLayout(true);
+
+		new CreateNodeCertificate(ctx, ctx.getConfig().getNodes().get(0)).run();
+		ctx.getFileOutput().saveAllFiles();
+
+		File bundleDirectory = new File(targetDirectory,
+				"nodes/" + BundleLayout.getShard("test-node") + "/test-node");
+
+		Assert.assertTrue(new File(bundleDirectory, "test-node.pem").exists());
+		Assert.assertTrue(new File(bundleDirectory, "test-node_http.key").exists());
+		Assert.assertTrue(new File(bundleDirectory, "test-node_elasticsearch_config_snippet.yml").exists());
+		Assert.assertFalse(new File(targetDirectory, "test-node.pem").exists());
+		Assert.assertArrayEquals(Files.readAllBytes(ctx.getTrustedCasFile().toPath()),
+				Files.readAllBytes(new File(bundleDirectory, "root-ca.pem").toPath()));
+	}
+
+	@Test
+	public void testPkcs12() throws Exception {
+		File targetDirectory = temporaryFolder.getRoot();
+		Context ctx = createRenewalTestContext(targetDirectory, "with-intermediate");
+		ctx.getConfig().getDefaults().setPkcs12(true);
+
+		new CreateNodeCertificate(ctx, ctx.getConfig().getNodes().get(0)).run();
+		ctx.getFileOutput().saveAllFiles();
+
+		KeyStore keyStore = loadKeyStore(new File(targetDirectory, "test-node.p12"), "secret");
+		Assert.assertTrue(keyStore.isKeyEntry("test-node"));
+		Assert.assertEquals(2, keyStore.getCertificateChain("test-node").length);
+		Assert.assertNotNull(keyStore.getKey("test-node", "secret".toCharArray()));
+
+		keyStore = loadKeyStore(new File(targetDirectory, "test-node_http.p12"), "secret");
+		Assert.assertTrue(keyStore.isKeyEntry("test-node"));
+
+		KeyStore trustStore = loadKeyStore(new File(targetDirectory, "truststore.p12"),
+				Pkcs12KeyStore.DEFAULT_PASSWORD);
+		Assert.assertEquals(1, trustStore.size());
+		Assert.assertTrue(trustStore.isCertificateEntry("ca-0"));
+
+		List<String> snippet = Files.readAllLines(
+				new File(targetDirectory, "test-node_elasticsearch_config_snippet.yml").toPath());
+		Assert.assertTrue(snippet.toString(), snippet.contains("searchguard.ssl.transport.keystore_type: PKCS12"));
+		Assert.assertTrue(snippet.toString(),
+				snippet.contains("searchguard.ssl.http.truststore_filepath: truststore.p12"));
+		Assert.assertFalse(snippet.toString(),
+				snippet.contains("searchguard.ssl.transport.pemcert_filepath: test-node.pem"));
+	}
+
+	@Test
+	public void testDerEncoding() throws Exception {
+		File targetDirectory = temporaryFolder.getRoot();
+		Context ctx = createRenewalTestContext(targetDirectory, "without-intermediate");
+		Config.Node nodeConfig = ctx.getConfig().getNodes().get(0);
+		ctx.getConfig().getDefaults().setEncoding("der");
+
+		new CreateNodeCertificate(ctx, nodeConfig).run();
+		ctx.getFileOutput().saveAllFiles();
+
+		File certificateFile = new File(targetDirectory, "test-node.der");
+		X509CertificateHolder originalCertificate = new X509CertificateHolder(
+				Files.readAllBytes(certificateFile.toPath()));
+
+		Assert.assertEquals(ctx.getFileOutput().getEntryByFileName(certificateFile.getPath()).getEntries().get(0),
+				originalCertificate);
+		Assert.assertFalse(new File(targetDirectory, "test-node.pem").exists());
+		Assert.assertEquals(0x30, Files.readAllBytes(new File(targetDirectory, "test-node.key.der").toPath())[0]);
+		Assert.assertFalse(new File(targetDirectory, "test-node.key").exists());
+		Assert.assertTrue(new File(targetDirectory, "test-node_elasticsearch_config_snippet.yml").exists());
+
+		// The existing DER files are read in place of the PEM files
+		ctx = createRenewalTestContext(targetDirectory, "without-intermediate");
+		ctx.setRenewWithinDays(5);
+		new CreateNodeCertificate(ctx, nodeConfig).run();
+
+		Assert.assertNull(ctx.getFileOutput().getEntryByFileName(new File(targetDirectory, "test-node.pem").getPath()));
+
+		ctx = createRenewalTestContext(targetDirectory, "without-intermediate");
+		ctx.setRenewWithinDays(30);
+		ctx.setReuseKeys(true);
+		new CreateNodeCertificate(ctx, nodeConfig).run();
+
+		X509CertificateHolder renewedCertificate = (X509CertificateHolder) ctx.getFileOutput()
+				.getEntryByFileName(new File(targetDirectory, "test-node.pem").getPath()).getEntries().get(0);
+
+		Assert.assertEquals(originalCertificate.getSubjectPublicKeyInfo(), renewedCertificate.getSubjectPublicKeyInfo());
+	}
+
+	@Test
+	public void testDerEncodedChain() throws Exception {
+		File targetDirectory = temporaryFolder.getRoot();
+		Context ctx = createRenewalTestContext(targetDirectory, "with-intermediate");
+		Config.Node nodeConfig = ctx.getConfig().getNodes().get(0);
+		ctx.getConfig().getDefaults().setEncoding("both");
+
+		new CreateNodeCertificate(ctx, nodeConfig).run();
+		ctx.getFileOutput().saveAllFiles();
+
+		List<Object> chain = ctx.getFileOutput()
+				.getEntryByFileName(new File(targetDirectory, "test-node.pem").getPath()).getEntries();
+		byte[] der = Files.readAllBytes(new File(targetDirectory, "test-node.der").toPath());
+
+		Assert.assertTrue(chain.toString(), chain.size() > 1);
+
+		// Certificate chains are written as PKCS#7 with the order of the certificates kept
+		CMSSignedData signedData = new CMSSignedData(der);
+		Assert.assertEquals(chain, new ArrayList<>(signedData.getCertificates().getMatches(null)));
+
+		List<X509Certificate> certificates = PemFileUtils.readCertificates(der);
+		Assert.assertEquals(chain.size(), certificates.size());
+
+		for (int i = 0; i < chain.size(); i++) {
+			Assert.assertArrayEquals(((X509CertificateHolder) chain.get(i)).getEncoded(),
+					certificates.get(i).getEncoded());
+		}
+
+		Assert.assertEquals(chain.get(0), PemFileUtils.readDerObject(der, X509CertificateHolder.class));
+	}
+
+	private KeyStore loadKeyStore(File file, String password) throws Exception {
+		KeyStore keyStore = KeyStore.getInstance("PKCS12");
+
+		try (InputStream in = new FileInputStream(file)) {
+			keyStore.load(in, password.toCharArray());
+		}
+
+		return keyStore;
+	}
+
+	private Context createRenewalTestContext(File targetDirectory, String ca) throws ToolException {
+		Context ctx = new Context();
+		Config config = new Config();
+		Config.Ca caConfig = new Config.Ca();
+		Config.Ca.Certificate rootCertificateConfig = new Config.Ca.Certificate();
+		Config.Defaults defaults = new Config.Defaults();
+		Config.Node nodeConfig = new Config.Node();
+
+		rootCertificateConfig.setFile(TestResources.getAbsolutePath(ca + "/root-ca.pem"));
+		rootCertificateConfig.setPkPassword("secret");
+
+		if (ca.equals("with-intermediate")) {
+			Config.Ca.Certificate intermediateCertificateConfig = new Config.Ca.Certificate();
+			intermediateCertificateConfig.setFile(TestResources.getAbsolutePath(ca + "/signing-ca.pem"));
+			intermediateCertificateConfig.setPkPassword("secret");
+			caConfig.setIntermediate(intermediateCertificateConfig);
+		}
+
+		nodeConfig.setName("test-node");
+		nodeConfig.setDn("CN=node99.example.com,OU=QA");
+		nodeConfig.setDns(Lists.newArrayList("node99.example.com"));
+		nodeConfig.setKeysize(2048);
+		nodeConfig.setValidityDays(10);
+		nodeConfig.setPkPassword("secret");
+
+		defaults.setHttpsEnabled(true);
+		caConfig.setRoot(rootCertificateConfig);
+
+		config.setDefaults(defaults);
+		config.setCa(caConfig);
+		config.setNodes(Collections.singletonList(nodeConfig));
+
+		ctx.setConfig(config);
+
+		new LoadCa(ctx, caConfig).run();
+
+		ctx.setTargetDirectory(targetDirectory);
+
+		return ctx;
+	}
+
 	private String getSubjectAlternativeNameInfo(X509CertificateHolder cert) {
 
 		StringBuilder result = new StringBuilder("");
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.tasks;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.floragunn.searchguard.tools.tlstool.Config;
+import com.floragunn.searchguard.tools.tlstool.Context;
+import com.floragunn.searchguard.tools.tlstool.ToolException;
+import com.floragunn.searchguard.tools.tlstool.source.ConfigRecordSource;
+import com.floragunn.searchguard.tools.tlstool.source.NodeRangeSource;
+
+public class ProcessConfigSourceTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testGzippedCsv() throws Exception {
+		File file = temporaryFolder.newFile("nodes.csv.gz");
+
+		try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(file.toPath())),
+				StandardCharsets.UTF_8)) {
+			writer.write("name,dn,dns,ip,validityDays\n");
+			writer.write("node1,\"CN=node1.example.com,OU=Ops\",node1.example.com;node1,10.0.0.1,30\n");
+			writer.write("node2,\"CN=node2.example.com,OU=Ops\",node2.example.com,,\n");
+		}
+
+		List<Config.Node> nodes = readNodes(file);
+
+		Assert.assertEquals(2, nodes.size());
+		Assert.assertEquals("node1", nodes.get(0).getName());
+		Assert.assertEquals("CN=node1.example.com,OU=Ops", nodes.get(0).getDn());
+		Assert.assertEquals(Arrays.asList("node1.example.com", "node1"), nodes.get(0).getDns());
+		Assert.assertEquals(Arrays.asList("10.0.0.1"), nodes.get(0).getIp());
+		Assert.assertEquals(Integer.valueOf(30), nodes.get(0).getValidityDays());
+		Assert.assertEquals(Arrays.asList("node2.example.com"), nodes.get(1).getDns());
+		Assert.assertNull(nodes.get(1).getValidityDays());
+	}
+
+	@Test
+	public void testJsonLines() throws Exception {
+		File file = temporaryFolder.newFile("nodes.jsonl");
+
+		Files.write(file.toPath(),
+				("{\"name\":\"node1\",\"dn\":\"CN=node1\",\"dns\":[\"node1.example.com\"]}\n"
+						+ "{\"name\":\"node2\",\"dn\":\"CN=node2\",\"dns\":\"node2.example.com\"}\n")
+								.getBytes(StandardCharsets.UTF_8));
+
+		List<Config.Node> nodes = readNodes(file);
+
+		Assert.assertEquals(2, nodes.size());
+		Assert.assertEquals("CN=node2", nodes.get(1).getDn());
+		Assert.assertEquals(Arrays.asList("node2.example.com"), nodes.get(1).getDns());
+	}
+
+	@Test
+	public void testInvalidRecord() throws Exception {
+		File file = temporaryFolder.newFile("nodes.ndjson");
+
+		try (OutputStream out = Files.newOutputStream(file.toPath())) {
+			out.write("{\"name\":\"node1\"}\n{\"nmae\":\"node2\"}\n".getBytes(StandardCharsets.UTF_8));
+		}
+
+		try {
+			readNodes(file);
+			Assert.fail();
+		} catch (ToolException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("at line 2"));
+		}
+	}
+
+	@Test
+	public void testNodeRange() throws Exception {
+		Config.Node template = new Config.Node();
+		template.setName("es-data-[001-480]");
+		template.setDn("CN=es-data-[001-480].dc1.example.com,OU=Ops");
+		template.setDns(Arrays.asList("es-data-[001-480].dc1.example.com", "data[1-480]"));
+		template.setIp(Arrays.asList("10.0.1.10-10.0.2.233"));
+		template.setValidityDays(30);
+
+		Assert.assertTrue(NodeRangeSource.isRange(template));
+		Assert.assertEquals("CN=es-data-*.dc1.example.com,OU=Ops", NodeRangeSource.toWildcard(template.getDn()));
+
+		List<Config.Node> nodes = readNodes(() -> NodeRangeSource.expand(template));
+
+		Assert.assertEquals(480, nodes.size());
+		Assert.assertEquals("es-data-001", nodes.get(0).getName());
+		Assert.assertEquals("CN=es-data-001.dc1.example.com,OU=Ops", nodes.get(0).getDn());
+		Assert.assertEquals(Arrays.asList("es-data-001.dc1.example.com", "data1"), nodes.get(0).getDns());
+		Assert.assertEquals(Arrays.asList("10.0.1.10"), nodes.get(0).getIp());
+		Assert.assertEquals(Arrays.asList("10.0.2.0"), nodes.get(246).getIp());
+		Assert.assertEquals("es-data-480", nodes.get(479).getName());
+		Assert.assertEquals(Arrays.asList("10.0.2.233"), nodes.get(479).getIp());
+		Assert.assertEquals(Integer.valueOf(30), nodes.get(479).getValidityDays());
+	}
+
+	@Test(expected = ToolException.class)
+	public void testNodeRangeLengthMismatch() throws Exception {
+		Config.Node template = new Config.Node();
+		template.setName("node[1-10]");
+		template.setIp(Arrays.asList("10.0.0.1-10.0.0.5"));
+
+		NodeRangeSource.expand(template);
+	}
+
+	@Test
+	public void testFallbackFileNames() throws Exception {
+		File file = temporaryFolder.newFile("cmdb-export.csv.gz");
+
+		try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(file.toPath())),
+				StandardCharsets.UTF_8)) {
+			writer.write("ip,validityDays\n");
+			writer.write("10.0.0.1,30\n");
+			writer.write("10.0.0.2,30\n");
+		}
+
+		Context ctx = new Context();
+		ctx.setConfig(new Config());
+		List<String> fileNames = new ArrayList<>();
+
+		new ProcessConfigSource<>(ctx, file, Config.Node.class, (node) -> new CreateNodeCsr(ctx, node) {
+			@Override
+			public void run() {
+				fileNames.add(getNodeFileName(node));
+			}
+		}).run();
+
+		Assert.assertEquals(Arrays.asList("cmdb-export-1", "cmdb-export-2"), fileNames);
+	}
+
+		private List<Config.Node> readNodes(File file) throws ToolException {
+		return readNodes(() -> ConfigRecordSource.open(file, Config.Node.class));
+	}
+
+	private List<Config.Node> readNodes(ProcessConfigSource.SourceFactory<Config.Node> sourceFactory)
+			throws ToolException {
+		List<Config.Node> result = new ArrayList<>();
+		Context ctx = new Context();
+
+		new ProcessConfigSource<>(ctx, sourceFactory, (node) -> {
+			result.add(node);
+			return new Task(ctx) {
+				@Override
+				public void run() {
+				}
+			};
+		}).run();
+
+		return result;
+	}
+}
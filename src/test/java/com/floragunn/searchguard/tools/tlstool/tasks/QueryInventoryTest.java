@@ -0,0 +1,148 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.tasks;
+
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.openssl.PEMParser;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.floragunn.searchguard.tools.tlstool.Config;
+import com.floragunn.searchguard.tools.tlstool.Context;
+import com.floragunn.searchguard.tools.tlstool.ToolException;
+import com.floragunn.searchguard.tools.tlstool.inventory.CertificateInventory;
+import com.floragunn.searchguard.tools.tlstool.inventory.InventoryRecord;
+
+public class QueryInventoryTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testQuery() throws Exception {
+		File targetDirectory = temporaryFolder.getRoot();
+		CertificateInventory inventory = CertificateInventory.forTargetDirectory(targetDirectory);
+
+		X509CertificateHolder node1 = readCertificate("with-intermediate/node1.pem");
+		List<InventoryRecord> records = new ArrayList<>();
+		File node1Directory = new File(targetDirectory, "nodes/ca/node1");
+		records.add(InventoryRecord.create(node1, targetDirectory, new File(node1Directory, "node1.pem"),
+				new File(node1Directory, "node1.key"), null));
+		records.add(InventoryRecord.create(readCertificate("with-intermediate/node2.pem"), targetDirectory,
+				new File(targetDirectory, "node2.pem"), new File(targetDirectory, "node2.key"), null));
+		inventory.append(records);
+
+		inventory.append(Collections.singletonList(InventoryRecord.create(readCertificate("with-intermediate/kirk.pem"),
+				targetDirectory, new File(targetDirectory, "kirk.pem"), new File(targetDirectory, "kirk.key"), null)));
+
+		Context ctx = new Context();
+		ctx.setTargetDirectory(targetDirectory);
+
+		QueryInventory query = new QueryInventory(ctx, "serial:0x" + node1.getSerialNumber().toString(16));
+		query.run();
+		Assert.assertEquals(1, query.getResult().size());
+		// In the bundle layout, the files are only identified by their path relative to the target directory
+		Assert.assertEquals("nodes/ca/node1/node1.pem", query.getResult().get(0).getCertificateFile());
+		Assert.assertEquals("nodes/ca/node1/node1.key", query.getResult().get(0).getKeyFile());
+
+		// The serials are printed in the same radix as they are queried
+		query = new QueryInventory(ctx, "serial:" + query.getResult().get(0).getSerial());
+		query.run();
+		Assert.assertEquals(1, query.getResult().size());
+		Assert.assertEquals(node1.getSerialNumber().toString(), query.getResult().get(0).getSerial());
+
+		query = new QueryInventory(ctx, "dn:" + node1.getSubject());
+		query.run();
+		Assert.assertEquals(1, query.getResult().size());
+		Assert.assertTrue(query.getResult().get(0).getSubjectAlternativeNames().contains("DNS:node1.example.com"));
+
+		String fingerprint = query.getResult().get(0).getSha256Fingerprint();
+		query = new QueryInventory(ctx, "fingerprint:" + fingerprint.toUpperCase());
+		query.run();
+		Assert.assertEquals(1, query.getResult().size());
+
+		query = new QueryInventory(ctx, "all");
+		query.run();
+		Assert.assertEquals(3, query.getResult().size());
+
+		for (int i = 1; i < query.getResult().size(); i++) {
+			Assert.assertTrue(query.getResult().get(i - 1).getNotAfter() <= query.getResult().get(i).getNotAfter());
+		}
+
+		// A missing index is rebuilt from the log
+		Assert.assertTrue(new File(inventory.getDirectory(), "serial.idx").delete());
+		Assert.assertEquals(1,
+				new CertificateInventory(inventory.getDirectory()).findBySerial(node1.getSerialNumber()).size());
+		Assert.assertTrue(new File(inventory.getDirectory(), "serial.idx").exists());
+	}
+
+	@Test
+	public void testDnQuery() throws Exception {
+		CertificateInventory inventory = CertificateInventory.forTargetDirectory(temporaryFolder.getRoot());
+
+		// BC prints these attributes with their RFC 4519 names, which are unknown to X500Principal
+		InventoryRecord record = new InventoryRecord();
+		record.setSerial("1");
+		record.setSha256Fingerprint("00");
+		record.setSubjectDn("cn=node1,title=Engineer,postalCode=12345,businessCategory=IT,o=Example Com\\, Inc.");
+		inventory.append(Collections.singletonList(record));
+
+		Assert.assertEquals(1, inventory
+				.query("dn:CN=Node1, T=engineer, postalCode=12345, businessCategory=IT, O=Example Com\\, Inc.").size());
+		Assert.assertEquals(0, inventory.query("dn:CN=node2,title=Engineer").size());
+		Assert.assertEquals(0, inventory.query("dn:not a dn").size());
+	}
+
+	@Test
+	public void testConfigHashExcludesSecrets() {
+		Config.Ca.Certificate certificateConfig = new Config.Ca.Certificate();
+		certificateConfig.setDn("CN=root.ca.example.com");
+		certificateConfig.setFile("root-ca.pem");
+		certificateConfig.setPkPassword("secret");
+
+		String hash = InventoryRecord.configHash(certificateConfig);
+
+		certificateConfig.setFile("other-ca.pem");
+		certificateConfig.setPkPassword("other");
+		Assert.assertEquals(hash, InventoryRecord.configHash(certificateConfig));
+
+		certificateConfig.setDn("CN=other.ca.example.com");
+		Assert.assertNotEquals(hash, InventoryRecord.configHash(certificateConfig));
+	}
+
+	@Test(expected = ToolException.class)
+	public void testInvalidQuery() throws Exception {
+		Context ctx = new Context();
+		ctx.setTargetDirectory(temporaryFolder.getRoot());
+		new QueryInventory(ctx, "foo:bar").run();
+	}
+
+	private static X509CertificateHolder readCertificate(String resource) throws Exception {
+		try (PEMParser parser = new PEMParser(new FileReader(TestResources.getAbsolutePath(resource)))) {
+			return (X509CertificateHolder) parser.readObject();
+		}
+	}
+}
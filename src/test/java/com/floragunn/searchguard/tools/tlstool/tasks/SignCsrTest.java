@@ -0,0 +1,156 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.tasks;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.ExtensionsGenerator;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.pkcs.PKCS10CertificationRequest;
+import org.bouncycastle.pkcs.jcajce.JcaPKCS10CertificationRequestBuilder;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.floragunn.searchguard.tools.tlstool.Config;
+import com.floragunn.searchguard.tools.tlstool.Context;
+import com.floragunn.searchguard.tools.tlstool.FileOutput;
+import com.floragunn.searchguard.tools.tlstool.ToolException;
+
+public class SignCsrTest {
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@BeforeClass
+	public static void init() {
+		Security.addProvider(new BouncyCastleProvider());
+	}
+
+	@Test
+	public void testSignCsr() throws Exception {
+		File csrDirectory = temporaryFolder.newFolder("csr");
+		File targetDirectory = temporaryFolder.newFolder("out");
+
+		writeCsr(new File(csrDirectory, "node1.csr"), "CN=node1.example.com,OU=QA",
+				new GeneralName(GeneralName.dNSName, "node1.example.com"), KeyPurposeId.id_kp_serverAuth);
+		writeCsr(new File(csrDirectory, "node2.csr"), "CN=node2.example.com,OU=QA", null,
+				KeyPurposeId.id_kp_serverAuth);
+		writeCsr(new File(csrDirectory, "client1.csr"), "CN=client1,OU=QA", null, KeyPurposeId.id_kp_clientAuth);
+
+		Context ctx = createContext(targetDirectory);
+		new SignCsr(ctx, csrDirectory).run();
+
+		FileOutput fileOutput = ctx.getFileOutput();
+
+		X509CertificateHolder nodeCertificate = (X509CertificateHolder) fileOutput
+				.getEntryByFileName(new File(targetDirectory, "node1.pem").getPath()).getEntries().get(0);
+		Assert.assertEquals("CN=node1.example.com,OU=QA",
+				new X500Principal(nodeCertificate.getSubject().getEncoded()).getName());
+		Assert.assertTrue(ExtendedKeyUsage.fromExtensions(nodeCertificate.getExtensions())
+				.hasKeyPurposeId(KeyPurposeId.id_kp_clientAuth));
+		Assert.assertEquals(new GeneralName(GeneralName.dNSName, "node1.example.com"), GeneralNames
+				.fromExtensions(nodeCertificate.getExtensions(), Extension.subjectAlternativeName).getNames()[0]);
+
+		X509CertificateHolder node2Certificate = (X509CertificateHolder) fileOutput
+				.getEntryByFileName(new File(targetDirectory, "node2.pem").getPath()).getEntries().get(0);
+		Assert.assertTrue(ExtendedKeyUsage.fromExtensions(node2Certificate.getExtensions())
+				.hasKeyPurposeId(KeyPurposeId.id_kp_serverAuth));
+		Assert.assertNull(node2Certificate.getExtension(Extension.subjectAlternativeName));
+
+		X509CertificateHolder clientCertificate = (X509CertificateHolder) fileOutput
+				.getEntryByFileName(new File(targetDirectory, "client1.pem").getPath()).getEntries().get(0);
+		Assert.assertFalse(ExtendedKeyUsage.fromExtensions(clientCertificate.getExtensions())
+				.hasKeyPurposeId(KeyPurposeId.id_kp_serverAuth));
+		Assert.assertNull(clientCertificate.getExtension(Extension.subjectAlternativeName));
+
+		Assert.assertEquals(3, ctx.getIssuedCertificates().size());
+	}
+
+	@Test(expected = ToolException.class)
+	public void testUnauthorizedOid() throws Exception {
+		File csrDirectory = temporaryFolder.newFolder("csr");
+
+		writeCsr(new File(csrDirectory, "node1.csr"), "CN=node1.example.com,OU=QA",
+				new GeneralName(GeneralName.registeredID, "1.2.3.4"), KeyPurposeId.id_kp_serverAuth);
+
+		new SignCsr(createContext(temporaryFolder.newFolder("out")), csrDirectory).run();
+	}
+
+	private Context createContext(File targetDirectory) throws ToolException {
+		Context ctx = new Context();
+		Config config = new Config();
+		Config.Ca caConfig = new Config.Ca();
+		Config.Ca.Certificate rootCertificateConfig = new Config.Ca.Certificate();
+
+		rootCertificateConfig.setFile(TestResources.getAbsolutePath("without-intermediate/root-ca.pem"));
+		rootCertificateConfig.setPkPassword("secret");
+		caConfig.setRoot(rootCertificateConfig);
+
+		config.setDefaults(new Config.Defaults());
+		config.setCa(caConfig);
+		ctx.setConfig(config);
+
+		new LoadCa(ctx, caConfig).run();
+
+		ctx.setTargetDirectory(targetDirectory);
+
+		return ctx;
+	}
+
+	private void writeCsr(File file, String dn, GeneralName subjectAlternativeName, KeyPurposeId keyPurposeId)
+			throws Exception {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+		generator.initialize(2048);
+		KeyPair keyPair = generator.generateKeyPair();
+
+		ExtensionsGenerator extensionsGenerator = new ExtensionsGenerator();
+		extensionsGenerator.addExtension(Extension.extendedKeyUsage, true, new ExtendedKeyUsage(keyPurposeId));
+
+		if (subjectAlternativeName != null) {
+			extensionsGenerator.addExtension(Extension.subjectAlternativeName, false,
+					new DERSequence(subjectAlternativeName));
+		}
+
+		PKCS10CertificationRequest csr = new JcaPKCS10CertificationRequestBuilder(new X500Principal(dn),
+				keyPair.getPublic())
+						.addAttribute(PKCSObjectIdentifiers.pkcs_9_at_extensionRequest, extensionsGenerator.generate())
+						.build(new JcaContentSignerBuilder("SHA256withRSA").build(keyPair.getPrivate()));
+
+		try (JcaPEMWriter writer = new JcaPEMWriter(new FileWriter(file))) {
+			writer.writeObject(csr);
+		}
+	}
+}
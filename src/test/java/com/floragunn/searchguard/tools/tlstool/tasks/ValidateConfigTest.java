@@ -0,0 +1,175 @@
+/*
+ * Copyright 2017-2018 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.tools.tlstool.tasks;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.floragunn.searchguard.tools.tlstool.Config;
+import com.floragunn.searchguard.tools.tlstool.Context;
+import com.floragunn.searchguard.tools.tlstool.ToolException;
+
+public class ValidateConfigTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testValidConfig() throws Exception {
+		Context ctx = createContext();
+
+		new ValidateConfig(ctx, true).run();
+	}
+
+	@Test
+	public void testAllProblemsReported() throws Exception {
+		Context ctx = createContext();
+		Config config = ctx.getConfig();
+
+		Config.Node invalidNode = new Config.Node();
+		invalidNode.setName("node1");
+		invalidNode.setDn("CN=node1.example.com,invalid");
+		invalidNode.setIp(Arrays.asList("10.0.0.300"));
+		invalidNode.setOid(Arrays.asList("1.x.3"));
+		invalidNode.setKeysize(128);
+
+		Config.Client invalidClient = new Config.Client();
+		invalidClient.setName("client1");
+		invalidClient.setValidityDays(0);
+
+		config.getNodes().add(invalidNode);
+		config.getClients().add(invalidClient);
+		config.getDefaults().setSignatureAlgorithm("SHA256withFOO");
+		config.getDefaults().setEncoding("base64");
+		config.getCa().getRoot().setFile("does-not-exist.pem");
+		config.applyDefaults();
+
+		List<String> problems = new ValidateConfig(ctx, true).validate();
+
+		Assert.assertEquals(problems.toString(), 11, problems.size());
+
+		try {
+			new ValidateConfig(ctx, true).run();
+			Assert.fail();
+		} catch (ToolException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("The configuration contains 11 problems:"));
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("Invalid IP address for node node1: '10.0.0.300'"));
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("The name node1 is used by more than one node"));
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("Invalid value in defaults.encoding: base64"));
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("does-not-exist.key does not exist"));
+		}
+	}
+
+	@Test
+	public void testNodeRanges() throws Exception {
+		Context ctx = createContext();
+
+		Config.Node rangeNode = new Config.Node();
+		rangeNode.setName("es-data-[01-20]");
+		rangeNode.setDn("CN=es-data-[01-20].example.com");
+		rangeNode.setIp(Arrays.asList("10.0.0.250-10.0.1.13"));
+		ctx.getConfig().getNodes().add(rangeNode);
+
+		Assert.assertEquals(0, new ValidateConfig(ctx, false).validate().size());
+
+		rangeNode.setIp(Arrays.asList("10.0.0.250-10.0.1.14"));
+
+		Assert.assertEquals(1, new ValidateConfig(ctx, false).validate().size());
+	}
+
+	@Test
+	public void testConfigSources() throws Exception {
+		Context ctx = createContext();
+		File nodeSource = temporaryFolder.newFile("nodes.csv");
+		File clientSource = temporaryFolder.newFile("clients.jsonl");
+
+		Files.write(nodeSource.toPath(), ("name,dn,ip\n" + "node2,CN=node2.example.com,10.0.0.2\n"
+				+ "node1,CN=node1b.example.com,10.0.0.3\n" + "node3,CN=node3.example.com,10.0.0.300\n")
+						.getBytes(StandardCharsets.UTF_8));
+		Files.write(clientSource.toPath(), "{\"name\":\"admin2\",\"dn\":\"CN=admin2\",\"admin\":true}\n"
+				.getBytes(StandardCharsets.UTF_8));
+
+		ctx.getConfig().setNodeSources(Arrays.asList(nodeSource.getPath()));
+		ctx.getConfig().setClientSources(Arrays.asList(clientSource.getPath(), "does-not-exist.csv"));
+
+		List<String> problems = new ValidateConfig(ctx, false).validate();
+
+		Assert.assertEquals(problems.toString(), 4, problems.size());
+		Assert.assertTrue(problems.toString(), problems.contains("The name node1 is used by more than one node; "
+				+ "the files would overwrite each other"));
+		Assert.assertTrue(problems.toString(), problems.contains("Invalid IP address for node node3: '10.0.0.300'"));
+		Assert.assertTrue(problems.toString(),
+				problems.contains("Admin clients must be specified in the clients section of the config: CN=admin2"));
+	}
+
+	@Test
+	public void testDerEncodingWithNodes() throws Exception {
+		Context ctx = createContext();
+		ctx.getConfig().getDefaults().setEncoding("der");
+
+		List<String> problems = new ValidateConfig(ctx, false).validate();
+
+		Assert.assertEquals(problems.toString(), 1, problems.size());
+		Assert.assertTrue(problems.get(0), problems.get(0).startsWith("defaults.encoding: der cannot be used"));
+
+		ctx.getConfig().getDefaults().setEncoding("both");
+		Assert.assertEquals(0, new ValidateConfig(ctx, false).validate().size());
+
+		ctx.getConfig().getDefaults().setEncoding("der");
+		ctx.getConfig().getDefaults().setPkcs12(true);
+		Assert.assertEquals(0, new ValidateConfig(ctx, false).validate().size());
+	}
+
+	private Context createContext() {
+		Context ctx = new Context();
+		Config config = new Config();
+		Config.Ca caConfig = new Config.Ca();
+		Config.Ca.Certificate rootCertificateConfig = new Config.Ca.Certificate();
+
+		rootCertificateConfig.setFile(TestResources.getAbsolutePath("without-intermediate/root-ca.pem"));
+		caConfig.setRoot(rootCertificateConfig);
+
+		Config.Node node = new Config.Node();
+		node.setName("node1");
+		node.setDn("CN=node1.example.com,OU=Ops");
+		node.setDns(Arrays.asList("node1.example.com"));
+		node.setIp(Arrays.asList("10.0.0.1", "::1"));
+
+		Config.Client client = new Config.Client();
+		client.setDn("CN=admin,OU=Ops");
+		client.setAdmin(true);
+
+		config.setCa(caConfig);
+		config.setDefaults(new Config.Defaults());
+		config.setNodes(new ArrayList<>(Arrays.asList(node)));
+		config.setClients(new ArrayList<>(Arrays.asList(client)));
+		config.applyDefaults();
+		ctx.setConfig(config);
+
+		return ctx;
+	}
+}